@@ -0,0 +1,137 @@
+package nu.lodes.sortedlist.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import nu.lodes.sortedlist.IntSortedList;
+import nu.lodes.sortedlist.OffHeapLongSortedList;
+import nu.lodes.sortedlist.PooledSplaySortedList;
+import nu.lodes.sortedlist.SplaySortedList;
+
+import rx.functions.Func1;
+
+/** Reports the heap bytes per element retained by each sorted list backend.
+ * The elements are boxed once up front and shared by all backends,
+ * so only the structure is measured, not the elements.
+ * Run with a fixed heap (e.g. <code>-Xms2g -Xmx2g</code>) for stable numbers. */
+public final class FootprintBenchmark {
+    final int tryCount = 4;
+    final int size;
+    final Integer[] elements;
+    
+    FootprintBenchmark(Random r, int size) {
+        this.size = size;
+        elements = new Integer[size];
+        for (int i = 0; i < size; ++i) {
+            elements[i] = r.nextInt();
+        }
+    }
+    
+    void run(String label, Func1<Integer[], Object> generator) {
+        long[] bytes = new long[tryCount];
+        for (int i = 0; i < tryCount; ++i) {
+            long before = usedMemory();
+            Object retained = generator.call(elements);
+            long after = usedMemory();
+            bytes[i] = after - before;
+            // (keep the structure live until after the measurement)
+            if (null == retained) {
+                System.out.println();
+            }
+        }
+        Arrays.sort(bytes);
+        long median = bytes[tryCount / 2];
+        System.out.printf("%-30s (%9d)  %8.2f bytes/element\n", label, size, median / (double) size);
+    }
+    
+    
+    static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        for (int i = 0; i < 8; ++i) {
+            System.gc();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            long u = runtime.totalMemory() - runtime.freeMemory();
+            if (u == used) {
+                break;
+            }
+            used = u;
+        }
+        return used;
+    }
+    
+    
+    public static void main(String[] in) {
+        int size = 0 < in.length ? Integer.parseInt(in[0]) : 1 << 20;
+        FootprintBenchmark benchmark = new FootprintBenchmark(new Random(), size);
+        
+        benchmark.run("ArrayList (baseline)", new Func1<Integer[], Object>() {
+            @Override
+            public Object call(Integer[] elements) {
+                List<Integer> list = new ArrayList<Integer>(elements.length);
+                for (Integer e : elements) {
+                    list.add(e);
+                }
+                return list;
+            }
+        });
+        benchmark.run("SplaySortedList", new Func1<Integer[], Object>() {
+            @Override
+            public Object call(Integer[] elements) {
+                SplaySortedList<Integer> sortedList = new SplaySortedList<Integer>();
+                for (Integer e : elements) {
+                    sortedList.insert(e);
+                }
+                return sortedList;
+            }
+        });
+        benchmark.run("PooledSplaySortedList", new Func1<Integer[], Object>() {
+            @Override
+            public Object call(Integer[] elements) {
+                PooledSplaySortedList<Integer> sortedList = new PooledSplaySortedList<Integer>();
+                for (Integer e : elements) {
+                    sortedList.insert(e);
+                }
+                return sortedList;
+            }
+        });
+        benchmark.run("PooledSplaySortedList rebuilt", new Func1<Integer[], Object>() {
+            @Override
+            public Object call(Integer[] elements) {
+                PooledSplaySortedList<Integer> sortedList = new PooledSplaySortedList<Integer>();
+                for (Integer e : elements) {
+                    sortedList.insert(e);
+                }
+                sortedList.rebuild();
+                return sortedList;
+            }
+        });
+        benchmark.run("IntSortedList", new Func1<Integer[], Object>() {
+            @Override
+            public Object call(Integer[] elements) {
+                IntSortedList sortedList = new IntSortedList();
+                for (Integer e : elements) {
+                    sortedList.insert(e.intValue());
+                }
+                return sortedList;
+            }
+        });
+        // (direct memory is not counted; see allocatedBytes)
+        benchmark.run("OffHeapLongSortedList", new Func1<Integer[], Object>() {
+            @Override
+            public Object call(Integer[] elements) {
+                OffHeapLongSortedList sortedList = new OffHeapLongSortedList();
+                for (Integer e : elements) {
+                    sortedList.insert(e.longValue());
+                }
+                return sortedList;
+            }
+        });
+    }
+}
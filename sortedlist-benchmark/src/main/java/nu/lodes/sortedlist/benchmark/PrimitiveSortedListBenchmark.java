@@ -0,0 +1,121 @@
+package nu.lodes.sortedlist.benchmark;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import nu.lodes.sortedlist.IntSortedList;
+import nu.lodes.sortedlist.SplaySortedList;
+
+/** Compares the unboxed {@link IntSortedList} against a boxed <code>SplaySortedList&lt;Integer&gt;</code>
+ * for insert, get, floorIndex and iteration. */
+public final class PrimitiveSortedListBenchmark {
+    static enum Op {
+        INSERT,
+        GET,
+        FLOOR_INDEX,
+        ITERATOR
+    }
+    
+    
+    final Random r;
+    
+    final int tryCount = 8;
+    final int minSize = 1024;
+    final int stepCount = 11;
+    final int m = 16;
+    
+    PrimitiveSortedListBenchmark(Random r) {
+        this.r = r;
+    }
+    
+    void run() {
+        // warmup
+        for (int step = 0; step < stepCount; ++step) {
+            bench(minSize << step, false);
+        }
+        // bench
+        for (int step = 0; step < stepCount; ++step) {
+            bench(minSize << step, true);
+        }
+    }
+    
+    void bench(int size, boolean print) {
+        int[] values = new int[size];
+        for (int i = 0; i < size; ++i) {
+            values[i] = r.nextInt(m * size);
+        }
+        int[] indexes = new int[size];
+        for (int i = 0; i < size; ++i) {
+            indexes[i] = r.nextInt(size);
+        }
+        
+        long[] intNanos = new long[Op.values().length];
+        long[] boxedNanos = new long[Op.values().length];
+        long sum = 0L;
+        for (int i = 0; i < tryCount; ++i) {
+            long nanos;
+            
+            IntSortedList intSortedList = new IntSortedList();
+            nanos = System.nanoTime();
+            for (int value : values) {
+                intSortedList.insert(value);
+            }
+            intNanos[Op.INSERT.ordinal()] += System.nanoTime() - nanos;
+            nanos = System.nanoTime();
+            for (int index : indexes) {
+                sum += intSortedList.getInt(index);
+            }
+            intNanos[Op.GET.ordinal()] += System.nanoTime() - nanos;
+            nanos = System.nanoTime();
+            for (int value : values) {
+                sum += intSortedList.floorIndex(value);
+            }
+            intNanos[Op.FLOOR_INDEX.ordinal()] += System.nanoTime() - nanos;
+            nanos = System.nanoTime();
+            for (IntSortedList.IntListIterator itr = intSortedList.iterator(); itr.hasNext(); ) {
+                sum += itr.nextInt();
+            }
+            intNanos[Op.ITERATOR.ordinal()] += System.nanoTime() - nanos;
+            
+            SplaySortedList<Integer> boxedSortedList = new SplaySortedList<Integer>();
+            nanos = System.nanoTime();
+            for (int value : values) {
+                boxedSortedList.insert(value);
+            }
+            boxedNanos[Op.INSERT.ordinal()] += System.nanoTime() - nanos;
+            nanos = System.nanoTime();
+            for (int index : indexes) {
+                sum += boxedSortedList.get(index);
+            }
+            boxedNanos[Op.GET.ordinal()] += System.nanoTime() - nanos;
+            nanos = System.nanoTime();
+            for (int value : values) {
+                sum += boxedSortedList.floorIndex(value);
+            }
+            boxedNanos[Op.FLOOR_INDEX.ordinal()] += System.nanoTime() - nanos;
+            nanos = System.nanoTime();
+            for (Iterator<Integer> itr = boxedSortedList.iterator(); itr.hasNext(); ) {
+                sum += itr.next();
+            }
+            boxedNanos[Op.ITERATOR.ordinal()] += System.nanoTime() - nanos;
+        }
+        
+        if (print) {
+            for (Op op : Op.values()) {
+                double intMean = intNanos[op.ordinal()] / (double) (tryCount * size);
+                double boxedMean = boxedNanos[op.ordinal()] / (double) (tryCount * size);
+                System.out.printf("%-20s %30s(%7d)  IntSortedList %.2fns  SplaySortedList<Integer> %.2fns  (%.2fx)\n",
+                        "PrimitiveSortedList", op, size, intMean, boxedMean, boxedMean / intMean);
+            }
+        }
+        // (keep the sum live)
+        if (0L == sum) {
+            System.out.println();
+        }
+    }
+    
+    
+    public static void main(String[] in) {
+        new PrimitiveSortedListBenchmark(new Random()).run();
+    }
+}
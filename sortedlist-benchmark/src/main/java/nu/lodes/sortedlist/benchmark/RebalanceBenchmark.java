@@ -0,0 +1,84 @@
+package nu.lodes.sortedlist.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import nu.lodes.sortedlist.SortedList;
+import nu.lodes.sortedlist.SplaySortedList;
+
+/** Measures rebalancing two adjacent partitions, by moving the top quarter of the lower 
+ * partition into the upper partition, as a function of the partition size.
+ * Compares {@link SortedList#split}/{@link SortedList#concat} with 
+ * copying the elements and removing them from the source. */
+public final class RebalanceBenchmark {
+    static enum Method {
+        SPLIT_CONCAT,
+        COPY
+    }
+    
+    
+    final Random r;
+    
+    final int tryCount = 16;
+    final int minSize = 1 << 12;
+    final int stepCount = 9;
+    
+    RebalanceBenchmark(Random r) {
+        this.r = r;
+    }
+    
+    /** @return a partition of <code>size</code> random elements in <code>[lo, lo + 2^30)</code> */
+    SplaySortedList<Integer> partition(int size, int lo) {
+        List<Integer> values = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; ++i) {
+            values.add(lo + r.nextInt(1 << 30));
+        }
+        return new SplaySortedList<Integer>(values);
+    }
+    
+    void rebalance(Method method, SplaySortedList<Integer> lower, SplaySortedList<Integer> upper) {
+        int index = lower.size() - lower.size() / 4;
+        switch (method) {
+            case SPLIT_CONCAT:
+                upper.concat(lower.split(index));
+                break;
+            case COPY:
+                List<Integer> moved = lower.subList(index, lower.size());
+                upper.insertAll(new ArrayList<Integer>(moved));
+                for (int i = lower.size() - 1; index <= i; --i) {
+                    lower.remove(i);
+                }
+                break;
+        }
+    }
+    
+    void run(Method method, boolean print) {
+        for (int step = 0; step < stepCount; ++step) {
+            int size = minSize << step;
+            long nanos = 0L;
+            for (int t = 0; t < tryCount; ++t) {
+                SplaySortedList<Integer> lower = partition(size, -(1 << 30));
+                SplaySortedList<Integer> upper = partition(size, 0);
+                long start = System.nanoTime();
+                rebalance(method, lower, upper);
+                nanos += System.nanoTime() - start;
+                assert lower.size() + upper.size() == 2 * size;
+            }
+            if (print) {
+                System.out.printf("%-16s (%9d)  %.6fms\n", method, size, nanos / (tryCount * 1000000.0));
+            }
+        }
+    }
+    
+    
+    public static void main(String[] in) {
+        RebalanceBenchmark benchmark = new RebalanceBenchmark(new Random());
+        for (int pass = 0; pass < 2; ++pass) {
+            boolean print = 1 == pass;
+            for (Method method : Method.values()) {
+                benchmark.run(method, print);
+            }
+        }
+    }
+}
@@ -1,7 +1,12 @@
 package nu.lodes.sortedlist.benchmark;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
 import java.util.Random;
 
+import nu.lodes.sortedlist.BTreeSortedList;
 import nu.lodes.sortedlist.SortedList;
 import nu.lodes.sortedlist.SplaySortedList;
 
@@ -11,14 +16,25 @@ import rx.functions.Func1;
 import rx.functions.Func2;
 
 /** Benchmarks a {@link SortedList} implementation
- * to verify lg performance of operations. */
+ * to verify lg performance of operations. 
+ * Every {@link Op} is also a JMH benchmark, in <code>SortedListOpBenchmark</code> (sortedlist-jmh). */
 public final class SortedListBenchmark<E> {
     static enum Op {
         INSERT,
         INSERT_ALL,
+        INSERT_SORTED,
+        INSERT_REVERSE_SORTED,
+        INSERT_NEARLY_SORTED,
+        POLL_FIRST,
+        POLL_LAST,
+        REMOVE_HEAD,
         GET,
         ITERATOR,
         LIST_ITERATOR,
+        SUB_LIST,
+        RANK_QUERY,
+        EQUAL_RANGE_QUERY,
+        COUNT_BETWEEN,
         INDEX_OF,
         INDEX_OF_QUERY,
         LAST_INDEX_OF,
@@ -46,9 +62,17 @@ public final class SortedListBenchmark<E> {
     final Func1<Integer, SortedList<E>> sortedListGenerator;
     final Func1<Integer, E> elementGenerator;
     final Func1<Integer, Comparable<? super E>> queryGenerator;
+    /* maps a sequence number to an element, increasing in the sequence number.
+     * Non-negative sequence numbers are above all generated elements,
+     * and negative sequence numbers are below all generated elements. */
+    final Func1<Integer, E> sequenceGenerator;
     
     final Random r;
     
+    /* the next sequence numbers for inserting above and below the generated elements */
+    int nextHigh = 0;
+    int nextLow = -1;
+    
     final int tryCount = 256;
     final int repeatMeanCount = 32;
     final int minSize = 1024;
@@ -57,12 +81,14 @@ public final class SortedListBenchmark<E> {
     SortedListBenchmark(Random r, String label,
             Func1<Integer, SortedList<E>> sortedListGenerator,
             Func1<Integer, E> elementGenerator,
-            Func1<Integer, Comparable<? super E>> queryGenerator) {
+            Func1<Integer, Comparable<? super E>> queryGenerator,
+            Func1<Integer, E> sequenceGenerator) {
         this.r = r;
         this.label = label;
         this.sortedListGenerator = sortedListGenerator;
         this.elementGenerator = elementGenerator;
         this.queryGenerator = queryGenerator;
+        this.sequenceGenerator = sequenceGenerator;
     }
     
     void run(Op ... ops) {
@@ -92,6 +118,200 @@ public final class SortedListBenchmark<E> {
                         }
                     });
                     break;
+                case INSERT_ALL:
+                    // batch-to-size ratios 1/1024, 1/256, 1/64
+                    for (final int ratio : new int[]{1024, 256, 64}) {
+                        verifyLg(op + "(1/" + ratio + ")", new Func2<SortedList<E>, Integer, Integer>() {
+                            @Override
+                            public Integer call(SortedList<E> sortedList, Integer size) {
+                                int n = Math.max(1, size / ratio);
+                                List<E> batch = new ArrayList<E>(n);
+                                for (int i = 0; i < n; ++i) {
+                                    batch.add(elementGenerator.call(size));
+                                }
+                                sortedList.insertAll(batch);
+                                return n;
+                            }
+                        });
+                    }
+                    break;
+                case INSERT_SORTED:
+                    // appends at the max
+                    verifyLg(op, new Func2<SortedList<E>, Integer, Integer>() {
+                        @Override
+                        public Integer call(SortedList<E> sortedList, Integer size) {
+                            int n = 1 + r.nextInt(2 * (repeatMeanCount - 1));
+                            for (int i = 0; i < n; ++i) {
+                                sortedList.insert(sequenceGenerator.call(nextHigh++));
+                            }
+                            return n;
+                        }
+                    });
+                    break;
+                case INSERT_REVERSE_SORTED:
+                    // prepends at the min
+                    verifyLg(op, new Func2<SortedList<E>, Integer, Integer>() {
+                        @Override
+                        public Integer call(SortedList<E> sortedList, Integer size) {
+                            int n = 1 + r.nextInt(2 * (repeatMeanCount - 1));
+                            for (int i = 0; i < n; ++i) {
+                                sortedList.insert(sequenceGenerator.call(nextLow--));
+                            }
+                            return n;
+                        }
+                    });
+                    break;
+                case INSERT_NEARLY_SORTED:
+                    // increasing with jitter, e.g. timestamps that arrive slightly out of order
+                    verifyLg(op, new Func2<SortedList<E>, Integer, Integer>() {
+                        @Override
+                        public Integer call(SortedList<E> sortedList, Integer size) {
+                            int n = 1 + r.nextInt(2 * (repeatMeanCount - 1));
+                            for (int i = 0; i < n; ++i) {
+                                sortedList.insert(sequenceGenerator.call(Math.max(0, nextHigh++ - r.nextInt(64))));
+                            }
+                            return n;
+                        }
+                    });
+                    break;
+                case POLL_FIRST:
+                    // a queue: removes the min and appends at the max
+                    verifyLg(op, new Func2<SortedList<E>, Integer, Integer>() {
+                        @Override
+                        public Integer call(SortedList<E> sortedList, Integer size) {
+                            int n = 1 + r.nextInt(2 * (repeatMeanCount - 1));
+                            for (int i = 0; i < n; ++i) {
+                                sortedList.pollFirst();
+                                sortedList.insert(sequenceGenerator.call(nextHigh++));
+                            }
+                            return n;
+                        }
+                    });
+                    break;
+                case POLL_LAST:
+                    // removes the max and prepends at the min
+                    verifyLg(op, new Func2<SortedList<E>, Integer, Integer>() {
+                        @Override
+                        public Integer call(SortedList<E> sortedList, Integer size) {
+                            int n = 1 + r.nextInt(2 * (repeatMeanCount - 1));
+                            for (int i = 0; i < n; ++i) {
+                                sortedList.pollLast();
+                                sortedList.insert(sequenceGenerator.call(nextLow--));
+                            }
+                            return n;
+                        }
+                    });
+                    break;
+                case REMOVE_HEAD:
+                    // evicts the least 1/64 of the list, then refills at the max
+                    verifyLg(op, new Func2<SortedList<E>, Integer, Integer>() {
+                        @Override
+                        public Integer call(SortedList<E> sortedList, Integer size) {
+                            int n = Math.max(1, size / 64);
+                            sortedList.subList(0, n).clear();
+                            List<E> batch = new ArrayList<E>(n);
+                            for (int i = 0; i < n; ++i) {
+                                batch.add(sequenceGenerator.call(nextHigh++));
+                            }
+                            sortedList.insertAll(batch);
+                            return n;
+                        }
+                    });
+                    break;
+                case ITERATOR:
+                    verifyLg(op, new Func2<SortedList<E>, Integer, Integer>() {
+                        @Override
+                        public Integer call(SortedList<E> sortedList, Integer size) {
+                            int n = 1 + r.nextInt(2 * (repeatMeanCount - 1));
+                            Iterator<E> itr = sortedList.iterator();
+                            for (int i = 0; i < n && itr.hasNext(); ++i) {
+                                itr.next();
+                            }
+                            return n;
+                        }
+                    });
+                    break;
+                case LIST_ITERATOR:
+                    verifyLg(op, new Func2<SortedList<E>, Integer, Integer>() {
+                        @Override
+                        public Integer call(SortedList<E> sortedList, Integer size) {
+                            int n = 1 + r.nextInt(2 * (repeatMeanCount - 1));
+                            ListIterator<E> itr = sortedList.listIterator(r.nextInt(size));
+                            for (int i = 0; i < n; ++i) {
+                                if (r.nextBoolean() ? itr.hasNext() : !itr.hasPrevious()) {
+                                    itr.next();
+                                } else {
+                                    itr.previous();
+                                }
+                            }
+                            return n;
+                        }
+                    });
+                    break;
+                case SUB_LIST:
+                    // a range view: size and the first element
+                    verifyLg(op, new Func2<SortedList<E>, Integer, Integer>() {
+                        @Override
+                        public Integer call(SortedList<E> sortedList, Integer size) {
+                            int n = 1 + r.nextInt(2 * (repeatMeanCount - 1));
+                            for (int i = 0; i < n; ++i) {
+                                E from = elementGenerator.call(size);
+                                E to = elementGenerator.call(size);
+                                if (0 < sortedList.comparator().compare(from, to)) {
+                                    E t = from;
+                                    from = to;
+                                    to = t;
+                                }
+                                SortedList<E> view = sortedList.subList(from, true, to, false);
+                                view.size();
+                                Iterator<E> itr = view.iterator();
+                                if (itr.hasNext()) {
+                                    itr.next();
+                                }
+                            }
+                            return n;
+                        }
+                    });
+                    break;
+                case RANK_QUERY:
+                    verifyLg(op, new Func2<SortedList<E>, Integer, Integer>() {
+                        @Override
+                        public Integer call(SortedList<E> sortedList, Integer size) {
+                            int n = 1 + r.nextInt(2 * (repeatMeanCount - 1));
+                            for (int i = 0; i < n; ++i) {
+                                sortedList.rank(queryGenerator.call(size));
+                            }
+                            return n;
+                        }
+                    });
+                    break;
+                case EQUAL_RANGE_QUERY:
+                    verifyLg(op, new Func2<SortedList<E>, Integer, Integer>() {
+                        @Override
+                        public Integer call(SortedList<E> sortedList, Integer size) {
+                            int n = 1 + r.nextInt(2 * (repeatMeanCount - 1));
+                            for (int i = 0; i < n; ++i) {
+                                sortedList.equalRange(queryGenerator.call(size));
+                            }
+                            return n;
+                        }
+                    });
+                    break;
+                case COUNT_BETWEEN:
+                    // bucketing: the count in [from, to)
+                    verifyLg(op, new Func2<SortedList<E>, Integer, Integer>() {
+                        @Override
+                        public Integer call(SortedList<E> sortedList, Integer size) {
+                            int n = 1 + r.nextInt(2 * (repeatMeanCount - 1));
+                            for (int i = 0; i < n; ++i) {
+                                E from = elementGenerator.call(size);
+                                E to = elementGenerator.call(size);
+                                sortedList.countBetween(from, true, to, false);
+                            }
+                            return n;
+                        }
+                    });
+                    break;
                 default:
                     // TODO
                     break;
@@ -100,6 +320,10 @@ public final class SortedListBenchmark<E> {
     }
     
     void verifyLg(Op op, Func2<SortedList<E>, Integer, Integer> opf) {
+        verifyLg(op.toString(), opf);
+    }
+    
+    void verifyLg(String opLabel, Func2<SortedList<E>, Integer, Integer> opf) {
         // iterate from a list of min size ... max size, doubling size at each step
         // the mean op time should linearly increase at each step if the ops are lg
         
@@ -107,8 +331,6 @@ public final class SortedListBenchmark<E> {
         for (int step = 0; step < stepCount; ++step) {
             int size = minSize << step;
             SortedList<E> sortedList = sortedListGenerator.call(size);
-            // FIXME current implementation does not allow duplication; HACK
-            size = sortedList.size();
             for (int i = 0; i < tryCount; ++i) {
                 opf.call(sortedList, size);
             }
@@ -119,8 +341,6 @@ public final class SortedListBenchmark<E> {
         for (int step = 0; step < stepCount; ++step) {
             int size = minSize << step;
             SortedList<E> sortedList = sortedListGenerator.call(size);
-            // FIXME current implementation does not allow duplication; HACK
-            size = sortedList.size();
             long netNanos = 0L;
             int netc = 0;
             for (int i = 0; i < tryCount; ++i) {
@@ -132,7 +352,7 @@ public final class SortedListBenchmark<E> {
             assert 0 < netc;
             double netMicros = netNanos / 1000.0;
             meanMicrosPerOp[step] = netMicros / netc;
-            System.out.printf("%-20s %30s(%7d)  mean %.6fms  net %.6fms\n", label, op, size, 
+            System.out.printf("%-20s %30s(%7d)  mean %.6fms  net %.6fms\n", label, opLabel, size, 
                     meanMicrosPerOp[step] / 1000.0, netMicros / 1000.0);
         }
         OLSMultipleLinearRegression regression = new OLSMultipleLinearRegression();
@@ -142,7 +362,7 @@ public final class SortedListBenchmark<E> {
         }
         regression.newSampleData(meanMicrosPerOp, xs);
         double rsq = regression.calculateRSquared();
-        System.out.printf("%-20s %30s  rsq %.6f\n", label, op, rsq);
+        System.out.printf("%-20s %30s  rsq %.6f\n", label, opLabel, rsq);
     }
     
     
@@ -162,6 +382,12 @@ public final class SortedListBenchmark<E> {
                 return r.nextInt(m * size);
             }
         };
+        final Func1<Integer, Integer> sequenceGenerator = new Func1<Integer, Integer>() {
+            @Override
+            public Integer call(Integer seq) {
+                return 0 <= seq ? (1 << 30) + seq : seq;
+            }
+        };
         
         // splay sorted list
         new SortedListBenchmark<Integer>(r, "SplaySortedList", new Func1<Integer, SortedList<Integer>>() {
@@ -173,6 +399,18 @@ public final class SortedListBenchmark<E> {
                 }
                 return splaySortedList;
             }
-        }, elementGenerator, queryGenerator).run(Op.values());
+        }, elementGenerator, queryGenerator, sequenceGenerator).run(Op.values());
+        
+        // b+ tree sorted list
+        new SortedListBenchmark<Integer>(r, "BTreeSortedList", new Func1<Integer, SortedList<Integer>>() {
+            @Override
+            public SortedList<Integer> call(Integer size) {
+                BTreeSortedList<Integer> bTreeSortedList = new BTreeSortedList<Integer>();
+                for (int i = 0, n = size; i < n; ++i) {
+                    bTreeSortedList.insert(elementGenerator.call(size));
+                }
+                return bTreeSortedList;
+            }
+        }, elementGenerator, queryGenerator, sequenceGenerator).run(Op.values());
     }
 }
@@ -0,0 +1,108 @@
+package nu.lodes.sortedlist.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import nu.lodes.sortedlist.SplayPolicy;
+import nu.lodes.sortedlist.SplaySortedList;
+import nu.lodes.sortedlist.TreeShape;
+
+/** Compares the read cost of {@link SplaySortedList} under each {@link SplayPolicy},
+ * for uniform and skewed access. Skewed access draws 90% of the reads
+ * from a hot window of 1% of the list. 
+ * Also reports the shape of the tree after the reads ({@link SplaySortedList#analyze}). */
+public final class SplayPolicyBenchmark {
+    static enum Access {
+        UNIFORM,
+        SKEWED
+    }
+    
+    static enum Op {
+        GET,
+        FLOOR_INDEX
+    }
+    
+    
+    final Random r;
+    
+    final int tryCount = 4;
+    final int size = 1 << 20;
+    final int opCount = 1 << 20;
+    
+    SplayPolicyBenchmark(Random r) {
+        this.r = r;
+    }
+    
+    int[] indexes(Access access) {
+        int[] indexes = new int[opCount];
+        int window = size / 100;
+        int hot = r.nextInt(size - window);
+        for (int i = 0; i < opCount; ++i) {
+            switch (access) {
+                case UNIFORM:
+                    indexes[i] = r.nextInt(size);
+                    break;
+                case SKEWED:
+                    indexes[i] = r.nextInt(10) < 9 ? hot + r.nextInt(window) : r.nextInt(size);
+                    break;
+            }
+        }
+        return indexes;
+    }
+    
+    void run(String label, SplayPolicy policy, boolean print) {
+        List<Integer> values = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; ++i) {
+            values.add(2 * i);
+        }
+        for (Access access : Access.values()) {
+            for (Op op : Op.values()) {
+                long nanos = 0L;
+                long sum = 0L;
+                TreeShape shape = null;
+                for (int t = 0; t < tryCount; ++t) {
+                    SplaySortedList<Integer> sortedList = new SplaySortedList<Integer>(policy);
+                    sortedList.insertAll(values);
+                    int[] indexes = indexes(access);
+                    long start = System.nanoTime();
+                    switch (op) {
+                        case GET:
+                            for (int index : indexes) {
+                                sum += sortedList.get(index);
+                            }
+                            break;
+                        case FLOOR_INDEX:
+                            for (int index : indexes) {
+                                sum += sortedList.floorIndex(2 * index + 1);
+                            }
+                            break;
+                    }
+                    nanos += System.nanoTime() - start;
+                    shape = sortedList.analyze();
+                }
+                if (print) {
+                    System.out.printf("%-24s %8s %12s(%7d)  %.2fns  height %d  averageDepth %.2f\n", label, access, op, size,
+                            nanos / (double) (tryCount * opCount), shape.height(), shape.averageDepth());
+                }
+                // (keep the sum live)
+                if (0L == sum) {
+                    System.out.println();
+                }
+            }
+        }
+    }
+    
+    
+    public static void main(String[] in) {
+        SplayPolicyBenchmark benchmark = new SplayPolicyBenchmark(new Random());
+        for (int pass = 0; pass < 2; ++pass) {
+            boolean print = 1 == pass;
+            benchmark.run("always", SplayPolicy.always(), print);
+            benchmark.run("never", SplayPolicy.never(), print);
+            benchmark.run("everyKth(16)", SplayPolicy.everyKth(16), print);
+            benchmark.run("probabilistic(1/16)", SplayPolicy.probabilistic(1.0 / 16), print);
+            benchmark.run("depthThreshold(2)", SplayPolicy.depthThreshold(2.0), print);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package nu.lodes.sortedlist.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import nu.lodes.sortedlist.SortedList;
+import nu.lodes.sortedlist.SplaySortedList;
+
+/** Compares sequential and parallel stream throughput over a {@link SplaySortedList}
+ * and a range view of it, against a sequential iterator scan.
+ * The <code>DEFAULT</code> source is the {@link List} default spliterator
+ * (over the iterator, split by copying batches), for comparison with the tree spliterator. */
+public final class StreamBenchmark {
+    static enum Source {
+        SCAN,
+        SEQUENTIAL,
+        PARALLEL,
+        DEFAULT_PARALLEL
+    }
+    
+    static enum Op {
+        SUM,
+        FILTER_COUNT
+    }
+    
+    
+    final int tryCount = 8;
+    final int size;
+    final SplaySortedList<Integer> sortedList;
+    
+    StreamBenchmark(Random r, int size) {
+        this.size = size;
+        List<Integer> values = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; ++i) {
+            values.add(r.nextInt());
+        }
+        sortedList = new SplaySortedList<Integer>(values);
+    }
+    
+    static Stream<Integer> stream(SortedList<Integer> list, Source source) {
+        switch (source) {
+            case SEQUENTIAL:
+                return list.stream();
+            case PARALLEL:
+                return list.parallelStream();
+            case DEFAULT_PARALLEL:
+                return StreamSupport.stream(Spliterators.spliterator(list, Spliterator.ORDERED), true);
+            default:
+                throw new IllegalArgumentException();
+        }
+    }
+    
+    static long run(SortedList<Integer> list, Source source, Op op) {
+        final ToLongFunction<Integer> value = new ToLongFunction<Integer>() {
+            @Override
+            public long applyAsLong(Integer x) {
+                return x;
+            }
+        };
+        final Predicate<Integer> even = new Predicate<Integer>() {
+            @Override
+            public boolean test(Integer x) {
+                return 0 == (x & 1);
+            }
+        };
+        if (Source.SCAN == source) {
+            long sum = 0L;
+            for (Integer x : list) {
+                switch (op) {
+                    case SUM:
+                        sum += x;
+                        break;
+                    case FILTER_COUNT:
+                        if (even.test(x)) {
+                            sum += 1;
+                        }
+                        break;
+                }
+            }
+            return sum;
+        }
+        switch (op) {
+            case SUM:
+                return stream(list, source).mapToLong(value).sum();
+            case FILTER_COUNT:
+                return stream(list, source).filter(even).count();
+            default:
+                throw new IllegalArgumentException();
+        }
+    }
+    
+    void run(String label, SortedList<Integer> list, boolean print) {
+        for (Op op : Op.values()) {
+            for (Source source : Source.values()) {
+                long nanos = 0L;
+                long check = 0L;
+                for (int t = 0; t < tryCount; ++t) {
+                    long start = System.nanoTime();
+                    check += run(list, source, op);
+                    nanos += System.nanoTime() - start;
+                }
+                if (print) {
+                    System.out.printf("%-10s %12s %16s(%8d)  %.3fms  (%d)\n", label, op, source, list.size(),
+                            nanos / (tryCount * 1000000.0), check / tryCount);
+                }
+            }
+        }
+    }
+    
+    
+    public static void main(String[] in) {
+        int size = 0 < in.length ? Integer.parseInt(in[0]) : 1 << 22;
+        StreamBenchmark benchmark = new StreamBenchmark(new Random(), size);
+        SortedList<Integer> view = benchmark.sortedList.subList(Integer.MIN_VALUE / 2, true, Integer.MAX_VALUE / 2, false);
+        for (int pass = 0; pass < 2; ++pass) {
+            boolean print = 1 == pass;
+            benchmark.run("list", benchmark.sortedList, print);
+            benchmark.run("view", view, print);
+        }
+        System.out.printf("(%d processors)\n", Runtime.getRuntime().availableProcessors());
+    }
+}
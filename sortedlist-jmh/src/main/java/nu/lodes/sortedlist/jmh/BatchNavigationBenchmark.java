@@ -0,0 +1,97 @@
+package nu.lodes.sortedlist.jmh;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import nu.lodes.sortedlist.SortedList.Navigation;
+import nu.lodes.sortedlist.SplayPolicy;
+import nu.lodes.sortedlist.SplaySortedList;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Compares a batch of {@link SplaySortedList#navigateAll} floor index queries
+ * against the same queries answered one at a time. Each invocation answers
+ * <code>BATCH_SIZE</code> queries; the score is per query. 
+ * <code>spacing</code> is the number of elements between successive sorted queries,
+ * so a batch covers <code>BATCH_SIZE * spacing</code> elements. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchNavigationBenchmark {
+    static final int SIZE = 1 << 20;
+    static final int BATCH_SIZE = 1 << 10;
+    
+    
+    @Param({"4", "64", "1024"})
+    int spacing;
+    
+    @Param({"true", "false"})
+    boolean sorted;
+    
+    SplaySortedList<Integer> sortedList;
+    Integer[] values;
+    int[] indexes;
+    
+    
+    @Setup
+    public void setup() {
+        List<Integer> elements = new ArrayList<Integer>(SIZE);
+        for (int k = 0; k < SIZE; ++k) {
+            elements.add(2 * k);
+        }
+        sortedList = new SplaySortedList<Integer>(SplayPolicy.never());
+        sortedList.insertAll(elements);
+        
+        Random r = new Random(BATCH_SIZE);
+        int start = r.nextInt(SIZE - BATCH_SIZE * spacing + 1);
+        values = new Integer[BATCH_SIZE];
+        for (int k = 0; k < BATCH_SIZE; ++k) {
+            values[k] = 2 * (start + k * spacing + r.nextInt(spacing)) + 1;
+        }
+        if (!sorted) {
+            for (int k = BATCH_SIZE - 1; 0 < k; --k) {
+                int j = r.nextInt(k + 1);
+                Integer t = values[k];
+                values[k] = values[j];
+                values[j] = t;
+            }
+        } else {
+            Arrays.sort(values);
+        }
+        indexes = new int[BATCH_SIZE];
+    }
+    
+    
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int[] single() {
+        for (int k = 0; k < BATCH_SIZE; ++k) {
+            indexes[k] = sortedList.floorIndex(values[k]);
+        }
+        return indexes;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int[] batch() {
+        sortedList.navigateAll(Navigation.FLOOR, values, indexes);
+        return indexes;
+    }
+}
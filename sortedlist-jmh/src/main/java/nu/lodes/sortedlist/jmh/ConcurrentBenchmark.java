@@ -0,0 +1,259 @@
+package nu.lodes.sortedlist.jmh;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import nu.lodes.sortedlist.ConcurrentSortedList;
+import nu.lodes.sortedlist.SortedList;
+import nu.lodes.sortedlist.SplayPolicy;
+import nu.lodes.sortedlist.SplaySortedList;
+import nu.lodes.sortedlist.jmh.SortedListOpBenchmark.Distribution;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/** Throughput of a list shared by several threads, under a mix of reads and writes,
+ * for {@link ConcurrentSortedList} and for a {@link SplaySortedList} behind a lock.
+ * A list holds <code>size</code> random elements in <code>[0, 16 size)</code>.
+ * Each call is a read ({@link SortedList#floorIndex}) with a chance of <code>readPercent</code>,
+ * and otherwise a write, which alternately inserts a key and removes the oldest key
+ * that the thread inserted, so that the size stays about the same.
+ * The keys follow the distribution; skewed keys make the writes contend for a small part of the list.
+ *
+ * {@link #main} runs the benchmark for each of {@link #THREADS} threads, unless the threads are given,
+ * and writes all the results as JSON to {@link #RESULT}. JMH options can be given, e.g.
+ * <pre>
+ * java -cp target/benchmarks.jar nu.lodes.sortedlist.jmh.ConcurrentBenchmark -p readPercent=90 -t 8
+ * </pre>
+ * Scores for more threads than cores measure the cost of oversubscription, not scaling. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentBenchmark {
+    static final int KEY_COUNT = 1 << 12;
+    /* the elements are in [0, SPREAD * size) */
+    static final int SPREAD = 16;
+    /* the thread counts of main */
+    static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+    /* the default JSON result file of main */
+    static final String RESULT = "sortedlist-jmh-concurrent.json";
+    
+    
+    public static enum Implementation {
+        /** {@link ConcurrentSortedList} */
+        CONCURRENT {
+            @Override
+            Target create(Collection<Integer> elements) {
+                final ConcurrentSortedList<Integer> sortedList = new ConcurrentSortedList<Integer>(elements);
+                return new Target() {
+                    @Override
+                    int read(Integer key) {
+                        return sortedList.floorIndex(key);
+                    }
+                    
+                    @Override
+                    void insert(Integer key) {
+                        sortedList.insert(key);
+                    }
+                    
+                    @Override
+                    void remove(Integer key) {
+                        sortedList.remove(key);
+                    }
+                };
+            }
+        },
+        /** {@link SplaySortedList} with the default policy, where reads splay, behind one lock */
+        SYNCHRONIZED_SPLAY {
+            @Override
+            Target create(Collection<Integer> elements) {
+                final SplaySortedList<Integer> sortedList = new SplaySortedList<Integer>(elements);
+                return new Target() {
+                    @Override
+                    int read(Integer key) {
+                        synchronized (sortedList) {
+                            return sortedList.floorIndex(key);
+                        }
+                    }
+                    
+                    @Override
+                    void insert(Integer key) {
+                        synchronized (sortedList) {
+                            sortedList.insert(key);
+                        }
+                    }
+                    
+                    @Override
+                    void remove(Integer key) {
+                        synchronized (sortedList) {
+                            sortedList.remove(key);
+                        }
+                    }
+                };
+            }
+        },
+        /** {@link SplaySortedList} with {@link SplayPolicy#never()}, so that reads can share a read lock */
+        READ_WRITE_LOCKED_SPLAY {
+            @Override
+            Target create(Collection<Integer> elements) {
+                final SplaySortedList<Integer> sortedList = new SplaySortedList<Integer>(SplayPolicy.never());
+                sortedList.insertAll(elements);
+                final ReadWriteLock lock = new ReentrantReadWriteLock();
+                return new Target() {
+                    @Override
+                    int read(Integer key) {
+                        lock.readLock().lock();
+                        try {
+                            return sortedList.floorIndex(key);
+                        } finally {
+                            lock.readLock().unlock();
+                        }
+                    }
+                    
+                    @Override
+                    void insert(Integer key) {
+                        lock.writeLock().lock();
+                        try {
+                            sortedList.insert(key);
+                        } finally {
+                            lock.writeLock().unlock();
+                        }
+                    }
+                    
+                    @Override
+                    void remove(Integer key) {
+                        lock.writeLock().lock();
+                        try {
+                            sortedList.remove(key);
+                        } finally {
+                            lock.writeLock().unlock();
+                        }
+                    }
+                };
+            }
+        };
+        
+        abstract Target create(Collection<Integer> elements);
+    }
+    
+    /** The operations of the benchmark on a list. */
+    static abstract class Target {
+        abstract int read(Integer key);
+        
+        abstract void insert(Integer key);
+        
+        abstract void remove(Integer key);
+    }
+    
+    
+    @Param({"CONCURRENT", "SYNCHRONIZED_SPLAY", "READ_WRITE_LOCKED_SPLAY"})
+    Implementation implementation;
+    
+    @Param({"65536", "1048576"})
+    int size;
+    
+    @Param({"100", "90", "50", "10"})
+    int readPercent;
+    
+    @Param({"UNIFORM", "SKEWED"})
+    Distribution distribution;
+    
+    Target target;
+    
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        Random r = new Random(0x5EED);
+        List<Integer> elements = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; ++i) {
+            elements.add(r.nextInt(SPREAD * size));
+        }
+        target = implementation.create(elements);
+    }
+    
+    
+    /** The keys and reads of one thread, and the keys that it inserted and has yet to remove. */
+    @State(Scope.Thread)
+    public static class Worker {
+        Integer[] keys;
+        boolean[] reads;
+        int i = 0;
+        final ArrayDeque<Integer> inserted = new ArrayDeque<Integer>();
+        
+        @Setup(Level.Trial)
+        public void setup(ConcurrentBenchmark benchmark) {
+            Random r = new Random();
+            int[] k = benchmark.distribution.keys(r, SPREAD * benchmark.size, KEY_COUNT);
+            keys = new Integer[KEY_COUNT];
+            reads = new boolean[KEY_COUNT];
+            for (int j = 0; j < KEY_COUNT; ++j) {
+                keys[j] = k[j];
+                reads[j] = r.nextInt(100) < benchmark.readPercent;
+            }
+        }
+        
+        int next() {
+            return i = (i + 1) & (KEY_COUNT - 1);
+        }
+    }
+    
+    
+    @Benchmark
+    public int mixed(Worker worker) {
+        int j = worker.next();
+        Integer key = worker.keys[j];
+        if (worker.reads[j]) {
+            return target.read(key);
+        }
+        if (worker.inserted.size() < 2 || 0 == (j & 1)) {
+            target.insert(key);
+            worker.inserted.add(key);
+        } else {
+            target.remove(worker.inserted.poll());
+        }
+        return 0;
+    }
+    
+    
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions options = new CommandLineOptions(args);
+        List<RunResult> results = new ArrayList<RunResult>();
+        for (int threads : options.getThreads().hasValue() ? new int[]{options.getThreads().get()} : THREADS) {
+            ChainedOptionsBuilder builder = new OptionsBuilder().parent(options).threads(threads);
+            if (options.getIncludes().isEmpty()) {
+                builder.include(ConcurrentBenchmark.class.getSimpleName());
+            }
+            results.addAll(new Runner(builder.build()).run());
+        }
+        ResultFormatFactory.getInstance(options.getResultFormat().orElse(ResultFormatType.JSON),
+                options.getResult().orElse(RESULT)).writeOut(results);
+    }
+}
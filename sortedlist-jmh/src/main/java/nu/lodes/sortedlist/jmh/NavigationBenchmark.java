@@ -0,0 +1,159 @@
+package nu.lodes.sortedlist.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import nu.lodes.sortedlist.Cursor;
+import nu.lodes.sortedlist.FrozenSortedList;
+import nu.lodes.sortedlist.SortedList;
+import nu.lodes.sortedlist.SplayPolicy;
+import nu.lodes.sortedlist.SplaySortedList;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures the navigation operations and the {@link Cursor} of {@link SplaySortedList},
+ * and of its {@link FrozenSortedList} (policy <code>frozen</code>).
+ * The queries are boxed and built ahead, so that with the GC profiler
+ * (<code>java -jar target/benchmarks.jar NavigationBenchmark -prof gc</code>)
+ * <code>gc.alloc.rate.norm</code> is the allocation of the operation itself. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NavigationBenchmark {
+    static final int QUERY_COUNT = 1 << 12;
+    
+    
+    @Param({"1024", "1048576"})
+    int size;
+    
+    @Param({"always", "never", "frozen"})
+    String policy;
+    
+    SortedList<Integer> sortedList;
+    /* odd values, between the even elements */
+    Integer[] values;
+    Comparable<Integer>[] queries;
+    int i = 0;
+    
+    
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        List<Integer> elements = new ArrayList<Integer>(size);
+        for (int k = 0; k < size; ++k) {
+            elements.add(2 * k);
+        }
+        SplaySortedList<Integer> splaySortedList = new SplaySortedList<Integer>(
+                "always".equals(policy) ? SplayPolicy.always() : SplayPolicy.never());
+        splaySortedList.insertAll(elements);
+        sortedList = "frozen".equals(policy) ? splaySortedList.freeze() : splaySortedList;
+        
+        Random r = new Random(QUERY_COUNT);
+        values = new Integer[QUERY_COUNT];
+        queries = new Comparable[QUERY_COUNT];
+        for (int k = 0; k < QUERY_COUNT; ++k) {
+            final int value = 2 * r.nextInt(size) + 1;
+            values[k] = value;
+            queries[k] = new Comparable<Integer>() {
+                @Override
+                public int compareTo(Integer another) {
+                    return value < another ? -1 : value == another ? 0 : 1;
+                }
+            };
+        }
+    }
+    
+    private int next() {
+        return i = (i + 1) & (QUERY_COUNT - 1);
+    }
+    
+    
+    @Benchmark
+    public Integer lower() {
+        return sortedList.lower(values[next()]);
+    }
+    
+    @Benchmark
+    public Integer floor() {
+        return sortedList.floor(values[next()]);
+    }
+    
+    @Benchmark
+    public Integer higher() {
+        return sortedList.higher(values[next()]);
+    }
+    
+    @Benchmark
+    public Integer ceiling() {
+        return sortedList.ceiling(values[next()]);
+    }
+    
+    @Benchmark
+    public int floorIndex() {
+        return sortedList.floorIndex(values[next()]);
+    }
+    
+    @Benchmark
+    public int ceilingIndex() {
+        return sortedList.ceilingIndex(values[next()]);
+    }
+    
+    @Benchmark
+    public Integer floorQuery() {
+        return sortedList.floor(queries[next()]);
+    }
+    
+    @Benchmark
+    public int higherIndexQuery() {
+        return sortedList.higherIndex(queries[next()]);
+    }
+    
+    @Benchmark
+    public boolean contains() {
+        return sortedList.contains(values[next()]);
+    }
+    
+    /** Seeks and reads the element after the query. */
+    @Benchmark
+    public Integer cursorSeek(CursorState state) {
+        Cursor<Integer> cursor = state.cursor;
+        return cursor.seek(values[next()]) ? cursor.element() : null;
+    }
+    
+    /** Steps the cursor through the list, wrapping at the end. */
+    @Benchmark
+    public Integer cursorNext(CursorState state) {
+        Cursor<Integer> cursor = state.cursor;
+        if (!cursor.next()) {
+            cursor.seekIndex(0);
+        }
+        return cursor.element();
+    }
+    
+    
+    /** One cursor, reused by every call. */
+    @State(Scope.Thread)
+    public static class CursorState {
+        Cursor<Integer> cursor;
+        
+        @Setup
+        public void setup(NavigationBenchmark benchmark) {
+            cursor = benchmark.sortedList.cursor();
+        }
+    }
+}
@@ -0,0 +1,561 @@
+package nu.lodes.sortedlist.jmh;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import nu.lodes.sortedlist.BTreeSortedList;
+import nu.lodes.sortedlist.IndexRange;
+import nu.lodes.sortedlist.LsmSortedList;
+import nu.lodes.sortedlist.SortedList;
+import nu.lodes.sortedlist.SplaySortedList;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/** One benchmark for each operation of <code>SortedListBenchmark.Op</code> (in sortedlist-benchmark),
+ * over the {@link Implementation}s, list sizes and key {@link Distribution}s.
+ * A list holds <code>size</code> random elements in <code>[0, 16 size)</code>, built balanced.
+ * The keys of the queries and inserts follow the distribution, and are built ahead;
+ * the <code>...Query</code> benchmarks pass them as {@link Comparable} queries.
+ *
+ * The reads, and the writes that remove as much as they insert, are measured in average time per call.
+ * The inserts grow the list, so they are measured in single shots of {@link #WRITE_BATCH} calls,
+ * which are undone after each shot; their score is also per call.
+ *
+ * {@link #main} runs these benchmarks with the GC profiler, where <code>gc.alloc.rate.norm</code>
+ * is the allocation per call, and writes the results as JSON to {@link #RESULT},
+ * to compare between versions. JMH options and a benchmark regexp can be given, e.g.
+ * <pre>
+ * java -cp target/benchmarks.jar nu.lodes.sortedlist.jmh.SortedListOpBenchmark -p size=65536 'SortedListOpBenchmark.floor.*'
+ * </pre> */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SortedListOpBenchmark {
+    static final int KEY_COUNT = 1 << 12;
+    /* the elements are in [0, SPREAD * size) */
+    static final int SPREAD = 16;
+    /* the number of steps of the iterator benchmarks */
+    static final int STEPS = 32;
+    /* the number of calls in a single shot of an insert benchmark, measured and to warm up */
+    static final int WRITE_BATCH = 1 << 8;
+    static final int WARMUP_BATCH = 1 << 12;
+    /* the default JSON result file of main */
+    static final String RESULT = "sortedlist-jmh.json";
+    
+    
+    public static enum Implementation {
+        SPLAY {
+            @Override
+            SortedList<Integer> create(Collection<Integer> elements) {
+                return new SplaySortedList<Integer>(elements);
+            }
+        },
+        BTREE {
+            @Override
+            SortedList<Integer> create(Collection<Integer> elements) {
+                return new BTreeSortedList<Integer>(elements);
+            }
+        },
+        LSM {
+            @Override
+            SortedList<Integer> create(Collection<Integer> elements) {
+                return new LsmSortedList<Integer>(elements);
+            }
+        };
+        
+        abstract SortedList<Integer> create(Collection<Integer> elements);
+    }
+    
+    public static enum Distribution {
+        /** uniform over the range of the elements */
+        UNIFORM,
+        /** 90% from a hot window of 1% of the range, and the rest uniform */
+        SKEWED,
+        /** increasing through the range, so that consecutive keys are near each other */
+        SEQUENTIAL;
+        
+        int[] keys(Random r, int range, int count) {
+            int[] keys = new int[count];
+            int window = Math.max(1, range / 100);
+            int hot = r.nextInt(range - window);
+            int stride = Math.max(1, range / count);
+            for (int k = 0; k < count; ++k) {
+                switch (this) {
+                    case UNIFORM:
+                        keys[k] = r.nextInt(range);
+                        break;
+                    case SKEWED:
+                        keys[k] = r.nextInt(10) < 9 ? hot + r.nextInt(window) : r.nextInt(range);
+                        break;
+                    case SEQUENTIAL:
+                        keys[k] = Math.min(range - 1, k * stride + r.nextInt(stride));
+                        break;
+                }
+            }
+            return keys;
+        }
+    }
+    
+    
+    @Param({"SPLAY", "BTREE", "LSM"})
+    Implementation implementation;
+    
+    @Param({"1024", "65536", "1048576"})
+    int size;
+    
+    @Param({"UNIFORM", "SKEWED", "SEQUENTIAL"})
+    Distribution distribution;
+    
+    List<Integer> elements;
+    SortedList<Integer> sortedList;
+    Integer[] keys;
+    /* the keys as queries */
+    Comparable<? super Integer>[] queries;
+    /* the keys scaled to indexes */
+    int[] indexes;
+    /* for each key, the directions of the steps of listIterator */
+    int[] directions;
+    int i = 0;
+    
+    
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        Random r = new Random(size);
+        elements = new ArrayList<Integer>(size);
+        for (int k = 0; k < size; ++k) {
+            elements.add(r.nextInt(SPREAD * size));
+        }
+        sortedList = implementation.create(elements);
+        
+        int[] ks = distribution.keys(r, SPREAD * size, KEY_COUNT);
+        keys = new Integer[KEY_COUNT];
+        queries = new Comparable[KEY_COUNT];
+        indexes = new int[KEY_COUNT];
+        directions = new int[KEY_COUNT];
+        for (int k = 0; k < KEY_COUNT; ++k) {
+            keys[k] = ks[k];
+            queries[k] = keys[k];
+            indexes[k] = ks[k] / SPREAD;
+            directions[k] = r.nextInt();
+        }
+    }
+    
+    private int next() {
+        return i = (i + 1) & (KEY_COUNT - 1);
+    }
+    
+    
+    /////// INSERTS ///////
+    
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5, batchSize = WARMUP_BATCH)
+    @Measurement(iterations = 20, batchSize = WRITE_BATCH)
+    @OperationsPerInvocation(WRITE_BATCH)
+    public boolean insert(Inserts inserts) {
+        ++inserts.keyCalls;
+        return inserts.sortedList.insert(inserts.keys.get(inserts.next()));
+    }
+    
+    /** Inserts a batch of <code>size / 1024</code> keys (at least 1). */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5, batchSize = WARMUP_BATCH)
+    @Measurement(iterations = 20, batchSize = WRITE_BATCH)
+    @OperationsPerInvocation(WRITE_BATCH)
+    public boolean insertAll(Inserts inserts) {
+        ++inserts.batchCalls;
+        int from = inserts.batchFrom(inserts.next());
+        return inserts.sortedList.insertAll(inserts.keys.subList(from, from + inserts.batchSize));
+    }
+    
+    /** Appends above the greatest element. */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5, batchSize = WARMUP_BATCH)
+    @Measurement(iterations = 20, batchSize = WRITE_BATCH)
+    @OperationsPerInvocation(WRITE_BATCH)
+    public boolean insertSorted(Inserts inserts) {
+        return inserts.sortedList.insert(inserts.high(0));
+    }
+    
+    /** Prepends below the least element. */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5, batchSize = WARMUP_BATCH)
+    @Measurement(iterations = 20, batchSize = WRITE_BATCH)
+    @OperationsPerInvocation(WRITE_BATCH)
+    public boolean insertReverseSorted(Inserts inserts) {
+        return inserts.sortedList.insert(inserts.low());
+    }
+    
+    /** Inserts increasing elements above the greatest element with a jitter of up to 64,
+     * e.g. timestamps that arrive slightly out of order. */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5, batchSize = WARMUP_BATCH)
+    @Measurement(iterations = 20, batchSize = WRITE_BATCH)
+    @OperationsPerInvocation(WRITE_BATCH)
+    public boolean insertNearlySorted(Inserts inserts) {
+        return inserts.sortedList.insert(inserts.high(directions[next()] & 63));
+    }
+    
+    
+    /////// REMOVES ///////
+    
+    /** A queue: removes the least element and appends above the greatest. */
+    @Benchmark
+    public Integer pollFirst(Queue queue) {
+        Integer value = queue.sortedList.pollFirst();
+        queue.sortedList.insert(queue.high());
+        return value;
+    }
+    
+    /** Removes the greatest element and prepends below the least. */
+    @Benchmark
+    public Integer pollLast(Queue queue) {
+        Integer value = queue.sortedList.pollLast();
+        queue.sortedList.insert(queue.low());
+        return value;
+    }
+    
+    /** Evicts the least 1/64 of the list, then refills above the greatest element. */
+    @Benchmark
+    public boolean removeHead(Queue queue) {
+        int m = Math.max(1, size / 64);
+        queue.sortedList.subList(0, m).clear();
+        List<Integer> batch = new ArrayList<Integer>(m);
+        for (int k = 0; k < m; ++k) {
+            batch.add(queue.high());
+        }
+        return queue.sortedList.insertAll(batch);
+    }
+    
+    
+    /////// INDEXES AND ITERATION ///////
+    
+    @Benchmark
+    public Integer get() {
+        return sortedList.get(indexes[next()]);
+    }
+    
+    /** Iterates the first {@link #STEPS} elements. */
+    @Benchmark
+    public void iterator(Blackhole bh) {
+        Iterator<Integer> itr = sortedList.iterator();
+        for (int k = 0; k < STEPS && itr.hasNext(); ++k) {
+            bh.consume(itr.next());
+        }
+    }
+    
+    /** Starts at an index, and takes {@link #STEPS} random steps forward or back. */
+    @Benchmark
+    public void listIterator(Blackhole bh) {
+        int j = next();
+        ListIterator<Integer> itr = sortedList.listIterator(indexes[j]);
+        int d = directions[j];
+        for (int k = 0; k < STEPS; ++k) {
+            if (0 != (d & (1 << k)) ? itr.hasNext() : !itr.hasPrevious()) {
+                bh.consume(itr.next());
+            } else {
+                bh.consume(itr.previous());
+            }
+        }
+    }
+    
+    /** A range view between two keys: the size and the first element. */
+    @Benchmark
+    public void subList(Blackhole bh) {
+        int j = next();
+        Integer from = keys[j];
+        Integer to = keys[(j + 1) & (KEY_COUNT - 1)];
+        if (0 < from.compareTo(to)) {
+            Integer t = from;
+            from = to;
+            to = t;
+        }
+        SortedList<Integer> view = sortedList.subList(from, true, to, false);
+        bh.consume(view.size());
+        Iterator<Integer> itr = view.iterator();
+        if (itr.hasNext()) {
+            bh.consume(itr.next());
+        }
+    }
+    
+    
+    /////// COUNTING QUERIES ///////
+    
+    @Benchmark
+    public int rankQuery() {
+        return sortedList.rank(queries[next()]);
+    }
+    
+    @Benchmark
+    public IndexRange equalRangeQuery() {
+        return sortedList.equalRange(queries[next()]);
+    }
+    
+    /** Bucketing: the count in <code>[from, to)</code> between two keys. */
+    @Benchmark
+    public int countBetween() {
+        int j = next();
+        Integer from = keys[j];
+        Integer to = keys[(j + 1) & (KEY_COUNT - 1)];
+        if (0 < from.compareTo(to)) {
+            Integer t = from;
+            from = to;
+            to = t;
+        }
+        return sortedList.countBetween(from, true, to, false);
+    }
+    
+    @Benchmark
+    public int indexOf() {
+        return sortedList.indexOf(keys[next()]);
+    }
+    
+    @Benchmark
+    public int indexOfQuery() {
+        return sortedList.indexOf(queries[next()]);
+    }
+    
+    @Benchmark
+    public int lastIndexOf() {
+        return sortedList.lastIndexOf(keys[next()]);
+    }
+    
+    @Benchmark
+    public int lastIndexOfQuery() {
+        return sortedList.lastIndexOf(queries[next()]);
+    }
+    
+    
+    /////// NAVIGATION ///////
+    
+    @Benchmark
+    public Integer lower() {
+        return sortedList.lower(keys[next()]);
+    }
+    
+    @Benchmark
+    public Integer lowerQuery() {
+        return sortedList.lower(queries[next()]);
+    }
+    
+    @Benchmark
+    public int lowerIndex() {
+        return sortedList.lowerIndex(keys[next()]);
+    }
+    
+    @Benchmark
+    public int lowerIndexQuery() {
+        return sortedList.lowerIndex(queries[next()]);
+    }
+    
+    @Benchmark
+    public Integer floor() {
+        return sortedList.floor(keys[next()]);
+    }
+    
+    @Benchmark
+    public Integer floorQuery() {
+        return sortedList.floor(queries[next()]);
+    }
+    
+    @Benchmark
+    public int floorIndex() {
+        return sortedList.floorIndex(keys[next()]);
+    }
+    
+    @Benchmark
+    public int floorIndexQuery() {
+        return sortedList.floorIndex(queries[next()]);
+    }
+    
+    @Benchmark
+    public Integer higher() {
+        return sortedList.higher(keys[next()]);
+    }
+    
+    @Benchmark
+    public Integer higherQuery() {
+        return sortedList.higher(queries[next()]);
+    }
+    
+    @Benchmark
+    public int higherIndex() {
+        return sortedList.higherIndex(keys[next()]);
+    }
+    
+    @Benchmark
+    public int higherIndexQuery() {
+        return sortedList.higherIndex(queries[next()]);
+    }
+    
+    @Benchmark
+    public Integer ceiling() {
+        return sortedList.ceiling(keys[next()]);
+    }
+    
+    @Benchmark
+    public Integer ceilingQuery() {
+        return sortedList.ceiling(queries[next()]);
+    }
+    
+    @Benchmark
+    public int ceilingIndex() {
+        return sortedList.ceilingIndex(keys[next()]);
+    }
+    
+    @Benchmark
+    public int ceilingIndexQuery() {
+        return sortedList.ceilingIndex(queries[next()]);
+    }
+    
+    
+    /** A list for the inserts. The inserts of each iteration are undone after it, 
+     * so that each iteration inserts into the same <code>size</code> elements. */
+    @State(Scope.Thread)
+    public static class Inserts {
+        SortedList<Integer> sortedList;
+        List<Integer> keys;
+        int batchSize;
+        /* the elements above and below all the others */
+        int top;
+        int nextHigh;
+        int nextLow;
+        int i = 0;
+        /* the inserts of this iteration, to undo: the calls of insert and insertAll,
+         * which took the keys after the key index from */
+        int from;
+        int keyCalls;
+        int batchCalls;
+        
+        @Setup
+        public void setup(SortedListOpBenchmark benchmark) {
+            sortedList = benchmark.implementation.create(benchmark.elements);
+            keys = Arrays.asList(benchmark.keys);
+            batchSize = Math.max(1, benchmark.size / 1024);
+            top = SPREAD * benchmark.size;
+        }
+        
+        @Setup(Level.Iteration)
+        public void start() {
+            from = i;
+            keyCalls = 0;
+            batchCalls = 0;
+            nextHigh = 0;
+            nextLow = 0;
+        }
+        
+        @TearDown(Level.Iteration)
+        public void undo(SortedListOpBenchmark benchmark) {
+            sortedList.removeBetween(top, true, Integer.MAX_VALUE, true);
+            sortedList.removeBetween(Integer.MIN_VALUE, true, -1, true);
+            for (int c = 1; c <= keyCalls; ++c) {
+                sortedList.remove(keys.get((from + c) & (KEY_COUNT - 1)));
+            }
+            for (int c = 1; c <= batchCalls; ++c) {
+                int j = batchFrom((from + c) & (KEY_COUNT - 1));
+                for (int k = j; k < j + batchSize; ++k) {
+                    sortedList.remove(keys.get(k));
+                }
+            }
+            assert benchmark.size == sortedList.size();
+        }
+        
+        int next() {
+            return i = (i + 1) & (KEY_COUNT - 1);
+        }
+        
+        /** @return the index of the first key of the batch of insertAll at the key index */
+        int batchFrom(int j) {
+            return Math.min(j, KEY_COUNT - batchSize);
+        }
+        
+        /** @return the next of the increasing elements above all the others, less the jitter */
+        Integer high(int jitter) {
+            return top + Math.max(0, nextHigh++ - jitter);
+        }
+        
+        /** @return the next of the decreasing elements below all the others */
+        Integer low() {
+            return -1 - nextLow++;
+        }
+    }
+    
+    /** A list for the writes that remove as much as they insert. */
+    @State(Scope.Thread)
+    public static class Queue {
+        SortedList<Integer> sortedList;
+        /* the next elements above and below all the others */
+        int nextHigh;
+        int nextLow;
+        
+        @Setup
+        public void setup(SortedListOpBenchmark benchmark) {
+            sortedList = benchmark.implementation.create(benchmark.elements);
+            nextHigh = SPREAD * benchmark.size;
+            nextLow = -1;
+        }
+        
+        Integer high() {
+            return nextHigh++;
+        }
+        
+        Integer low() {
+            return nextLow--;
+        }
+    }
+    
+    
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions options = new CommandLineOptions(args);
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(options);
+        if (options.getIncludes().isEmpty()) {
+            builder.include(SortedListOpBenchmark.class.getSimpleName());
+        }
+        if (options.getProfilers().isEmpty()) {
+            builder.addProfiler(GCProfiler.class);
+        }
+        if (!options.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+        if (!options.getResult().hasValue()) {
+            builder.result(RESULT);
+        }
+        new Runner(builder.build()).run();
+    }
+}
@@ -0,0 +1,783 @@
+package nu.lodes.sortedlist;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+
+import javax.annotation.Nullable;
+
+/** Skeletal implementation of {@link SortedList}.
+ *
+ * Implementations provide {@link #comparator}, {@link #get}, {@link #size}, {@link #insert},
+ * {@link #remove(int)}, and the {@link java.util.Comparable} query
+ * {@link #lowerIndex(Comparable)} and {@link #higherIndex(Comparable)}.
+ * The remaining operations are derived from those, and can be overridden
+ * where the implementation has a faster path.
+ *
+ * The element operations are answered as the query operations
+ * with the element adapted to a query by the comparator.
+ * The floor/ceiling and indexOf operations are derived from the
+ * lower/higher indexes:
+ * for a query <code>q</code>, the indexes <code>[lowerIndex(q) + 1, higherIndex(q))</code>
+ * are the run of elements equal to <code>q</code>.
+ * The value range views ({@link #subList(Comparable, boolean, Comparable, boolean)},
+ * {@link #headList(Comparable, boolean)} and {@link #tailList(Comparable, boolean)})
+ * are also bounded by the lower/higher indexes, found on each access.
+ * The default {@link #cursor} holds an index, and seeks with {@link #rank}. */
+public abstract class AbstractSortedList<E> extends AbstractList<E> implements SortedList<E> {
+
+    protected AbstractSortedList() {
+    }
+    
+    
+    /////// SortedList IMPLEMENTATION ///////
+    
+    @Override
+    public @Nullable E lower(E value) {
+        return lower(comparable(value, comparator()));
+    }
+    
+    @Override
+    public @Nullable E lower(Comparable<? super E> q) {
+        int i = lowerIndex(q);
+        return 0 <= i ? get(i) : null;
+    }
+    
+    @Override
+    public int lowerIndex(E value) {
+        return lowerIndex(comparable(value, comparator()));
+    }
+    
+    @Override
+    public @Nullable E floor(E value) {
+        return floor(comparable(value, comparator()));
+    }
+    
+    @Override
+    public @Nullable E floor(Comparable<? super E> q) {
+        int i = floorIndex(q);
+        return 0 <= i ? get(i) : null;
+    }
+    
+    @Override
+    public int floorIndex(E value) {
+        return floorIndex(comparable(value, comparator()));
+    }
+    
+    @Override
+    public int floorIndex(Comparable<? super E> q) {
+        int i = lowerIndex(q);
+        return i + 1 < higherIndex(q) ? i + 1 : i;
+    }
+    
+    @Override
+    public @Nullable E higher(E value) {
+        return higher(comparable(value, comparator()));
+    }
+    
+    @Override
+    public @Nullable E higher(Comparable<? super E> q) {
+        int i = higherIndex(q);
+        return i < size() ? get(i) : null;
+    }
+    
+    @Override
+    public int higherIndex(E value) {
+        return higherIndex(comparable(value, comparator()));
+    }
+    
+    @Override
+    public @Nullable E ceiling(E value) {
+        return ceiling(comparable(value, comparator()));
+    }
+    
+    @Override
+    public @Nullable E ceiling(Comparable<? super E> q) {
+        int i = ceilingIndex(q);
+        return i < size() ? get(i) : null;
+    }
+    
+    @Override
+    public int ceilingIndex(E value) {
+        return ceilingIndex(comparable(value, comparator()));
+    }
+    
+    @Override
+    public int ceilingIndex(Comparable<? super E> q) {
+        int i = higherIndex(q);
+        return lowerIndex(q) + 1 < i ? i - 1 : i;
+    }
+    
+    @Override
+    public int indexOf(Comparable<? super E> q) {
+        int i = lowerIndex(q) + 1;
+        return i < higherIndex(q) ? i : -1;
+    }
+    
+    @Override
+    public int lastIndexOf(Comparable<? super E> q) {
+        int i = higherIndex(q);
+        return lowerIndex(q) + 1 < i ? i - 1 : -1;
+    }
+    
+    @Override
+    public int rank(E value) {
+        return rank(comparable(value, comparator()));
+    }
+    
+    @Override
+    public int rank(Comparable<? super E> q) {
+        return lowerIndex(q) + 1;
+    }
+    
+    @Override
+    public IndexRange equalRange(E value) {
+        return equalRange(comparable(value, comparator()));
+    }
+    
+    @Override
+    public IndexRange equalRange(Comparable<? super E> q) {
+        return new IndexRange(lowerIndex(q) + 1, higherIndex(q));
+    }
+    
+    @Override
+    public int countBetween(E fromValue, boolean fromInclusive, E toValue, boolean toInclusive) {
+        return countBetween(comparable(fromValue, comparator()), fromInclusive, comparable(toValue, comparator()), toInclusive);
+    }
+    
+    @Override
+    public int countBetween(Comparable<? super E> from, boolean fromInclusive, Comparable<? super E> to, boolean toInclusive) {
+        return Math.max(0, endIndex(to, toInclusive) - startIndex(from, fromInclusive));
+    }
+    
+    /** @return the index of the first element at or after (or after, if not <code>inclusive</code>) <code>from</code> */
+    int startIndex(Comparable<? super E> from, boolean inclusive) {
+        return inclusive ? lowerIndex(from) + 1 : higherIndex(from);
+    }
+    
+    /** @return the index after the last element at or before (or before, if not <code>inclusive</code>) <code>to</code> */
+    int endIndex(Comparable<? super E> to, boolean inclusive) {
+        return inclusive ? higherIndex(to) : lowerIndex(to) + 1;
+    }
+    
+    
+    /////// SortedList CURSOR IMPLEMENTATION ///////
+    
+    /** Seeks with {@link #rank} and reads with {@link #get}, so each step is as fast as <code>get</code>. */
+    @Override
+    public Cursor<E> cursor() {
+        return new IndexCursor();
+    }
+    
+    
+    /////// SortedList BATCH IMPLEMENTATION ///////
+    
+    /* the defaults answer each query independently */
+    
+    @Override
+    public void navigateAll(Navigation op, E[] values, int[] indexes) {
+        checkBatch(values.length, indexes.length);
+        for (int i = 0; i < values.length; ++i) {
+            indexes[i] = navigateIndex(op, comparable(values[i], comparator()));
+        }
+    }
+    
+    @Override
+    public void navigateAll(Navigation op, List<? extends E> values, int[] indexes) {
+        checkBatch(values.size(), indexes.length);
+        int i = 0;
+        for (E value : values) {
+            indexes[i++] = navigateIndex(op, comparable(value, comparator()));
+        }
+    }
+    
+    @Override
+    public void navigateAll(Navigation op, Comparable<? super E>[] queries, int[] indexes) {
+        checkBatch(queries.length, indexes.length);
+        for (int i = 0; i < queries.length; ++i) {
+            indexes[i] = navigateIndex(op, queries[i]);
+        }
+    }
+    
+    @Override
+    public void navigateAll(Navigation op, E[] values, E[] elements) {
+        checkBatch(values.length, elements.length);
+        for (int i = 0; i < values.length; ++i) {
+            elements[i] = navigate(op, comparable(values[i], comparator()));
+        }
+    }
+    
+    @Override
+    public void navigateAll(Navigation op, List<? extends E> values, E[] elements) {
+        checkBatch(values.size(), elements.length);
+        int i = 0;
+        for (E value : values) {
+            elements[i++] = navigate(op, comparable(value, comparator()));
+        }
+    }
+    
+    @Override
+    public void navigateAll(Navigation op, Comparable<? super E>[] queries, E[] elements) {
+        checkBatch(queries.length, elements.length);
+        for (int i = 0; i < queries.length; ++i) {
+            elements[i] = navigate(op, queries[i]);
+        }
+    }
+    
+    private int navigateIndex(Navigation op, Comparable<? super E> q) {
+        switch (op) {
+            case LOWER:
+                return lowerIndex(q);
+            case FLOOR:
+                return floorIndex(q);
+            case CEILING:
+                return ceilingIndex(q);
+            case HIGHER:
+                return higherIndex(q);
+            default:
+                throw new IllegalArgumentException("" + op);
+        }
+    }
+    
+    private @Nullable E navigate(Navigation op, Comparable<? super E> q) {
+        switch (op) {
+            case LOWER:
+                return lower(q);
+            case FLOOR:
+                return floor(q);
+            case CEILING:
+                return ceiling(q);
+            case HIGHER:
+                return higher(q);
+            default:
+                throw new IllegalArgumentException("" + op);
+        }
+    }
+    
+    /** @throws IllegalArgumentException if the result array is shorter than the queries */
+    static void checkBatch(int queryCount, int resultLength) {
+        if (resultLength < queryCount)
+            throw new IllegalArgumentException("Result length " + resultLength + " < " + queryCount);
+    }
+    
+    
+    /////// SortedList INSERTION IMPLEMENTATION ///////
+    
+    @Override
+    public boolean insertAll(Collection<? extends E> values) {
+        boolean m = false;
+        for (E value : values) {
+            m |= insert(value);
+        }
+        return m;
+    }
+    
+    
+    /////// SortedList REMOVAL IMPLEMENTATION ///////
+    
+    @Override
+    public @Nullable E pollFirst() {
+        return isEmpty() ? null : remove(0);
+    }
+    
+    @Override
+    public @Nullable E pollLast() {
+        int size = size();
+        return 0 == size ? null : remove(size - 1);
+    }
+    
+    
+    @Override
+    public int removeBetween(E fromValue, boolean fromInclusive, E toValue, boolean toInclusive) {
+        return removeBetween(comparable(fromValue, comparator()), fromInclusive, comparable(toValue, comparator()), toInclusive);
+    }
+    
+    /** Removes the range of indexes with {@link #removeRange}. */
+    @Override
+    public int removeBetween(Comparable<? super E> from, boolean fromInclusive, Comparable<? super E> to, boolean toInclusive) {
+        int start = startIndex(from, fromInclusive);
+        int end = endIndex(to, toInclusive);
+        if (end <= start)
+            return 0;
+        removeRange(start, end);
+        return end - start;
+    }
+    
+    
+    /////// SortedList SPLIT IMPLEMENTATION ///////
+    
+    /** Unsupported; there is no general way to create a list of the same kind. */
+    @Override
+    public SortedList<E> split(int index) {
+        throw new UnsupportedOperationException();
+    }
+    
+    @Override
+    public SortedList<E> split(E value, boolean inclusive) {
+        return split(comparable(value, comparator()), inclusive);
+    }
+    
+    @Override
+    public SortedList<E> split(Comparable<? super E> q, boolean inclusive) {
+        return split(startIndex(q, inclusive));
+    }
+    
+    /** Inserts the elements of the other list, then clears it. */
+    @Override
+    public void concat(SortedList<E> other) {
+        checkConcat(other);
+        insertAll(other);
+        other.clear();
+    }
+    
+    /** @throws IllegalArgumentException if the ranges of this list and the other list overlap */
+    void checkConcat(SortedList<E> other) {
+        if (this == other)
+            throw new IllegalArgumentException("Cannot concatenate a list with itself.");
+        if (isEmpty() || other.isEmpty())
+            return;
+        Comparator<? super E> c = comparator();
+        if (c.compare(get(size() - 1), other.get(0)) <= 0
+                || c.compare(other.get(other.size() - 1), get(0)) <= 0)
+            return;
+        throw new IllegalArgumentException("The ranges of the lists overlap.");
+    }
+    
+    
+    /** Copies the elements in order. */
+    @Override
+    public FrozenSortedList<E> freeze() {
+        return FrozenSortedList.copyOf(this);
+    }
+    
+    
+    /////// SortedList VIEW IMPLEMENTATION ///////
+    
+    @Override
+    public SortedList<E> subList(E fromValue, boolean fromInclusive, E toValue, boolean toInclusive) {
+        return subList(comparable(fromValue, comparator()), fromInclusive, comparable(toValue, comparator()), toInclusive);
+    }
+    
+    @Override
+    public SortedList<E> subList(Comparable<? super E> from, boolean fromInclusive, Comparable<? super E> to, boolean toInclusive) {
+        if (null == from || null == to)
+            throw new NullPointerException();
+        return new RangeList<E>(this, null, from, fromInclusive, to, toInclusive);
+    }
+    
+    @Override
+    public SortedList<E> headList(E toValue, boolean inclusive) {
+        return headList(comparable(toValue, comparator()), inclusive);
+    }
+    
+    @Override
+    public SortedList<E> headList(Comparable<? super E> to, boolean inclusive) {
+        if (null == to)
+            throw new NullPointerException();
+        return new RangeList<E>(this, null, null, false, to, inclusive);
+    }
+    
+    @Override
+    public SortedList<E> tailList(E fromValue, boolean inclusive) {
+        return tailList(comparable(fromValue, comparator()), inclusive);
+    }
+    
+    @Override
+    public SortedList<E> tailList(Comparable<? super E> from, boolean inclusive) {
+        if (null == from)
+            throw new NullPointerException();
+        return new RangeList<E>(this, null, from, inclusive, null, false);
+    }
+    
+    
+    /////// List IMPLEMENTATION ///////
+    
+    @Override
+    @Deprecated
+    public boolean add(E e) {
+        throw new UnsupportedOperationException("Inserting by index is not supported in a sorted list.");
+    }
+    
+    @Override
+    @Deprecated
+    public void add(int index, E e) {
+        throw new UnsupportedOperationException("Inserting by index is not supported in a sorted list.");
+    }
+    
+    @Override
+    @Deprecated
+    public boolean addAll(Collection<? extends E> c) {
+        throw new UnsupportedOperationException("Inserting by index is not supported in a sorted list.");
+    }
+    
+    @Override
+    @Deprecated
+    public boolean addAll(int index, Collection<? extends E> c) {
+        throw new UnsupportedOperationException("Inserting by index is not supported in a sorted list.");
+    }
+    
+    @Override
+    public boolean contains(Object value) {
+        return 0 <= indexOf(value);
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public int indexOf(Object value) {
+        if (null == value) {
+            return -1;
+        }
+        return indexOf(comparable((E) value, comparator()));
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public int lastIndexOf(Object value) {
+        if (null == value) {
+            return -1;
+        }
+        return lastIndexOf(comparable((E) value, comparator()));
+    }
+    
+    
+    /** Traverses the list iterator, with the exact size. */
+    @Override
+    public Spliterator<E> spliterator() {
+        return spliterator(0, size());
+    }
+    
+    /** @return a spliterator over the elements at <code>[fromIndex, toIndex)</code> */
+    Spliterator<E> spliterator(int fromIndex, int toIndex) {
+        return Spliterators.spliterator(new RangeItr<E>(listIterator(fromIndex), fromIndex, toIndex), 
+                toIndex - fromIndex, Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+    
+    
+    /////// INTERNAL ///////
+    
+    static <T> Comparable<T> comparable(final T value, final Comparator<? super T> comparator) {
+        return new Comparable<T>() {
+            @Override
+            public int compareTo(T another) {
+                return comparator.compare(value, another);
+            }
+        };
+    }
+    
+    
+    /** A view of the elements of a backing list between two bounds.
+     * The bounds are held as queries, and the view's range of indexes in the backing list
+     * is found on each access with <code>lowerIndex</code>/<code>higherIndex</code> on the backing list,
+     * so the view stays correct as the backing list changes, and <code>size</code> is logarithmic.
+     * Iteration walks the backing list's iterator.
+     * A narrowed view holds the view it narrows as <code>outer</code> and intersects with its range,
+     * but is backed directly by the backing list. */
+    private static final class RangeList<E> extends AbstractSortedList<E> {
+        final AbstractSortedList<E> backing;
+        final @Nullable RangeList<E> outer;
+        /* a null bound is unbounded */
+        final @Nullable Comparable<? super E> from;
+        final boolean fromInclusive;
+        final @Nullable Comparable<? super E> to;
+        final boolean toInclusive;
+        
+        RangeList(AbstractSortedList<E> backing, @Nullable RangeList<E> outer,
+                @Nullable Comparable<? super E> from, boolean fromInclusive,
+                @Nullable Comparable<? super E> to, boolean toInclusive) {
+            this.backing = backing;
+            this.outer = outer;
+            this.from = from;
+            this.fromInclusive = fromInclusive;
+            this.to = to;
+            this.toInclusive = toInclusive;
+        }
+        
+        
+        /** @return the index in the backing list of the first element in range */
+        int start() {
+            int s = null == from ? 0 : backing.startIndex(from, fromInclusive);
+            return null == outer ? s : Math.max(s, outer.start());
+        }
+        
+        /** @return the index in the backing list after the last element in range */
+        int end(int start) {
+            int e = null == to ? backing.size() : backing.endIndex(to, toInclusive);
+            if (null != outer) {
+                e = Math.min(e, outer.end(start));
+            }
+            return Math.max(start, e);
+        }
+        
+        boolean inRange(E value) {
+            if (null != from) {
+                int c = from.compareTo(value);
+                if (fromInclusive ? 0 < c : 0 <= c)
+                    return false;
+            }
+            if (null != to) {
+                int c = to.compareTo(value);
+                if (toInclusive ? c < 0 : c <= 0)
+                    return false;
+            }
+            return null == outer || outer.inRange(value);
+        }
+        
+        
+        @Override
+        public Comparator<? super E> comparator() {
+            return backing.comparator();
+        }
+        
+        @Override
+        public int size() {
+            int s = start();
+            return end(s) - s;
+        }
+        
+        @Override
+        public E get(int index) {
+            int s = start();
+            if (index < 0 || end(s) - s <= index)
+                throw new IndexOutOfBoundsException("" + index);
+            return backing.get(s + index);
+        }
+        
+        @Override
+        public boolean insert(E value) {
+            if (!inRange(value))
+                throw new IllegalArgumentException("Value out of range.");
+            return backing.insert(value);
+        }
+        
+        @Override
+        public E remove(int index) {
+            int s = start();
+            if (index < 0 || end(s) - s <= index)
+                throw new IndexOutOfBoundsException("" + index);
+            return backing.remove(s + index);
+        }
+        
+        /** Removes the range from the backing list, so that <code>clear</code> 
+         * is as fast as the backing list's <code>removeRange</code>. */
+        @Override
+        protected void removeRange(int fromIndex, int toIndex) {
+            int s = start();
+            if (fromIndex < 0 || toIndex < fromIndex || end(s) - s < toIndex)
+                throw new IndexOutOfBoundsException("[" + fromIndex + ", " + toIndex + ")");
+            backing.removeRange(s + fromIndex, s + toIndex);
+        }
+        
+        @Override
+        public int lowerIndex(Comparable<? super E> q) {
+            int s = start();
+            int i = Math.min(backing.lowerIndex(q), end(s) - 1);
+            return i < s ? -1 : i - s;
+        }
+        
+        @Override
+        public int higherIndex(Comparable<? super E> q) {
+            int s = start();
+            int e = end(s);
+            int i = Math.max(backing.higherIndex(q), s);
+            return Math.min(i, e) - s;
+        }
+        
+        @Override
+        public Iterator<E> iterator() {
+            return listIterator(0);
+        }
+        
+        @Override
+        public ListIterator<E> listIterator() {
+            return listIterator(0);
+        }
+        
+        @Override
+        public ListIterator<E> listIterator(int index) {
+            int s = start();
+            int e = end(s);
+            if (index < 0 || e - s < index)
+                throw new IndexOutOfBoundsException("" + index);
+            return new RangeItr<E>(backing.listIterator(s + index), s, e);
+        }
+        
+        @Override
+        public Spliterator<E> spliterator() {
+            int s = start();
+            return backing.spliterator(s, end(s));
+        }
+        
+        @Override
+        public SortedList<E> subList(Comparable<? super E> from, boolean fromInclusive, Comparable<? super E> to, boolean toInclusive) {
+            if (null == from || null == to)
+                throw new NullPointerException();
+            return new RangeList<E>(backing, this, from, fromInclusive, to, toInclusive);
+        }
+        
+        @Override
+        public SortedList<E> headList(Comparable<? super E> to, boolean inclusive) {
+            if (null == to)
+                throw new NullPointerException();
+            return new RangeList<E>(backing, this, null, false, to, inclusive);
+        }
+        
+        @Override
+        public SortedList<E> tailList(Comparable<? super E> from, boolean inclusive) {
+            if (null == from)
+                throw new NullPointerException();
+            return new RangeList<E>(backing, this, from, inclusive, null, false);
+        }
+    }
+    
+    /** A cursor that holds only an index, for lists without a faster way to step. */
+    private final class IndexCursor implements Cursor<E> {
+        int index = -1;
+        int expectedModCount = modCount;
+        /* the query of the last seek; null after seekIndex */
+        @Nullable Comparable<? super E> q = null;
+        
+        @Override
+        public boolean seek(E value) {
+            return seek(comparable(value, comparator()));
+        }
+        
+        @Override
+        public boolean seek(Comparable<? super E> q) {
+            if (null == q)
+                throw new NullPointerException();
+            expectedModCount = modCount;
+            this.q = q;
+            index = rank(q);
+            return hasElement();
+        }
+        
+        @Override
+        public boolean seekIndex(int index) {
+            if (index < -1 || size() < index)
+                throw new IndexOutOfBoundsException("" + index);
+            expectedModCount = modCount;
+            q = null;
+            this.index = index;
+            return hasElement();
+        }
+        
+        @Override
+        public boolean next() {
+            checkForComodification();
+            if (index < size()) {
+                index += 1;
+            }
+            return hasElement();
+        }
+        
+        @Override
+        public boolean previous() {
+            checkForComodification();
+            if (0 <= index) {
+                index -= 1;
+            }
+            return hasElement();
+        }
+        
+        @Override
+        public boolean hasElement() {
+            return 0 <= index && index < size();
+        }
+        
+        @Override
+        public E element() {
+            checkForComodification();
+            if (!hasElement())
+                throw new NoSuchElementException();
+            return get(index);
+        }
+        
+        @Override
+        public int index() {
+            return index;
+        }
+        
+        @Override
+        public int compare() {
+            if (null == q)
+                throw new IllegalStateException();
+            return q.compareTo(element());
+        }
+        
+        
+        private void checkForComodification() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+    }
+    
+    /** Iterates the backing list's iterator within <code>[start, end)</code> of the backing list. */
+    private static final class RangeItr<E> implements ListIterator<E> {
+        final ListIterator<E> itr;
+        final int start;
+        int end;
+        
+        RangeItr(ListIterator<E> itr, int start, int end) {
+            this.itr = itr;
+            this.start = start;
+            this.end = end;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return itr.nextIndex() < end;
+        }
+        
+        @Override
+        public E next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return itr.next();
+        }
+        
+        @Override
+        public boolean hasPrevious() {
+            return start < itr.nextIndex();
+        }
+        
+        @Override
+        public E previous() {
+            if (!hasPrevious())
+                throw new NoSuchElementException();
+            return itr.previous();
+        }
+        
+        @Override
+        public int nextIndex() {
+            return itr.nextIndex() - start;
+        }
+        
+        @Override
+        public int previousIndex() {
+            return itr.previousIndex() - start;
+        }
+        
+        @Override
+        public void remove() {
+            itr.remove();
+            --end;
+        }
+        
+        @Override
+        public void set(E e) {
+            itr.set(e);
+        }
+        
+        @Override
+        public void add(E e) {
+            itr.add(e);
+        }
+    }
+}
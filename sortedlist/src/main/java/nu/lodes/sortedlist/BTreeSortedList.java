@@ -0,0 +1,745 @@
+package nu.lodes.sortedlist;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.Ordering;
+
+
+/** Random-access data structure that maintains
+ * elements in sorted order, with some extra sorted lookup functionality.
+ *
+ * Implemented as a counted B+ tree. Leaves hold up to {@link #LEAF_CAPACITY} elements
+ * in an array, and are chained in order. Branches hold up to {@link #BRANCH_CAPACITY} children,
+ * with a separator key and the sub-tree count per child.
+ * <code>get(i)</code> descends by the counts and the queries descend by binary search
+ * on the separators, so each level touches one node's arrays,
+ * and the height is <code>log<sub>B</sub> n</code>.
+ * Iteration scans the leaf arrays along the chain.
+ *
+ * Unlike {@link SplaySortedList}, reads do not restructure the tree.
+ *
+ * Duplicates are held in insertion order. A separator <code>k</code> between two children
+ * bounds the children as <code>left &lt;= k &lt;= right</code>,
+ * so a run of duplicates can span leaves.
+ *
+ * @see SplaySortedList
+ */
+public final class BTreeSortedList<E> extends AbstractSortedList<E> {
+
+    static final int LEAF_CAPACITY = 64;
+    static final int BRANCH_CAPACITY = 64;
+    
+    private final Comparator<? super E> comparator;
+    private Node root = new Leaf();
+    /* number of branch levels above the leaves */
+    private int height = 0;
+    private int size = 0;
+    
+    
+    @SuppressWarnings("unchecked")
+    public BTreeSortedList() {
+        this((Comparator<? super E>) Ordering.<Comparable<E>>natural());
+    }
+    
+    public BTreeSortedList(Comparator<? super E> comparator) {
+        this.comparator = comparator;
+    }
+    
+    /** Builds a packed tree from the values in linear time after sorting. */
+    @SuppressWarnings("unchecked")
+    public BTreeSortedList(Collection<? extends E> values) {
+        this((Comparator<? super E>) Ordering.<Comparable<E>>natural(), values);
+    }
+    
+    /** Builds a packed tree from the values in linear time after sorting. */
+    public BTreeSortedList(Comparator<? super E> comparator, Collection<? extends E> values) {
+        this.comparator = comparator;
+        Object[] a = values.toArray();
+        load(a, a.length);
+    }
+    
+    
+    /////// SEARCH ///////
+    
+    /** @return if <code>upper</code>, the number of elements <code>x</code> where <code>q.compareTo(x) &gt;= 0</code>,
+     * otherwise the number of elements where <code>q.compareTo(x) &gt; 0</code> */
+    private int bound(Comparable<? super E> q, boolean upper) {
+        int index = 0;
+        Node x = root;
+        for (int level = height; 0 < level; --level) {
+            Branch b = (Branch) x;
+            int i = child(b, q, upper);
+            for (int k = 0; k < i; ++k) {
+                index += b.counts[k];
+            }
+            x = b.children[i];
+        }
+        Leaf leaf = (Leaf) x;
+        return index + position(leaf, q, upper);
+    }
+    
+    /** @return the greatest child <code>i</code> whose separator is less than (or equal to, if <code>upper</code>) <code>q</code>,
+     * or the first child */
+    private int child(Branch b, Comparable<? super E> q, boolean upper) {
+        int lo = 1;
+        int hi = b.size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            @SuppressWarnings("unchecked")
+            int c = q.compareTo((E) b.keys[mid]);
+            if (0 < c || upper && 0 == c) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo - 1;
+    }
+    
+    /** @return the number of elements in the leaf that are less than (or equal to, if <code>upper</code>) <code>q</code> */
+    private int position(Leaf leaf, Comparable<? super E> q, boolean upper) {
+        int lo = 0;
+        int hi = leaf.size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            @SuppressWarnings("unchecked")
+            int c = q.compareTo((E) leaf.values[mid]);
+            if (0 < c || upper && 0 == c) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+    
+    
+    /////// SortedList IMPLEMENTATION ///////
+    
+    @Override
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+    
+    @Override
+    public int lowerIndex(Comparable<? super E> q) {
+        return bound(q, false) - 1;
+    }
+    
+    @Override
+    public int higherIndex(Comparable<? super E> q) {
+        return bound(q, true);
+    }
+    
+    
+    /////// SortedList INSERTION IMPLEMENTATION ///////
+    
+    /** Inserts after any equal elements. */
+    @Override
+    public boolean insert(E value) {
+        if (null == value) {
+            throw new NullPointerException();
+        }
+        
+        try {
+            Node split = insert(root, height, comparable(value, comparator), value);
+            if (null != split) {
+                // grow a level
+                Branch b = new Branch();
+                int c = count(split, height);
+                b.children[0] = root;
+                b.keys[0] = firstKey(root, height);
+                b.counts[0] = size - c + 1;
+                b.children[1] = split;
+                b.keys[1] = firstKey(split, height);
+                b.counts[1] = c;
+                b.size = 2;
+                root = b;
+                height += 1;
+            }
+            size += 1;
+            ++modCount;
+            return true;
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    /** @return the new right sibling if <code>x</code> was split, or <code>null</code> */
+    private @Nullable Node insert(Node x, int level, Comparable<? super E> q, E value) {
+        if (0 == level) {
+            Leaf leaf = (Leaf) x;
+            int j = position(leaf, q, true);
+            System.arraycopy(leaf.values, j, leaf.values, j + 1, leaf.size - j);
+            leaf.values[j] = value;
+            leaf.size += 1;
+            return LEAF_CAPACITY < leaf.size ? split(leaf) : null;
+        }
+        
+        Branch b = (Branch) x;
+        int i = child(b, q, true);
+        b.counts[i] += 1;
+        Node split = insert(b.children[i], level - 1, q, value);
+        if (null == split) {
+            return null;
+        }
+        int c = count(split, level - 1);
+        b.counts[i] -= c;
+        int j = i + 1;
+        System.arraycopy(b.children, j, b.children, j + 1, b.size - j);
+        System.arraycopy(b.keys, j, b.keys, j + 1, b.size - j);
+        System.arraycopy(b.counts, j, b.counts, j + 1, b.size - j);
+        b.children[j] = split;
+        b.keys[j] = firstKey(split, level - 1);
+        b.counts[j] = c;
+        b.size += 1;
+        return BRANCH_CAPACITY < b.size ? split(b) : null;
+    }
+    
+    /** Moves the upper half of the leaf to a new right sibling. */
+    private static Leaf split(Leaf leaf) {
+        int h = leaf.size >>> 1;
+        Leaf right = new Leaf();
+        right.size = leaf.size - h;
+        System.arraycopy(leaf.values, h, right.values, 0, right.size);
+        Arrays.fill(leaf.values, h, leaf.size, null);
+        leaf.size = h;
+        right.next = leaf.next;
+        right.prev = leaf;
+        if (null != leaf.next) {
+            leaf.next.prev = right;
+        }
+        leaf.next = right;
+        return right;
+    }
+    
+    /** Moves the upper half of the branch to a new right sibling. */
+    private static Branch split(Branch b) {
+        int h = b.size >>> 1;
+        Branch right = new Branch();
+        right.size = b.size - h;
+        System.arraycopy(b.children, h, right.children, 0, right.size);
+        System.arraycopy(b.keys, h, right.keys, 0, right.size);
+        System.arraycopy(b.counts, h, right.counts, 0, right.size);
+        Arrays.fill(b.children, h, b.size, null);
+        Arrays.fill(b.keys, h, b.size, null);
+        b.size = h;
+        return right;
+    }
+    
+    
+    /////// List IMPLEMENTATION ///////
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        if (index < 0 || size <= index)
+            throw new IndexOutOfBoundsException("" + index);
+        Node x = root;
+        for (int level = height; 0 < level; --level) {
+            Branch b = (Branch) x;
+            int i = 0;
+            while (b.counts[i] <= index) {
+                index -= b.counts[i++];
+            }
+            x = b.children[i];
+        }
+        return (E) ((Leaf) x).values[index];
+    }
+    
+    @Override
+    public E remove(int index) {
+        if (index < 0 || size <= index)
+            throw new IndexOutOfBoundsException("" + index);
+        try {
+            E value = remove(root, height, index);
+            if (0 < height && 1 == root.size) {
+                // shrink a level
+                root = ((Branch) root).children[0];
+                height -= 1;
+            }
+            size -= 1;
+            ++modCount;
+            return value;
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    /** Removes the first equal element (by <code>equals</code>) in the run of elements
+     * equal to the value by the comparator, otherwise the first of the run. */
+    @Override
+    public boolean remove(Object value) {
+        if (null == value) {
+            throw new NullPointerException();
+        }
+        @SuppressWarnings("unchecked")
+        Comparable<? super E> q = comparable((E) value, comparator);
+        int lo = bound(q, false);
+        int hi = bound(q, true);
+        if (hi <= lo) {
+            return false;
+        }
+        int index = lo;
+        Iterator<E> itr = listIterator(lo);
+        for (int i = lo; i < hi; ++i) {
+            if (value.equals(itr.next())) {
+                index = i;
+                break;
+            }
+        }
+        remove(index);
+        return true;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private E remove(Node x, int level, int index) {
+        if (0 == level) {
+            Leaf leaf = (Leaf) x;
+            E value = (E) leaf.values[index];
+            System.arraycopy(leaf.values, index + 1, leaf.values, index, leaf.size - index - 1);
+            leaf.size -= 1;
+            leaf.values[leaf.size] = null;
+            return value;
+        }
+        
+        Branch b = (Branch) x;
+        int i = 0;
+        while (b.counts[i] <= index) {
+            index -= b.counts[i++];
+        }
+        E value = remove(b.children[i], level - 1, index);
+        b.counts[i] -= 1;
+        int min = (1 == level ? LEAF_CAPACITY : BRANCH_CAPACITY) >>> 1;
+        if (b.children[i].size < min && 1 < b.size) {
+            if (i + 1 < b.size) {
+                fill(b, i, level - 1);
+            } else {
+                fill(b, i - 1, level - 1);
+            }
+        }
+        return value;
+    }
+    
+    /** Merges children <code>i</code> and <code>i + 1</code> if they fit in one node,
+     * otherwise evens out their sizes. */
+    private static void fill(Branch b, int i, int childLevel) {
+        Node a = b.children[i];
+        Node c = b.children[i + 1];
+        if (0 == childLevel) {
+            Leaf la = (Leaf) a;
+            Leaf lc = (Leaf) c;
+            if (la.size + lc.size <= LEAF_CAPACITY) {
+                System.arraycopy(lc.values, 0, la.values, la.size, lc.size);
+                la.size += lc.size;
+                la.next = lc.next;
+                if (null != lc.next) {
+                    lc.next.prev = la;
+                }
+                b.counts[i] += b.counts[i + 1];
+                removeChild(b, i + 1);
+            } else if (la.size < lc.size) {
+                // move the head of c to the tail of a
+                int k = (lc.size - la.size) >>> 1;
+                System.arraycopy(lc.values, 0, la.values, la.size, k);
+                System.arraycopy(lc.values, k, lc.values, 0, lc.size - k);
+                Arrays.fill(lc.values, lc.size - k, lc.size, null);
+                la.size += k;
+                lc.size -= k;
+                b.counts[i] += k;
+                b.counts[i + 1] -= k;
+                b.keys[i + 1] = lc.values[0];
+            } else {
+                // move the tail of a to the head of c
+                int k = (la.size - lc.size) >>> 1;
+                System.arraycopy(lc.values, 0, lc.values, k, lc.size);
+                System.arraycopy(la.values, la.size - k, lc.values, 0, k);
+                Arrays.fill(la.values, la.size - k, la.size, null);
+                la.size -= k;
+                lc.size += k;
+                b.counts[i] -= k;
+                b.counts[i + 1] += k;
+                b.keys[i + 1] = lc.values[0];
+            }
+        } else {
+            Branch ba = (Branch) a;
+            Branch bc = (Branch) c;
+            // the separator of c bounds its first child
+            bc.keys[0] = b.keys[i + 1];
+            if (ba.size + bc.size <= BRANCH_CAPACITY) {
+                System.arraycopy(bc.children, 0, ba.children, ba.size, bc.size);
+                System.arraycopy(bc.keys, 0, ba.keys, ba.size, bc.size);
+                System.arraycopy(bc.counts, 0, ba.counts, ba.size, bc.size);
+                ba.size += bc.size;
+                b.counts[i] += b.counts[i + 1];
+                removeChild(b, i + 1);
+            } else {
+                int k;
+                int moved = 0;
+                if (ba.size < bc.size) {
+                    // move the head of c to the tail of a
+                    k = (bc.size - ba.size) >>> 1;
+                    System.arraycopy(bc.children, 0, ba.children, ba.size, k);
+                    System.arraycopy(bc.keys, 0, ba.keys, ba.size, k);
+                    System.arraycopy(bc.counts, 0, ba.counts, ba.size, k);
+                    for (int j = 0; j < k; ++j) {
+                        moved += bc.counts[j];
+                    }
+                    System.arraycopy(bc.children, k, bc.children, 0, bc.size - k);
+                    System.arraycopy(bc.keys, k, bc.keys, 0, bc.size - k);
+                    System.arraycopy(bc.counts, k, bc.counts, 0, bc.size - k);
+                    Arrays.fill(bc.children, bc.size - k, bc.size, null);
+                    Arrays.fill(bc.keys, bc.size - k, bc.size, null);
+                    ba.size += k;
+                    bc.size -= k;
+                    b.counts[i] += moved;
+                    b.counts[i + 1] -= moved;
+                } else {
+                    // move the tail of a to the head of c
+                    k = (ba.size - bc.size) >>> 1;
+                    System.arraycopy(bc.children, 0, bc.children, k, bc.size);
+                    System.arraycopy(bc.keys, 0, bc.keys, k, bc.size);
+                    System.arraycopy(bc.counts, 0, bc.counts, k, bc.size);
+                    System.arraycopy(ba.children, ba.size - k, bc.children, 0, k);
+                    System.arraycopy(ba.keys, ba.size - k, bc.keys, 0, k);
+                    System.arraycopy(ba.counts, ba.size - k, bc.counts, 0, k);
+                    for (int j = 0; j < k; ++j) {
+                        moved += bc.counts[j];
+                    }
+                    Arrays.fill(ba.children, ba.size - k, ba.size, null);
+                    Arrays.fill(ba.keys, ba.size - k, ba.size, null);
+                    ba.size -= k;
+                    bc.size += k;
+                    b.counts[i] -= moved;
+                    b.counts[i + 1] += moved;
+                }
+                b.keys[i + 1] = bc.keys[0];
+            }
+        }
+    }
+    
+    private static void removeChild(Branch b, int j) {
+        System.arraycopy(b.children, j + 1, b.children, j, b.size - j - 1);
+        System.arraycopy(b.keys, j + 1, b.keys, j, b.size - j - 1);
+        System.arraycopy(b.counts, j + 1, b.counts, j, b.size - j - 1);
+        b.size -= 1;
+        b.children[b.size] = null;
+        b.keys[b.size] = null;
+    }
+    
+    @Override
+    public void clear() {
+        root = new Leaf();
+        height = 0;
+        size = 0;
+        ++modCount;
+    }
+    
+    
+    /////// BULK ///////
+    
+    /** Replaces the contents with the first <code>n</code> values,
+     * which are sorted in place if not already sorted.
+     * Nodes are packed full, with the remainder spread evenly. */
+    @SuppressWarnings("unchecked")
+    private void load(Object[] values, int n) {
+        try {
+            for (int i = 0; i < n; ++i) {
+                if (null == values[i]) {
+                    throw new NullPointerException();
+                }
+            }
+            Comparator<Object> c = (Comparator<Object>) comparator;
+            if (!isSorted(values, n, c)) {
+                Arrays.sort(values, 0, n, c);
+            }
+            
+            int m = Math.max(1, (n + LEAF_CAPACITY - 1) / LEAF_CAPACITY);
+            Node[] nodes = new Node[m];
+            int[] counts = new int[m];
+            Leaf prev = null;
+            for (int i = 0; i < m; ++i) {
+                int from = (int) ((long) n * i / m);
+                int to = (int) ((long) n * (i + 1) / m);
+                Leaf leaf = new Leaf();
+                System.arraycopy(values, from, leaf.values, 0, to - from);
+                leaf.size = to - from;
+                leaf.prev = prev;
+                if (null != prev) {
+                    prev.next = leaf;
+                }
+                prev = leaf;
+                nodes[i] = leaf;
+                counts[i] = leaf.size;
+            }
+            
+            int level = 0;
+            for (; 1 < m; ++level) {
+                int k = (m + BRANCH_CAPACITY - 1) / BRANCH_CAPACITY;
+                Node[] parents = new Node[k];
+                int[] parentCounts = new int[k];
+                for (int i = 0; i < k; ++i) {
+                    int from = (int) ((long) m * i / k);
+                    int to = (int) ((long) m * (i + 1) / k);
+                    Branch b = new Branch();
+                    for (int j = from; j < to; ++j) {
+                        b.children[j - from] = nodes[j];
+                        b.keys[j - from] = firstKey(nodes[j], level);
+                        b.counts[j - from] = counts[j];
+                        parentCounts[i] += counts[j];
+                    }
+                    b.size = to - from;
+                    parents[i] = b;
+                }
+                nodes = parents;
+                counts = parentCounts;
+                m = k;
+            }
+            root = nodes[0];
+            height = level;
+            size = n;
+            ++modCount;
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    private static <T> boolean isSorted(T[] values, int n, Comparator<? super T> c) {
+        for (int i = 1; i < n; ++i) {
+            if (0 < c.compare(values[i - 1], values[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    
+    /////// ITERATION ///////
+    
+    /** Scans the leaves in order. <code>next</code> and <code>previous</code> are constant time. */
+    @Override
+    public Iterator<E> iterator() {
+        return new Itr(0);
+    }
+    
+    /** Scans the leaves in order. <code>next</code> and <code>previous</code> are constant time. */
+    @Override
+    public ListIterator<E> listIterator() {
+        return new Itr(0);
+    }
+    
+    /** Scans the leaves in order. <code>next</code> and <code>previous</code> are constant time. */
+    @Override
+    public ListIterator<E> listIterator(int index) {
+        if (index < 0 || size < index)
+            throw new IndexOutOfBoundsException("" + index);
+        return new Itr(index);
+    }
+    
+    
+    /////// INVARIANTS ///////
+    
+    public boolean checkInvariants() {
+        if (size < 1024) {
+            assert size == _checkCount(root, height, null, null);
+        }
+        return true;
+    }
+    /** checks counts, order, separators and fill
+     * @return the count of the sub-tree */
+    @SuppressWarnings("unchecked")
+    private int _checkCount(Node x, int level, @Nullable Object lo, @Nullable Object hi) {
+        assert x == root || 0 < x.size;
+        if (0 == level) {
+            Leaf leaf = (Leaf) x;
+            for (int j = 0; j < leaf.size; ++j) {
+                E v = (E) leaf.values[j];
+                assert null != v;
+                assert 0 == j || comparator.compare((E) leaf.values[j - 1], v) <= 0;
+                assert null == lo || comparator.compare((E) lo, v) <= 0 : String.format("%s <> %s", lo, v);
+                assert null == hi || comparator.compare(v, (E) hi) <= 0 : String.format("%s <> %s", v, hi);
+            }
+            assert null == leaf.next || leaf.next.prev == leaf;
+            return leaf.size;
+        }
+        Branch b = (Branch) x;
+        int count = 0;
+        for (int i = 0; i < b.size; ++i) {
+            Object clo = 0 < i ? b.keys[i] : lo;
+            Object chi = i + 1 < b.size ? b.keys[i + 1] : hi;
+            int c = _checkCount(b.children[i], level - 1, clo, chi);
+            assert c == b.counts[i] : String.format("%d <> %d", c, b.counts[i]);
+            count += c;
+        }
+        return count;
+    }
+    
+    
+    /////// INTERNAL ///////
+    
+    private static int count(Node x, int level) {
+        if (0 == level) {
+            return x.size;
+        }
+        Branch b = (Branch) x;
+        int count = 0;
+        for (int i = 0; i < b.size; ++i) {
+            count += b.counts[i];
+        }
+        return count;
+    }
+    
+    /** @return a lower bound of the sub-tree, used as its separator */
+    private static Object firstKey(Node x, int level) {
+        return 0 == level ? ((Leaf) x).values[0] : ((Branch) x).keys[0];
+    }
+    
+    private static abstract class Node {
+        /** number of elements (leaf) or children (branch) */
+        int size = 0;
+    }
+    
+    private static final class Leaf extends Node {
+        /** (one extra slot for the overflow before a split) */
+        final Object[] values = new Object[LEAF_CAPACITY + 1];
+        @Nullable Leaf prev = null;
+        @Nullable Leaf next = null;
+    }
+    
+    private static final class Branch extends Node {
+        /** (one extra slot for the overflow before a split) */
+        final Node[] children = new Node[BRANCH_CAPACITY + 1];
+        /** <code>keys[i]</code> separates child <code>i - 1</code> from <code>i</code>;
+         * <code>keys[0]</code> is the separator of this branch in its parent */
+        final Object[] keys = new Object[BRANCH_CAPACITY + 1];
+        /** number of elements in each child */
+        final int[] counts = new int[BRANCH_CAPACITY + 1];
+    }
+    
+    
+    /** List iterator over the leaf chain. <code>remove</code> re-seeks the position (logarithmic).
+     * Structural modifications outside of the iterator are detected with <code>modCount</code>. */
+    private final class Itr implements ListIterator<E> {
+        /** index of the element returned by the next call to <code>next</code> */
+        int cursor;
+        /** index of the element returned by the last call to <code>next</code> or <code>previous</code>,
+         * or <code>-1</code> */
+        int lastRet = -1;
+        int expectedModCount = modCount;
+        
+        /** the leaf and position in the leaf of <code>cursor</code>
+         * (the position may be the leaf size, at the end of a leaf) */
+        Leaf leaf;
+        int j;
+        
+        Itr(int index) {
+            seek(index);
+        }
+        
+        private void seek(int index) {
+            cursor = index;
+            Node x = root;
+            for (int level = height; 0 < level; --level) {
+                Branch b = (Branch) x;
+                int i = 0;
+                while (i + 1 < b.size && b.counts[i] <= index) {
+                    index -= b.counts[i++];
+                }
+                x = b.children[i];
+            }
+            leaf = (Leaf) x;
+            j = index;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return cursor < size;
+        }
+        
+        @Override
+        public boolean hasPrevious() {
+            return 0 < cursor;
+        }
+        
+        @Override
+        public int nextIndex() {
+            return cursor;
+        }
+        
+        @Override
+        public int previousIndex() {
+            return cursor - 1;
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            checkForComodification();
+            if (size <= cursor)
+                throw new NoSuchElementException();
+            if (leaf.size == j) {
+                leaf = leaf.next;
+                j = 0;
+            }
+            lastRet = cursor;
+            cursor += 1;
+            return (E) leaf.values[j++];
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        public E previous() {
+            checkForComodification();
+            if (cursor <= 0)
+                throw new NoSuchElementException();
+            if (0 == j) {
+                leaf = leaf.prev;
+                j = leaf.size;
+            }
+            cursor -= 1;
+            lastRet = cursor;
+            return (E) leaf.values[--j];
+        }
+        
+        @Override
+        public void remove() {
+            if (lastRet < 0)
+                throw new IllegalStateException();
+            checkForComodification();
+            
+            BTreeSortedList.this.remove(lastRet);
+            seek(lastRet);
+            lastRet = -1;
+            expectedModCount = modCount;
+        }
+        
+        @Override
+        public void set(E e) {
+            throw new UnsupportedOperationException("Setting by index is not supported in a sorted list.");
+        }
+        
+        @Override
+        public void add(E e) {
+            throw new UnsupportedOperationException("Inserting by index is not supported in a sorted list.");
+        }
+        
+        
+        private void checkForComodification() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+    }
+}
@@ -0,0 +1,751 @@
+package nu.lodes.sortedlist;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nullable;
+
+import nu.lodes.sortedlist.WeightBalancedTree.Node;
+import nu.lodes.sortedlist.WeightBalancedTree.Walk;
+
+import com.google.common.collect.Ordering;
+
+
+/** Thread-safe {@link SortedList}, where reads never block or write to shared memory,
+ * and writes to different parts of the list proceed in parallel.
+ *
+ * The elements are held in partitions of consecutive value ranges. Each partition is an immutable
+ * weight-balanced tree with sub-tree counts, behind an atomic reference to its root.
+ * A read descends a snapshot of the tree. A write builds a new path to the root
+ * (<code>O(lg n)</code> new nodes) and swaps it in with a compare-and-set,
+ * and retries if another write to the same partition came first.
+ * A partition is split when it grows past a size that keeps about {@link #TARGET_PARTITIONS} partitions,
+ * and merged with a neighbor when it shrinks to a quarter of that size.
+ * While a partition is being replaced, writes to it wait; reads of it do not.
+ *
+ * All the elements equal to a query are in one partition, so the navigation operations,
+ * <code>indexOf</code>, <code>equalRange</code> and the other operations of one query
+ * read one snapshot of the partition that holds the query, and are atomic within it.
+ * The index of an element adds the sizes of the partitions before it, which are read one by one,
+ * so indexes (and {@link #size()}, {@link #get}, {@link #remove(int)}) are exact
+ * when there are no concurrent writes, and otherwise weakly consistent, like the sizes of the
+ * <code>java.util.concurrent</code> collections. They scan the partitions,
+ * so they are <code>O(p + lg n)</code> for <code>p</code> partitions.
+ * Iterators are weakly consistent, and never throw {@link ConcurrentModificationException}.
+ *
+ * Duplicates are held in insertion order. Null elements are not allowed.
+ */
+public final class ConcurrentSortedList<E> extends AbstractSortedList<E> {
+
+    /** the number of partitions that the split size aims for */
+    public static final int TARGET_PARTITIONS = 64;
+    /* the least size at which partitions are split */
+    private static final int MIN_SPLIT_SIZE = 1 << 10;
+    /* with assertions enabled, each write checks the whole list only while it is small,
+     * since the check is linear */
+    private static final int CHECK_SIZE = 128;
+    
+    private final Comparator<? super E> comparator;
+    private final AtomicReference<Layout<E>> layout;
+    
+    
+    @SuppressWarnings("unchecked")
+    public ConcurrentSortedList() {
+        this((Comparator<? super E>) Ordering.<Comparable<E>>natural());
+    }
+    
+    @SuppressWarnings("unchecked")
+    public ConcurrentSortedList(Comparator<? super E> comparator) {
+        this.comparator = comparator;
+        this.layout = new AtomicReference<Layout<E>>(new Layout<E>(new Partition[]{
+                new Partition<E>(null, null)}, MIN_SPLIT_SIZE));
+    }
+    
+    /** Builds balanced partitions from the values in linear time after sorting. */
+    @SuppressWarnings("unchecked")
+    public ConcurrentSortedList(Collection<? extends E> values) {
+        this((Comparator<? super E>) Ordering.<Comparable<E>>natural(), values);
+    }
+    
+    /** Builds balanced partitions from the values in linear time after sorting. */
+    @SuppressWarnings("unchecked")
+    public ConcurrentSortedList(Comparator<? super E> comparator, Collection<? extends E> values) {
+        this(comparator);
+        Object[] a = values.toArray();
+        for (Object value : a) {
+            if (null == value) {
+                throw new NullPointerException();
+            }
+        }
+        Arrays.sort(a, (Comparator<Object>) comparator);
+        
+        int splitSize = splitSize(a.length);
+        Partition<E>[] partitions = new Partition[(a.length + splitSize / 2 - 1) / (splitSize / 2) + 1];
+        int k = 0;
+        for (int from = 0, to; from < a.length; from = to) {
+            to = Math.min(a.length, from + splitSize / 2);
+            // equal elements stay in one partition
+            while (to < a.length && 0 == comparator.compare((E) a[to - 1], (E) a[to])) {
+                ++to;
+            }
+            partitions[k++] = new Partition<E>(0 == from ? null : (E) a[from],
+                    WeightBalancedTree.<E>build(null, a, from, to));
+        }
+        if (0 == k) {
+            return;
+        }
+        layout.set(new Layout<E>(Arrays.copyOf(partitions, k), splitSize));
+    }
+    
+    
+    
+    /////// SortedList IMPLEMENTATION ///////
+    
+    @Override
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+    
+    /* each query reads one snapshot of the partition that holds it,
+     * where lo is the number of elements less than the query, and hi the number not greater */
+    
+    @Override
+    public @Nullable E lower(Comparable<? super E> q) {
+        Partition<E>[] partitions = layout.get().partitions;
+        int k = partition(partitions, q, null);
+        Node<E> t = partitions[k].tree();
+        return element(partitions, k, t, bound(t, q, null, false) - 1);
+    }
+    
+    @Override
+    public int lowerIndex(Comparable<? super E> q) {
+        return index(q, null, false) - 1;
+    }
+    
+    @Override
+    public @Nullable E floor(Comparable<? super E> q) {
+        Partition<E>[] partitions = layout.get().partitions;
+        int k = partition(partitions, q, null);
+        Node<E> t = partitions[k].tree();
+        int lo = bound(t, q, null, false);
+        return element(partitions, k, t, lo < bound(t, q, null, true) ? lo : lo - 1);
+    }
+    
+    @Override
+    public int floorIndex(Comparable<? super E> q) {
+        Partition<E>[] partitions = layout.get().partitions;
+        int k = partition(partitions, q, null);
+        Node<E> t = partitions[k].tree();
+        int lo = bound(t, q, null, false);
+        return count(partitions, k) + (lo < bound(t, q, null, true) ? lo : lo - 1);
+    }
+    
+    @Override
+    public @Nullable E higher(Comparable<? super E> q) {
+        Partition<E>[] partitions = layout.get().partitions;
+        int k = partition(partitions, q, null);
+        Node<E> t = partitions[k].tree();
+        return element(partitions, k, t, bound(t, q, null, true));
+    }
+    
+    @Override
+    public int higherIndex(Comparable<? super E> q) {
+        return index(q, null, true);
+    }
+    
+    @Override
+    public @Nullable E ceiling(Comparable<? super E> q) {
+        Partition<E>[] partitions = layout.get().partitions;
+        int k = partition(partitions, q, null);
+        Node<E> t = partitions[k].tree();
+        int hi = bound(t, q, null, true);
+        return element(partitions, k, t, bound(t, q, null, false) < hi ? hi - 1 : hi);
+    }
+    
+    @Override
+    public int ceilingIndex(Comparable<? super E> q) {
+        Partition<E>[] partitions = layout.get().partitions;
+        int k = partition(partitions, q, null);
+        Node<E> t = partitions[k].tree();
+        int hi = bound(t, q, null, true);
+        return count(partitions, k) + (bound(t, q, null, false) < hi ? hi - 1 : hi);
+    }
+    
+    @Override
+    public int indexOf(Comparable<? super E> q) {
+        Partition<E>[] partitions = layout.get().partitions;
+        int k = partition(partitions, q, null);
+        Node<E> t = partitions[k].tree();
+        int lo = bound(t, q, null, false);
+        return lo < bound(t, q, null, true) ? count(partitions, k) + lo : -1;
+    }
+    
+    @Override
+    public int lastIndexOf(Comparable<? super E> q) {
+        Partition<E>[] partitions = layout.get().partitions;
+        int k = partition(partitions, q, null);
+        Node<E> t = partitions[k].tree();
+        int hi = bound(t, q, null, true);
+        return bound(t, q, null, false) < hi ? count(partitions, k) + hi - 1 : -1;
+    }
+    
+    @Override
+    public IndexRange equalRange(Comparable<? super E> q) {
+        Partition<E>[] partitions = layout.get().partitions;
+        int k = partition(partitions, q, null);
+        Node<E> t = partitions[k].tree();
+        int index = count(partitions, k);
+        return new IndexRange(index + bound(t, q, null, false), index + bound(t, q, null, true));
+    }
+    
+    /** @return the number of elements less than (or not greater than, if <code>upper</code>) the query */
+    private int index(@Nullable Comparable<? super E> q, @Nullable E value, boolean upper) {
+        Partition<E>[] partitions = layout.get().partitions;
+        int k = partition(partitions, q, value);
+        return count(partitions, k) + bound(partitions[k].tree(), q, value, upper);
+    }
+    
+    /** @return the element at the index <code>j</code> of the partition <code>k</code>, which is the snapshot <code>t</code>.
+     * Before the partition is the last element of the partitions before it,
+     * and after it the first element of the partitions after it. */
+    private @Nullable E element(Partition<E>[] partitions, int k, @Nullable Node<E> t, int j) {
+        if (j < 0) {
+            for (int i = k - 1; 0 <= i; --i) {
+                Node<E> s = partitions[i].tree();
+                if (null != s) {
+                    return WeightBalancedTree.get(s, s.count - 1);
+                }
+            }
+            return null;
+        }
+        if (count(t) <= j) {
+            for (int i = k + 1; i < partitions.length; ++i) {
+                Node<E> s = partitions[i].tree();
+                if (null != s) {
+                    return WeightBalancedTree.get(s, 0);
+                }
+            }
+            return null;
+        }
+        return WeightBalancedTree.get(t, j);
+    }
+    
+    
+    /////// SortedList INSERTION IMPLEMENTATION ///////
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean insert(E value) {
+        if (null == value) {
+            throw new NullPointerException();
+        }
+        
+        try {
+            for (;;) {
+                Layout<E> l = layout.get();
+                Partition<E> p = l.partitions[partition(l.partitions, null, value)];
+                Object r = p.root.get();
+                if (r instanceof Frozen) {
+                    Thread.yield();
+                    continue;
+                }
+                Node<E> n = WeightBalancedTree.insert(null, (Node<E>) r, value, comparator);
+                if (p.root.compareAndSet(r, n)) {
+                    if (l.splitSize < n.count) {
+                        split(p);
+                    }
+                    return true;
+                }
+            }
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    
+    /////// SortedList REMOVAL IMPLEMENTATION ///////
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public @Nullable E pollFirst() {
+        try {
+            retry:
+            for (;;) {
+                Layout<E> l = layout.get();
+                for (Partition<E> p : l.partitions) {
+                    Object r = p.root.get();
+                    if (null == tree(r))
+                        continue;
+                    if (r instanceof Frozen) {
+                        Thread.yield();
+                        continue retry;
+                    }
+                    Node<E> t = (Node<E>) r;
+                    Node<E> n = WeightBalancedTree.removeAt(null, t, 0);
+                    if (!p.root.compareAndSet(r, n))
+                        continue retry;
+                    removed(l, p, n);
+                    return WeightBalancedTree.get(t, 0);
+                }
+                return null;
+            }
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public @Nullable E pollLast() {
+        try {
+            retry:
+            for (;;) {
+                Layout<E> l = layout.get();
+                for (int k = l.partitions.length - 1; 0 <= k; --k) {
+                    Partition<E> p = l.partitions[k];
+                    Object r = p.root.get();
+                    if (null == tree(r))
+                        continue;
+                    if (r instanceof Frozen) {
+                        Thread.yield();
+                        continue retry;
+                    }
+                    Node<E> t = (Node<E>) r;
+                    Node<E> n = WeightBalancedTree.removeAt(null, t, t.count - 1);
+                    if (!p.root.compareAndSet(r, n))
+                        continue retry;
+                    removed(l, p, n);
+                    return WeightBalancedTree.get(t, t.count - 1);
+                }
+                return null;
+            }
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    
+    /////// List IMPLEMENTATION ///////
+    
+    @Override
+    public int size() {
+        Partition<E>[] partitions = layout.get().partitions;
+        return count(partitions, partitions.length);
+    }
+    
+    @Override
+    public E get(int index) {
+        if (index < 0)
+            throw new IndexOutOfBoundsException("" + index);
+        int i = index;
+        for (Partition<E> p : layout.get().partitions) {
+            Node<E> t = p.tree();
+            int c = count(t);
+            if (i < c) {
+                return WeightBalancedTree.get(t, i);
+            }
+            i -= c;
+        }
+        throw new IndexOutOfBoundsException("" + index);
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public E remove(int index) {
+        if (index < 0)
+            throw new IndexOutOfBoundsException("" + index);
+        
+        try {
+            retry:
+            for (;;) {
+                Layout<E> l = layout.get();
+                int i = index;
+                for (Partition<E> p : l.partitions) {
+                    Object r = p.root.get();
+                    Node<E> t = tree(r);
+                    int c = count(t);
+                    if (c <= i) {
+                        i -= c;
+                        continue;
+                    }
+                    if (r instanceof Frozen) {
+                        Thread.yield();
+                        continue retry;
+                    }
+                    Node<E> n = WeightBalancedTree.removeAt(null, t, i);
+                    if (!p.root.compareAndSet(r, n))
+                        continue retry;
+                    removed(l, p, n);
+                    return WeightBalancedTree.get(t, i);
+                }
+                throw new IndexOutOfBoundsException("" + index);
+            }
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    /** Removes an element that <code>equals</code> the value if there is one,
+     * otherwise the first element equal to the value by the comparator. */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object value) {
+        if (null == value) {
+            throw new NullPointerException();
+        }
+        
+        try {
+            for (;;) {
+                Layout<E> l = layout.get();
+                Partition<E> p = l.partitions[partition(l.partitions, null, (E) value)];
+                Object r = p.root.get();
+                Node<E> t = tree(r);
+                int lo = bound(t, null, (E) value, false);
+                int hi = bound(t, null, (E) value, true);
+                if (lo == hi)
+                    return false;
+                if (r instanceof Frozen) {
+                    Thread.yield();
+                    continue;
+                }
+                // prefer an equal element in the run; otherwise the first
+                int j = lo;
+                for (int i = lo; i < hi; ++i) {
+                    if (value.equals(WeightBalancedTree.get(t, i))) {
+                        j = i;
+                        break;
+                    }
+                }
+                Node<E> n = WeightBalancedTree.removeAt(null, t, j);
+                if (p.root.compareAndSet(r, n)) {
+                    removed(l, p, n);
+                    return true;
+                }
+            }
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    /** Atomically empties the list: a write either comes before, and is cleared, or after. */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void clear() {
+        try {
+            for (;;) {
+                Layout<E> l = layout.get();
+                Partition<E>[] partitions = l.partitions;
+                Frozen<E>[] frozen = new Frozen[partitions.length];
+                int k = 0;
+                while (k < partitions.length && null != (frozen[k] = freeze(partitions[k]))) {
+                    ++k;
+                }
+                if (partitions.length == k) {
+                    // (none of the partitions can have been replaced)
+                    layout.set(new Layout<E>(new Partition[]{new Partition<E>(null, null)}, MIN_SPLIT_SIZE));
+                    return;
+                }
+                while (0 < k) {
+                    --k;
+                    unfreeze(partitions[k], frozen[k]);
+                }
+                Thread.yield();
+            }
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    
+    /////// ITERATION ///////
+    
+    /** Walks a snapshot of each partition in turn.
+     * Weakly consistent: reflects the partitions when the iterator was created,
+     * each as it was when the iterator reached it. */
+    @Override
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+    
+    /** Weakly consistent, as {@link #iterator}. */
+    @Override
+    public Spliterator<E> spliterator() {
+        return Spliterators.spliteratorUnknownSize(iterator(),
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.CONCURRENT);
+    }
+    
+    
+    /////// PARTITIONS ///////
+    
+    /** @return the index of the last partition with a low bound not greater than the query
+     * (<code>q</code> if not <code>null</code>, otherwise <code>value</code> by the comparator),
+     * or the first partition if there is none */
+    private int partition(Partition<E>[] partitions, @Nullable Comparable<? super E> q, @Nullable E value) {
+        int lo = 1;
+        int hi = partitions.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (0 <= compare(q, value, partitions[mid].low)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo - 1;
+    }
+    
+    /** @return the number of elements in the partitions <code>[0, k)</code> */
+    private static <T> int count(Partition<T>[] partitions, int k) {
+        int count = 0;
+        for (int i = 0; i < k; ++i) {
+            count += count(partitions[i].tree());
+        }
+        return count;
+    }
+    
+    private int compare(@Nullable Comparable<? super E> q, @Nullable E value, E x) {
+        return null != q ? q.compareTo(x) : comparator.compare(value, x);
+    }
+    
+    /** @return the size above which partitions are split, for a list of the size */
+    private static int splitSize(long size) {
+        return (int) Math.max(MIN_SPLIT_SIZE, 2 * size / TARGET_PARTITIONS);
+    }
+    
+    /** After a write removed from the partition, merges it if it has become small. */
+    private void removed(Layout<E> l, Partition<E> p, @Nullable Node<E> n) {
+        if (count(n) < l.splitSize / 4 && 1 < l.partitions.length) {
+            merge(p);
+        }
+    }
+    
+    /** Splits the partition into two halves, unless it is already being replaced.
+     * Equal elements stay in one partition, so a partition of equal elements is not split. */
+    @SuppressWarnings("unchecked")
+    private void split(Partition<E> p) {
+        Node<E> t = p.tree();
+        if (null == t || 0 == comparator.compare(WeightBalancedTree.get(t, 0), WeightBalancedTree.get(t, t.count - 1)))
+            return;
+        Frozen<E> f = freeze(p);
+        if (null == f)
+            return;
+        Object[] a = WeightBalancedTree.toArray(f.root);
+        int m = a.length / 2;
+        while (0 < m && 0 == comparator.compare((E) a[m - 1], (E) a[m])) {
+            --m;
+        }
+        if (0 == m) {
+            m = a.length / 2;
+            while (m < a.length && 0 == comparator.compare((E) a[m - 1], (E) a[m])) {
+                ++m;
+            }
+        }
+        replace(p, null, new Partition<E>(p.low, WeightBalancedTree.<E>build(null, a, 0, m)),
+                new Partition<E>((E) a[m], WeightBalancedTree.<E>build(null, a, m, a.length)));
+    }
+    
+    /** Merges the partition with its smaller neighbor, if they are small enough together
+     * and neither is already being replaced. */
+    private void merge(Partition<E> p) {
+        Layout<E> l = layout.get();
+        Partition<E>[] partitions = l.partitions;
+        int k = null != p.low ? partition(partitions, null, p.low) : 0;
+        if (partitions.length < 2 || p != partitions[k])
+            return;
+        int j;
+        if (0 == k) {
+            j = 1;
+        } else if (partitions.length - 1 == k) {
+            j = k - 1;
+        } else {
+            j = count(partitions[k - 1].tree()) <= count(partitions[k + 1].tree()) ? k - 1 : k + 1;
+        }
+        Partition<E> a = partitions[Math.min(j, k)];
+        Partition<E> b = partitions[Math.max(j, k)];
+        if (l.splitSize / 2 < count(a.tree()) + count(b.tree()))
+            return;
+        Frozen<E> fa = freeze(a);
+        if (null == fa)
+            return;
+        Frozen<E> fb = freeze(b);
+        if (null == fb) {
+            unfreeze(a, fa);
+            return;
+        }
+        Object[] x = WeightBalancedTree.toArray(fa.root);
+        Object[] y = WeightBalancedTree.toArray(fb.root);
+        Object[] merged = Arrays.copyOf(x, x.length + y.length);
+        System.arraycopy(y, 0, merged, x.length, y.length);
+        replace(a, b, new Partition<E>(a.low, WeightBalancedTree.<E>build(null, merged, 0, merged.length)), null);
+    }
+    
+    /** Replaces the frozen partition (and the frozen partition <code>next</code> after it, if not <code>null</code>)
+     * with the new partition <code>a</code> (and <code>b</code> after it, if not <code>null</code>).
+     * No other write can replace a frozen partition, so it is in the current layout. */
+    @SuppressWarnings("unchecked")
+    private void replace(Partition<E> p, @Nullable Partition<E> next, Partition<E> a, @Nullable Partition<E> b) {
+        int removed = null != next ? 2 : 1;
+        int added = null != b ? 2 : 1;
+        for (;;) {
+            Layout<E> l = layout.get();
+            Partition<E>[] old = l.partitions;
+            int k = null != p.low ? partition(old, null, p.low) : 0;
+            assert p == old[k] && (null == next || next == old[k + 1]);
+            Partition<E>[] partitions = new Partition[old.length - removed + added];
+            System.arraycopy(old, 0, partitions, 0, k);
+            partitions[k] = a;
+            if (null != b) {
+                partitions[k + 1] = b;
+            }
+            System.arraycopy(old, k + removed, partitions, k + added, old.length - k - removed);
+            if (layout.compareAndSet(l, new Layout<E>(partitions, splitSize(count(partitions, partitions.length))))) {
+                return;
+            }
+        }
+    }
+    
+    /** @return the frozen root, or <code>null</code> if the partition is already frozen */
+    @SuppressWarnings("unchecked")
+    private static <T> @Nullable Frozen<T> freeze(Partition<T> p) {
+        for (;;) {
+            Object r = p.root.get();
+            if (r instanceof Frozen) {
+                return null;
+            }
+            Frozen<T> f = new Frozen<T>((Node<T>) r);
+            if (p.root.compareAndSet(r, f)) {
+                return f;
+            }
+        }
+    }
+    
+    /** Restores a partition that was frozen, and not replaced. */
+    private static <T> void unfreeze(Partition<T> p, Frozen<T> f) {
+        boolean unfrozen = p.root.compareAndSet(f, f.root);
+        assert unfrozen;
+    }
+    
+    
+    /////// TREE ///////
+    
+    /* the partitions are {@link WeightBalancedTree}s, written without an owner so that every write copies */
+    
+    private static int count(@Nullable Node<?> n) {
+        return WeightBalancedTree.count(n);
+    }
+    
+    private int bound(@Nullable Node<E> y, @Nullable Comparable<? super E> q, @Nullable E value, boolean upper) {
+        return WeightBalancedTree.bound(y, q, value, comparator, upper);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static @Nullable <T> Node<T> tree(@Nullable Object r) {
+        return r instanceof Frozen ? ((Frozen<T>) r).root : (Node<T>) r;
+    }
+    
+    
+    /////// INVARIANTS ///////
+    
+    /** Checks the invariants if the list is small: the counts, weight balance and order of each partition,
+     * and that each partition is within its bounds. Safe to call during concurrent writes,
+     * since each partition is checked in a snapshot.
+     * @throws IllegalStateException if an invariant does not hold */
+    public boolean checkInvariants() {
+        Partition<E>[] partitions = layout.get().partitions;
+        if (CHECK_SIZE <= count(partitions, partitions.length))
+            return true;
+        if (null != partitions[0].low)
+            throw new IllegalStateException("low bound " + partitions[0].low + " of the first partition");
+        for (int k = 0; k < partitions.length; ++k) {
+            Node<E> t = partitions[k].tree();
+            WeightBalancedTree.check(t, comparator);
+            for (Iterator<E> i = new Walk<E>(t); i.hasNext(); ) {
+                E x = i.next();
+                if (0 < k && comparator.compare(x, partitions[k].low) < 0)
+                    throw new IllegalStateException(String.format("%s below %s", x, partitions[k].low));
+                if (k + 1 < partitions.length && comparator.compare(partitions[k + 1].low, x) <= 0)
+                    throw new IllegalStateException(String.format("%s above %s", x, partitions[k + 1].low));
+            }
+        }
+        return true;
+    }
+    
+    /////// INTERNAL ///////
+    
+    /** The elements from <code>low</code> (inclusive) up to the low bound of the next partition. */
+    private static final class Partition<T> {
+        /** <code>null</code> for the first partition */
+        final @Nullable T low;
+        /** the root {@link Node}, <code>null</code> if empty, or a {@link Frozen} root while the partition is being replaced */
+        final AtomicReference<Object> root;
+        
+        Partition(@Nullable T low, @Nullable Node<T> root) {
+            this.low = low;
+            this.root = new AtomicReference<Object>(root);
+        }
+        
+        /** @return a snapshot of the tree */
+        @Nullable Node<T> tree() {
+            return ConcurrentSortedList.<T>tree(root.get());
+        }
+    }
+    
+    /** Marks a partition root that no write may replace. */
+    private static final class Frozen<T> {
+        final @Nullable Node<T> root;
+        
+        Frozen(@Nullable Node<T> root) {
+            this.root = root;
+        }
+    }
+    
+    /** The partitions in order. Replaced as a whole when partitions are split or merged. */
+    private static final class Layout<T> {
+        final Partition<T>[] partitions;
+        /** partitions larger than this are split, and partitions smaller than a quarter of it are merged */
+        final int splitSize;
+        
+        Layout(Partition<T>[] partitions, int splitSize) {
+            this.partitions = partitions;
+            this.splitSize = splitSize;
+        }
+    }
+    
+    private final class Itr implements Iterator<E> {
+        final Partition<E>[] partitions = layout.get().partitions;
+        int k = 0;
+        Walk<E> walk = new Walk<E>(null);
+        @Nullable E last = null;
+        
+        @Override
+        public boolean hasNext() {
+            while (!walk.hasNext() && k < partitions.length) {
+                walk = new Walk<E>(partitions[k++].tree());
+            }
+            return walk.hasNext();
+        }
+        
+        @Override
+        public E next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return last = walk.next();
+        }
+        
+        /** Removes an element equal to the last element. */
+        @Override
+        public void remove() {
+            if (null == last)
+                throw new IllegalStateException();
+            ConcurrentSortedList.this.remove(last);
+            last = null;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package nu.lodes.sortedlist;
+
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+
+/** A reusable position in a {@link SortedList}, for repeated lookups and scans
+ * without allocating an iterator or a result per lookup.
+ *
+ * A cursor is positioned by a seek, and then stepped with {@link #next} and {@link #previous}.
+ * Its index ranges over <code>[-1, size()]</code>; the indexes <code>-1</code> and <code>size()</code>
+ * are the positions before the first and after the last element, where there is no element.
+ *
+ * A cursor is fail-fast: if the list is structurally modified after the last seek,
+ * the operations other than seeking throw a {@link ConcurrentModificationException}.
+ * Seeking again makes the cursor valid for the modified list.
+ *
+ * <pre>
+ * Cursor&lt;E&gt; cursor = sortedList.cursor();
+ * for (boolean m = cursor.seek(q); m &amp;&amp; 0 == cursor.compare(); m = cursor.next()) {
+ *     // each element equal to q
+ * }
+ * </pre>
+ * @see SortedList#cursor */
+public interface Cursor<E> {
+    /** Positions the cursor at the least element not less than the given element,
+     * which is the index {@link SortedList#rank(Object)}.
+     * @return whether the cursor is at an element */
+    boolean seek(E value);
+    /** Positions the cursor at the least element <code>x</code> where <code>q.compareTo(x) &lt;= 0</code>,
+     * which is the index {@link SortedList#rank(Comparable)}.
+     * @param q <code>compareTo</code> must be monotonically increasing over the ordered elements in the list
+     * @return whether the cursor is at an element */
+    boolean seek(Comparable<? super E> q);
+    /** Positions the cursor at the index. The cursor has no query to {@link #compare} with.
+     * @param index in <code>[-1, size()]</code>
+     * @return whether the cursor is at an element
+     * @throws IndexOutOfBoundsException if the index is out of range */
+    boolean seekIndex(int index);
+    
+    /** Steps to the next index, unless the cursor is after the last element.
+     * @return whether the cursor is at an element */
+    boolean next();
+    /** Steps to the previous index, unless the cursor is before the first element.
+     * @return whether the cursor is at an element */
+    boolean previous();
+    
+    /** @return whether the index is in <code>[0, size())</code> */
+    boolean hasElement();
+    /** @return the element at the index
+     * @throws NoSuchElementException if the cursor is not at an element */
+    E element();
+    /** @return the index, in <code>[-1, size()]</code> */
+    int index();
+    /** @return the result of comparing the query (or element) of the last seek with the element at the index:
+     * negative, zero or positive as the query is less than, equal to or greater than the element
+     * @throws IllegalStateException if the cursor was positioned with {@link #seekIndex}
+     * @throws NoSuchElementException if the cursor is not at an element */
+    int compare();
+}
@@ -0,0 +1,221 @@
+package nu.lodes.sortedlist;
+
+import java.util.Comparator;
+import java.util.ListIterator;
+
+import com.google.common.collect.Ordering;
+
+
+/** Sorted list of primitive <code>double</code> values, in natural order.
+ *
+ * Implemented as the splay tree of {@link SplaySortedList},
+ * with the value held unboxed in each node.
+ * Duplicates are held as a count in a single node.
+ * The order is the total order of {@link Double#compare}: <code>-0.0 &lt; 0.0</code>, and <code>NaN</code> is greatest,
+ * with all <code>NaN</code>s equal.
+ *
+ * The primitive operations (<code>insert(double)</code>, <code>getDouble(int)</code>,
+ * <code>floorIndex(double)</code>, <code>floorDouble(double, double)</code>, ..., and the iterator's <code>nextDouble()</code>)
+ * do not box. The {@link SortedList} operations on {@link Double} are supported,
+ * and box or unbox at the call.
+ *
+ * @see SplaySortedList
+ */
+public final class DoubleSortedList extends PrimitiveSortedList<Double> {
+
+    public DoubleSortedList() {
+        super(Double.class);
+    }
+    
+    /** Builds a balanced tree from the values in linear time after sorting.
+     * The array is not modified. */
+    public DoubleSortedList(double[] values) {
+        super(Double.class);
+        build(keys(values));
+    }
+    
+    
+    @Override
+    long toKey(Double value) {
+        return key(value.doubleValue());
+    }
+    
+    @Override
+    Double toValue(long key) {
+        return value(key);
+    }
+    
+    /** @return the bits of the value, with the other bits flipped if the sign bit is set,
+     * so that the order of the keys is the order of {@link Double#compare} */
+    private static long key(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+    
+    /** The inverse of {@link #key}; a <code>NaN</code> comes back as {@link Double#NaN}. */
+    private static double value(long key) {
+        return Double.longBitsToDouble(key ^ ((key >> 63) & Long.MAX_VALUE));
+    }
+    
+    private static long[] keys(double[] values) {
+        long[] keys = new long[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            keys[i] = key(values[i]);
+        }
+        return keys;
+    }
+    
+    
+    /////// PRIMITIVE IMPLEMENTATION ///////
+    
+    public boolean insert(double value) {
+        return insertKey(key(value));
+    }
+    
+    /** Sorts the values and inserts them in order,
+     * so that each splay starts from the previously inserted value.
+     * The array is not modified. */
+    public boolean insertAll(double... values) {
+        return insertKeys(keys(values));
+    }
+    
+    public double getDouble(int index) {
+        return value(getKey(index));
+    }
+    
+    public double removeDouble(int index) {
+        return value(removeKeyAt(index));
+    }
+    
+    /** Removes one occurrence of the value.
+     * @return whether the list contained the value */
+    public boolean removeValue(double value) {
+        return removeKey(key(value));
+    }
+    
+    public boolean contains(double value) {
+        return containsKey(key(value));
+    }
+    
+    /** @return the least index of the value, or <code>-1</code> */
+    public int indexOf(double value) {
+        return indexOfKey(key(value));
+    }
+    
+    /** @return the greatest index of the value, or <code>-1</code> */
+    public int lastIndexOf(double value) {
+        return lastIndexOfKey(key(value));
+    }
+    
+    /** @see SortedList#lowerIndex(Object) */
+    public int lowerIndex(double value) {
+        return lowerKeyIndex(key(value));
+    }
+    
+    /** @see SortedList#floorIndex(Object) */
+    public int floorIndex(double value) {
+        return floorKeyIndex(key(value));
+    }
+    
+    /** @see SortedList#higherIndex(Object) */
+    public int higherIndex(double value) {
+        return higherKeyIndex(key(value));
+    }
+    
+    /** @see SortedList#ceilingIndex(Object) */
+    public int ceilingIndex(double value) {
+        return ceilingKeyIndex(key(value));
+    }
+    
+    /** Unboxed {@link SortedList#lower(Object)}, in one descent. Does not splay.
+     * @return the greatest value less than the value, or <code>absent</code> if there is none */
+    public double lowerDouble(double value, double absent) {
+        Node y = floorNode(key(value), false);
+        return null != y ? value(y.key) : absent;
+    }
+    
+    /** Unboxed {@link SortedList#floor(Object)}, in one descent. Does not splay.
+     * @return the greatest value less than or equal to the value, or <code>absent</code> if there is none */
+    public double floorDouble(double value, double absent) {
+        Node y = floorNode(key(value), true);
+        return null != y ? value(y.key) : absent;
+    }
+    
+    /** Unboxed {@link SortedList#higher(Object)}, in one descent. Does not splay.
+     * @return the least value greater than the value, or <code>absent</code> if there is none */
+    public double higherDouble(double value, double absent) {
+        Node y = ceilingNode(key(value), false);
+        return null != y ? value(y.key) : absent;
+    }
+    
+    /** Unboxed {@link SortedList#ceiling(Object)}, in one descent. Does not splay.
+     * @return the least value greater than or equal to the value, or <code>absent</code> if there is none */
+    public double ceilingDouble(double value, double absent) {
+        Node y = ceilingNode(key(value), true);
+        return null != y ? value(y.key) : absent;
+    }
+    
+    /** @return the values in order */
+    public double[] toDoubleArray() {
+        double[] a = new double[size()];
+        int i = 0;
+        for (DoubleListIterator itr = listIterator(); itr.hasNext(); ) {
+            a[i++] = itr.nextDouble();
+        }
+        return a;
+    }
+    
+    
+    /////// SortedList IMPLEMENTATION ///////
+    
+    @Override
+    public Comparator<? super Double> comparator() {
+        return Ordering.<Double>natural();
+    }
+    
+    
+    /////// List IMPLEMENTATION ///////
+    
+    /** Walks the tree in order. Does not splay. */
+    @Override
+    public DoubleListIterator iterator() {
+        return new Itr(0);
+    }
+    
+    /** Walks the tree in order. Does not splay. */
+    @Override
+    public DoubleListIterator listIterator() {
+        return new Itr(0);
+    }
+    
+    /** Walks the tree in order. Does not splay. */
+    @Override
+    public DoubleListIterator listIterator(int index) {
+        return new Itr(index);
+    }
+    
+    
+    /////// INTERNAL ///////
+    
+    /** {@link ListIterator} with unboxed access. */
+    public static interface DoubleListIterator extends ListIterator<Double> {
+        double nextDouble();
+        double previousDouble();
+    }
+    
+    private final class Itr extends KeyItr implements DoubleListIterator {
+        Itr(int index) {
+            super(index);
+        }
+        
+        @Override
+        public double nextDouble() {
+            return value(nextKey());
+        }
+        
+        @Override
+        public double previousDouble() {
+            return value(previousKey());
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package nu.lodes.sortedlist;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import javax.annotation.Nullable;
+
+import nu.lodes.sortedlist.SortedListSerializer.Input;
+import nu.lodes.sortedlist.SortedListSerializer.Output;
+
+import com.google.common.base.Strings;
+
+
+/** Encodes the elements of a {@link SortedListSerializer}.
+ *
+ * The elements are encoded in order, and each is encoded relative to the one before it,
+ * so that a codec can write the difference from it (e.g. a delta, or the suffix after a shared prefix),
+ * which is small when the elements are close together. The first element has no previous element.
+ *
+ * Codecs may hold state, so an instance should be used by one serializer.
+ * Like the serializer, they are not thread safe. */
+public abstract class ElementCodec<E> {
+
+    protected ElementCodec() {
+    }
+    
+    
+    /** @param previous the element written before this one, or <code>null</code> for the first */
+    protected abstract void encode(@Nullable E previous, E value, Output out) throws IOException;
+    
+    /** @param previous the element read before this one, or <code>null</code> for the first */
+    protected abstract E decode(@Nullable E previous, Input in) throws IOException;
+    
+    
+    /** Each element as its difference from the previous one, as an unsigned varint:
+     * one byte for a difference under 128, in ascending natural order. Correct in any order. */
+    public static ElementCodec<Long> longs() {
+        return LONGS;
+    }
+    
+    /** Each element as its difference from the previous one, as an unsigned varint:
+     * one byte for a difference under 128, in ascending natural order. Correct in any order. */
+    public static ElementCodec<Integer> ints() {
+        return INTS;
+    }
+    
+    /** Each element as the length of the prefix it shares with the previous one,
+     * then the rest in UTF-8 (front coding). */
+    public static ElementCodec<String> strings() {
+        return STRINGS;
+    }
+    
+    
+    private static final ElementCodec<Long> LONGS = new ElementCodec<Long>() {
+        @Override
+        protected void encode(@Nullable Long previous, Long value, Output out) throws IOException {
+            out.putVarLong(null != previous ? value - previous : value);
+        }
+        
+        @Override
+        protected Long decode(@Nullable Long previous, Input in) throws IOException {
+            long delta = in.getVarLong();
+            return null != previous ? previous + delta : delta;
+        }
+        
+        @Override
+        public String toString() {
+            return "longs";
+        }
+    };
+    
+    private static final ElementCodec<Integer> INTS = new ElementCodec<Integer>() {
+        @Override
+        protected void encode(@Nullable Integer previous, Integer value, Output out) throws IOException {
+            out.putVarLong((null != previous ? value - previous : value) & 0xFFFFFFFFL);
+        }
+        
+        @Override
+        protected Integer decode(@Nullable Integer previous, Input in) throws IOException {
+            int delta = (int) in.getVarLong();
+            return null != previous ? previous + delta : delta;
+        }
+        
+        @Override
+        public String toString() {
+            return "ints";
+        }
+    };
+    
+    private static final ElementCodec<String> STRINGS = new ElementCodec<String>() {
+        @Override
+        protected void encode(@Nullable String previous, String value, Output out) throws IOException {
+            // (the common prefix does not split a surrogate pair)
+            int shared = null != previous ? Strings.commonPrefix(previous, value).length() : 0;
+            byte[] suffix = value.substring(shared).getBytes(StandardCharsets.UTF_8);
+            out.putVarLong(shared);
+            out.putVarLong(suffix.length);
+            out.put(suffix, 0, suffix.length);
+        }
+        
+        @Override
+        protected String decode(@Nullable String previous, Input in) throws IOException {
+            int shared = in.getVarInt();
+            String suffix = new String(in.get(in.getVarInt()), StandardCharsets.UTF_8);
+            if (0 == shared) {
+                return suffix;
+            }
+            if (null == previous || previous.length() < shared)
+                throw new IOException("shared prefix " + shared);
+            return previous.substring(0, shared).concat(suffix);
+        }
+        
+        @Override
+        public String toString() {
+            return "strings";
+        }
+    };
+}
@@ -0,0 +1,323 @@
+package nu.lodes.sortedlist;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Ordering;
+
+
+/** Immutable, array-backed {@link SortedList} for lists that are built once and read many times,
+ * made by {@link SortedList#freeze()}.
+ *
+ * The elements are held twice: in order, so {@link #get} is <code>O(1)</code> and iteration is sequential,
+ * and in Eytzinger (breadth-first) order, where the children of the slot <code>k</code> are the slots
+ * <code>2k</code> and <code>2k + 1</code>, with the rank of each slot. A search descends the Eytzinger array
+ * without a branch on the comparison (the next slot is computed from it), so the top levels of every search
+ * share a few cache lines, and the slots of the next levels of a search are adjacent.
+ * Each navigation is one such search, and a second one for the floor and ceiling of a query
+ * that is equal to elements, to find the first or last of them.
+ *
+ * The list can be read by any number of threads without locks.
+ * The mutators of {@link SortedList} and {@link java.util.List} throw {@link UnsupportedOperationException}.
+ */
+public final class FrozenSortedList<E> extends AbstractSortedList<E> {
+    private final Comparator<? super E> comparator;
+    /* the elements in order */
+    private final Object[] values;
+    /* the elements in Eytzinger order, from 1 */
+    private final Object[] tree;
+    /* the index in values of each slot of tree */
+    private final int[] ranks;
+    
+    
+    private FrozenSortedList(Comparator<? super E> comparator, Object[] values) {
+        this.comparator = comparator;
+        this.values = values;
+        this.tree = new Object[values.length + 1];
+        this.ranks = new int[values.length + 1];
+        int i = layout(1, 0);
+        assert values.length == i;
+    }
+    
+    /** @return the values in order in a frozen list */
+    public static <E> FrozenSortedList<E> copyOf(SortedList<E> values) {
+        return new FrozenSortedList<E>(values.comparator(), checkNotNull(values.toArray()));
+    }
+    
+    /** Sorts the values into a frozen list. */
+    @SuppressWarnings("unchecked")
+    public static <E extends Comparable<? super E>> FrozenSortedList<E> copyOf(Collection<? extends E> values) {
+        return copyOf((Comparator<? super E>) Ordering.<Comparable<E>>natural(), values);
+    }
+    
+    /** Sorts the values into a frozen list. */
+    @SuppressWarnings("unchecked")
+    public static <E> FrozenSortedList<E> copyOf(Comparator<? super E> comparator, Collection<? extends E> values) {
+        Object[] a = checkNotNull(values.toArray());
+        Arrays.sort(a, (Comparator<Object>) comparator);
+        return new FrozenSortedList<E>(comparator, a);
+    }
+    
+    private static Object[] checkNotNull(Object[] values) {
+        for (Object value : values) {
+            if (null == value) {
+                throw new NullPointerException();
+            }
+        }
+        return values;
+    }
+    
+    /** Fills the sub-tree of the slot <code>k</code> in order from <code>values[i]</code>.
+     * @return the index of the next value */
+    private int layout(int k, int i) {
+        if (values.length < k)
+            return i;
+        i = layout(2 * k, i);
+        tree[k] = values[i];
+        ranks[k] = i;
+        return layout(2 * k + 1, i + 1);
+    }
+    
+    
+    
+    /////// SEARCH ///////
+    
+    /** @return if <code>upper</code>, the number of elements not greater than the query,
+     * otherwise the number of elements less than the query;
+     * the query is <code>q</code> if not <code>null</code>, otherwise <code>value</code> by the comparator */
+    @SuppressWarnings("unchecked")
+    private int bound(@Nullable Comparable<? super E> q, @Nullable E value, boolean upper) {
+        Object[] tree = this.tree;
+        int n = tree.length - 1;
+        // go right past the elements less than (or not greater than, if upper) the query
+        int bias = upper ? -1 : 0;
+        int k = 1;
+        if (null != q) {
+            while (k <= n) {
+                k = 2 * k + (bias < q.compareTo((E) tree[k]) ? 1 : 0);
+            }
+        } else {
+            Comparator<? super E> c = comparator;
+            while (k <= n) {
+                k = 2 * k + (bias < c.compare(value, (E) tree[k]) ? 1 : 0);
+            }
+        }
+        // undo the right turns after the last left turn, which was at the bound
+        k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+        return 0 != k ? ranks[k] : n;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private @Nullable E element(int index) {
+        return 0 <= index && index < values.length ? (E) values[index] : null;
+    }
+    
+    private int lowerIndex(@Nullable Comparable<? super E> q, @Nullable E value) {
+        return bound(q, value, false) - 1;
+    }
+    
+    /* the floor and ceiling are at the first and last of the equal elements:
+     * one search finds the bound past the query, and a second one is needed only if there are equal elements */
+    
+    private int floorIndex(@Nullable Comparable<? super E> q, @Nullable E value) {
+        int hi = bound(q, value, true);
+        if (0 == hi || 0 != compare(q, value, hi - 1))
+            return hi - 1;
+        return bound(q, value, false);
+    }
+    
+    private int higherIndex(@Nullable Comparable<? super E> q, @Nullable E value) {
+        return bound(q, value, true);
+    }
+    
+    private int ceilingIndex(@Nullable Comparable<? super E> q, @Nullable E value) {
+        int lo = bound(q, value, false);
+        if (values.length == lo || 0 != compare(q, value, lo))
+            return lo;
+        return bound(q, value, true) - 1;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private int compare(@Nullable Comparable<? super E> q, @Nullable E value, int index) {
+        E x = (E) values[index];
+        return null != q ? q.compareTo(x) : comparator.compare(value, x);
+    }
+    
+    
+    /////// SortedList IMPLEMENTATION ///////
+    
+    @Override
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+    
+    @Override
+    public @Nullable E lower(E value) {
+        return element(lowerIndex(null, value));
+    }
+    
+    @Override
+    public @Nullable E lower(Comparable<? super E> q) {
+        return element(lowerIndex(q, null));
+    }
+    
+    @Override
+    public int lowerIndex(E value) {
+        return lowerIndex(null, value);
+    }
+    
+    @Override
+    public int lowerIndex(Comparable<? super E> q) {
+        return lowerIndex(q, null);
+    }
+    
+    @Override
+    public @Nullable E floor(E value) {
+        return element(floorIndex(null, value));
+    }
+    
+    @Override
+    public @Nullable E floor(Comparable<? super E> q) {
+        return element(floorIndex(q, null));
+    }
+    
+    @Override
+    public int floorIndex(E value) {
+        return floorIndex(null, value);
+    }
+    
+    @Override
+    public int floorIndex(Comparable<? super E> q) {
+        return floorIndex(q, null);
+    }
+    
+    @Override
+    public @Nullable E higher(E value) {
+        return element(higherIndex(null, value));
+    }
+    
+    @Override
+    public @Nullable E higher(Comparable<? super E> q) {
+        return element(higherIndex(q, null));
+    }
+    
+    @Override
+    public int higherIndex(E value) {
+        return higherIndex(null, value);
+    }
+    
+    @Override
+    public int higherIndex(Comparable<? super E> q) {
+        return higherIndex(q, null);
+    }
+    
+    @Override
+    public @Nullable E ceiling(E value) {
+        return element(ceilingIndex(null, value));
+    }
+    
+    @Override
+    public @Nullable E ceiling(Comparable<? super E> q) {
+        return element(ceilingIndex(q, null));
+    }
+    
+    @Override
+    public int ceilingIndex(E value) {
+        return ceilingIndex(null, value);
+    }
+    
+    @Override
+    public int ceilingIndex(Comparable<? super E> q) {
+        return ceilingIndex(q, null);
+    }
+    
+    /** @return <code>this</code> */
+    @Override
+    public FrozenSortedList<E> freeze() {
+        return this;
+    }
+    
+    /** @throws UnsupportedOperationException always */
+    @Override
+    public boolean insert(E value) {
+        throw new UnsupportedOperationException();
+    }
+    
+    /** @throws UnsupportedOperationException always */
+    @Override
+    public @Nullable E pollFirst() {
+        throw new UnsupportedOperationException();
+    }
+    
+    /** @throws UnsupportedOperationException always */
+    @Override
+    public @Nullable E pollLast() {
+        throw new UnsupportedOperationException();
+    }
+    
+    
+    /////// List IMPLEMENTATION ///////
+    
+    @Override
+    public int size() {
+        return values.length;
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        return (E) values[index];
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object value) {
+        int lo = bound(null, (E) value, false);
+        return lo < values.length && 0 == comparator.compare((E) value, (E) values[lo]);
+    }
+    
+    /** @throws UnsupportedOperationException always */
+    @Override
+    public E remove(int index) {
+        throw new UnsupportedOperationException();
+    }
+    
+    /** @throws UnsupportedOperationException always */
+    @Override
+    public boolean remove(Object value) {
+        throw new UnsupportedOperationException();
+    }
+    
+    /** @throws UnsupportedOperationException always */
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+    
+    @Override
+    public Object[] toArray() {
+        return values.clone();
+    }
+    
+    
+    /////// ITERATION ///////
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public Iterator<E> iterator() {
+        return Iterators.forArray((E[]) values);
+    }
+    
+    @Override
+    public Spliterator<E> spliterator() {
+        return Spliterators.spliterator(values,
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+    }
+}
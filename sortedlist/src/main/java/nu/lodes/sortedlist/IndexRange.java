@@ -0,0 +1,45 @@
+package nu.lodes.sortedlist;
+
+/** A range of indexes <code>[from, to)</code> in a list.
+ * @see SortedList#equalRange(Comparable) */
+public final class IndexRange {
+    /** the first index in the range (inclusive) */
+    public final int from;
+    /** the index after the last index in the range (exclusive) */
+    public final int to;
+    
+    public IndexRange(int from, int to) {
+        if (from < 0 || to < from)
+            throw new IllegalArgumentException("[" + from + ", " + to + ")");
+        this.from = from;
+        this.to = to;
+    }
+    
+    
+    public int size() {
+        return to - from;
+    }
+    
+    public boolean isEmpty() {
+        return from == to;
+    }
+    
+    
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof IndexRange))
+            return false;
+        IndexRange b = (IndexRange) obj;
+        return from == b.from && to == b.to;
+    }
+    
+    @Override
+    public int hashCode() {
+        return 31 * from + to;
+    }
+    
+    @Override
+    public String toString() {
+        return "[" + from + ", " + to + ")";
+    }
+}
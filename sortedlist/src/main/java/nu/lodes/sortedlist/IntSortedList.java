@@ -0,0 +1,207 @@
+package nu.lodes.sortedlist;
+
+import java.util.Comparator;
+import java.util.ListIterator;
+
+import com.google.common.collect.Ordering;
+
+
+/** Sorted list of primitive <code>int</code> values, in natural order.
+ *
+ * Implemented as the splay tree of {@link SplaySortedList},
+ * with the value held unboxed in each node.
+ * Duplicates are held as a count in a single node.
+ *
+ * The primitive operations (<code>insert(int)</code>, <code>getInt(int)</code>,
+ * <code>floorIndex(int)</code>, <code>floorInt(int, int)</code>, ..., and the iterator's <code>nextInt()</code>)
+ * do not box. The {@link SortedList} operations on {@link Integer} are supported,
+ * and box or unbox at the call.
+ *
+ * @see SplaySortedList
+ */
+public final class IntSortedList extends PrimitiveSortedList<Integer> {
+
+    public IntSortedList() {
+        super(Integer.class);
+    }
+    
+    /** Builds a balanced tree from the values in linear time after sorting.
+     * The array is not modified. */
+    public IntSortedList(int[] values) {
+        super(Integer.class);
+        build(keys(values));
+    }
+    
+    
+    @Override
+    long toKey(Integer value) {
+        return value.longValue();
+    }
+    
+    @Override
+    Integer toValue(long key) {
+        return (int) key;
+    }
+    
+    private static long[] keys(int[] values) {
+        long[] keys = new long[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            keys[i] = values[i];
+        }
+        return keys;
+    }
+    
+    
+    /////// PRIMITIVE IMPLEMENTATION ///////
+    
+    public boolean insert(int value) {
+        return insertKey(value);
+    }
+    
+    /** Sorts the values and inserts them in order,
+     * so that each splay starts from the previously inserted value.
+     * The array is not modified. */
+    public boolean insertAll(int... values) {
+        return insertKeys(keys(values));
+    }
+    
+    public int getInt(int index) {
+        return (int) getKey(index);
+    }
+    
+    public int removeInt(int index) {
+        return (int) removeKeyAt(index);
+    }
+    
+    /** Removes one occurrence of the value.
+     * @return whether the list contained the value */
+    public boolean removeValue(int value) {
+        return removeKey(value);
+    }
+    
+    public boolean contains(int value) {
+        return containsKey(value);
+    }
+    
+    /** @return the least index of the value, or <code>-1</code> */
+    public int indexOf(int value) {
+        return indexOfKey(value);
+    }
+    
+    /** @return the greatest index of the value, or <code>-1</code> */
+    public int lastIndexOf(int value) {
+        return lastIndexOfKey(value);
+    }
+    
+    /** @see SortedList#lowerIndex(Object) */
+    public int lowerIndex(int value) {
+        return lowerKeyIndex(value);
+    }
+    
+    /** @see SortedList#floorIndex(Object) */
+    public int floorIndex(int value) {
+        return floorKeyIndex(value);
+    }
+    
+    /** @see SortedList#higherIndex(Object) */
+    public int higherIndex(int value) {
+        return higherKeyIndex(value);
+    }
+    
+    /** @see SortedList#ceilingIndex(Object) */
+    public int ceilingIndex(int value) {
+        return ceilingKeyIndex(value);
+    }
+    
+    /** Unboxed {@link SortedList#lower(Object)}, in one descent. Does not splay.
+     * @return the greatest value less than the value, or <code>absent</code> if there is none */
+    public int lowerInt(int value, int absent) {
+        Node y = floorNode(value, false);
+        return null != y ? (int) y.key : absent;
+    }
+    
+    /** Unboxed {@link SortedList#floor(Object)}, in one descent. Does not splay.
+     * @return the greatest value less than or equal to the value, or <code>absent</code> if there is none */
+    public int floorInt(int value, int absent) {
+        Node y = floorNode(value, true);
+        return null != y ? (int) y.key : absent;
+    }
+    
+    /** Unboxed {@link SortedList#higher(Object)}, in one descent. Does not splay.
+     * @return the least value greater than the value, or <code>absent</code> if there is none */
+    public int higherInt(int value, int absent) {
+        Node y = ceilingNode(value, false);
+        return null != y ? (int) y.key : absent;
+    }
+    
+    /** Unboxed {@link SortedList#ceiling(Object)}, in one descent. Does not splay.
+     * @return the least value greater than or equal to the value, or <code>absent</code> if there is none */
+    public int ceilingInt(int value, int absent) {
+        Node y = ceilingNode(value, true);
+        return null != y ? (int) y.key : absent;
+    }
+    
+    /** @return the values in order */
+    public int[] toIntArray() {
+        int[] a = new int[size()];
+        int i = 0;
+        for (IntListIterator itr = listIterator(); itr.hasNext(); ) {
+            a[i++] = itr.nextInt();
+        }
+        return a;
+    }
+    
+    
+    /////// SortedList IMPLEMENTATION ///////
+    
+    @Override
+    public Comparator<? super Integer> comparator() {
+        return Ordering.<Integer>natural();
+    }
+    
+    
+    /////// List IMPLEMENTATION ///////
+    
+    /** Walks the tree in order. Does not splay. */
+    @Override
+    public IntListIterator iterator() {
+        return new Itr(0);
+    }
+    
+    /** Walks the tree in order. Does not splay. */
+    @Override
+    public IntListIterator listIterator() {
+        return new Itr(0);
+    }
+    
+    /** Walks the tree in order. Does not splay. */
+    @Override
+    public IntListIterator listIterator(int index) {
+        return new Itr(index);
+    }
+    
+    
+    /////// INTERNAL ///////
+    
+    /** {@link ListIterator} with unboxed access. */
+    public static interface IntListIterator extends ListIterator<Integer> {
+        int nextInt();
+        int previousInt();
+    }
+    
+    private final class Itr extends KeyItr implements IntListIterator {
+        Itr(int index) {
+            super(index);
+        }
+        
+        @Override
+        public int nextInt() {
+            return (int) nextKey();
+        }
+        
+        @Override
+        public int previousInt() {
+            return (int) previousKey();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package nu.lodes.sortedlist;
+
+import java.util.Comparator;
+import java.util.ListIterator;
+
+import com.google.common.collect.Ordering;
+
+
+/** Sorted list of primitive <code>long</code> values, in natural order.
+ *
+ * Implemented as the splay tree of {@link SplaySortedList},
+ * with the value held unboxed in each node.
+ * Duplicates are held as a count in a single node.
+ *
+ * The primitive operations (<code>insert(long)</code>, <code>getLong(int)</code>,
+ * <code>floorIndex(long)</code>, <code>floorLong(long, long)</code>, ..., and the iterator's <code>nextLong()</code>)
+ * do not box. The {@link SortedList} operations on {@link Long} are supported,
+ * and box or unbox at the call.
+ *
+ * @see SplaySortedList
+ */
+public final class LongSortedList extends PrimitiveSortedList<Long> {
+
+    public LongSortedList() {
+        super(Long.class);
+    }
+    
+    /** Builds a balanced tree from the values in linear time after sorting.
+     * The array is not modified. */
+    public LongSortedList(long[] values) {
+        super(Long.class);
+        build(values.clone());
+    }
+    
+    
+    @Override
+    long toKey(Long value) {
+        return value.longValue();
+    }
+    
+    @Override
+    Long toValue(long key) {
+        return key;
+    }
+    
+    
+    /////// PRIMITIVE IMPLEMENTATION ///////
+    
+    public boolean insert(long value) {
+        return insertKey(value);
+    }
+    
+    /** Sorts the values and inserts them in order,
+     * so that each splay starts from the previously inserted value.
+     * The array is not modified. */
+    public boolean insertAll(long... values) {
+        return insertKeys(values.clone());
+    }
+    
+    public long getLong(int index) {
+        return getKey(index);
+    }
+    
+    public long removeLong(int index) {
+        return removeKeyAt(index);
+    }
+    
+    /** Removes one occurrence of the value.
+     * @return whether the list contained the value */
+    public boolean removeValue(long value) {
+        return removeKey(value);
+    }
+    
+    public boolean contains(long value) {
+        return containsKey(value);
+    }
+    
+    /** @return the least index of the value, or <code>-1</code> */
+    public int indexOf(long value) {
+        return indexOfKey(value);
+    }
+    
+    /** @return the greatest index of the value, or <code>-1</code> */
+    public int lastIndexOf(long value) {
+        return lastIndexOfKey(value);
+    }
+    
+    /** @see SortedList#lowerIndex(Object) */
+    public int lowerIndex(long value) {
+        return lowerKeyIndex(value);
+    }
+    
+    /** @see SortedList#floorIndex(Object) */
+    public int floorIndex(long value) {
+        return floorKeyIndex(value);
+    }
+    
+    /** @see SortedList#higherIndex(Object) */
+    public int higherIndex(long value) {
+        return higherKeyIndex(value);
+    }
+    
+    /** @see SortedList#ceilingIndex(Object) */
+    public int ceilingIndex(long value) {
+        return ceilingKeyIndex(value);
+    }
+    
+    /** Unboxed {@link SortedList#lower(Object)}, in one descent. Does not splay.
+     * @return the greatest value less than the value, or <code>absent</code> if there is none */
+    public long lowerLong(long value, long absent) {
+        Node y = floorNode(value, false);
+        return null != y ? y.key : absent;
+    }
+    
+    /** Unboxed {@link SortedList#floor(Object)}, in one descent. Does not splay.
+     * @return the greatest value less than or equal to the value, or <code>absent</code> if there is none */
+    public long floorLong(long value, long absent) {
+        Node y = floorNode(value, true);
+        return null != y ? y.key : absent;
+    }
+    
+    /** Unboxed {@link SortedList#higher(Object)}, in one descent. Does not splay.
+     * @return the least value greater than the value, or <code>absent</code> if there is none */
+    public long higherLong(long value, long absent) {
+        Node y = ceilingNode(value, false);
+        return null != y ? y.key : absent;
+    }
+    
+    /** Unboxed {@link SortedList#ceiling(Object)}, in one descent. Does not splay.
+     * @return the least value greater than or equal to the value, or <code>absent</code> if there is none */
+    public long ceilingLong(long value, long absent) {
+        Node y = ceilingNode(value, true);
+        return null != y ? y.key : absent;
+    }
+    
+    /** @return the values in order */
+    public long[] toLongArray() {
+        long[] a = new long[size()];
+        int i = 0;
+        for (LongListIterator itr = listIterator(); itr.hasNext(); ) {
+            a[i++] = itr.nextLong();
+        }
+        return a;
+    }
+    
+    
+    /////// SortedList IMPLEMENTATION ///////
+    
+    @Override
+    public Comparator<? super Long> comparator() {
+        return Ordering.<Long>natural();
+    }
+    
+    
+    /////// List IMPLEMENTATION ///////
+    
+    /** Walks the tree in order. Does not splay. */
+    @Override
+    public LongListIterator iterator() {
+        return new Itr(0);
+    }
+    
+    /** Walks the tree in order. Does not splay. */
+    @Override
+    public LongListIterator listIterator() {
+        return new Itr(0);
+    }
+    
+    /** Walks the tree in order. Does not splay. */
+    @Override
+    public LongListIterator listIterator(int index) {
+        return new Itr(index);
+    }
+    
+    
+    /////// INTERNAL ///////
+    
+    /** {@link ListIterator} with unboxed access. */
+    public static interface LongListIterator extends ListIterator<Long> {
+        long nextLong();
+        long previousLong();
+    }
+    
+    private final class Itr extends KeyItr implements LongListIterator {
+        Itr(int index) {
+            super(index);
+        }
+        
+        @Override
+        public long nextLong() {
+            return nextKey();
+        }
+        
+        @Override
+        public long previousLong() {
+            return previousKey();
+        }
+    }
+}
@@ -0,0 +1,782 @@
+package nu.lodes.sortedlist;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.Ordering;
+
+
+/** Write-optimized {@link SortedList}, laid out like a log-structured merge tree.
+ *
+ * Inserts go into a small sorted buffer, which becomes an immutable sorted run when it is full.
+ * The runs are kept in order of age, and compacted on a background {@link Executor}:
+ * the newest runs are merged together while the run before them is less than <code>sizeRatio</code> times
+ * their size, so the run sizes grow geometrically, and there are about
+ * <code>log<sub>sizeRatio</sub>(n / bufferSize)</code> runs.
+ * An insert is a binary search and a move of at most <code>bufferSize</code> elements in the buffer;
+ * each element is copied <code>O(sizeRatio log(n / bufferSize))</code> times by compaction, off the writing thread.
+ * If flushes outrun compaction until there are <code>maxRuns</code> runs, a flush waits for compaction.
+ * Removing an element of a run marks it dead, and compaction drops it.
+ *
+ * Reads combine the buffer and the runs. The index of a query adds up the live elements before it
+ * in each run (a binary search, and a count of the dead elements), so it is <code>O(k lg n)</code> for
+ * <code>k</code> runs. The navigation queries take the nearest of the candidates of the runs.
+ * {@link #get} narrows a window of each run around the element by those counts,
+ * in <code>O(k<sup>2</sup> lg<sup>2</sup> n)</code> at worst.
+ * {@link #compact()} merges everything into one run, for a read-heavy phase.
+ *
+ * Duplicates are held in insertion order: equal elements of an older run come first, and merges are stable.
+ * Not thread-safe, like the other lists; compaction synchronizes with the list internally.
+ * Iterators are fail-fast. Null elements are not allowed.
+ */
+public final class LsmSortedList<E> extends AbstractSortedList<E> {
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 12;
+    public static final int DEFAULT_SIZE_RATIO = 4;
+    public static final int DEFAULT_MAX_RUNS = 32;
+    /* compacts the lists that are not given an executor */
+    private static final Executor COMPACTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "sortedlist-compaction");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    /* with assertions enabled, each write checks the whole list only while it is small,
+     * since the check is linear */
+    private static final int CHECK_SIZE = 128;
+    
+    private final Comparator<? super E> comparator;
+    private final int bufferSize;
+    private final int sizeRatio;
+    private final int maxRuns;
+    private final Executor compactor;
+    
+    /* the newest elements, in order at [0, bufferCount); only the writer touches the buffer */
+    private Object[] buffer;
+    private int bufferCount = 0;
+    private int size = 0;
+    
+    /* guards the runs, and the dead elements of the runs, between the writer and compaction */
+    private final Object lock = new Object();
+    /* oldest first; replaced as a whole, so that the writer reads them without the lock */
+    private volatile Run[] runs = new Run[0];
+    private boolean compacting = false;
+    /* incremented by clear, which discards a compaction in progress */
+    private int generation = 0;
+    private final Runnable compaction = new Runnable() {
+        @Override
+        public void run() {
+            compact(false);
+        }
+    };
+    
+    
+    @SuppressWarnings("unchecked")
+    public LsmSortedList() {
+        this((Comparator<? super E>) Ordering.<Comparable<E>>natural());
+    }
+    
+    public LsmSortedList(Comparator<? super E> comparator) {
+        this(comparator, DEFAULT_BUFFER_SIZE, DEFAULT_SIZE_RATIO, DEFAULT_MAX_RUNS, COMPACTOR);
+    }
+    
+    /** @param bufferSize the number of elements inserted between flushes into a new run
+     * @param sizeRatio the least ratio of the size of a run to the size of the runs after it,
+     *                  below which compaction merges them
+     * @param maxRuns the number of runs at which a flush waits for compaction
+     * @param compactor runs compaction; a direct executor compacts on the writing thread */
+    public LsmSortedList(Comparator<? super E> comparator, int bufferSize, int sizeRatio, int maxRuns, Executor compactor) {
+        if (bufferSize < 1)
+            throw new IllegalArgumentException("" + bufferSize);
+        if (sizeRatio < 2)
+            throw new IllegalArgumentException("" + sizeRatio);
+        if (maxRuns < 2)
+            throw new IllegalArgumentException("" + maxRuns);
+        this.comparator = comparator;
+        this.bufferSize = bufferSize;
+        this.sizeRatio = sizeRatio;
+        this.maxRuns = maxRuns;
+        this.compactor = compactor;
+        buffer = new Object[bufferSize];
+    }
+    
+    /** Sorts the values into one run. */
+    @SuppressWarnings("unchecked")
+    public LsmSortedList(Collection<? extends E> values) {
+        this((Comparator<? super E>) Ordering.<Comparable<E>>natural(), values);
+    }
+    
+    /** Sorts the values into one run. */
+    @SuppressWarnings("unchecked")
+    public LsmSortedList(Comparator<? super E> comparator, Collection<? extends E> values) {
+        this(comparator);
+        Object[] a = values.toArray();
+        for (Object value : a) {
+            if (null == value) {
+                throw new NullPointerException();
+            }
+        }
+        Arrays.sort(a, (Comparator<Object>) comparator);
+        if (0 < a.length) {
+            runs = new Run[]{new Run(a)};
+        }
+        size = a.length;
+    }
+    
+    
+    
+    /////// COMPACTION ///////
+    
+    /** Flushes the buffer, and merges all the runs into one on the calling thread,
+     * after any compaction in progress. */
+    public void compact() {
+        flush();
+        synchronized (lock) {
+            while (compacting) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            compacting = true;
+        }
+        compact(true);
+    }
+    
+    /** @return the number of runs, not counting the buffer */
+    public int runCount() {
+        return runs.length;
+    }
+    
+    /** Moves the buffer into a new run, and starts compaction if the runs need it. */
+    private void flush() {
+        if (0 == bufferCount)
+            return;
+        Run run = new Run(bufferCount == buffer.length ? buffer : Arrays.copyOf(buffer, bufferCount));
+        buffer = new Object[bufferSize];
+        bufferCount = 0;
+        boolean start;
+        synchronized (lock) {
+            while (compacting && maxRuns <= runs.length) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            Run[] runs = Arrays.copyOf(this.runs, this.runs.length + 1);
+            runs[runs.length - 1] = run;
+            this.runs = runs;
+            start = !compacting && 0 <= mergeFrom(runs);
+            compacting |= start;
+        }
+        if (start) {
+            try {
+                compactor.execute(compaction);
+            } catch (RuntimeException e) {
+                synchronized (lock) {
+                    compacting = false;
+                    lock.notifyAll();
+                }
+                throw e;
+            }
+        }
+    }
+    
+    /** @return the first of the newest runs to merge together, or -1 if the sizes are in ratio */
+    private int mergeFrom(Run[] runs) {
+        int from = runs.length - 1;
+        if (from < 1)
+            return -1;
+        long size = runs[from].live();
+        while (0 < from && runs[from - 1].live() < sizeRatio * size) {
+            --from;
+            size += runs[from].live();
+        }
+        return from < runs.length - 1 ? from : -1;
+    }
+    
+    /** Merges runs until their sizes are in ratio, then ends the compaction that the caller started.
+     * @param all whether to merge all the runs first */
+    private void compact(boolean all) {
+        try {
+            for (;;) {
+                Run[] sources;
+                long[][] dead;
+                int from;
+                int generation;
+                synchronized (lock) {
+                    Run[] runs = this.runs;
+                    from = mergeFrom(runs);
+                    if (all && 0 < runs.length && (1 < runs.length || 0 < runs[0].deadCount)) {
+                        from = 0;
+                    }
+                    all = false;
+                    if (from < 0)
+                        return;
+                    sources = Arrays.copyOfRange(runs, from, runs.length);
+                    dead = new long[sources.length][];
+                    for (int s = 0; s < sources.length; ++s) {
+                        dead[s] = null != sources[s].dead ? sources[s].dead.clone() : null;
+                    }
+                    generation = this.generation;
+                }
+                
+                int[][] positions = new int[sources.length][];
+                Run merged = merge(sources, dead, positions);
+                
+                synchronized (lock) {
+                    if (generation == this.generation) {
+                        // carry over the elements removed during the merge
+                        for (int s = 0; s < sources.length; ++s) {
+                            long[] now = sources[s].dead;
+                            for (int w = 0; null != now && w < now.length; ++w) {
+                                for (long bits = now[w] & ~(null != dead[s] ? dead[s][w] : 0L); 0L != bits; bits &= bits - 1) {
+                                    merged.kill(positions[s][w << 6 | Long.numberOfTrailingZeros(bits)]);
+                                }
+                            }
+                        }
+                        Run[] runs = this.runs;
+                        int to = from + sources.length;
+                        int m = 0 < merged.live() ? 1 : 0;
+                        Run[] compacted = new Run[runs.length - sources.length + m];
+                        System.arraycopy(runs, 0, compacted, 0, from);
+                        if (0 < m) {
+                            compacted[from] = merged;
+                        }
+                        System.arraycopy(runs, to, compacted, from + m, runs.length - to);
+                        this.runs = compacted;
+                    }
+                    lock.notifyAll();
+                }
+            }
+        } finally {
+            synchronized (lock) {
+                compacting = false;
+                lock.notifyAll();
+            }
+        }
+    }
+    
+    /** @return the live elements of the runs as of the dead bits <code>dead</code>, merged stably, in a new run;
+     * <code>positions[s][p]</code> is set to the position of <code>runs[s].values[p]</code> in it, or -1 */
+    @SuppressWarnings("unchecked")
+    private Run merge(Run[] runs, long[][] dead, int[][] positions) {
+        int count = 0;
+        for (int s = 0; s < runs.length; ++s) {
+            count += runs[s].values.length;
+            positions[s] = new int[runs[s].values.length];
+            for (int w = 0; null != dead[s] && w < dead[s].length; ++w) {
+                count -= Long.bitCount(dead[s][w]);
+            }
+        }
+        Object[] merged = new Object[count];
+        int[] next = new int[runs.length];
+        for (int i = 0; i < count; ++i) {
+            int best = -1;
+            E min = null;
+            for (int s = 0; s < runs.length; ++s) {
+                Object[] values = runs[s].values;
+                int p = next[s];
+                while (p < values.length && null != dead[s] && 0L != (dead[s][p >>> 6] & 1L << p)) {
+                    positions[s][p++] = -1;
+                }
+                next[s] = p;
+                // (ties go to the older run)
+                if (p < values.length && (best < 0 || comparator.compare((E) values[p], min) < 0)) {
+                    best = s;
+                    min = (E) values[p];
+                }
+            }
+            merged[i] = min;
+            positions[best][next[best]++] = i;
+        }
+        for (int s = 0; s < runs.length; ++s) {
+            Arrays.fill(positions[s], next[s], positions[s].length, -1);
+        }
+        return new Run(merged);
+    }
+    
+    
+    /////// SOURCES ///////
+    
+    /* the sources of the elements are the runs, oldest first, then the buffer, at runs.length */
+    
+    private Object[] values(Run[] runs, int s) {
+        return s < runs.length ? runs[s].values : buffer;
+    }
+    
+    private int length(Run[] runs, int s) {
+        return s < runs.length ? runs[s].values.length : bufferCount;
+    }
+    
+    /** @return the number of live elements of the source before the position */
+    private static int live(Run[] runs, int s, int p) {
+        return s < runs.length ? p - runs[s].deadBefore(p) : p;
+    }
+    
+    private static boolean isDead(Run[] runs, int s, int p) {
+        return s < runs.length && runs[s].isDead(p);
+    }
+    
+    /** @return the first live position of the source in <code>[p, to)</code>, or <code>to</code> */
+    private static int nextLive(Run[] runs, int s, int p, int to) {
+        while (p < to && isDead(runs, s, p)) {
+            ++p;
+        }
+        return p;
+    }
+    
+    /** @return the last live position of the source in <code>[from, p]</code>, or <code>from - 1</code> */
+    private static int previousLive(Run[] runs, int s, int p, int from) {
+        while (from <= p && isDead(runs, s, p)) {
+            --p;
+        }
+        return p;
+    }
+    
+    /** @return if <code>upper</code>, the first position in <code>[from, to)</code> of an element greater than the query,
+     * otherwise of an element not less than it; <code>to</code> if there is none.
+     * The query is <code>q</code> if not <code>null</code>, otherwise <code>value</code> by the comparator. */
+    @SuppressWarnings("unchecked")
+    private int bound(Object[] values, int from, int to, @Nullable Comparable<? super E> q, @Nullable E value, boolean upper) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            int c = null != q ? q.compareTo((E) values[mid]) : comparator.compare(value, (E) values[mid]);
+            if (c < 0 || 0 == c && !upper) {
+                to = mid;
+            } else {
+                from = mid + 1;
+            }
+        }
+        return from;
+    }
+    
+    /** @return the number of live elements less than (or not greater than, if <code>upper</code>) the query */
+    private int index(@Nullable Comparable<? super E> q, @Nullable E value, boolean upper) {
+        Run[] runs = this.runs;
+        int index = 0;
+        for (int s = 0; s <= runs.length; ++s) {
+            index += live(runs, s, bound(values(runs, s), 0, length(runs, s), q, value, upper));
+        }
+        return index;
+    }
+    
+    /** Finds the element at the index, and sets <code>found[0]</code> to its source and <code>found[1]</code> to its position.
+     * A candidate in the middle of the largest window counts the live elements before it in every source,
+     * within their windows, which then shrink to the side of the candidate that holds the element. */
+    @SuppressWarnings("unchecked")
+    private E select(Run[] runs, int index, int[] found) {
+        if (index < 0 || size <= index)
+            throw new IndexOutOfBoundsException(String.format("%d of %d", index, size));
+        int k = runs.length + 1;
+        int[] from = new int[k];
+        int[] to = new int[k];
+        int[] bounds = new int[k];
+        for (int s = 0; s < k; ++s) {
+            to[s] = length(runs, s);
+        }
+        for (;;) {
+            int j = 0;
+            for (int s = 1; s < k; ++s) {
+                if (to[j] - from[j] < to[s] - from[s]) {
+                    j = s;
+                }
+            }
+            if (to[j] <= from[j])
+                throw new ConcurrentModificationException();
+            int p = (from[j] + to[j]) >>> 1;
+            E x = (E) values(runs, j)[p];
+            // the live elements before (j, p): the equal elements of older sources come first
+            int count = live(runs, j, p);
+            for (int s = 0; s < k; ++s) {
+                if (s != j) {
+                    bounds[s] = bound(values(runs, s), from[s], to[s], null, x, s < j);
+                    count += live(runs, s, bounds[s]);
+                }
+            }
+            if (count == index && !isDead(runs, j, p)) {
+                found[0] = j;
+                found[1] = p;
+                return x;
+            }
+            if (count <= index) {
+                bounds[j] = p + 1;
+                System.arraycopy(bounds, 0, from, 0, k);
+            } else {
+                bounds[j] = p;
+                System.arraycopy(bounds, 0, to, 0, k);
+            }
+        }
+    }
+    
+    
+    /////// SortedList IMPLEMENTATION ///////
+    
+    @Override
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+    
+    @Override
+    public int lowerIndex(Comparable<? super E> q) {
+        return index(q, null, false) - 1;
+    }
+    
+    @Override
+    public int higherIndex(Comparable<? super E> q) {
+        return index(q, null, true);
+    }
+    
+    /* the element navigations take the nearest candidate of the sources:
+     * among equal candidates, the first in the list is in the oldest source */
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public @Nullable E lower(Comparable<? super E> q) {
+        Run[] runs = this.runs;
+        E lower = null;
+        for (int s = 0; s <= runs.length; ++s) {
+            int p = previousLive(runs, s, bound(values(runs, s), 0, length(runs, s), q, null, false) - 1, 0);
+            if (0 <= p && (null == lower || comparator.compare(lower, (E) values(runs, s)[p]) <= 0)) {
+                lower = (E) values(runs, s)[p];
+            }
+        }
+        return lower;
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public @Nullable E floor(Comparable<? super E> q) {
+        Run[] runs = this.runs;
+        for (int s = 0; s <= runs.length; ++s) {
+            Object[] values = values(runs, s);
+            int length = length(runs, s);
+            int lo = bound(values, 0, length, q, null, false);
+            int p = nextLive(runs, s, lo, bound(values, lo, length, q, null, true));
+            if (p < length && 0 == q.compareTo((E) values[p])) {
+                return (E) values[p];
+            }
+        }
+        return lower(q);
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public @Nullable E higher(Comparable<? super E> q) {
+        Run[] runs = this.runs;
+        E higher = null;
+        for (int s = 0; s <= runs.length; ++s) {
+            int length = length(runs, s);
+            int p = nextLive(runs, s, bound(values(runs, s), 0, length, q, null, true), length);
+            if (p < length && (null == higher || comparator.compare((E) values(runs, s)[p], higher) < 0)) {
+                higher = (E) values(runs, s)[p];
+            }
+        }
+        return higher;
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public @Nullable E ceiling(Comparable<? super E> q) {
+        Run[] runs = this.runs;
+        for (int s = runs.length; 0 <= s; --s) {
+            Object[] values = values(runs, s);
+            int hi = bound(values, 0, length(runs, s), q, null, true);
+            int p = previousLive(runs, s, hi - 1, bound(values, 0, hi, q, null, false));
+            if (0 <= p && 0 == q.compareTo((E) values[p])) {
+                return (E) values[p];
+            }
+        }
+        return higher(q);
+    }
+    
+    
+    /////// SortedList INSERTION IMPLEMENTATION ///////
+    
+    @Override
+    public boolean insert(E value) {
+        if (null == value) {
+            throw new NullPointerException();
+        }
+        
+        try {
+            int p = bound(buffer, 0, bufferCount, null, value, true);
+            System.arraycopy(buffer, p, buffer, p + 1, bufferCount - p);
+            buffer[p] = value;
+            ++bufferCount;
+            ++size;
+            ++modCount;
+            if (bufferSize == bufferCount) {
+                flush();
+            }
+            return true;
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    
+    /////// List IMPLEMENTATION ///////
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    @Override
+    public E get(int index) {
+        return select(runs, index, new int[2]);
+    }
+    
+    @Override
+    public E remove(int index) {
+        try {
+            synchronized (lock) {
+                Run[] runs = this.runs;
+                int[] found = new int[2];
+                E value = select(runs, index, found);
+                removeAt(runs, found[0], found[1]);
+                return value;
+            }
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    /** Removes an element that <code>equals</code> the value if there is one,
+     * otherwise the first element equal to the value by the comparator. */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object value) {
+        if (null == value) {
+            throw new NullPointerException();
+        }
+        
+        try {
+            synchronized (lock) {
+                Run[] runs = this.runs;
+                int first = -1;
+                int firstP = -1;
+                for (int s = 0; s <= runs.length; ++s) {
+                    Object[] values = values(runs, s);
+                    int length = length(runs, s);
+                    int lo = bound(values, 0, length, null, (E) value, false);
+                    int hi = bound(values, lo, length, null, (E) value, true);
+                    for (int p = nextLive(runs, s, lo, hi); p < hi; p = nextLive(runs, s, p + 1, hi)) {
+                        if (value.equals(values[p])) {
+                            removeAt(runs, s, p);
+                            return true;
+                        }
+                        if (first < 0) {
+                            first = s;
+                            firstP = p;
+                        }
+                    }
+                }
+                if (first < 0)
+                    return false;
+                removeAt(runs, first, firstP);
+                return true;
+            }
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    /** Removes the live element at the position of the source, with the lock held. */
+    private void removeAt(Run[] runs, int s, int p) {
+        if (s < runs.length) {
+            runs[s].kill(p);
+        } else {
+            System.arraycopy(buffer, p + 1, buffer, p, bufferCount - p - 1);
+            buffer[--bufferCount] = null;
+        }
+        --size;
+        ++modCount;
+    }
+    
+    @Override
+    public void clear() {
+        buffer = new Object[bufferSize];
+        bufferCount = 0;
+        size = 0;
+        ++modCount;
+        synchronized (lock) {
+            runs = new Run[0];
+            ++generation;
+        }
+    }
+    
+    
+    /////// ITERATION ///////
+    
+    /** Merges the sources. Fail-fast. */
+    @Override
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+    
+    @Override
+    public Spliterator<E> spliterator() {
+        return Spliterators.spliterator(iterator(), size, Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+    
+    
+    /////// INVARIANTS ///////
+    
+    /** Checks the invariants if the list is small: the order of the buffer and of each run,
+     * the counts of the dead elements, and the size.
+     * @throws IllegalStateException if an invariant does not hold */
+    @SuppressWarnings("unchecked")
+    public boolean checkInvariants() {
+        if (CHECK_SIZE <= size)
+            return true;
+        Run[] runs = this.runs;
+        int count = 0;
+        for (int s = 0; s <= runs.length; ++s) {
+            Object[] values = values(runs, s);
+            int length = length(runs, s);
+            for (int p = 0; p < length; ++p) {
+                if (0 < p && 0 < comparator.compare((E) values[p - 1], (E) values[p]))
+                    throw new IllegalStateException(String.format("%s before %s in source %d", values[p - 1], values[p], s));
+                if (live(runs, s, p) + (isDead(runs, s, p) ? 0 : 1) != live(runs, s, p + 1))
+                    throw new IllegalStateException(String.format("dead count at %d in source %d", p, s));
+            }
+            count += live(runs, s, length);
+        }
+        if (size != count)
+            throw new IllegalStateException(String.format("size %d <> %d", size, count));
+        return true;
+    }
+    
+    
+    /////// INTERNAL ///////
+    
+    /** A sorted array of elements, some of which may be dead. */
+    private static final class Run {
+        final Object[] values;
+        /* bit p is set if values[p] has been removed; null while there are none */
+        @Nullable long[] dead = null;
+        /* Fenwick tree of the number of dead bits in each word of dead, from 1 */
+        @Nullable int[] deadCounts = null;
+        int deadCount = 0;
+        
+        Run(Object[] values) {
+            this.values = values;
+        }
+        
+        int live() {
+            return values.length - deadCount;
+        }
+        
+        boolean isDead(int p) {
+            return null != dead && 0L != (dead[p >>> 6] & 1L << p);
+        }
+        
+        /** @return the number of dead elements before the position */
+        int deadBefore(int p) {
+            if (0 == deadCount)
+                return 0;
+            int w = p >>> 6;
+            int count = w < dead.length ? Long.bitCount(dead[w] & (1L << p) - 1) : 0;
+            for (int i = w; 0 < i; i -= i & -i) {
+                count += deadCounts[i];
+            }
+            return count;
+        }
+        
+        void kill(int p) {
+            if (null == dead) {
+                dead = new long[(values.length + 63) >>> 6];
+                deadCounts = new int[dead.length + 1];
+            }
+            assert !isDead(p);
+            dead[p >>> 6] |= 1L << p;
+            for (int i = (p >>> 6) + 1; i < deadCounts.length; i += i & -i) {
+                ++deadCounts[i];
+            }
+            ++deadCount;
+        }
+    }
+    
+    private final class Itr implements Iterator<E> {
+        final Run[] runs = LsmSortedList.this.runs;
+        final Object[] buffer = LsmSortedList.this.buffer;
+        /* the next position of each source, or past its end */
+        final int[] next = new int[runs.length + 1];
+        /* the index of the next element */
+        int index = 0;
+        /* the source of the last element, or -1 */
+        int last = -1;
+        int expectedModCount = modCount;
+        
+        Itr() {
+            for (int s = 0; s <= runs.length; ++s) {
+                next[s] = nextLive(runs, s, 0, length(s));
+            }
+        }
+        
+        private int length(int s) {
+            return s < runs.length ? runs[s].values.length : bufferCount;
+        }
+        
+        private Object[] values(int s) {
+            return s < runs.length ? runs[s].values : buffer;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return index < size;
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (size <= index)
+                throw new NoSuchElementException();
+            int j = -1;
+            for (int s = 0; s <= runs.length; ++s) {
+                if (next[s] < length(s) && (j < 0 || comparator.compare((E) values(s)[next[s]], (E) values(j)[next[j]]) < 0)) {
+                    j = s;
+                }
+            }
+            E value = (E) values(j)[next[j]];
+            next[j] = nextLive(runs, j, next[j] + 1, length(j));
+            ++index;
+            last = j;
+            return value;
+        }
+        
+        @Override
+        public void remove() {
+            if (last < 0)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            LsmSortedList.this.remove(--index);
+            if (runs.length == last) {
+                --next[last];
+            }
+            last = -1;
+            expectedModCount = modCount;
+        }
+    }
+}
@@ -0,0 +1,995 @@
+package nu.lodes.sortedlist;
+
+import java.io.Closeable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.Ordering;
+
+
+/** Sorted list of primitive <code>long</code> keys, in natural order,
+ * held outside of the Java heap, with an optional fixed-width payload per key.
+ *
+ * Implemented as the splay tree of {@link SplaySortedList}, with the nodes
+ * held in direct {@link ByteBuffer} chunks. A node is a slot index, and the
+ * key, child links, sub-tree count and payload are at a fixed offset in its chunk.
+ * The list grows a chunk at a time (existing chunks are never copied),
+ * and removed slots are reused through a free list.
+ * The heap footprint is the chunk table, regardless of size.
+ *
+ * Duplicate keys are held as separate nodes, in insertion order,
+ * since each has its own payload.
+ *
+ * {@link #close} frees the memory at once, through the cleaner of the direct buffers
+ * (<code>sun.misc.Unsafe.invokeCleaner</code> on JDK 9 and later, <code>DirectBuffer.cleaner()</code> on JDK 8),
+ * and {@link #clear} frees all the chunks but the first. After closing, operations throw
+ * {@link IllegalStateException}. If the list is not closed, the memory is
+ * released when the chunks are garbage collected, as it is if the JVM has neither cleaner,
+ * in which case {@link #close} and {@link #clear} throw {@link UnsupportedOperationException}.
+ *
+ * @see SplaySortedList
+ * @see LongSortedList
+ */
+public final class OffHeapLongSortedList extends AbstractSortedList<Long> implements Closeable {
+
+    private static final int DEFAULT_CHUNK_SHIFT = 14;
+    
+    /* frees a direct buffer: on JDK 9 and later, sun.misc.Unsafe.invokeCleaner(buffer) with CLEANER null;
+     * on JDK 8, CLEANER is sun.nio.ch.DirectBuffer.cleaner() and CLEAN is sun.misc.Cleaner.clean().
+     * null if neither is available, with the reason in CLEAN_FAILURE */
+    private static final @Nullable Method CLEAN;
+    private static final @Nullable Method CLEANER;
+    private static final @Nullable Object UNSAFE;
+    private static final @Nullable Exception CLEAN_FAILURE;
+    static {
+        Method clean = null;
+        Method cleaner = null;
+        Object unsafe = null;
+        Exception failure = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            try {
+                clean = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                unsafe = theUnsafe.get(null);
+            } catch (NoSuchMethodException e) {
+                // JDK 8
+                cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+                clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            }
+        } catch (Exception e) {
+            clean = null;
+            cleaner = null;
+            failure = e;
+        }
+        CLEAN = clean;
+        CLEANER = cleaner;
+        UNSAFE = unsafe;
+        CLEAN_FAILURE = failure;
+    }
+    
+    /* the null slot. Has a count of 0 so that sub-tree counts can be read without a null check */
+    private static final int NIL = 0;
+    /* for splaying */
+    private static final int HEADER = 1;
+    
+    /* node layout */
+    private static final int KEY = 0;
+    private static final int LEFT = 8;
+    /** also links the free list */
+    private static final int RIGHT = 12;
+    private static final int COUNT = 16;
+    private static final int PAYLOAD = 20;
+    
+    private final int payloadWidth;
+    private final int nodeWidth;
+    private final int chunkShift;
+    private final int chunkMask;
+    
+    /* null when closed */
+    private ByteBuffer[] chunks;
+    private int chunkCount = 0;
+    private int root = NIL;
+    
+    /* slots [limit, capacity) have never been used */
+    private int limit = HEADER + 1;
+    /* head of the list of released slots, linked by right */
+    private int free = NIL;
+    
+    /* incremented each time the tree is restructured without a change in size (splaying),
+     * so that iterators know to re-seek their path */
+    private int shapeCount = 0;
+    
+    
+    public OffHeapLongSortedList() {
+        this(0);
+    }
+    
+    /** @param payloadWidth the number of payload bytes held with each key */
+    public OffHeapLongSortedList(int payloadWidth) {
+        this(payloadWidth, DEFAULT_CHUNK_SHIFT);
+    }
+    
+    /** @param payloadWidth the number of payload bytes held with each key
+     * @param chunkShift each chunk holds <code>2<sup>chunkShift</sup></code> nodes */
+    public OffHeapLongSortedList(int payloadWidth, int chunkShift) {
+        if (payloadWidth < 0)
+            throw new IllegalArgumentException("" + payloadWidth);
+        if (chunkShift < 1 || 30 < chunkShift)
+            throw new IllegalArgumentException("" + chunkShift);
+        this.payloadWidth = payloadWidth;
+        // 8-byte aligned
+        nodeWidth = (PAYLOAD + payloadWidth + 7) & ~7;
+        if ((long) nodeWidth << chunkShift > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Chunk too large: " + nodeWidth + " << " + chunkShift);
+        this.chunkShift = chunkShift;
+        chunkMask = (1 << chunkShift) - 1;
+        chunks = new ByteBuffer[4];
+        addChunk();
+    }
+    
+    
+    /////// MEMORY ///////
+    
+    public int payloadWidth() {
+        return payloadWidth;
+    }
+    
+    /** @return the number of bytes of direct memory held */
+    public long allocatedBytes() {
+        return (long) chunkCount * nodeWidth << chunkShift;
+    }
+    
+    /** Frees the direct memory now. Idempotent.
+     * @throws UnsupportedOperationException if the JVM does not allow direct memory to be freed explicitly;
+     *         the list is closed anyway, and the memory is released when the chunks are collected */
+    @Override
+    public void close() {
+        if (null == chunks)
+            return;
+        ByteBuffer[] closed = chunks;
+        int count = chunkCount;
+        chunks = null;
+        chunkCount = 0;
+        root = NIL;
+        ++modCount;
+        clean(closed, 0, count);
+    }
+    
+    private void checkOpen() {
+        if (null == chunks)
+            throw new IllegalStateException("Closed");
+    }
+    
+    private void addChunk() {
+        if (chunks.length == chunkCount) {
+            chunks = Arrays.copyOf(chunks, 2 * chunkCount);
+        }
+        chunks[chunkCount++] = ByteBuffer.allocateDirect(nodeWidth << chunkShift).order(ByteOrder.nativeOrder());
+    }
+    
+    /** Frees the direct buffers now rather than when they are collected.
+     * Frees every buffer before it throws.
+     * @throws UnsupportedOperationException if the JVM does not allow it; 
+     *         the buffers it could not free are freed when they are collected */
+    private static void clean(ByteBuffer[] buffers, int from, int to) {
+        RuntimeException failure = null;
+        for (int i = from; i < to; ++i) {
+            try {
+                if (null == CLEAN)
+                    throw new UnsupportedOperationException("Cannot free direct buffers on this JVM", CLEAN_FAILURE);
+                if (null == CLEANER) {
+                    CLEAN.invoke(UNSAFE, buffers[i]);
+                } else {
+                    Object cleaner = CLEANER.invoke(buffers[i]);
+                    if (null != cleaner) {
+                        CLEAN.invoke(cleaner);
+                    }
+                }
+            } catch (RuntimeException e) {
+                failure = null != failure ? failure : e;
+            } catch (Exception e) {
+                failure = null != failure ? failure : new UnsupportedOperationException("Cannot free a direct buffer", e);
+            }
+            buffers[i] = null;
+        }
+        if (null != failure)
+            throw failure;
+    }
+    
+    /** @return a new node holding the key and <code>payloadWidth</code> bytes from the payload.
+     * If the payload is <code>null</code>, the node payload is zeros. */
+    private int alloc(long key, ByteBuffer payload) {
+        int x;
+        if (NIL != free) {
+            x = free;
+            free = right(x);
+        } else {
+            if (chunkCount << chunkShift == limit) {
+                addChunk();
+            }
+            x = limit++;
+        }
+        ByteBuffer b = chunks[x >>> chunkShift];
+        int o = (x & chunkMask) * nodeWidth;
+        b.putLong(o + KEY, key);
+        b.putInt(o + LEFT, NIL);
+        b.putInt(o + RIGHT, NIL);
+        b.putInt(o + COUNT, 1);
+        if (null != payload) {
+            for (int i = 0; i < payloadWidth; ++i) {
+                b.put(o + PAYLOAD + i, payload.get());
+            }
+        } else {
+            for (int i = 0; i < payloadWidth; ++i) {
+                b.put(o + PAYLOAD + i, (byte) 0);
+            }
+        }
+        return x;
+    }
+    
+    /** Adds the node to the free list. */
+    private void release(int x) {
+        setLeft(x, NIL);
+        setRight(x, free);
+        setCount(x, 0);
+        free = x;
+    }
+    
+    private long key(int x) {
+        return chunks[x >>> chunkShift].getLong((x & chunkMask) * nodeWidth + KEY);
+    }
+    private int left(int x) {
+        return chunks[x >>> chunkShift].getInt((x & chunkMask) * nodeWidth + LEFT);
+    }
+    private void setLeft(int x, int y) {
+        chunks[x >>> chunkShift].putInt((x & chunkMask) * nodeWidth + LEFT, y);
+    }
+    private int right(int x) {
+        return chunks[x >>> chunkShift].getInt((x & chunkMask) * nodeWidth + RIGHT);
+    }
+    private void setRight(int x, int y) {
+        chunks[x >>> chunkShift].putInt((x & chunkMask) * nodeWidth + RIGHT, y);
+    }
+    private int count(int x) {
+        return chunks[x >>> chunkShift].getInt((x & chunkMask) * nodeWidth + COUNT);
+    }
+    private void setCount(int x, int c) {
+        chunks[x >>> chunkShift].putInt((x & chunkMask) * nodeWidth + COUNT, c);
+    }
+    /** Copies the payload of the node into <code>dst</code>, advancing its position. */
+    private void payload(int x, ByteBuffer dst) {
+        ByteBuffer b = chunks[x >>> chunkShift];
+        int o = (x & chunkMask) * nodeWidth + PAYLOAD;
+        for (int i = 0; i < payloadWidth; ++i) {
+            dst.put(b.get(o + i));
+        }
+    }
+    
+    
+    /** Does not splay.
+     * @return if <code>upper</code>, the number of keys <code>&lt;= key</code>,
+     * otherwise the number of keys <code>&lt; key</code> */
+    private int bound(long key, boolean upper) {
+        checkOpen();
+        int index = 0;
+        for (int y = root; NIL != y; ) {
+            long k = key(y);
+            if (key < k || key == k && !upper) {
+                y = left(y);
+            } else {
+                index += 1 + count(left(y));
+                y = right(y);
+            }
+        }
+        return index;
+    }
+    
+    /** Does not splay.
+     * @see PrimitiveSortedList#bound */
+    private int bound(Comparable<? super Long> q, boolean upper) {
+        checkOpen();
+        int index = 0;
+        for (int y = root; NIL != y; ) {
+            int c = q.compareTo(key(y));
+            if (c < 0 || 0 == c && !upper) {
+                y = left(y);
+            } else {
+                index += 1 + count(left(y));
+                y = right(y);
+            }
+        }
+        return index;
+    }
+    
+    
+    /////// SPLAYING ///////
+    
+    /** Splays the last node on the search path for the position after all keys <code>&lt;= key</code>.
+     * The new root is adjacent to that position. */
+    private void splayKey(long key) {
+        ++shapeCount;
+        int l, r, t, y;
+        l = r = HEADER;
+        t = root;
+        setLeft(HEADER, NIL);
+        setRight(HEADER, NIL);
+        for (;;) {
+            if (key < key(t)) {
+                if (NIL == left(t))
+                    break;
+                if (key < key(left(t))) {
+                    // rotate right + preserve counts
+                    y = left(t);
+                    setLeft(t, right(y));
+                    setRight(y, t);
+                    
+                    setCount(y, count(y) + 1 + count(right(t)));
+                    setCount(t, count(t) - 1 - count(left(y)));
+                    
+                    t = y;
+                    if (NIL == left(t))
+                        break;
+                }
+                
+                // link right
+                setLeft(r, t);
+                r = t;
+                t = left(t);
+            } else {
+                if (NIL == right(t))
+                    break;
+                if (key(right(t)) <= key) {
+                    // rotate left + preserve counts
+                    y = right(t);
+                    setRight(t, left(y));
+                    setLeft(y, t);
+                    
+                    setCount(y, count(y) + 1 + count(left(t)));
+                    setCount(t, count(t) - 1 - count(right(y)));
+                    
+                    t = y;
+                    if (NIL == right(t))
+                        break;
+                }
+                
+                // link left
+                setRight(l, t);
+                l = t;
+                t = right(t);
+            }
+        }
+        
+        assemble(l, r, t);
+    }
+    private void splay(int index) {
+        ++shapeCount;
+        int l, r, t, y;
+        l = r = HEADER;
+        t = root;
+        setLeft(HEADER, NIL);
+        setRight(HEADER, NIL);
+        for (int c; ; ) {
+            c = index - count(left(t));
+            if (c < 0) {
+                if (NIL == left(t))
+                    break;
+                if (index - count(left(left(t))) < 0) {
+                    // rotate right + preserve counts
+                    y = left(t);
+                    setLeft(t, right(y));
+                    setRight(y, t);
+                    
+                    setCount(y, count(y) + 1 + count(right(t)));
+                    setCount(t, count(t) - 1 - count(left(y)));
+                    
+                    t = y;
+                    if (NIL == left(t))
+                        break;
+                }
+                
+                // link right
+                setLeft(r, t);
+                r = t;
+                t = left(t);
+            } else if (0 == c) {
+                break;
+            } else {
+                index = c - 1;
+                if (NIL == right(t))
+                    break;
+                if (1 <= index - count(left(right(t)))) {
+                    index -= 1 + count(left(right(t)));
+                    
+                    // rotate left + preserve counts
+                    y = right(t);
+                    setRight(t, left(y));
+                    setLeft(y, t);
+                    
+                    setCount(y, count(y) + 1 + count(left(t)));
+                    setCount(t, count(t) - 1 - count(right(y)));
+                    
+                    t = y;
+                    if (NIL == right(t))
+                        break;
+                }
+                
+                // link left
+                setRight(l, t);
+                l = t;
+                t = right(t);
+            }
+        }
+        
+        assemble(l, r, t);
+    }
+    /** assemble + reset counts */
+    private void assemble(int l, int r, int t) {
+        setRight(l, left(t));
+        setLeft(r, right(t));
+        setLeft(t, right(HEADER));
+        setRight(t, left(HEADER));
+        
+        resetLrCounts(t, l, r);
+        setCount(t, 1 + count(left(t)) + count(right(t)));
+        
+        root = t;
+    }
+    /** @see SplaySortedList#resetLrCounts */
+    private void resetLrCounts(int x, int l, int r) {
+        int y;
+        int c;
+        
+        // reset counts on left
+        if (HEADER != l) {
+            c = count(right(l));
+            for (y = left(x); ; y = right(y)) {
+                c += 1 + count(left(y));
+                if (l == y)
+                    break;
+            }
+            for (y = left(x); ; y = right(y)) {
+                setCount(y, c);
+                if (l == y)
+                    break;
+                c -= 1 + count(left(y));
+            }
+        }
+        
+        // reset counts on right
+        if (HEADER != r) {
+            c = count(left(r));
+            for (y = right(x); ; y = left(y)) {
+                c += 1 + count(right(y));
+                if (r == y)
+                    break;
+            }
+            for (y = right(x); ; y = left(y)) {
+                setCount(y, c);
+                if (r == y)
+                    break;
+                c -= 1 + count(right(y));
+            }
+        }
+    }
+    
+    
+    /////// PRIMITIVE IMPLEMENTATION ///////
+    
+    /** Inserts the key after any equal keys, with a zero payload. */
+    public boolean insert(long key) {
+        return insert(key, null);
+    }
+    
+    /** Inserts the key after any equal keys.
+     * @param payload <code>payloadWidth</code> bytes are read from the position, which is advanced.
+     *     If <code>null</code>, the payload is zeros. */
+    public boolean insert(long key, @Nullable ByteBuffer payload) {
+        checkOpen();
+        if (null != payload && payload.remaining() < payloadWidth)
+            throw new IllegalArgumentException("Payload has " + payload.remaining() + " < " + payloadWidth + " bytes");
+        
+        try {
+            if (NIL == root) {
+                root = alloc(key, payload);
+                ++modCount;
+                return true;
+            }
+            
+            splayKey(key);
+            int x = alloc(key, payload);
+            setCount(x, 1 + count(root));
+            if (key < key(root)) {
+                setRight(x, root);
+                int y = left(root);
+                if (NIL != y) {
+                    setCount(root, count(root) - count(y));
+                    setLeft(x, y);
+                    setLeft(root, NIL);
+                }
+            } else {
+                setLeft(x, root);
+                int y = right(root);
+                if (NIL != y) {
+                    setCount(root, count(root) - count(y));
+                    setRight(x, y);
+                    setRight(root, NIL);
+                }
+            }
+            root = x;
+            ++modCount;
+            
+            return true;
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    public long getLong(int index) {
+        checkIndex(index);
+        try {
+            splay(index);
+            return key(root);
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    /** Copies the payload at the index into <code>dst</code>, advancing its position. */
+    public void getPayload(int index, ByteBuffer dst) {
+        checkIndex(index);
+        if (dst.remaining() < payloadWidth)
+            throw new IllegalArgumentException("Destination has " + dst.remaining() + " < " + payloadWidth + " bytes");
+        try {
+            splay(index);
+            payload(root, dst);
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    public long removeLong(int index) {
+        checkIndex(index);
+        try {
+            splay(index);
+            int x = root;
+            long key = key(x);
+            if (NIL == left(x)) {
+                root = right(x);
+            } else {
+                int t = right(x);
+                root = left(x);
+                splay(index);
+                setRight(root, t);
+                setCount(root, count(root) + count(t));
+            }
+            release(x);
+            ++modCount;
+            
+            return key;
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    private void checkIndex(int index) {
+        checkOpen();
+        if (index < 0 || count(root) <= index)
+            throw new IndexOutOfBoundsException("" + index);
+    }
+    
+    public boolean contains(long key) {
+        return 0 <= indexOf(key);
+    }
+    
+    /** @return the least index of the key, or <code>-1</code> */
+    public int indexOf(long key) {
+        int i = bound(key, false);
+        return i < bound(key, true) ? i : -1;
+    }
+    
+    /** @return the greatest index of the key, or <code>-1</code> */
+    public int lastIndexOf(long key) {
+        int i = bound(key, true);
+        return bound(key, false) < i ? i - 1 : -1;
+    }
+    
+    /** @see SortedList#lowerIndex(Object) */
+    public int lowerIndex(long key) {
+        return bound(key, false) - 1;
+    }
+    
+    /** @see SortedList#floorIndex(Object) */
+    public int floorIndex(long key) {
+        int i = bound(key, false);
+        return i < bound(key, true) ? i : i - 1;
+    }
+    
+    /** @see SortedList#higherIndex(Object) */
+    public int higherIndex(long key) {
+        return bound(key, true);
+    }
+    
+    /** @see SortedList#ceilingIndex(Object) */
+    public int ceilingIndex(long key) {
+        int i = bound(key, true);
+        return bound(key, false) < i ? i - 1 : i;
+    }
+    
+    
+    /////// SortedList IMPLEMENTATION ///////
+    
+    @Override
+    public Comparator<? super Long> comparator() {
+        return Ordering.<Long>natural();
+    }
+    
+    @Override
+    public int lowerIndex(Long key) {
+        return lowerIndex(key.longValue());
+    }
+    
+    @Override
+    public int lowerIndex(Comparable<? super Long> q) {
+        return bound(q, false) - 1;
+    }
+    
+    @Override
+    public int floorIndex(Long key) {
+        return floorIndex(key.longValue());
+    }
+    
+    @Override
+    public int higherIndex(Long key) {
+        return higherIndex(key.longValue());
+    }
+    
+    @Override
+    public int higherIndex(Comparable<? super Long> q) {
+        return bound(q, true);
+    }
+    
+    @Override
+    public int ceilingIndex(Long key) {
+        return ceilingIndex(key.longValue());
+    }
+    
+    @Override
+    public boolean insert(Long key) {
+        return insert(key.longValue());
+    }
+    
+    
+    /////// List IMPLEMENTATION ///////
+    
+    @Override
+    public int size() {
+        checkOpen();
+        return count(root);
+    }
+    
+    @Override
+    public Long get(int index) {
+        return getLong(index);
+    }
+    
+    @Override
+    public Long remove(int index) {
+        return removeLong(index);
+    }
+    
+    @Override
+    public boolean contains(Object key) {
+        return key instanceof Long && contains(((Long) key).longValue());
+    }
+    
+    @Override
+    public int indexOf(Object key) {
+        return key instanceof Long ? indexOf(((Long) key).longValue()) : -1;
+    }
+    
+    @Override
+    public int lastIndexOf(Object key) {
+        return key instanceof Long ? lastIndexOf(((Long) key).longValue()) : -1;
+    }
+    
+    /** Removes all keys. Keeps the first chunk and frees the others now, as {@link #close} does.
+     * @throws UnsupportedOperationException if the JVM does not allow direct memory to be freed explicitly;
+     *         the list is cleared anyway, and the memory is released when the chunks are collected */
+    @Override
+    public void clear() {
+        checkOpen();
+        int count = chunkCount;
+        chunkCount = 1;
+        root = NIL;
+        limit = HEADER + 1;
+        free = NIL;
+        ++modCount;
+        clean(chunks, 1, count);
+    }
+    
+    /** Walks the tree in order. Does not splay or allocate per key. */
+    @Override
+    public PayloadIterator iterator() {
+        return listIterator(0);
+    }
+    
+    /** Walks the tree in order. Does not splay or allocate per key. */
+    @Override
+    public PayloadIterator listIterator() {
+        return listIterator(0);
+    }
+    
+    /** Walks the tree in order. Does not splay or allocate per key. */
+    @Override
+    public PayloadIterator listIterator(int index) {
+        if (index < 0 || size() < index)
+            throw new IndexOutOfBoundsException("" + index);
+        return new Itr(index);
+    }
+    
+    
+    /////// INVARIANTS ///////
+    
+    public boolean checkInvariants() {
+        if (null != chunks) {
+            assert 0 == count(NIL);
+            if (NIL != root && size() < 128) {
+                 // uses recursion; only call this for small trees
+                _checkCount(root);
+                _checkBst(root);
+            }
+        }
+        return true;
+    }
+    private int _checkCount(int x) {
+        int expectedCount = 1;
+        if (NIL != left(x))
+            expectedCount += _checkCount(left(x));
+        if (NIL != right(x))
+            expectedCount += _checkCount(right(x));
+        assert expectedCount == count(x) : String.format("%d <> %d", expectedCount, count(x));
+        return expectedCount;
+    }
+    private void _checkBst(int x) {
+        if (NIL != left(x)) {
+            assert key(left(x)) <= key(x) : String.format("%d <> %d", key(left(x)), key(x));
+            _checkBst(left(x));
+        }
+        if (NIL != right(x)) {
+            assert key(x) <= key(right(x)) : String.format("%d <> %d", key(right(x)), key(x));
+            _checkBst(right(x));
+        }
+    }
+    
+    
+    /////// INTERNAL ///////
+    
+    /** {@link LongSortedList.LongListIterator} that can read the payload of the last returned key. */
+    public static interface PayloadIterator extends LongSortedList.LongListIterator {
+        /** Copies the payload of the key returned by the last call to
+         * <code>next</code> or <code>previous</code> into <code>dst</code>, advancing its position. */
+        void getPayload(ByteBuffer dst);
+    }
+    
+    /** @see SplaySortedList#iterator */
+    private final class Itr implements PayloadIterator {
+        int cursor;
+        int lastRet = -1;
+        int expectedModCount = modCount;
+        int expectedShapeCount;
+        
+        int[] path = new int[16];
+        int depth = 0;
+        int at = -1;
+        
+        Itr(int index) {
+            cursor = index;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return cursor < size();
+        }
+        
+        @Override
+        public boolean hasPrevious() {
+            return 0 < cursor;
+        }
+        
+        @Override
+        public int nextIndex() {
+            return cursor;
+        }
+        
+        @Override
+        public int previousIndex() {
+            return cursor - 1;
+        }
+        
+        @Override
+        public long nextLong() {
+            checkForComodification();
+            if (size() <= cursor)
+                throw new NoSuchElementException();
+            long key = key(moveTo(cursor));
+            lastRet = cursor;
+            cursor += 1;
+            return key;
+        }
+        
+        @Override
+        public long previousLong() {
+            checkForComodification();
+            if (cursor <= 0)
+                throw new NoSuchElementException();
+            long key = key(moveTo(cursor - 1));
+            cursor -= 1;
+            lastRet = cursor;
+            return key;
+        }
+        
+        @Override
+        public Long next() {
+            return nextLong();
+        }
+        
+        @Override
+        public Long previous() {
+            return previousLong();
+        }
+        
+        @Override
+        public void getPayload(ByteBuffer dst) {
+            if (lastRet < 0)
+                throw new IllegalStateException();
+            checkForComodification();
+            if (dst.remaining() < payloadWidth)
+                throw new IllegalArgumentException("Destination has " + dst.remaining() + " < " + payloadWidth + " bytes");
+            payload(moveTo(lastRet), dst);
+        }
+        
+        @Override
+        public void remove() {
+            if (lastRet < 0)
+                throw new IllegalStateException();
+            checkForComodification();
+            
+            int x = moveTo(lastRet);
+            for (int i = 0; i < depth - 1; ++i) {
+                setCount(path[i], count(path[i]) - 1);
+            }
+            
+            // replace x with the join of its subtrees
+            int y;
+            if (NIL == left(x)) {
+                y = right(x);
+            } else if (NIL == right(x)) {
+                y = left(x);
+            } else {
+                // successor of x takes the place of x
+                int p = x;
+                for (y = right(x); NIL != left(y); y = left(y)) {
+                    p = y;
+                }
+                if (p != x) {
+                    for (int z = right(x); z != y; z = left(z)) {
+                        setCount(z, count(z) - 1);
+                    }
+                    setLeft(p, right(y));
+                    setRight(y, right(x));
+                }
+                setLeft(y, left(x));
+                setCount(y, count(x) - 1);
+            }
+            if (depth < 2) {
+                root = y;
+            } else if (left(path[depth - 2]) == x) {
+                setLeft(path[depth - 2], y);
+            } else {
+                setRight(path[depth - 2], y);
+            }
+            release(x);
+            
+            if (lastRet < cursor)
+                cursor -= 1;
+            lastRet = -1;
+            at = -1;
+            expectedModCount = ++modCount;
+            
+            assert checkInvariants();
+        }
+        
+        @Override
+        public void set(Long e) {
+            throw new UnsupportedOperationException("Setting by index is not supported in a sorted list.");
+        }
+        
+        @Override
+        public void add(Long e) {
+            throw new UnsupportedOperationException("Inserting by index is not supported in a sorted list.");
+        }
+        
+        
+        private void checkForComodification() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+        
+        private int moveTo(int index) {
+            if (0 <= at && expectedShapeCount == shapeCount) {
+                if (at + 1 == index) {
+                    successor();
+                } else if (at - 1 == index) {
+                    predecessor();
+                } else if (at != index) {
+                    seek(index);
+                }
+            } else {
+                seek(index);
+            }
+            at = index;
+            return path[depth - 1];
+        }
+        
+        private void seek(int index) {
+            depth = 0;
+            expectedShapeCount = shapeCount;
+            int y = root;
+            for (int c; ; ) {
+                push(y);
+                c = index - count(left(y));
+                if (c < 0) {
+                    y = left(y);
+                } else if (0 == c) {
+                    break;
+                } else {
+                    index = c - 1;
+                    y = right(y);
+                }
+            }
+        }
+        
+        private void successor() {
+            int y = path[depth - 1];
+            if (NIL != right(y)) {
+                for (y = right(y); NIL != y; y = left(y)) {
+                    push(y);
+                }
+            } else {
+                do {
+                    y = path[--depth];
+                } while (right(path[depth - 1]) == y);
+            }
+        }
+        
+        private void predecessor() {
+            int y = path[depth - 1];
+            if (NIL != left(y)) {
+                for (y = left(y); NIL != y; y = right(y)) {
+                    push(y);
+                }
+            } else {
+                do {
+                    y = path[--depth];
+                } while (left(path[depth - 1]) == y);
+            }
+        }
+        
+        private void push(int y) {
+            if (path.length == depth) {
+                path = Arrays.copyOf(path, 2 * depth);
+            }
+            path[depth++] = y;
+        }
+    }
+}
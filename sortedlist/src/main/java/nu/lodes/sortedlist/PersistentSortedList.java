@@ -0,0 +1,351 @@
+package nu.lodes.sortedlist;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+
+import javax.annotation.Nullable;
+
+import nu.lodes.sortedlist.WeightBalancedTree.Node;
+import nu.lodes.sortedlist.WeightBalancedTree.Walk;
+
+import com.google.common.collect.Ordering;
+
+
+/** Immutable {@link SortedList}, where each write makes a new version
+ * that shares all the nodes it did not touch with this one.
+ *
+ * The elements are held in a persistent weight-balanced tree with sub-tree counts
+ * ({@link WeightBalancedTree}), so {@link #with} and {@link #without} are <code>O(lg n)</code>
+ * and copy only the path to the root, and all the reads are <code>O(lg n)</code>, including {@link #get}.
+ * The list can be read by any number of threads without locks.
+ * The mutators of {@link SortedList} and {@link java.util.List} throw {@link UnsupportedOperationException}.
+ *
+ * For batches of writes, a {@link Builder} is a mutable {@link SortedList} over the same tree,
+ * which updates the nodes it created in place instead of copying them.
+ * {@link Builder#snapshot()} makes a version in <code>O(1)</code>, which stays unchanged
+ * as the builder goes on writing; so one writer can publish snapshots to lock-free readers.
+ *
+ * Duplicates are held in insertion order. Null elements are not allowed.
+ */
+public final class PersistentSortedList<E> extends AbstractSortedList<E> {
+    private final Comparator<? super E> comparator;
+    private final @Nullable Node<E> root;
+    
+    
+    PersistentSortedList(Comparator<? super E> comparator, @Nullable Node<E> root) {
+        this.comparator = comparator;
+        this.root = root;
+    }
+    
+    @SuppressWarnings("unchecked")
+    public static <E extends Comparable<? super E>> PersistentSortedList<E> of() {
+        return new PersistentSortedList<E>((Comparator<? super E>) Ordering.<Comparable<E>>natural(), null);
+    }
+    
+    public static <E> PersistentSortedList<E> of(Comparator<? super E> comparator) {
+        return new PersistentSortedList<E>(comparator, null);
+    }
+    
+    /** Builds a balanced tree from the values in linear time after sorting. */
+    @SuppressWarnings("unchecked")
+    public static <E extends Comparable<? super E>> PersistentSortedList<E> copyOf(Collection<? extends E> values) {
+        return copyOf((Comparator<? super E>) Ordering.<Comparable<E>>natural(), values);
+    }
+    
+    /** Builds a balanced tree from the values in linear time after sorting. */
+    public static <E> PersistentSortedList<E> copyOf(Comparator<? super E> comparator, Collection<? extends E> values) {
+        return new PersistentSortedList<E>(comparator, PersistentSortedList.<E>build(null, comparator, values));
+    }
+    
+    /** @return a balanced tree of the values, owned by <code>owner</code> */
+    @SuppressWarnings("unchecked")
+    static @Nullable <E> Node<E> build(@Nullable Object owner, Comparator<? super E> comparator, Collection<? extends E> values) {
+        Object[] a = values.toArray();
+        for (Object value : a) {
+            if (null == value) {
+                throw new NullPointerException();
+            }
+        }
+        Arrays.sort(a, (Comparator<Object>) comparator);
+        return WeightBalancedTree.<E>build(owner, a, 0, a.length);
+    }
+    
+    
+    
+    /////// VERSIONS ///////
+    
+    /** @return a version with the value inserted after the elements equal to it */
+    public PersistentSortedList<E> with(E value) {
+        if (null == value) {
+            throw new NullPointerException();
+        }
+        return new PersistentSortedList<E>(comparator, WeightBalancedTree.insert(null, root, value, comparator));
+    }
+    
+    /** @return a version with the values inserted, which copies each node at most once */
+    public PersistentSortedList<E> withAll(Collection<? extends E> values) {
+        if (values.isEmpty()) {
+            return this;
+        }
+        Builder<E> builder = toBuilder();
+        builder.insertAll(values);
+        return builder.snapshot();
+    }
+    
+    /** @return a version without an element that <code>equals</code> the value if there is one,
+     * otherwise without the first element equal to the value by the comparator;
+     * this list if there is no equal element */
+    public PersistentSortedList<E> without(Object value) {
+        int index = indexToRemove(root, value, comparator);
+        return index < 0 ? this : withoutIndex(index);
+    }
+    
+    /** @return a version without the element at the index */
+    public PersistentSortedList<E> withoutIndex(int index) {
+        checkIndex(index, size());
+        return new PersistentSortedList<E>(comparator, WeightBalancedTree.removeAt(null, root, index));
+    }
+    
+    /** @return a builder that starts from this version, in <code>O(1)</code> */
+    public Builder<E> toBuilder() {
+        return new Builder<E>(comparator, root);
+    }
+    
+    
+    /////// SortedList IMPLEMENTATION ///////
+    
+    @Override
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+    
+    @Override
+    public int lowerIndex(Comparable<? super E> q) {
+        return WeightBalancedTree.bound(root, q, null, comparator, false) - 1;
+    }
+    
+    @Override
+    public int higherIndex(Comparable<? super E> q) {
+        return WeightBalancedTree.bound(root, q, null, comparator, true);
+    }
+    
+    /** @throws UnsupportedOperationException always; see {@link #with} */
+    @Override
+    public boolean insert(E value) {
+        throw new UnsupportedOperationException();
+    }
+    
+    /** @throws UnsupportedOperationException always; see {@link #withoutIndex} */
+    @Override
+    public @Nullable E pollFirst() {
+        throw new UnsupportedOperationException();
+    }
+    
+    /** @throws UnsupportedOperationException always; see {@link #withoutIndex} */
+    @Override
+    public @Nullable E pollLast() {
+        throw new UnsupportedOperationException();
+    }
+    
+    
+    /////// List IMPLEMENTATION ///////
+    
+    @Override
+    public int size() {
+        return WeightBalancedTree.count(root);
+    }
+    
+    @Override
+    public E get(int index) {
+        checkIndex(index, size());
+        return WeightBalancedTree.get(root, index);
+    }
+    
+    /** @throws UnsupportedOperationException always; see {@link #withoutIndex} */
+    @Override
+    public E remove(int index) {
+        throw new UnsupportedOperationException();
+    }
+    
+    /** @throws UnsupportedOperationException always; see {@link #without} */
+    @Override
+    public boolean remove(Object value) {
+        throw new UnsupportedOperationException();
+    }
+    
+    /** @throws UnsupportedOperationException always */
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+    
+    
+    /////// ITERATION ///////
+    
+    @Override
+    public Iterator<E> iterator() {
+        return new Walk<E>(root);
+    }
+    
+    
+    /////// INVARIANTS ///////
+    
+    /** Checks the counts, weight balance and order of the tree.
+     * @throws IllegalStateException if an invariant does not hold */
+    public boolean checkInvariants() {
+        WeightBalancedTree.check(root, comparator);
+        return true;
+    }
+    
+    
+    /////// INTERNAL ///////
+    
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || size <= index)
+            throw new IndexOutOfBoundsException(String.format("%d of %d", index, size));
+    }
+    
+    /** @return the index of an element that <code>equals</code> the value if there is one,
+     * otherwise of the first element equal to the value by the comparator; -1 if there is none */
+    @SuppressWarnings("unchecked")
+    private static <E> int indexToRemove(@Nullable Node<E> root, Object value, Comparator<? super E> comparator) {
+        if (null == value) {
+            throw new NullPointerException();
+        }
+        int lo = WeightBalancedTree.bound(root, null, (E) value, comparator, false);
+        int hi = WeightBalancedTree.bound(root, null, (E) value, comparator, true);
+        for (int i = lo; i < hi; ++i) {
+            if (value.equals(WeightBalancedTree.get(root, i))) {
+                return i;
+            }
+        }
+        return lo < hi ? lo : -1;
+    }
+    
+    
+    /** A mutable {@link SortedList} over a transient version of the tree,
+     * which updates the nodes it created in place, and copies the nodes it shares with snapshots.
+     * Writes are <code>O(lg n)</code>, and allocate only for shared nodes.
+     * Not thread-safe; the snapshots are. */
+    public static final class Builder<E> extends AbstractSortedList<E> {
+        private final Comparator<? super E> comparator;
+        private @Nullable Node<E> root;
+        /* owns the nodes created since the last snapshot */
+        private Object owner = new Object();
+        
+        
+        Builder(Comparator<? super E> comparator, @Nullable Node<E> root) {
+            this.comparator = comparator;
+            this.root = root;
+        }
+        
+        @SuppressWarnings("unchecked")
+        public Builder() {
+            this((Comparator<? super E>) Ordering.<Comparable<E>>natural(), null);
+        }
+        
+        public Builder(Comparator<? super E> comparator) {
+            this(comparator, null);
+        }
+        
+        
+        /** @return an immutable version of the current elements, in <code>O(1)</code>;
+         * the builder then copies the nodes that it shares with the version before writing them */
+        public PersistentSortedList<E> snapshot() {
+            owner = new Object();
+            return new PersistentSortedList<E>(comparator, root);
+        }
+        
+        
+        /////// SortedList IMPLEMENTATION ///////
+        
+        @Override
+        public Comparator<? super E> comparator() {
+            return comparator;
+        }
+        
+        @Override
+        public int lowerIndex(Comparable<? super E> q) {
+            return WeightBalancedTree.bound(root, q, null, comparator, false) - 1;
+        }
+        
+        @Override
+        public int higherIndex(Comparable<? super E> q) {
+            return WeightBalancedTree.bound(root, q, null, comparator, true);
+        }
+        
+        @Override
+        public boolean insert(E value) {
+            if (null == value) {
+                throw new NullPointerException();
+            }
+            root = WeightBalancedTree.insert(owner, root, value, comparator);
+            ++modCount;
+            return true;
+        }
+        
+        /** Builds a balanced tree if the builder is empty. */
+        @Override
+        public boolean insertAll(Collection<? extends E> values) {
+            if (null != root) {
+                return super.insertAll(values);
+            }
+            root = build(owner, comparator, values);
+            ++modCount;
+            return null != root;
+        }
+        
+        
+        /////// List IMPLEMENTATION ///////
+        
+        @Override
+        public int size() {
+            return WeightBalancedTree.count(root);
+        }
+        
+        @Override
+        public E get(int index) {
+            checkIndex(index, size());
+            return WeightBalancedTree.get(root, index);
+        }
+        
+        @Override
+        public E remove(int index) {
+            checkIndex(index, size());
+            E value = WeightBalancedTree.get(root, index);
+            root = WeightBalancedTree.removeAt(owner, root, index);
+            ++modCount;
+            return value;
+        }
+        
+        /** Removes an element that <code>equals</code> the value if there is one,
+         * otherwise the first element equal to the value by the comparator. */
+        @Override
+        public boolean remove(Object value) {
+            int index = indexToRemove(root, value, comparator);
+            if (index < 0) {
+                return false;
+            }
+            remove(index);
+            return true;
+        }
+        
+        @Override
+        public void clear() {
+            root = null;
+            ++modCount;
+        }
+        
+        
+        /////// INVARIANTS ///////
+        
+        /** Checks the counts, weight balance and order of the tree.
+         * @throws IllegalStateException if an invariant does not hold */
+        public boolean checkInvariants() {
+            WeightBalancedTree.check(root, comparator);
+            return true;
+        }
+    }
+}
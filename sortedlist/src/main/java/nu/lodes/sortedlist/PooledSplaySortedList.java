@@ -0,0 +1,1025 @@
+package nu.lodes.sortedlist;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.Ordering;
+
+
+/** The splay tree of {@link SplaySortedList}, with the nodes held in a pool
+ * of parallel arrays (struct of arrays) instead of one object per node.
+ *
+ * A node is a slot index into the arrays <code>value</code>, <code>run</code>,
+ * <code>n</code>, <code>count</code>, <code>left</code> and <code>right</code>,
+ * and the child links are slot indexes instead of references.
+ * Removed slots are kept on a free list and reused by the next insert.
+ * The splaying, run handling and sub-tree counts are the same as {@link SplaySortedList},
+ * so the tree has the same shape after the same sequence of operations.
+ *
+ * The pool is a constant number of objects regardless of size
+ * (plus a run array per node with duplicates),
+ * so there are no per-node object headers and the garbage collector
+ * has a few large arrays to mark instead of one object per element.
+ * A node costs 24 bytes (with compressed references) compared to
+ * 40 bytes for a {@link SplaySortedList} node.
+ *
+ * @see SplaySortedList
+ */
+public final class PooledSplaySortedList<E> extends AbstractSortedList<E> {
+
+    /* insertAll re-links the whole tree when the batch is at least
+     * 1/MERGE_REBUILD_RATIO of the list size */
+    private static final int MERGE_REBUILD_RATIO = 4;
+    
+    private static final int INITIAL_CAPACITY = 16;
+    
+    /* the null slot. Has a count of 0 so that sub-tree counts can be read without a null check */
+    private static final int NIL = 0;
+    /* for splaying */
+    private static final int HEADER = 1;
+    
+    private final Comparator<? super E> comparator;
+    private int root = NIL;
+    
+    /* the pool. Slot i is a node with first value value[i], ... */
+    /** first value of the run */
+    private Object[] value;
+    /** values <code>[1, n)</code> of the run at <code>[0, n - 1)</code>;
+     * <code>null</code> until there is a duplicate */
+    private Object[][] run;
+    /** length of the run */
+    private int[] n;
+    /** number of values in the sub-tree, including the run */
+    private int[] count;
+    private int[] left;
+    /** also links the free list */
+    private int[] right;
+    
+    /* slots [limit, capacity) have never been used */
+    private int limit = HEADER + 1;
+    /* head of the list of released slots, linked by right */
+    private int free = NIL;
+    
+    /* incremented each time the tree is restructured without a change in size (splaying),
+     * so that iterators know to re-seek their path */
+    private int shapeCount = 0;
+    
+    
+    @SuppressWarnings("unchecked")
+    public PooledSplaySortedList() {
+        this((Comparator<? super E>) Ordering.<Comparable<E>>natural());
+    }
+    
+    public PooledSplaySortedList(Comparator<? super E> comparator) {
+        this.comparator = comparator;
+        allocate(INITIAL_CAPACITY);
+    }
+    
+    /** Builds a balanced tree from the values in linear time after sorting.
+     * @see #rebuild */
+    @SuppressWarnings("unchecked")
+    public PooledSplaySortedList(Collection<? extends E> values) {
+        this((Comparator<? super E>) Ordering.<Comparable<E>>natural(), values);
+    }
+    
+    /** Builds a balanced tree from the values in linear time after sorting.
+     * @see #rebuild */
+    public PooledSplaySortedList(Comparator<? super E> comparator, Collection<? extends E> values) {
+        this.comparator = comparator;
+        Object[] a = values.toArray();
+        allocate(Math.max(INITIAL_CAPACITY, HEADER + 1 + a.length));
+        load(a, a.length);
+    }
+    
+    
+    /////// POOL ///////
+    
+    private void allocate(int capacity) {
+        value = new Object[capacity];
+        run = new Object[capacity][];
+        n = new int[capacity];
+        count = new int[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        limit = HEADER + 1;
+        free = NIL;
+    }
+    
+    private void grow() {
+        int capacity = value.length + (value.length >> 1);
+        value = Arrays.copyOf(value, capacity);
+        run = Arrays.copyOf(run, capacity);
+        n = Arrays.copyOf(n, capacity);
+        count = Arrays.copyOf(count, capacity);
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+    }
+    
+    /** @return a new node holding the value */
+    private int alloc(E v) {
+        int x;
+        if (NIL != free) {
+            x = free;
+            free = right[x];
+        } else {
+            if (value.length == limit) {
+                grow();
+            }
+            x = limit++;
+        }
+        value[x] = v;
+        run[x] = null;
+        n[x] = 1;
+        count[x] = 1;
+        left[x] = NIL;
+        right[x] = NIL;
+        return x;
+    }
+    
+    /** Adds the node to the free list. */
+    private void release(int x) {
+        value[x] = null;
+        run[x] = null;
+        n[x] = 0;
+        count[x] = 0;
+        left[x] = NIL;
+        right[x] = free;
+        free = x;
+    }
+    
+    
+    /////// RUNS ///////
+    
+    @SuppressWarnings("unchecked")
+    private E value(int x) {
+        return (E) value[x];
+    }
+    
+    @SuppressWarnings("unchecked")
+    private E runGet(int x, int j) {
+        return 0 == j ? (E) value[x] : (E) run[x][j - 1];
+    }
+    
+    /** @return the least <code>j</code> where <code>v.equals(runGet(x, j))</code>,
+     * or <code>-1</code> */
+    private int runIndexOf(int x, Object v) {
+        for (int j = 0; j < n[x]; ++j) {
+            if (v.equals(runGet(x, j))) {
+                return j;
+            }
+        }
+        return -1;
+    }
+    
+    /** Appends to the run. Does not update <code>count</code>. */
+    private void runAdd(int x, E v) {
+        Object[] r = run[x];
+        if (null == r) {
+            r = run[x] = new Object[2];
+        } else if (r.length == n[x] - 1) {
+            r = run[x] = Arrays.copyOf(r, 2 * r.length);
+        }
+        r[n[x] - 1] = v;
+        n[x] += 1;
+    }
+    
+    /** Removes from the run. Does not update <code>count</code>. */
+    private E runRemove(int x, int j) {
+        assert 1 < n[x];
+        E removed = runGet(x, j);
+        Object[] r = run[x];
+        if (0 == j) {
+            value[x] = r[0];
+            j = 1;
+        }
+        System.arraycopy(r, j, r, j - 1, n[x] - 1 - j);
+        n[x] -= 1;
+        r[n[x] - 1] = null;
+        return removed;
+    }
+    
+    
+    /** Does not splay.
+     * @return if <code>upper</code>, the number of values <code>x</code> where <code>q.compareTo(x) &gt;= 0</code>,
+     * otherwise the number of values where <code>q.compareTo(x) &gt; 0</code> */
+    private int bound(Comparable<? super E> q, boolean upper) {
+        final int[] n = this.n, count = this.count, left = this.left, right = this.right;
+        int index = 0;
+        for (int y = root; NIL != y; ) {
+            int c = q.compareTo(value(y));
+            if (c < 0 || 0 == c && !upper) {
+                y = left[y];
+            } else {
+                index += n[y] + count[left[y]];
+                y = right[y];
+            }
+        }
+        return index;
+    }
+    
+    
+    /////// SPLAYING ///////
+    
+    private void splay(E v) {
+        ++shapeCount;
+        final int[] n = this.n, count = this.count, left = this.left, right = this.right;
+        int l, r, t, y;
+        l = r = HEADER;
+        t = root;
+        left[HEADER] = right[HEADER] = NIL;
+        count[HEADER] = 0;
+        for (int c; 0 != (c = comparator.compare(v, value(t))); ) {
+            if (c < 0) {
+                if (NIL == left[t])
+                    break;
+                if (comparator.compare(v, value(left[t])) < 0) {
+                    // rotate right + preserve counts
+                    y = left[t];
+                    left[t] = right[y];
+                    right[y] = t;
+                    
+                    count[y] += n[t] + count[right[t]];
+                    count[t] -= n[y] + count[left[y]];
+                    
+                    t = y;
+                    if (NIL == left[t])
+                        break;
+                }
+                
+                // link right
+                left[r] = t;
+                r = t;
+                t = left[t];
+            } else {
+                if (NIL == right[t])
+                    break;
+                if (0 < comparator.compare(v, value(right[t]))) {
+                    // rotate left + preserve counts
+                    y = right[t];
+                    right[t] = left[y];
+                    left[y] = t;
+                    
+                    count[y] += n[t] + count[left[t]];
+                    count[t] -= n[y] + count[right[y]];
+                    
+                    t = y;
+                    if (NIL == right[t])
+                        break;
+                }
+                
+                // link left
+                right[l] = t;
+                l = t;
+                t = right[t];
+            }
+        }
+        
+        // assemble + reset counts
+        right[l] = left[t];
+        left[r] = right[t];
+        left[t] = right[HEADER];
+        right[t] = left[HEADER];
+        
+        resetLrCounts(t, l, r);
+        count[t] = n[t] + count[left[t]] + count[right[t]];
+        
+        root = t;
+    }
+    private void splay(int index) {
+        ++shapeCount;
+        final int[] n = this.n, count = this.count, left = this.left, right = this.right;
+        int l, r, t, y;
+        l = r = HEADER;
+        t = root;
+        left[HEADER] = right[HEADER] = NIL;
+        count[HEADER] = 0;
+        for (int c; ; ) {
+            c = index - count[left[t]];
+            if (c < 0) {
+                if (NIL == left[t])
+                    break;
+                if (index - count[left[left[t]]] < 0) {
+                    // rotate right + preserve counts
+                    y = left[t];
+                    left[t] = right[y];
+                    right[y] = t;
+                    
+                    count[y] += n[t] + count[right[t]];
+                    count[t] -= n[y] + count[left[y]];
+                    
+                    t = y;
+                    if (NIL == left[t])
+                        break;
+                }
+                
+                // link right
+                left[r] = t;
+                r = t;
+                t = left[t];
+            } else if (c < n[t]) {
+                break;
+            } else {
+                index = c - n[t];
+                if (NIL == right[t])
+                    break;
+                if (n[right[t]] <= index - count[left[right[t]]]) {
+                    index -= n[right[t]] + count[left[right[t]]];
+                    
+                    // rotate left + preserve counts
+                    y = right[t];
+                    right[t] = left[y];
+                    left[y] = t;
+                    
+                    count[y] += n[t] + count[left[t]];
+                    count[t] -= n[y] + count[right[y]];
+                    
+                    t = y;
+                    if (NIL == right[t])
+                        break;
+                }
+                
+                // link left
+                right[l] = t;
+                l = t;
+                t = right[t];
+            }
+        }
+        
+        // assemble + reset counts
+        right[l] = left[t];
+        left[r] = right[t];
+        left[t] = right[HEADER];
+        right[t] = left[HEADER];
+        
+        resetLrCounts(t, l, r);
+        count[t] = n[t] + count[left[t]] + count[right[t]];
+        
+        root = t;
+    }
+    /** @see SplaySortedList#resetLrCounts */
+    private void resetLrCounts(int x, int l, int r) {
+        final int[] n = this.n, count = this.count, left = this.left, right = this.right;
+        int y;
+        int c;
+        
+        // reset counts on left
+        if (HEADER != l) {
+            c = count[right[l]];
+            for (y = left[x]; ; y = right[y]) {
+                c += n[y] + count[left[y]];
+                if (l == y)
+                    break;
+            }
+            for (y = left[x]; ; y = right[y]) {
+                count[y] = c;
+                if (l == y)
+                    break;
+                c -= n[y] + count[left[y]];
+            }
+        }
+        
+        // reset counts on right
+        if (HEADER != r) {
+            c = count[left[r]];
+            for (y = right[x]; ; y = left[y]) {
+                c += n[y] + count[right[y]];
+                if (r == y)
+                    break;
+            }
+            for (y = right[x]; ; y = left[y]) {
+                count[y] = c;
+                if (r == y)
+                    break;
+                c -= n[y] + count[right[y]];
+            }
+        }
+    }
+    
+    
+    /////// SortedList IMPLEMENTATION ///////
+    
+    @Override
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+    
+    @Override
+    public int lowerIndex(Comparable<? super E> q) {
+        return bound(q, false) - 1;
+    }
+    
+    @Override
+    public int higherIndex(Comparable<? super E> q) {
+        return bound(q, true);
+    }
+    
+    
+    /////// SortedList INSERTION IMPLEMENTATION ///////
+    
+    /** @see SplaySortedList#insertAll */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean insertAll(Collection<? extends E> values) {
+        Object[] a = values.toArray();
+        int m = a.length;
+        if (0 == m)
+            return false;
+        for (int i = 0; i < m; ++i) {
+            if (null == a[i]) {
+                throw new NullPointerException();
+            }
+        }
+        Comparator<Object> c = (Comparator<Object>) comparator;
+        if (!isSorted(a, m, c)) {
+            Arrays.sort(a, 0, m, c);
+        }
+        
+        if (size() <= MERGE_REBUILD_RATIO * m) {
+            return merge(a, m);
+        }
+        for (int i = 0; i < m; ++i) {
+            insert((E) a[i]);
+        }
+        return true;
+    }
+    
+    /** Merges the sorted <code>values[0, m)</code> with the nodes of the tree,
+     * and re-links into a balanced tree. Linear time. */
+    @SuppressWarnings("unchecked")
+    private boolean merge(Object[] values, int m) {
+        try {
+            int[] nodes = nodes();
+            int k = nodes.length;
+            int[] merged = new int[k + m];
+            k = 0;
+            for (int i = 0, j = 0; i < nodes.length || j < m; ) {
+                if (j == m || i < nodes.length && comparator.compare(value(nodes[i]), (E) values[j]) <= 0) {
+                    merged[k++] = nodes[i++];
+                } else if (0 < k && 0 == comparator.compare(value(merged[k - 1]), (E) values[j])) {
+                    // (counts are reset in link)
+                    runAdd(merged[k - 1], (E) values[j++]);
+                } else {
+                    merged[k++] = alloc((E) values[j++]);
+                }
+            }
+            root = link(merged, 0, k);
+            ++modCount;
+            return true;
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    @Override
+    public boolean insert(E v) {
+        if (null == v) {
+            throw new NullPointerException();
+        }
+        
+        try {
+            if (NIL == root) {
+                root = alloc(v);
+                ++modCount;
+                return true;
+            }
+            
+            splay(v);
+            int c = comparator.compare(v, value(root));
+            if (0 == c) {
+                // append to the run
+                runAdd(root, v);
+                count[root] += 1;
+                ++modCount;
+                return true;
+            }
+            
+            int x = alloc(v);
+            count[x] += count[root];
+            if (c < 0) {
+                right[x] = root;
+                if (NIL != left[root]) {
+                    count[root] -= count[left[root]];
+                    left[x] = left[root];
+                    left[root] = NIL;
+                }
+            } else {
+                left[x] = root;
+                if (NIL != right[root]) {
+                    count[root] -= count[right[root]];
+                    right[x] = right[root];
+                    right[root] = NIL;
+                }
+            }
+            root = x;
+            ++modCount;
+            
+            return true;
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    
+    /////// List IMPLEMENTATION ///////
+    
+    @Override
+    public int size() {
+        return count[root];
+    }
+    
+    @Override
+    public E get(int index) {
+        try {
+            if (index < 0 || count[root] <= index)
+                throw new IndexOutOfBoundsException("" + index);
+            splay(index);
+            return runGet(root, index - count[left[root]]);
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    @Override
+    public E remove(int index) {
+        try {
+            if (index < 0 || count[root] <= index)
+                throw new IndexOutOfBoundsException("" + index);
+            
+            splay(index);
+            int j = index - count[left[root]];
+            if (1 < n[root]) {
+                E v = runRemove(root, j);
+                count[root] -= 1;
+                ++modCount;
+                return v;
+            }
+            E v = value(root);
+            unlinkRoot(index);
+            ++modCount;
+            
+            return v;
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    @Override
+    public boolean remove(Object v) {
+        if (null == v) {
+            throw new NullPointerException();
+        }
+        
+        try {
+            if (NIL == root)
+                return false;
+            
+            @SuppressWarnings("unchecked")
+            E e = (E) v;
+            splay(e);
+            if (0 != comparator.compare(e, value(root)))
+                return false;
+            
+            if (1 < n[root]) {
+                // prefer an equal element in the run; otherwise the first
+                int j = runIndexOf(root, v);
+                runRemove(root, 0 <= j ? j : 0);
+                count[root] -= 1;
+                ++modCount;
+                return true;
+            }
+            unlinkRoot(count[left[root]]);
+            ++modCount;
+            
+            return true;
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    /** Removes the root node, which is at <code>index</code>,
+     * and joins its sub-trees. */
+    private void unlinkRoot(int index) {
+        int x = root;
+        if (NIL == left[x]) {
+            root = right[x];
+        } else {
+            int t = right[x];
+            root = left[x];
+            splay(index);
+            right[root] = t;
+            count[root] += count[t];
+        }
+        release(x);
+    }
+    
+    @Override
+    public void clear() {
+        try {
+            root = NIL;
+            allocate(INITIAL_CAPACITY);
+            ++modCount;
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    
+    /////// BULK ///////
+    
+    /** Rebuilds the tree in place into a perfectly balanced tree, in linear time,
+     * and compacts the pool: the nodes are moved to slots in sorted order,
+     * the free list is dropped and the arrays are trimmed to the size. */
+    public void rebuild() {
+        try {
+            int[] nodes = nodes();
+            int m = nodes.length;
+            int capacity = Math.max(INITIAL_CAPACITY, HEADER + 1 + m);
+            Object[] value = new Object[capacity];
+            Object[][] run = new Object[capacity][];
+            int[] n = new int[capacity];
+            for (int i = 0; i < m; ++i) {
+                int x = nodes[i];
+                int y = HEADER + 1 + i;
+                value[y] = this.value[x];
+                run[y] = this.run[x];
+                n[y] = this.n[x];
+                nodes[i] = y;
+            }
+            this.value = value;
+            this.run = run;
+            this.n = n;
+            count = new int[capacity];
+            left = new int[capacity];
+            right = new int[capacity];
+            limit = HEADER + 1 + m;
+            free = NIL;
+            root = link(nodes, 0, m);
+            ++shapeCount;
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    /** Replaces the contents with the first <code>m</code> values,
+     * which are sorted in place if not already sorted. */
+    @SuppressWarnings("unchecked")
+    private void load(Object[] values, int m) {
+        try {
+            for (int i = 0; i < m; ++i) {
+                if (null == values[i]) {
+                    throw new NullPointerException();
+                }
+            }
+            Comparator<Object> c = (Comparator<Object>) comparator;
+            if (!isSorted(values, m, c)) {
+                Arrays.sort(values, 0, m, c);
+            }
+            // group equal runs into nodes
+            int[] nodes = new int[m];
+            int k = 0;
+            for (int i = 0; i < m; ++i) {
+                if (0 < k && 0 == c.compare(value[nodes[k - 1]], values[i])) {
+                    runAdd(nodes[k - 1], (E) values[i]);
+                } else {
+                    nodes[k++] = alloc((E) values[i]);
+                }
+            }
+            root = link(nodes, 0, k);
+            ++modCount;
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    private static <T> boolean isSorted(T[] values, int m, Comparator<? super T> c) {
+        for (int i = 1; i < m; ++i) {
+            if (0 < c.compare(values[i - 1], values[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /** @return a perfectly balanced tree of the in-order <code>nodes[from, to)</code>,
+     * with the sub-tree counts reset */
+    private int link(int[] nodes, int from, int to) {
+        if (to <= from)
+            return NIL;
+        int mid = (from + to) >>> 1;
+        int x = nodes[mid];
+        left[x] = link(nodes, from, mid);
+        right[x] = link(nodes, mid + 1, to);
+        count[x] = n[x] + count[left[x]] + count[right[x]];
+        return x;
+    }
+    
+    /** @return the nodes of the tree in order.
+     * Uses an explicit stack, since a splay tree can be arbitrarily deep. */
+    private int[] nodes() {
+        int[] nodes = new int[count[root]];
+        int[] stack = new int[16];
+        int depth = 0;
+        int i = 0;
+        for (int y = root; NIL != y || 0 < depth; ) {
+            if (NIL != y) {
+                if (stack.length == depth) {
+                    stack = Arrays.copyOf(stack, 2 * depth);
+                }
+                stack[depth++] = y;
+                y = left[y];
+            } else {
+                y = stack[--depth];
+                nodes[i++] = y;
+                y = right[y];
+            }
+        }
+        return i < nodes.length ? Arrays.copyOf(nodes, i) : nodes;
+    }
+    
+    
+    /////// ITERATION ///////
+    
+    /** Walks the tree in order. Does not splay.
+     * <code>next</code> and <code>previous</code> are amortized constant time. */
+    @Override
+    public Iterator<E> iterator() {
+        return new Itr(0);
+    }
+    
+    /** Walks the tree in order. Does not splay.
+     * <code>next</code> and <code>previous</code> are amortized constant time. */
+    @Override
+    public ListIterator<E> listIterator() {
+        return new Itr(0);
+    }
+    
+    /** Walks the tree in order. Does not splay.
+     * <code>next</code> and <code>previous</code> are amortized constant time. */
+    @Override
+    public ListIterator<E> listIterator(int index) {
+        if (index < 0 || size() < index)
+            throw new IndexOutOfBoundsException("" + index);
+        return new Itr(index);
+    }
+    
+    
+    /////// INVARIANTS ///////
+    
+    public boolean checkInvariants() {
+        assert 0 == count[NIL] && 0 == n[NIL];
+        if (NIL != root) {
+            if (size() < 128) {
+                 // uses recursion; only call this for small trees
+                _checkCount(root);
+                _checkBst(root);
+            }
+        }
+        return true;
+    }
+    private int _checkCount(int x) {
+        assert 1 <= n[x] && (1 == n[x] || n[x] - 1 <= run[x].length);
+        int expectedCount = n[x];
+        if (NIL != left[x])
+            expectedCount += _checkCount(left[x]);
+        if (NIL != right[x])
+            expectedCount += _checkCount(right[x]);
+        assert expectedCount == count[x] : String.format("%d <> %d", expectedCount, count[x]);
+        return expectedCount;
+    }
+    private void _checkBst(int x) {
+        // equal values are in a single run
+        for (int j = 1; j < n[x]; ++j) {
+            assert 0 == comparator.compare(runGet(x, j), value(x)) : String.format("%s <> %s",
+                    runGet(x, j), value(x));
+        }
+        if (NIL != left[x]) {
+            assert comparator.compare(value(left[x]), value(x)) < 0 : String.format("%s <> %s",
+                    value(left[x]), value(x));
+            _checkBst(left[x]);
+        }
+        if (NIL != right[x]) {
+            assert 0 < comparator.compare(value(right[x]), value(x)) : String.format("%s <> %s",
+                    value(right[x]), value(x));
+            _checkBst(right[x]);
+        }
+    }
+    
+    
+    /////// INTERNAL ///////
+    
+    /** @see SplaySortedList#iterator */
+    private final class Itr implements ListIterator<E> {
+        int cursor;
+        int lastRet = -1;
+        int expectedModCount = modCount;
+        int expectedShapeCount;
+        
+        int[] path = new int[16];
+        int depth = 0;
+        int at = -1;
+        int j;
+        
+        Itr(int index) {
+            cursor = index;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return cursor < size();
+        }
+        
+        @Override
+        public boolean hasPrevious() {
+            return 0 < cursor;
+        }
+        
+        @Override
+        public int nextIndex() {
+            return cursor;
+        }
+        
+        @Override
+        public int previousIndex() {
+            return cursor - 1;
+        }
+        
+        @Override
+        public E next() {
+            checkForComodification();
+            if (size() <= cursor)
+                throw new NoSuchElementException();
+            E v = runGet(moveTo(cursor), j);
+            lastRet = cursor;
+            cursor += 1;
+            return v;
+        }
+        
+        @Override
+        public E previous() {
+            checkForComodification();
+            if (cursor <= 0)
+                throw new NoSuchElementException();
+            E v = runGet(moveTo(cursor - 1), j);
+            cursor -= 1;
+            lastRet = cursor;
+            return v;
+        }
+        
+        @Override
+        public void remove() {
+            if (lastRet < 0)
+                throw new IllegalStateException();
+            checkForComodification();
+            
+            int x = moveTo(lastRet);
+            for (int i = 0; i < depth - 1; ++i) {
+                count[path[i]] -= 1;
+            }
+            
+            if (1 < n[x]) {
+                runRemove(x, j);
+                count[x] -= 1;
+            } else {
+                // replace x with the join of its subtrees
+                int y;
+                if (NIL == left[x]) {
+                    y = right[x];
+                } else if (NIL == right[x]) {
+                    y = left[x];
+                } else {
+                    // successor of x takes the place of x
+                    int p = x;
+                    for (y = right[x]; NIL != left[y]; y = left[y]) {
+                        p = y;
+                    }
+                    if (p != x) {
+                        for (int z = right[x]; z != y; z = left[z]) {
+                            count[z] -= n[y];
+                        }
+                        left[p] = right[y];
+                        right[y] = right[x];
+                    }
+                    left[y] = left[x];
+                    count[y] = count[x] - 1;
+                }
+                if (depth < 2) {
+                    root = y;
+                } else if (left[path[depth - 2]] == x) {
+                    left[path[depth - 2]] = y;
+                } else {
+                    right[path[depth - 2]] = y;
+                }
+                release(x);
+            }
+            
+            if (lastRet < cursor)
+                cursor -= 1;
+            lastRet = -1;
+            at = -1;
+            expectedModCount = ++modCount;
+            
+            assert checkInvariants();
+        }
+        
+        @Override
+        public void set(E e) {
+            throw new UnsupportedOperationException("Setting by index is not supported in a sorted list.");
+        }
+        
+        @Override
+        public void add(E e) {
+            throw new UnsupportedOperationException("Inserting by index is not supported in a sorted list.");
+        }
+        
+        
+        private void checkForComodification() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+        
+        private int moveTo(int index) {
+            if (0 <= at && expectedShapeCount == shapeCount) {
+                if (at + 1 == index) {
+                    successor();
+                } else if (at - 1 == index) {
+                    predecessor();
+                } else if (at != index) {
+                    seek(index);
+                }
+            } else {
+                seek(index);
+            }
+            at = index;
+            return path[depth - 1];
+        }
+        
+        private void seek(int index) {
+            depth = 0;
+            expectedShapeCount = shapeCount;
+            int y = root;
+            for (int c; ; ) {
+                push(y);
+                c = index - count[left[y]];
+                if (c < 0) {
+                    y = left[y];
+                } else if (c < n[y]) {
+                    j = c;
+                    break;
+                } else {
+                    index = c - n[y];
+                    y = right[y];
+                }
+            }
+        }
+        
+        private void successor() {
+            int y = path[depth - 1];
+            if (j + 1 < n[y]) {
+                j += 1;
+                return;
+            }
+            j = 0;
+            if (NIL != right[y]) {
+                for (y = right[y]; NIL != y; y = left[y]) {
+                    push(y);
+                }
+            } else {
+                do {
+                    y = path[--depth];
+                } while (right[path[depth - 1]] == y);
+            }
+        }
+        
+        private void predecessor() {
+            int y = path[depth - 1];
+            if (0 < j) {
+                j -= 1;
+                return;
+            }
+            if (NIL != left[y]) {
+                for (y = left[y]; NIL != y; y = right[y]) {
+                    push(y);
+                }
+            } else {
+                do {
+                    y = path[--depth];
+                } while (left[path[depth - 1]] == y);
+            }
+            j = n[path[depth - 1]] - 1;
+        }
+        
+        private void push(int y) {
+            if (path.length == depth) {
+                path = Arrays.copyOf(path, 2 * depth);
+            }
+            path[depth++] = y;
+        }
+    }
+}
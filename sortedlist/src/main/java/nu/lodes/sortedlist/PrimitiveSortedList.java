@@ -0,0 +1,902 @@
+package nu.lodes.sortedlist;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+import javax.annotation.Nullable;
+
+
+/** The splay tree of {@link IntSortedList}, {@link LongSortedList} and {@link DoubleSortedList}.
+ *
+ * Each value is held unboxed in its node as a <code>long</code> key, such that the order of the keys
+ * is the order of the values. A subclass maps its values to keys and back ({@link #toKey}, {@link #toValue}),
+ * and gives its primitive operations over the key operations here, which do not box.
+ * The {@link SortedList} operations box or unbox at the call.
+ *
+ * Implemented as the splay tree of {@link SplaySortedList}.
+ * Duplicates are held as a count in a single node.
+ *
+ * @see SplaySortedList
+ */
+abstract class PrimitiveSortedList<E> extends AbstractSortedList<E> {
+
+    private final Class<E> type;
+    private @Nullable Node root;
+    
+    /* for splaying */
+    private final Node header = new Node(0L);
+    /* incremented each time the tree is restructured without a change in size (splaying),
+     * so that iterators know to re-seek their path */
+    private int shapeCount = 0;
+    
+    
+    PrimitiveSortedList(Class<E> type) {
+        this.type = type;
+    }
+    
+    
+    /** @return the key of the value, in the order of the values */
+    abstract long toKey(E value);
+    
+    /** The inverse of {@link #toKey}. */
+    abstract E toValue(long key);
+    
+    
+    /////// SEARCHING ///////
+    
+    /** Does not splay.
+     * @return if <code>last</code>, the greatest index of the key, otherwise the least index of the key;
+     * or <code>(-(insertion point) - 1)</code> if the key is not in the list. */
+    private int search(long key, boolean last) {
+        int index = 0;
+        for (Node y = root; null != y; ) {
+            if (key < y.key) {
+                y = y.left;
+            } else if (y.key < key) {
+                index += y.n + (null != y.left ? y.left.count : 0);
+                y = y.right;
+            } else {
+                index += null != y.left ? y.left.count : 0;
+                return last ? index + y.n - 1 : index;
+            }
+        }
+        return -index - 1;
+    }
+    
+    /** Does not splay.
+     * @return if <code>upper</code>, the number of values <code>x</code> where <code>q.compareTo(x) &gt;= 0</code>,
+     * otherwise the number of values where <code>q.compareTo(x) &gt; 0</code> */
+    private int bound(Comparable<? super E> q, boolean upper) {
+        int index = 0;
+        for (Node y = root; null != y; ) {
+            int c = q.compareTo(toValue(y.key));
+            if (c < 0 || 0 == c && !upper) {
+                y = y.left;
+            } else {
+                index += y.n + (null != y.left ? y.left.count : 0);
+                y = y.right;
+            }
+        }
+        return index;
+    }
+    
+    /** Does not splay.
+     * @return the node of the greatest key less than (or if <code>inclusive</code>, equal to) the key */
+    final @Nullable Node floorNode(long key, boolean inclusive) {
+        Node found = null;
+        for (Node y = root; null != y; ) {
+            if (key < y.key || key == y.key && !inclusive) {
+                y = y.left;
+            } else {
+                found = y;
+                y = y.right;
+            }
+        }
+        return found;
+    }
+    
+    /** Does not splay.
+     * @return the node of the least key greater than (or if <code>inclusive</code>, equal to) the key */
+    final @Nullable Node ceilingNode(long key, boolean inclusive) {
+        Node found = null;
+        for (Node y = root; null != y; ) {
+            if (y.key < key || key == y.key && !inclusive) {
+                y = y.right;
+            } else {
+                found = y;
+                y = y.left;
+            }
+        }
+        return found;
+    }
+    
+    
+    /////// SPLAYING ///////
+    
+    private void splayKey(long key) {
+        ++shapeCount;
+        Node l, r, t, y;
+        l = r = header;
+        t = root;
+        header.left = header.right = null;
+        header.count = 0;
+        while (key != t.key) {
+            if (key < t.key) {
+                if (null == t.left)
+                    break;
+                if (key < t.left.key) {
+                    // rotate right + preserve counts
+                    y = t.left;
+                    t.left = y.right;
+                    y.right = t;
+                    
+                    y.count += t.n + (null != t.right ? t.right.count : 0);
+                    t.count -= y.n + (null != y.left ? y.left.count : 0);
+                    
+                    t = y;
+                    if (null == t.left)
+                        break;
+                }
+                
+                // link right
+                r.left = t;
+                r = t;
+                t = t.left;
+            } else {
+                if (null == t.right)
+                    break;
+                if (t.right.key < key) {
+                    // rotate left + preserve counts
+                    y = t.right;
+                    t.right = y.left;
+                    y.left = t;
+                    
+                    y.count += t.n + (null != t.left ? t.left.count : 0);
+                    t.count -= y.n + (null != y.right ? y.right.count : 0);
+                    
+                    t = y;
+                    if (null == t.right)
+                        break;
+                }
+                
+                // link left
+                l.right = t;
+                l = t;
+                t = t.right;
+            }
+        }
+        
+        // assemble + reset counts
+        l.right = t.left;
+        r.left = t.right;
+        t.left = header.right;
+        t.right = header.left;
+        
+        resetLrCounts(t, l, r);
+        t.count = t.n + (null != t.left ? t.left.count : 0) + (null != t.right ? t.right.count : 0);
+        
+        root = t;
+    }
+    private void splay(int index) {
+        ++shapeCount;
+        Node l, r, t, y;
+        l = r = header;
+        t = root;
+        header.left = header.right = null;
+        header.count = 0;
+        for (int c; ; ) {
+            c = index - (null != t.left ? t.left.count : 0);
+            if (c < 0) {
+                if (null == t.left)
+                    break;
+                if (index - (null != t.left.left ? t.left.left.count : 0) < 0) {
+                    // rotate right + preserve counts
+                    y = t.left;
+                    t.left = y.right;
+                    y.right = t;
+                    
+                    y.count += t.n + (null != t.right ? t.right.count : 0);
+                    t.count -= y.n + (null != y.left ? y.left.count : 0);
+                    
+                    t = y;
+                    if (null == t.left)
+                        break;
+                }
+                
+                // link right
+                r.left = t;
+                r = t;
+                t = t.left;
+            } else if (c < t.n) {
+                break;
+            } else {
+                index = c - t.n;
+                if (null == t.right)
+                    break;
+                if (t.right.n <= index - (null != t.right.left ? t.right.left.count : 0)) {
+                    index -= t.right.n + (null != t.right.left ? t.right.left.count : 0);
+                    
+                    // rotate left + preserve counts
+                    y = t.right;
+                    t.right = y.left;
+                    y.left = t;
+                    
+                    y.count += t.n + (null != t.left ? t.left.count : 0);
+                    t.count -= y.n + (null != y.right ? y.right.count : 0);
+                    
+                    t = y;
+                    if (null == t.right)
+                        break;
+                }
+                
+                // link left
+                l.right = t;
+                l = t;
+                t = t.right;
+            }
+        }
+        
+        // assemble + reset counts
+        l.right = t.left;
+        r.left = t.right;
+        t.left = header.right;
+        t.right = header.left;
+        
+        resetLrCounts(t, l, r);
+        t.count = t.n + (null != t.left ? t.left.count : 0) + (null != t.right ? t.right.count : 0);
+        
+        root = t;
+    }
+    /** @see SplaySortedList#resetLrCounts */
+    private void resetLrCounts(Node n, Node l, Node r) {
+        Node y;
+        int c;
+        
+        // reset counts on left
+        if (header != l) {
+            c = null != l.right ? l.right.count : 0;
+            for (y = n.left; ; y = y.right) {
+                c += y.n + (null != y.left ? y.left.count : 0);
+                if (l == y)
+                    break;
+            }
+            for (y = n.left; ; y = y.right) {
+                y.count = c;
+                if (l == y)
+                    break;
+                c -= y.n + (null != y.left ? y.left.count : 0);
+            }
+        }
+        
+        // reset counts on right
+        if (header != r) {
+            c = null != r.left ? r.left.count : 0;
+            for (y = n.right; ; y = y.left) {
+                c += y.n + (null != y.right ? y.right.count : 0);
+                if (r == y)
+                    break;
+            }
+            for (y = n.right; ; y = y.left) {
+                y.count = c;
+                if (r == y)
+                    break;
+                c -= y.n + (null != y.right ? y.right.count : 0);
+            }
+        }
+    }
+    
+    
+    /////// KEY IMPLEMENTATION ///////
+    
+    /** Replaces the tree with a balanced tree of the keys, in linear time after sorting.
+     * Sorts the array. */
+    final void build(long[] keys) {
+        Arrays.sort(keys);
+        Node[] nodes = new Node[keys.length];
+        int m = 0;
+        for (int i = 0; i < keys.length; ++i) {
+            if (0 < m && nodes[m - 1].key == keys[i]) {
+                nodes[m - 1].n += 1;
+            } else {
+                nodes[m++] = new Node(keys[i]);
+            }
+        }
+        root = link(nodes, 0, m);
+        ++modCount;
+        assert checkInvariants();
+    }
+    
+    final boolean insertKey(long key) {
+        try {
+            if (null == root) {
+                root = new Node(key);
+                ++modCount;
+                return true;
+            }
+            
+            splayKey(key);
+            if (key == root.key) {
+                root.n += 1;
+                root.count += 1;
+                ++modCount;
+                return true;
+            }
+            
+            Node n = new Node(key);
+            n.count += root.count;
+            if (key < root.key) {
+                n.right = root;
+                if (null != root.left) {
+                    root.count -= root.left.count;
+                    n.left = root.left;
+                    root.left = null;
+                }
+            } else {
+                n.left = root;
+                if (null != root.right) {
+                    root.count -= root.right.count;
+                    n.right = root.right;
+                    root.right = null;
+                }
+            }
+            root = n;
+            ++modCount;
+            
+            return true;
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    /** Sorts the keys and inserts them in order,
+     * so that each splay starts from the previously inserted key.
+     * Sorts the array. */
+    final boolean insertKeys(long[] keys) {
+        Arrays.sort(keys);
+        for (long key : keys) {
+            insertKey(key);
+        }
+        return 0 < keys.length;
+    }
+    
+    final long getKey(int index) {
+        try {
+            if (null == root || index < 0 || root.count <= index)
+                throw new IndexOutOfBoundsException("" + index);
+            splay(index);
+            return root.key;
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    final long removeKeyAt(int index) {
+        try {
+            if (null == root || index < 0 || root.count <= index)
+                throw new IndexOutOfBoundsException("" + index);
+            
+            splay(index);
+            long key = root.key;
+            if (1 < root.n) {
+                root.n -= 1;
+                root.count -= 1;
+            } else if (null == root.left) {
+                root = root.right;
+            } else {
+                Node t = root.right;
+                root = root.left;
+                splay(index);
+                root.right = t;
+                if (null != t)
+                    root.count += t.count;
+            }
+            ++modCount;
+            
+            return key;
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    /** Removes one occurrence of the key.
+     * @return whether the list contained the key */
+    final boolean removeKey(long key) {
+        try {
+            if (null == root)
+                return false;
+            
+            splayKey(key);
+            if (key != root.key)
+                return false;
+            
+            if (1 < root.n) {
+                root.n -= 1;
+                root.count -= 1;
+            } else if (null == root.left) {
+                root = root.right;
+            } else {
+                Node t = root.right;
+                root = root.left;
+                splayKey(key);
+                root.right = t;
+                if (null != t)
+                    root.count += t.count;
+            }
+            ++modCount;
+            
+            return true;
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    final boolean containsKey(long key) {
+        return 0 <= search(key, false);
+    }
+    
+    /** @return the least index of the key, or <code>-1</code> */
+    final int indexOfKey(long key) {
+        int i = search(key, false);
+        return 0 <= i ? i : -1;
+    }
+    
+    /** @return the greatest index of the key, or <code>-1</code> */
+    final int lastIndexOfKey(long key) {
+        int i = search(key, true);
+        return 0 <= i ? i : -1;
+    }
+    
+    /** @see SortedList#lowerIndex(Object) */
+    final int lowerKeyIndex(long key) {
+        int i = search(key, false);
+        return 0 <= i ? i - 1 : -i - 2;
+    }
+    
+    /** @see SortedList#floorIndex(Object) */
+    final int floorKeyIndex(long key) {
+        int i = search(key, false);
+        return 0 <= i ? i : -i - 2;
+    }
+    
+    /** @see SortedList#higherIndex(Object) */
+    final int higherKeyIndex(long key) {
+        int i = search(key, true);
+        return 0 <= i ? i + 1 : -i - 1;
+    }
+    
+    /** @see SortedList#ceilingIndex(Object) */
+    final int ceilingKeyIndex(long key) {
+        int i = search(key, true);
+        return 0 <= i ? i : -i - 1;
+    }
+    
+    
+    /////// SortedList IMPLEMENTATION ///////
+    
+    /** One descent. Does not splay. */
+    @Override
+    public @Nullable E lower(E value) {
+        Node y = floorNode(toKey(value), false);
+        return null != y ? toValue(y.key) : null;
+    }
+    
+    @Override
+    public int lowerIndex(E value) {
+        return lowerKeyIndex(toKey(value));
+    }
+    
+    @Override
+    public int lowerIndex(Comparable<? super E> q) {
+        return bound(q, false) - 1;
+    }
+    
+    /** One descent. Does not splay. */
+    @Override
+    public @Nullable E floor(E value) {
+        Node y = floorNode(toKey(value), true);
+        return null != y ? toValue(y.key) : null;
+    }
+    
+    @Override
+    public int floorIndex(E value) {
+        return floorKeyIndex(toKey(value));
+    }
+    
+    /** One descent. Does not splay. */
+    @Override
+    public @Nullable E higher(E value) {
+        Node y = ceilingNode(toKey(value), false);
+        return null != y ? toValue(y.key) : null;
+    }
+    
+    @Override
+    public int higherIndex(E value) {
+        return higherKeyIndex(toKey(value));
+    }
+    
+    @Override
+    public int higherIndex(Comparable<? super E> q) {
+        return bound(q, true);
+    }
+    
+    /** One descent. Does not splay. */
+    @Override
+    public @Nullable E ceiling(E value) {
+        Node y = ceilingNode(toKey(value), true);
+        return null != y ? toValue(y.key) : null;
+    }
+    
+    @Override
+    public int ceilingIndex(E value) {
+        return ceilingKeyIndex(toKey(value));
+    }
+    
+    @Override
+    public boolean insert(E value) {
+        return insertKey(toKey(value));
+    }
+    
+    
+    /////// List IMPLEMENTATION ///////
+    
+    @Override
+    public int size() {
+        return null != root ? root.count : 0;
+    }
+    
+    @Override
+    public E get(int index) {
+        return toValue(getKey(index));
+    }
+    
+    @Override
+    public E remove(int index) {
+        return toValue(removeKeyAt(index));
+    }
+    
+    @Override
+    public boolean remove(Object value) {
+        return type.isInstance(value) && removeKey(toKey(type.cast(value)));
+    }
+    
+    @Override
+    public boolean contains(Object value) {
+        return type.isInstance(value) && containsKey(toKey(type.cast(value)));
+    }
+    
+    @Override
+    public int indexOf(Object value) {
+        return type.isInstance(value) ? indexOfKey(toKey(type.cast(value))) : -1;
+    }
+    
+    @Override
+    public int lastIndexOf(Object value) {
+        return type.isInstance(value) ? lastIndexOfKey(toKey(type.cast(value))) : -1;
+    }
+    
+    @Override
+    public void clear() {
+        root = null;
+        ++modCount;
+    }
+    
+    
+    /////// INVARIANTS ///////
+    
+    /* with assertions enabled, each operation checks the whole tree only while it is small,
+     * since the check is linear */
+    private static final int CHECK_SIZE = 128;
+    
+    /** Checks the invariants if the tree is small; {@link #analyze} checks a tree of any size.
+     * @throws IllegalStateException if an invariant does not hold */
+    public boolean checkInvariants() {
+        if (size() < CHECK_SIZE) {
+            analyze();
+        }
+        return true;
+    }
+    
+    /** Verifies the invariants of the whole tree and measures its shape, in one in-order pass
+     * with an explicit stack, as {@link SplaySortedList#analyze}.
+     * Linear time, and space linear in the height. Does not splay.
+     * @throws IllegalStateException if an invariant does not hold */
+    public TreeShape analyze() {
+        Node[] stack = new Node[16];
+        int[] depths = new int[16];
+        int top = 0;
+        int nodes = 0;
+        int height = 0;
+        long depthSum = 0L;
+        long[] depthHistogram = new long[SplayStats.DEPTH_BUCKETS];
+        Node last = null;
+        int d = 1;
+        for (Node y = root; null != y || 0 < top; ) {
+            if (null != y) {
+                if (stack.length == top) {
+                    stack = Arrays.copyOf(stack, 2 * top);
+                    depths = Arrays.copyOf(depths, 2 * top);
+                }
+                stack[top] = y;
+                depths[top++] = d++;
+                y = y.left;
+            } else {
+                y = stack[--top];
+                d = depths[top];
+                check(y, last);
+                ++nodes;
+                depthSum += d;
+                ++depthHistogram[SplayStats.depthBucket(d)];
+                if (height < d) {
+                    height = d;
+                }
+                last = y;
+                ++d;
+                y = y.right;
+            }
+        }
+        return new TreeShape(size(), nodes, height, depthSum, depthHistogram);
+    }
+    
+    /** Checks the node's count of equal values and sub-tree count,
+     * and that it follows the node before it in order. */
+    private void check(Node y, @Nullable Node last) {
+        if (y.n < 1)
+            throw new IllegalStateException(String.format("%d equal values at %s", y.n, toValue(y.key)));
+        int count = y.n + (null != y.left ? y.left.count : 0) + (null != y.right ? y.right.count : 0);
+        if (count != y.count)
+            throw new IllegalStateException(String.format("count %d <> %d at %s", y.count, count, toValue(y.key)));
+        if (null != last && y.key <= last.key)
+            throw new IllegalStateException(String.format("%s before %s", toValue(last.key), toValue(y.key)));
+    }
+    
+    
+    /////// INTERNAL ///////
+    
+    /** Holds <code>n</code> equal values. */
+    static final class Node {
+        final long key;
+        /** number of equal values */
+        int n = 1;
+        /** number of values in the sub-tree */
+        int count = 1;
+        @Nullable Node left = null;
+        @Nullable Node right = null;
+        
+        Node(long key) {
+            this.key = key;
+        }
+    }
+    
+    /** @return a perfectly balanced tree of the in-order <code>nodes[from, to)</code> */
+    private static @Nullable Node link(Node[] nodes, int from, int to) {
+        if (to <= from)
+            return null;
+        int mid = (from + to) >>> 1;
+        Node n = nodes[mid];
+        n.left = link(nodes, from, mid);
+        n.right = link(nodes, mid + 1, to);
+        n.count = n.n + (null != n.left ? n.left.count : 0) + (null != n.right ? n.right.count : 0);
+        return n;
+    }
+    
+    /** The in-order walk of the keys, which subclasses give their unboxed <code>next</code> and <code>previous</code>.
+     * @see SplaySortedList#iterator */
+    abstract class KeyItr implements ListIterator<E> {
+        int cursor;
+        int lastRet = -1;
+        int expectedModCount = modCount;
+        int expectedShapeCount;
+        
+        Node[] path = new Node[16];
+        int depth = 0;
+        int at = -1;
+        int j;
+        
+        KeyItr(int index) {
+            if (index < 0 || size() < index)
+                throw new IndexOutOfBoundsException("" + index);
+            cursor = index;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return cursor < size();
+        }
+        
+        @Override
+        public boolean hasPrevious() {
+            return 0 < cursor;
+        }
+        
+        @Override
+        public int nextIndex() {
+            return cursor;
+        }
+        
+        @Override
+        public int previousIndex() {
+            return cursor - 1;
+        }
+        
+        final long nextKey() {
+            checkForComodification();
+            if (size() <= cursor)
+                throw new NoSuchElementException();
+            long key = moveTo(cursor).key;
+            lastRet = cursor;
+            cursor += 1;
+            return key;
+        }
+        
+        final long previousKey() {
+            checkForComodification();
+            if (cursor <= 0)
+                throw new NoSuchElementException();
+            long key = moveTo(cursor - 1).key;
+            cursor -= 1;
+            lastRet = cursor;
+            return key;
+        }
+        
+        @Override
+        public E next() {
+            return toValue(nextKey());
+        }
+        
+        @Override
+        public E previous() {
+            return toValue(previousKey());
+        }
+        
+        @Override
+        public void remove() {
+            if (lastRet < 0)
+                throw new IllegalStateException();
+            checkForComodification();
+            
+            Node x = moveTo(lastRet);
+            for (int i = 0; i < depth - 1; ++i) {
+                path[i].count -= 1;
+            }
+            
+            if (1 < x.n) {
+                x.n -= 1;
+                x.count -= 1;
+            } else {
+                // replace x with the join of its subtrees
+                Node y;
+                if (null == x.left) {
+                    y = x.right;
+                } else if (null == x.right) {
+                    y = x.left;
+                } else {
+                    // successor of x takes the place of x
+                    Node p = x;
+                    for (y = x.right; null != y.left; y = y.left) {
+                        p = y;
+                    }
+                    if (p != x) {
+                        for (Node z = x.right; z != y; z = z.left) {
+                            z.count -= y.n;
+                        }
+                        p.left = y.right;
+                        y.right = x.right;
+                    }
+                    y.left = x.left;
+                    y.count = x.count - 1;
+                }
+                if (depth < 2) {
+                    root = y;
+                } else if (path[depth - 2].left == x) {
+                    path[depth - 2].left = y;
+                } else {
+                    path[depth - 2].right = y;
+                }
+            }
+            
+            if (lastRet < cursor)
+                cursor -= 1;
+            lastRet = -1;
+            at = -1;
+            expectedModCount = ++modCount;
+            
+            assert checkInvariants();
+        }
+        
+        @Override
+        public void set(E e) {
+            throw new UnsupportedOperationException("Setting by index is not supported in a sorted list.");
+        }
+        
+        @Override
+        public void add(E e) {
+            throw new UnsupportedOperationException("Inserting by index is not supported in a sorted list.");
+        }
+        
+        
+        private void checkForComodification() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+        
+        private Node moveTo(int index) {
+            if (0 <= at && expectedShapeCount == shapeCount) {
+                if (at + 1 == index) {
+                    successor();
+                } else if (at - 1 == index) {
+                    predecessor();
+                } else if (at != index) {
+                    seek(index);
+                }
+            } else {
+                seek(index);
+            }
+            at = index;
+            return path[depth - 1];
+        }
+        
+        private void seek(int index) {
+            depth = 0;
+            expectedShapeCount = shapeCount;
+            Node y = root;
+            for (int c; ; ) {
+                push(y);
+                c = index - (null != y.left ? y.left.count : 0);
+                if (c < 0) {
+                    y = y.left;
+                } else if (c < y.n) {
+                    j = c;
+                    break;
+                } else {
+                    index = c - y.n;
+                    y = y.right;
+                }
+            }
+        }
+        
+        private void successor() {
+            Node y = path[depth - 1];
+            if (j + 1 < y.n) {
+                j += 1;
+                return;
+            }
+            j = 0;
+            if (null != y.right) {
+                for (y = y.right; null != y; y = y.left) {
+                    push(y);
+                }
+            } else {
+                do {
+                    y = path[--depth];
+                } while (path[depth - 1].right == y);
+            }
+        }
+        
+        private void predecessor() {
+            Node y = path[depth - 1];
+            if (0 < j) {
+                j -= 1;
+                return;
+            }
+            if (null != y.left) {
+                for (y = y.left; null != y; y = y.right) {
+                    push(y);
+                }
+            } else {
+                do {
+                    y = path[--depth];
+                } while (path[depth - 1].left == y);
+            }
+            j = path[depth - 1].n - 1;
+        }
+        
+        private void push(Node y) {
+            if (path.length == depth) {
+                path = Arrays.copyOf(path, 2 * depth);
+            }
+            path[depth++] = y;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package nu.lodes.sortedlist;
 
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 
 import javax.annotation.Nullable;
@@ -71,6 +72,13 @@ public interface SortedList<E> extends List<E> {
     
     
     
+    /** @return the comparator used to order the elements in this list. 
+     * Unlike {@link java.util.SortedSet#comparator}, this is never <code>null</code>;
+     * a list in natural ordering returns a natural ordering comparator.
+     * @see java.util.SortedSet#comparator */
+    Comparator<? super E> comparator();
+    
+    
     /** Inserts the specified element into the list at a position according to the total order (optional operation).
      * @return as specified by {@link java.util.Collection#add} */
     boolean insert(E value);
@@ -78,6 +86,16 @@ public interface SortedList<E> extends List<E> {
      * in the order that they are returned by the specified collection's iterator (optional operation).
      * @return as specified by {@link java.util.Collection#addAll} */
     boolean insertAll(Collection<? extends E> values);
+    
+    
+    /** Removes the least element in this list (optional operation).
+     * @return the removed element, or <code>null</code> if this list is empty
+     * @see java.util.NavigableSet#pollFirst */
+    @Nullable E pollFirst();
+    /** Removes the greatest element in this list (optional operation).
+     * @return the removed element, or <code>null</code> if this list is empty
+     * @see java.util.NavigableSet#pollLast */
+    @Nullable E pollLast();
 
 
     /** (optional operation) 
@@ -183,4 +201,162 @@ public interface SortedList<E> extends List<E> {
      * or the greatest index <code>i</code> in this list where where <code>q.compareTo(get(i)) == 0</code>,
      * or <code>size()</code> if there is no such element. */
     int ceilingIndex(Comparable<? super E> q);
+    
+    
+    /** @return a new cursor over this list, before the first element.
+     * A cursor can be reused for any number of seeks. */
+    Cursor<E> cursor();
+    
+    
+    /** A navigation operation, for the batch queries. */
+    enum Navigation {
+        /** as {@link SortedList#lowerIndex} and {@link SortedList#lower} */
+        LOWER,
+        /** as {@link SortedList#floorIndex} and {@link SortedList#floor} */
+        FLOOR,
+        /** as {@link SortedList#ceilingIndex} and {@link SortedList#ceiling} */
+        CEILING,
+        /** as {@link SortedList#higherIndex} and {@link SortedList#higher} */
+        HIGHER
+    }
+    
+    /** Answers the navigation operation for each of the values, in order.
+     * Implementations may share work between queries, e.g. when the values are sorted.
+     * @param indexes is filled at <code>[0, values.length)</code> with the index results
+     * @throws IllegalArgumentException if <code>indexes</code> is shorter than <code>values</code> */
+    void navigateAll(Navigation op, E[] values, int[] indexes);
+    /** Answers the navigation operation for each of the values, in order, as {@link #navigateAll(Navigation, Object[], int[])}. */
+    void navigateAll(Navigation op, List<? extends E> values, int[] indexes);
+    /** (optional operation)
+     * @param queries each <code>compareTo</code> must be monotonically increasing over the ordered elements in the list 
+     * @param indexes is filled at <code>[0, queries.length)</code> with the index results, as {@link #navigateAll(Navigation, Object[], int[])} */
+    void navigateAll(Navigation op, Comparable<? super E>[] queries, int[] indexes);
+    
+    /** Answers the navigation operation for each of the values, in order.
+     * Implementations may share work between queries, e.g. when the values are sorted.
+     * @param elements is filled at <code>[0, values.length)</code> with the element results,
+     * <code>null</code> where there is no such element
+     * @throws IllegalArgumentException if <code>elements</code> is shorter than <code>values</code> */
+    void navigateAll(Navigation op, E[] values, E[] elements);
+    /** Answers the navigation operation for each of the values, in order, as {@link #navigateAll(Navigation, Object[], Object[])}. */
+    void navigateAll(Navigation op, List<? extends E> values, E[] elements);
+    /** (optional operation)
+     * @param queries each <code>compareTo</code> must be monotonically increasing over the ordered elements in the list 
+     * @param elements is filled at <code>[0, queries.length)</code> with the element results, as {@link #navigateAll(Navigation, Object[], Object[])} */
+    void navigateAll(Navigation op, Comparable<? super E>[] queries, E[] elements);
+    
+    
+    /** @return the number of elements in this list strictly less than the given element,
+     * which is the index the element would be inserted at before any equal elements */
+    int rank(E value);
+    /** (optional operation)
+     * @param q <code>compareTo</code> must be monotonically increasing over the ordered elements in the list 
+     * @return the number of elements <code>x</code> in this list where <code>0 &lt; q.compareTo(x)</code> */
+    int rank(Comparable<? super E> q);
+    
+    
+    /** @return the range of indexes of the elements in this list equal to the given element. 
+     * If there are none, the range is empty at the index the element would be inserted at. */
+    IndexRange equalRange(E value);
+    /** (optional operation)
+     * @param q <code>compareTo</code> must be monotonically increasing over the ordered elements in the list 
+     * @return the range of indexes <code>i</code> in this list where <code>q.compareTo(get(i)) == 0</code>.
+     * If there are none, the range is empty at <code>rank(q)</code>. */
+    IndexRange equalRange(Comparable<? super E> q);
+    
+    
+    /** @return the number of elements in this list from <code>fromValue</code> to <code>toValue</code>,
+     * which is the size of {@link #subList(Object, boolean, Object, boolean)} */
+    int countBetween(E fromValue, boolean fromInclusive, E toValue, boolean toInclusive);
+    /** (optional operation)
+     * @param from <code>compareTo</code> must be monotonically increasing over the ordered elements in the list 
+     * @param to <code>compareTo</code> must be monotonically increasing over the ordered elements in the list 
+     * @return the number of elements in this list from <code>from</code> to <code>to</code>,
+     * which is the size of {@link #subList(Comparable, boolean, Comparable, boolean)} */
+    int countBetween(Comparable<? super E> from, boolean fromInclusive, Comparable<? super E> to, boolean toInclusive);
+    
+    
+    /** Removes the elements in this list from <code>fromValue</code> to <code>toValue</code>
+     * (optional operation). To remove the elements before or after a value,
+     * clear a {@link #headList(Object, boolean)} or {@link #tailList(Object, boolean)}.
+     * @return the number of elements removed
+     * @see #countBetween(Object, boolean, Object, boolean) */
+    int removeBetween(E fromValue, boolean fromInclusive, E toValue, boolean toInclusive);
+    /** (optional operation)
+     * @param from <code>compareTo</code> must be monotonically increasing over the ordered elements in the list 
+     * @param to <code>compareTo</code> must be monotonically increasing over the ordered elements in the list 
+     * @return the number of elements removed, as {@link #removeBetween(Object, boolean, Object, boolean)} */
+    int removeBetween(Comparable<? super E> from, boolean fromInclusive, Comparable<? super E> to, boolean toInclusive);
+    
+    
+    /** Moves the elements at <code>[index, size())</code> out of this list into a new list 
+     * with the same comparator (optional operation).
+     * @return the new list of the moved elements */
+    SortedList<E> split(int index);
+    /** Moves the elements greater than (or equal to, if <code>inclusive</code>) <code>value</code>,
+     * which are the elements of {@link #tailList(Object, boolean)}, out of this list 
+     * into a new list with the same comparator (optional operation).
+     * @return the new list of the moved elements */
+    SortedList<E> split(E value, boolean inclusive);
+    /** (optional operation)
+     * @param q <code>compareTo</code> must be monotonically increasing over the ordered elements in the list 
+     * @return the new list of the moved elements, as {@link #split(Object, boolean)} 
+     * for the elements of {@link #tailList(Comparable, boolean)} */
+    SortedList<E> split(Comparable<? super E> q, boolean inclusive);
+    
+    /** Moves all of the elements of the given list into this list (optional operation).
+     * The ranges of the lists must not overlap: 
+     * each element of one list must be less than or equal to each element of the other.
+     * The given list is left empty. 
+     * @throws IllegalArgumentException if the ranges of the lists overlap */
+    void concat(SortedList<E> other);
+    
+    
+    /** @return an immutable copy of this list, laid out for fast reads, 
+     * which can be shared between threads without locks
+     * @see FrozenSortedList */
+    FrozenSortedList<E> freeze();
+    
+    
+    /** Returns a view of the portion of this list whose elements range from <code>fromValue</code> to <code>toValue</code>.
+     * The view is backed by this list, so changes in one are reflected in the other, 
+     * and the view supports all of the operations that this list supports.
+     * Inserting an element outside of the range into the view throws an {@link IllegalArgumentException}.
+     * Narrowing a view returns another view of this list, not a copy.
+     * @see java.util.NavigableSet#subSet(Object, boolean, Object, boolean) */
+    SortedList<E> subList(E fromValue, boolean fromInclusive, E toValue, boolean toInclusive);
+    /** (optional operation)
+     * @param from <code>compareTo</code> must be monotonically increasing over the ordered elements in the list 
+     * @param to <code>compareTo</code> must be monotonically increasing over the ordered elements in the list 
+     * @return a view of the portion of this list of elements <code>x</code> where 
+     * <code>from.compareTo(x) &lt;= 0</code> (<code>&lt; 0</code> if not <code>fromInclusive</code>) and 
+     * <code>0 &lt;= to.compareTo(x)</code> (<code>0 &lt;</code> if not <code>toInclusive</code>),
+     * as {@link #subList(Object, boolean, Object, boolean)} */
+    SortedList<E> subList(Comparable<? super E> from, boolean fromInclusive, Comparable<? super E> to, boolean toInclusive);
+    
+    
+    /** Returns a view of the portion of this list whose elements are less than 
+     * (or equal to, if <code>inclusive</code>) <code>toValue</code>,
+     * as {@link #subList(Object, boolean, Object, boolean)}.
+     * @see java.util.NavigableSet#headSet(Object, boolean) */
+    SortedList<E> headList(E toValue, boolean inclusive);
+    /** (optional operation)
+     * @param to <code>compareTo</code> must be monotonically increasing over the ordered elements in the list 
+     * @return a view of the portion of this list of elements <code>x</code> where 
+     * <code>0 &lt;= to.compareTo(x)</code> (<code>0 &lt;</code> if not <code>inclusive</code>),
+     * as {@link #subList(Object, boolean, Object, boolean)} */
+    SortedList<E> headList(Comparable<? super E> to, boolean inclusive);
+    
+    
+    /** Returns a view of the portion of this list whose elements are greater than 
+     * (or equal to, if <code>inclusive</code>) <code>fromValue</code>,
+     * as {@link #subList(Object, boolean, Object, boolean)}.
+     * @see java.util.NavigableSet#tailSet(Object, boolean) */
+    SortedList<E> tailList(E fromValue, boolean inclusive);
+    /** (optional operation)
+     * @param from <code>compareTo</code> must be monotonically increasing over the ordered elements in the list 
+     * @return a view of the portion of this list of elements <code>x</code> where 
+     * <code>from.compareTo(x) &lt;= 0</code> (<code>&lt; 0</code> if not <code>inclusive</code>),
+     * as {@link #subList(Object, boolean, Object, boolean)} */
+    SortedList<E> tailList(Comparable<? super E> from, boolean inclusive);
 }
@@ -0,0 +1,298 @@
+package nu.lodes.sortedlist;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.Ordering;
+
+
+/** Writes sorted lists to channels in a compact binary format, and reads them back.
+ *
+ * The format is a header, then the elements in order, each encoded by an {@link ElementCodec}
+ * relative to the element before it. The header is the magic number {@link #MAGIC},
+ * the format version {@link #FORMAT_VERSION} (one byte), the size (four bytes),
+ * and the id of the comparator (a varint length and UTF-8), which names the order of the elements:
+ * a reader checks it against its own, since elements in another order would not be sorted.
+ * Multi-byte numbers are big-endian, and varints are unsigned LEB128.
+ *
+ * Reading streams the elements into an array, which grows up to the size of the header, and builds a
+ * balanced {@link SplaySortedList} from it in linear time, without comparing the elements
+ * beyond checking their order, and without inserting them one by one.
+ *
+ * Both directions go through one direct buffer, which the serializer reuses from call to call.
+ * Reading may read ahead of the list in the channel, by up to the size of the buffer.
+ * Not thread-safe.
+ */
+public final class SortedListSerializer<E> {
+    public static final int MAGIC = 0x534C5354;
+    public static final int FORMAT_VERSION = 1;
+    /** the id of the natural order */
+    public static final String NATURAL = "natural";
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+    /* the longest varint */
+    private static final int MAX_VARINT_SIZE = 10;
+    /* the most elements read allocates for before they are decoded */
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    
+    private final Comparator<? super E> comparator;
+    private final String comparatorId;
+    private final ElementCodec<E> codec;
+    private final ByteBuffer buffer;
+    
+    
+    /** Serializes elements in natural order. */
+    @SuppressWarnings("unchecked")
+    public SortedListSerializer(ElementCodec<E> codec) {
+        this((Comparator<? super E>) Ordering.<Comparable<E>>natural(), NATURAL, codec);
+    }
+    
+    /** @param comparatorId identifies the order of the comparator in the header */
+    public SortedListSerializer(Comparator<? super E> comparator, String comparatorId, ElementCodec<E> codec) {
+        this(comparator, comparatorId, codec, DEFAULT_BUFFER_SIZE);
+    }
+    
+    /** @param comparatorId identifies the order of the comparator in the header
+     * @param bufferSize the size of the buffer between the codec and the channels */
+    public SortedListSerializer(Comparator<? super E> comparator, String comparatorId, ElementCodec<E> codec, int bufferSize) {
+        if (bufferSize < MAX_VARINT_SIZE)
+            throw new IllegalArgumentException("" + bufferSize);
+        this.comparator = comparator;
+        this.comparatorId = comparatorId;
+        this.codec = codec;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+    
+    
+    
+    /////// WRITING ///////
+    
+    /** Writes the header and the elements of the list to the channel. Does not close the channel.
+     * @throws IllegalArgumentException if the list is not in the order of this serializer */
+    public void write(SortedList<? extends E> sortedList, WritableByteChannel channel) throws IOException {
+        if (!comparator.equals(sortedList.comparator()))
+            throw new IllegalArgumentException("" + sortedList.comparator());
+        int size = sortedList.size();
+        byte[] id = comparatorId.getBytes(StandardCharsets.UTF_8);
+        buffer.clear();
+        Output out = new Output(buffer, channel);
+        out.putInt(MAGIC);
+        out.putByte(FORMAT_VERSION);
+        out.putInt(size);
+        out.putVarLong(id.length);
+        out.put(id, 0, id.length);
+        @Nullable E previous = null;
+        int count = 0;
+        for (Iterator<? extends E> i = sortedList.iterator(); i.hasNext(); ++count) {
+            E value = i.next();
+            codec.encode(previous, value, out);
+            previous = value;
+        }
+        if (size != count)
+            throw new ConcurrentModificationException();
+        out.flush();
+    }
+    
+    
+    /////// READING ///////
+    
+    /** Reads a list written by {@link #write}, into a balanced list that splays on every read. */
+    public SplaySortedList<E> read(ReadableByteChannel channel) throws IOException {
+        return read(channel, SplayPolicy.always());
+    }
+    
+    /** Reads a list written by {@link #write}, into a balanced list.
+     * @throws IOException if the header does not match this serializer, or the elements are out of order
+     * @throws EOFException if the channel ends before the size of the header */
+    public SplaySortedList<E> read(ReadableByteChannel channel, SplayPolicy policy) throws IOException {
+        buffer.clear().flip();
+        Input in = new Input(buffer, channel);
+        int magic = in.getInt();
+        if (MAGIC != magic)
+            throw new IOException(String.format("magic %08x", magic));
+        int version = in.getByte() & 0xFF;
+        if (FORMAT_VERSION != version)
+            throw new IOException("format version " + version);
+        int size = in.getInt();
+        if (size < 0)
+            throw new IOException("size " + size);
+        String id = new String(in.get(in.getVarInt()), StandardCharsets.UTF_8);
+        if (!comparatorId.equals(id))
+            throw new IOException(String.format("comparator %s, expected %s", id, comparatorId));
+        
+        // the size is not trusted for the allocation: the array grows as the elements arrive,
+        // so a corrupt size runs into the end of the channel instead of the end of the heap
+        Object[] values = new Object[Math.min(size, INITIAL_CAPACITY)];
+        @Nullable E previous = null;
+        for (int i = 0; i < size; ++i) {
+            E value = codec.decode(previous, in);
+            if (null != previous && 0 < comparator.compare(previous, value))
+                throw new IOException(String.format("%s before %s at %d", previous, value, i));
+            if (values.length == i) {
+                values = Arrays.copyOf(values, (int) Math.min(size, 2L * i));
+            }
+            values[i] = value;
+            previous = value;
+        }
+        SplaySortedList<E> sortedList = new SplaySortedList<E>(comparator, policy);
+        sortedList.load(values, size);
+        return sortedList;
+    }
+    
+    
+    /////// BUFFERS ///////
+    
+    /** The bytes of the elements being written, which go to the channel as the buffer fills. */
+    public static final class Output {
+        private final ByteBuffer buffer;
+        private final WritableByteChannel channel;
+        
+        Output(ByteBuffer buffer, WritableByteChannel channel) {
+            this.buffer = buffer;
+            this.channel = channel;
+        }
+        
+        public void putByte(int b) throws IOException {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.put((byte) b);
+        }
+        
+        public void putInt(int i) throws IOException {
+            if (buffer.remaining() < 4) {
+                flush();
+            }
+            buffer.putInt(i);
+        }
+        
+        public void putLong(long l) throws IOException {
+            if (buffer.remaining() < 8) {
+                flush();
+            }
+            buffer.putLong(l);
+        }
+        
+        /** Puts the value as an unsigned varint: seven bits a byte, low bits first,
+         * with the high bit set on all but the last byte. */
+        public void putVarLong(long l) throws IOException {
+            if (buffer.remaining() < MAX_VARINT_SIZE) {
+                flush();
+            }
+            for (; 0L != (l & ~0x7FL); l >>>= 7) {
+                buffer.put((byte) (l | 0x80));
+            }
+            buffer.put((byte) l);
+        }
+        
+        public void put(byte[] bytes, int offset, int length) throws IOException {
+            while (0 < length) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int n = Math.min(length, buffer.remaining());
+                buffer.put(bytes, offset, n);
+                offset += n;
+                length -= n;
+            }
+        }
+        
+        /** Writes the buffer to the channel, and clears it. */
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+    
+    /** The bytes of the elements being read, which come from the channel as the buffer empties. */
+    public static final class Input {
+        private final ByteBuffer buffer;
+        private final ReadableByteChannel channel;
+        
+        Input(ByteBuffer buffer, ReadableByteChannel channel) {
+            this.buffer = buffer;
+            this.channel = channel;
+        }
+        
+        public byte getByte() throws IOException {
+            if (!buffer.hasRemaining()) {
+                fill(1);
+            }
+            return buffer.get();
+        }
+        
+        public int getInt() throws IOException {
+            if (buffer.remaining() < 4) {
+                fill(4);
+            }
+            return buffer.getInt();
+        }
+        
+        public long getLong() throws IOException {
+            if (buffer.remaining() < 8) {
+                fill(8);
+            }
+            return buffer.getLong();
+        }
+        
+        /** @see Output#putVarLong */
+        public long getVarLong() throws IOException {
+            long l = 0L;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = getByte();
+                l |= (b & 0x7FL) << shift;
+                if (0 <= b) {
+                    return l;
+                }
+            }
+            throw new IOException("varint longer than " + MAX_VARINT_SIZE + " bytes");
+        }
+        
+        /** @return a varint that is a non-negative <code>int</code>, such as a length */
+        public int getVarInt() throws IOException {
+            long l = getVarLong();
+            if (l < 0L || Integer.MAX_VALUE < l)
+                throw new IOException("varint " + l + " out of range");
+            return (int) l;
+        }
+        
+        public byte[] get(int length) throws IOException {
+            byte[] bytes = new byte[length];
+            for (int offset = 0; offset < length; ) {
+                if (!buffer.hasRemaining()) {
+                    fill(1);
+                }
+                int n = Math.min(length - offset, buffer.remaining());
+                buffer.get(bytes, offset, n);
+                offset += n;
+            }
+            return bytes;
+        }
+        
+        /** Reads from the channel until at least <code>n</code> bytes remain in the buffer.
+         * @throws EOFException if the channel ends first */
+        private void fill(int n) throws IOException {
+            buffer.compact();
+            try {
+                while (buffer.position() < n) {
+                    if (channel.read(buffer) < 0)
+                        throw new EOFException();
+                }
+            } finally {
+                buffer.flip();
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package nu.lodes.sortedlist;
+
+/** Decides when a read access on a {@link SplaySortedList} splays the accessed node to the root.
+ * Reads are <code>get</code>, <code>contains</code>, <code>indexOf</code>, <code>lastIndexOf</code>
+ * (of a value or of a {@link Comparable} query) and the navigation operations.
+ * Inserts and removes always splay.
+ * The counting queries (<code>rank</code>, <code>equalRange</code>, <code>countBetween</code>) never splay,
+ * and neither do iterators, {@link Cursor}s and the batch <code>navigateAll</code> queries.
+ *
+ * Splaying moves recently accessed elements, and the elements near them, close to the root,
+ * which pays off when accesses are skewed or sequential. For uniform random reads the rotations
+ * cost more than they save, and a read that splays is a write to the tree,
+ * so it cannot be shared with other readers. A read that does not splay
+ * is a plain descent of the counted tree.
+ *
+ * A policy is consulted before the access ({@link #splayBefore}); if it does not splay,
+ * the tree is descended without restructuring, and the policy is consulted again with the
+ * depth of the path ({@link #splayAfter}).
+ *
+ * Policies may hold state (e.g. a counter), so an instance should be used by one list;
+ * {@link #copy} makes another instance for another list.
+ * Like the list, they are not thread safe. */
+public abstract class SplayPolicy {
+
+    protected SplayPolicy() {
+    }
+    
+    
+    /** @param size the size of the list
+     * @return whether to splay instead of descending */
+    protected boolean splayBefore(int size) {
+        return false;
+    }
+    
+    /** @param depth the number of nodes on the path of the descent
+     * @param size the size of the list
+     * @return whether to splay the node at the end of the descent */
+    protected boolean splayAfter(int depth, int size) {
+        return false;
+    }
+    
+    /** @return a policy that decides as this one does, with state of its own,
+     * for another list (e.g. the tail of {@link SplaySortedList#split(int)}).
+     * By default this policy itself, which is right for a policy without state;
+     * a policy that holds state must override this. */
+    public SplayPolicy copy() {
+        return this;
+    }
+    
+    
+    /** Every read splays. */
+    public static SplayPolicy always() {
+        return ALWAYS;
+    }
+    
+    /** No read splays. Reads do not modify the tree, so they can be shared
+     * between threads if there are no concurrent writes. */
+    public static SplayPolicy never() {
+        return NEVER;
+    }
+    
+    /** Every <code>k</code>-th read splays. */
+    public static SplayPolicy everyKth(final int k) {
+        if (k < 1)
+            throw new IllegalArgumentException("" + k);
+        return new SplayPolicy() {
+            int i = 0;
+            
+            @Override
+            protected boolean splayBefore(int size) {
+                if (++i < k) {
+                    return false;
+                }
+                i = 0;
+                return true;
+            }
+            
+            @Override
+            public SplayPolicy copy() {
+                return everyKth(k);
+            }
+            
+            @Override
+            public String toString() {
+                return "everyKth(" + k + ")";
+            }
+        };
+    }
+    
+    /** Each read splays with probability <code>p</code>. */
+    public static SplayPolicy probabilistic(final double p) {
+        if (!(0.0 <= p && p <= 1.0))
+            throw new IllegalArgumentException("" + p);
+        // compare against the top 31 bits of the generator
+        final int threshold = (int) (p * (1L << 31) - 1);
+        return new SplayPolicy() {
+            /* xorshift; cheaper than java.util.Random on each read */
+            int x = 0x9E3779B9 ^ (int) System.nanoTime() | 1;
+            
+            @Override
+            protected boolean splayBefore(int size) {
+                x ^= x << 13;
+                x ^= x >>> 17;
+                x ^= x << 5;
+                return (x >>> 1) <= threshold;
+            }
+            
+            @Override
+            public SplayPolicy copy() {
+                return probabilistic(p);
+            }
+            
+            @Override
+            public String toString() {
+                return "probabilistic(" + p + ")";
+            }
+        };
+    }
+    
+    /** A read splays if the path was deeper than <code>c lg n</code>.
+     * A balanced tree has depth about <code>lg n</code>, so for <code>1 &lt; c</code>
+     * the tree is restructured only where splaying has left it deep. */
+    public static SplayPolicy depthThreshold(final double c) {
+        if (!(0.0 <= c))
+            throw new IllegalArgumentException("" + c);
+        return new SplayPolicy() {
+            @Override
+            protected boolean splayAfter(int depth, int size) {
+                return c * (32 - Integer.numberOfLeadingZeros(size)) < depth;
+            }
+            
+            @Override
+            public String toString() {
+                return "depthThreshold(" + c + ")";
+            }
+        };
+    }
+    
+    
+    private static final SplayPolicy ALWAYS = new SplayPolicy() {
+        @Override
+        protected boolean splayBefore(int size) {
+            return true;
+        }
+        
+        @Override
+        public String toString() {
+            return "always";
+        }
+    };
+    
+    private static final SplayPolicy NEVER = new SplayPolicy() {
+        @Override
+        public String toString() {
+            return "never";
+        }
+    };
+}
@@ -1,9 +1,15 @@
 package nu.lodes.sortedlist;
 
-import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 
 import javax.annotation.Nullable;
 
@@ -23,22 +29,44 @@ import com.google.common.collect.Ordering;
  * Because of splaying, "get"s give faster access to 
  * recently accessed values/indexes, 
  * or values/indexes near them.
+ * The root acts as a finger: inserts and removes at or near the ends,
+ * or near the last access, (e.g. sorted or nearly sorted insertion, 
+ * or {@link #pollFirst}/{@link #pollLast}) are amortized constant time,
+ * or logarithmic in the distance from the last access.
+ * Whether reads (get, contains, indexOf and the navigation operations) splay
+ * is decided by a {@link SplayPolicy}; by default every read splays.
+ * Counters of the splays, rotations, comparisons and search depths can be enabled
+ * with {@link #setStatsEnabled}, and read by {@link #stats()} or over JMX ({@link #statsMXBean()}).
+ *
+ * Duplicates are held as a run in a single node, in insertion order,
+ * with the run length counted in the sub-tree counters.
+ * Memory and tree height grow with the number of distinct values,
+ * and index operations remain logarithmic through count arithmetic.
  * 
  * Based on notes:
  * @see CLR
  * @see (based on) ftp://ftp.cs.cmu.edu/usr/ftp/usr/sleator/splaying/SplayTree.java
  */
-// FIXME inserting in sequential order bad perf
-// FIXME support duplicates
 // FIXME implement SortedList API correctly
-// FIXME (iterator an all ops should splay)
-public final class SplaySortedList<E> extends AbstractList<E> implements SortedList<E> {
+public final class SplaySortedList<E> extends AbstractSortedList<E> {
+    
+    /* insertAll re-links the whole tree when the batch is at least 
+     * 1/MERGE_REBUILD_RATIO of the list size */
+    private static final int MERGE_REBUILD_RATIO = 4;
     
     private final Comparator<? super E> comparator;
+    private final SplayPolicy policy;
     private @Nullable Node<E> root;
     
     /* for splaying */
     private final Node<E> header = new Node<E>(null);
+    /* incremented each time the tree is restructured without a change in size (splaying),
+     * so that iterators know to re-seek their path */
+    private int shapeCount = 0;
+    /* the number of nodes on the path of the last search */
+    private int depth = 0;
+    /* null while the stats are disabled, so that they cost a null check */
+    private @Nullable Counters stats = null;
     
     
     @SuppressWarnings("unchecked")
@@ -47,7 +75,57 @@ public final class SplaySortedList<E> extends AbstractList<E> implements SortedL
     }
     
     public SplaySortedList(Comparator<? super E> comparator) {
+        this(comparator, SplayPolicy.always());
+    }
+    
+    /** @param policy decides when reads splay. Inserts and removes always splay. */
+    @SuppressWarnings("unchecked")
+    public SplaySortedList(SplayPolicy policy) {
+        this((Comparator<? super E>) Ordering.<Comparable<E>>natural(), policy);
+    }
+    
+    /** @param policy decides when reads splay. Inserts and removes always splay. */
+    public SplaySortedList(Comparator<? super E> comparator, SplayPolicy policy) {
         this.comparator = comparator;
+        this.policy = policy;
+    }
+    
+    /** Builds a balanced tree from the values in linear time after sorting.
+     * @see #rebuild */
+    @SuppressWarnings("unchecked")
+    public SplaySortedList(Collection<? extends E> values) {
+        this((Comparator<? super E>) Ordering.<Comparable<E>>natural(), values);
+    }
+    
+    /** Builds a balanced tree from the values in linear time after sorting.
+     * @see #rebuild */
+    public SplaySortedList(Comparator<? super E> comparator, Collection<? extends E> values) {
+        this(comparator, SplayPolicy.always());
+        Object[] a = values.toArray();
+        load(a, a.length);
+    }
+    
+    /** Builds a balanced tree from the values in linear time after sorting.
+     * The array is not modified. */
+    public static <E> SplaySortedList<E> create(Comparator<? super E> comparator, E[] values) {
+        SplaySortedList<E> sortedList = new SplaySortedList<E>(comparator);
+        sortedList.load(values.clone(), values.length);
+        return sortedList;
+    }
+    
+    /** Builds a balanced tree from the values in linear time after sorting. */
+    public static <E> SplaySortedList<E> create(Comparator<? super E> comparator, Iterator<? extends E> values) {
+        Object[] a = new Object[16];
+        int n = 0;
+        while (values.hasNext()) {
+            if (a.length == n) {
+                a = Arrays.copyOf(a, 2 * n);
+            }
+            a[n++] = values.next();
+        }
+        SplaySortedList<E> sortedList = new SplaySortedList<E>(comparator);
+        sortedList.load(a, n);
+        return sortedList;
     }
     
     
@@ -57,79 +135,285 @@ public final class SplaySortedList<E> extends AbstractList<E> implements SortedL
         if (null == root || index < 0 || root.count <= index)
             throw new IndexOutOfBoundsException();
         Node<E> y = root;
-        for (int c; 0 != (c = index - (null != y.left ? y.left.count : 0));) {
+        depth = 1;
+        for (int c; ; ++depth) {
+            c = index - (null != y.left ? y.left.count : 0);
             if (c < 0) {
                 y = y.left;
+            } else if (c < y.n) {
+                if (null != stats) {
+                    stats.descended(depth, 0);
+                }
+                return y.get(c);
             } else {
-                index -= 1 + (null != y.left ? y.left.count : 0);
+                index = c - y.n;
                 y = y.right;
             }
         }
-        return y.value;
     }
     
-    FindResult<E> search(final E value) {
-        return search(comparable(value, comparator));
-    }
-    /** Finds the value that matches, or the values around, 
-     * the given query. Does not splay.
+    /** Searches for the run of elements equal to the query, in one descent 
+     * that does not allocate. Does not splay.
+     * The query is <code>q</code> if not <code>null</code>, 
+     * otherwise <code>value</code> by the comparator.
      * @param q must have an implied ordering of the internal
      * comparator, but can be based on a different object
      * representation than E. e.g. E may be a complex object
      * (A, B, ...), and <code>op</code> can be a prefix (A, ...),
-     * or some order implied on other fields of E.*/
-    FindResult<E> search(Comparable<? super E> q) {
-        if (null == root) {
-            return new FindResult<E>(null, -1, 1);
+     * or some order implied on other fields of E.
+     * @return as {@link Arrays#binarySearch}, the first (or last, if <code>last</code>) index 
+     * of an element equal to the query, if there is one;
+     * otherwise <code>(-(insertion point) - 1)</code> */
+    private int search(@Nullable Comparable<? super E> q, @Nullable E value, boolean last) {
+        int index = 0;
+        boolean equal = false;
+        depth = 0;
+        for (Node<E> y = root; null != y; ++depth) {
+            int c = compare(q, value, y.value);
+            if (c < 0 || 0 == c && !last) {
+                if (!last) {
+                    equal = 0 == c;
+                }
+                y = y.left;
+            } else {
+                if (last) {
+                    equal = 0 == c;
+                }
+                index += y.n + (null != y.left ? y.left.count : 0);
+                y = y.right;
+            }
+        }
+        if (null != stats) {
+            stats.descended(depth, depth);
+        }
+        if (!equal) {
+            return -index - 1;
+        }
+        return last ? index - 1 : index;
+    }
+    
+    /** Finds the element of a navigation operation, in one descent that does not allocate,
+     * and splays as decided by the policy.
+     * The descent is to the lower bound of the query (the first element not less than the query),
+     * or the upper bound (the first element greater than the query), 
+     * and the result is the element just before or at the bound.
+     * @param orEqual whether an element equal to the query 
+     * (at the lower bound, or before the upper bound) is the result */
+    private @Nullable E navigate(@Nullable Comparable<? super E> q, @Nullable E value, boolean upper, boolean orEqual) {
+        try {
+            boolean splayed = splayBefore(q, value);
+            Node<E> before = null;
+            Node<E> at = null;
+            boolean equal = false;
+            depth = 0;
+            for (Node<E> y = root; null != y; ++depth) {
+                int c = compare(q, value, y.value);
+                if (c < 0 || 0 == c && !upper) {
+                    if (!upper) {
+                        equal = 0 == c;
+                    }
+                    at = y;
+                    y = y.left;
+                } else {
+                    if (upper) {
+                        equal = 0 == c;
+                    }
+                    before = y;
+                    y = y.right;
+                }
+            }
+            if (null != stats) {
+                stats.descended(depth, depth);
+            }
+            splayAfter(splayed, q, value);
+            
+            if (orEqual && equal) {
+                return upper ? before.last() : at.value;
+            } else if (upper) {
+                return null != at ? at.value : null;
+            } else {
+                return null != before ? before.last() : null;
+            }
+        } finally {
+            assert checkInvariants();
         }
+    }
+    
+    /** Searches as {@link #search(Comparable, Object, boolean)}, and splays as decided by the policy. */
+    private int find(@Nullable Comparable<? super E> q, @Nullable E value, boolean last) {
+        try {
+            boolean splayed = splayBefore(q, value);
+            int r = search(q, value, last);
+            splayAfter(splayed, q, value);
+            return r;
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    private int compare(@Nullable Comparable<? super E> q, @Nullable E value, E x) {
+        return null != q ? q.compareTo(x) : comparator.compare(value, x);
+    }
+    
+    
+    /* the counting queries descend without splaying */
+    
+    @Override
+    int startIndex(Comparable<? super E> from, boolean inclusive) {
+        return bound(root, from, !inclusive);
+    }
+    
+    @Override
+    int endIndex(Comparable<? super E> to, boolean inclusive) {
+        return bound(root, to, inclusive);
+    }
+    
+    /** @return if <code>upper</code>, the number of elements <code>x</code> in the sub-tree <code>y</code>
+     * where <code>q.compareTo(x) &gt;= 0</code>,
+     * otherwise the number of elements where <code>q.compareTo(x) &gt; 0</code>. Does not splay. */
+    private static <E> int bound(@Nullable Node<E> y, Comparable<? super E> q, boolean upper) {
         int index = 0;
-        Node<E> y = root;
-        
-        
-        int c;
-        while (0 != (c = q.compareTo(y.value))) {
-            if (c < 0) {
-                if (null == y.left)
-                    break;
+        while (null != y) {
+            int c = q.compareTo(y.value);
+            if (c < 0 || 0 == c && !upper) {
                 y = y.left;
             } else {
-                if (null == y.right)
-                    break;
-                index += 1 + (null != y.left ? y.left.count : 0);
+                index += y.n + (null != y.left ? y.left.count : 0);
                 y = y.right;
             }
         }
-        
-
-        index += null != y.left ? y.left.count : 0;
-        
-        // c is q.compare(y.value)
-        return new FindResult<E>(y.value, index, c); 
+        return index;
     }
     
     
     /////// SPLAYING ///////
     
-    // FIXME have a version of splay that uses a comparator
+    /** If the policy splays before a read, splays for the query.
+     * @return whether it splayed */
+    private boolean splayBefore(@Nullable Comparable<? super E> q, @Nullable E value) {
+        if (null == root || !policy.splayBefore(root.count)) {
+            return false;
+        }
+        splay(q, value);
+        return true;
+    }
+    
+    /** If the read did not splay before, and the policy splays after a descent 
+     * of the last {@link #depth}, splays for the query. */
+    private void splayAfter(boolean splayed, @Nullable Comparable<? super E> q, @Nullable E value) {
+        if (!splayed && null != root && policy.splayAfter(depth, root.count)) {
+            splay(q, value);
+        }
+    }
+    
+    private void splay(@Nullable Comparable<? super E> q, @Nullable E value) {
+        if (null != q) {
+            splay(q);
+        } else {
+            splay(value);
+        }
+    }
     
+    /** Splays the node that a search for <code>q</code> ends at:
+     * the node equal to <code>q</code>, or the node before or after where <code>q</code> would be. */
+    private void splay(Comparable<? super E> q) {
+        ++shapeCount;
+        Node<E> l, r, t, y;
+        l = r = header;
+        t = root;
+        header.left = header.right = null;
+        header.count = 0;
+        /* for the stats: each link and each zig-zig check is a comparison after the first */
+        int links = 0, checks = 0, rotations = 0;
+        for (int c; 0 != (c = q.compareTo(t.value)); ) {
+            if (c < 0) {
+                if (null == t.left)
+                    break;
+                ++checks;
+                if (q.compareTo(t.left.value) < 0) {
+                    // rotate right + preserve counts
+                    ++rotations;
+                    y = t.left;
+                    t.left = y.right;
+                    y.right = t;
+                    
+                    y.count += t.n + (null != t.right ? t.right.count : 0);
+                    t.count -= y.n + (null != y.left ? y.left.count : 0);
+                    
+                    t = y;
+                    if (null == t.left)
+                        break;
+                }
+                
+                // link right
+                ++links;
+                r.left = t;
+                r = t;
+                t = t.left;
+            } else {
+                if (null == t.right)
+                    break;
+                ++checks;
+                if (0 < q.compareTo(t.right.value)) {
+                    // rotate left + preserve counts
+                    ++rotations;
+                    y = t.right;
+                    t.right = y.left;
+                    y.left = t;
+                    
+                    y.count += t.n + (null != t.left ? t.left.count : 0);
+                    t.count -= y.n + (null != y.right ? y.right.count : 0);
+                    
+                    t = y;
+                    if (null == t.right)
+                        break;
+                }
+                
+                // link left
+                ++links;
+                l.right = t;
+                l = t;
+                t = t.right;
+            }
+        }
+        
+        // assemble + reset counts
+        l.right = t.left;
+        r.left = t.right;        
+        t.left = header.right;
+        t.right = header.left;
+        
+        resetLrCounts(t, l, r);
+        t.count = t.n + (null != t.left ? t.left.count : 0) + (null != t.right ? t.right.count : 0);
+        
+        root = t;
+        if (null != stats) {
+            stats.splayed(1 + links + rotations, 1 + links + checks, rotations);
+        }
+    }
     private void splay(E value) {
+        ++shapeCount;
         Node<E> l, r, t, y;
         l = r = header;
         t = root;
         header.left = header.right = null;
         header.count = 0;
+        /* for the stats: each link and each zig-zig check is a comparison after the first */
+        int links = 0, checks = 0, rotations = 0;
         for (int c; 0 != (c = comparator.compare(value, t.value)); ) {
             if (c < 0) {
                 if (null == t.left)
                     break;
+                ++checks;
                 if (comparator.compare(value, t.left.value) < 0) {
                     // rotate right + preserve counts
+                    ++rotations;
                     y = t.left;
                     t.left = y.right;
                     y.right = t;
                     
-                    y.count += 1 + (null != t.right ? t.right.count : 0);
-                    t.count -= 1 + (null != y.left ? y.left.count : 0);
+                    y.count += t.n + (null != t.right ? t.right.count : 0);
+                    t.count -= y.n + (null != y.left ? y.left.count : 0);
                     
                     t = y;
                     if (null == t.left)
@@ -137,20 +421,23 @@ public final class SplaySortedList<E> extends AbstractList<E> implements SortedL
                 }
                 
                 // link right
+                ++links;
                 r.left = t;
                 r = t;
                 t = t.left;
             } else {
                 if (null == t.right)
                     break;
+                ++checks;
                 if (0 < comparator.compare(value, t.right.value)) {
                     // rotate left + preserve counts
+                    ++rotations;
                     y = t.right;
                     t.right = y.left;
                     y.left = t;
                     
-                    y.count += 1 + (null != t.left ? t.left.count : 0);
-                    t.count -= 1 + (null != y.right ? y.right.count : 0);
+                    y.count += t.n + (null != t.left ? t.left.count : 0);
+                    t.count -= y.n + (null != y.right ? y.right.count : 0);
                     
                     t = y;
                     if (null == t.right)
@@ -158,6 +445,7 @@ public final class SplaySortedList<E> extends AbstractList<E> implements SortedL
                 }
                 
                 // link left
+                ++links;
                 l.right = t;
                 l = t;
                 t = t.right;
@@ -170,29 +458,36 @@ public final class SplaySortedList<E> extends AbstractList<E> implements SortedL
         t.left = header.right;
         t.right = header.left;
         
-        resetLrCounts(t);
-        t.count = 1 + (null != t.left ? t.left.count : 0) + (null != t.right ? t.right.count : 0);
+        resetLrCounts(t, l, r);
+        t.count = t.n + (null != t.left ? t.left.count : 0) + (null != t.right ? t.right.count : 0);
         
         root = t;
+        if (null != stats) {
+            stats.splayed(1 + links + rotations, 1 + links + checks, rotations);
+        }
     }
     private void splay(int index) {
+        ++shapeCount;
         Node<E> l, r, t, y;
         l = r = header;
         t = root;
         header.left = header.right = null;
         header.count = 0;
-        for (int c; 0 != (c = index - (null != t.left ? t.left.count : 0));) {
+        int links = 0, rotations = 0;
+        for (int c; ; ) {
+            c = index - (null != t.left ? t.left.count : 0);
             if (c < 0) {
                 if (null == t.left)
                     break;
                 if (index - (null != t.left.left ? t.left.left.count : 0) < 0) {
                     // rotate right + preserve counts
+                    ++rotations;
                     y = t.left;
                     t.left = y.right;
                     y.right = t;
                     
-                    y.count += 1 + (null != t.right ? t.right.count : 0);
-                    t.count -= 1 + (null != y.left ? y.left.count : 0);
+                    y.count += t.n + (null != t.right ? t.right.count : 0);
+                    t.count -= y.n + (null != y.left ? y.left.count : 0);
                     
                     t = y;
                     if (null == t.left)
@@ -200,23 +495,27 @@ public final class SplaySortedList<E> extends AbstractList<E> implements SortedL
                 }
                 
                 // link right
+                ++links;
                 r.left = t;
                 r = t;
                 t = t.left;
+            } else if (c < t.n) {
+                break;
             } else {
-                index -= 1 + (null != t.left ? t.left.count : 0);
+                index = c - t.n;
                 if (null == t.right)
                     break;
-                if (0 < index - (null != t.right.left ? t.right.left.count : 0)) {
-                    index -= 1 + (null != t.right.left ? t.right.left.count : 0);
+                if (t.right.n <= index - (null != t.right.left ? t.right.left.count : 0)) {
+                    index -= t.right.n + (null != t.right.left ? t.right.left.count : 0);
                     
                     // rotate left + preserve counts
+                    ++rotations;
                     y = t.right;
                     t.right = y.left;
                     y.left = t;
                     
-                    y.count += 1 + (null != t.left ? t.left.count : 0);
-                    t.count -= 1 + (null != y.right ? y.right.count : 0);
+                    y.count += t.n + (null != t.left ? t.left.count : 0);
+                    t.count -= y.n + (null != y.right ? y.right.count : 0);
                     
                     t = y;
                     if (null == t.right)
@@ -224,6 +523,7 @@ public final class SplaySortedList<E> extends AbstractList<E> implements SortedL
                 }
                 
                 // link left
+                ++links;
                 l.right = t;
                 l = t;
                 t = t.right;
@@ -236,69 +536,58 @@ public final class SplaySortedList<E> extends AbstractList<E> implements SortedL
         t.left = header.right;
         t.right = header.left;
         
-        resetLrCounts(t);
-        t.count = 1 + (null != t.left ? t.left.count : 0) + (null != t.right ? t.right.count : 0);
+        resetLrCounts(t, l, r);
+        t.count = t.n + (null != t.left ? t.left.count : 0) + (null != t.right ? t.right.count : 0);
         
         root = t;
+        if (null != stats) {
+            stats.splayed(1 + links + rotations, 0, rotations);
+        }
     }
     /** repairs counts on re-linked LR subtrees from the top-down splay. 
-     * The nodes on the paths to the next-lowest 
-     * and next-highest elements did not have the sub-tree counts
-     * updated correctly. The nodes off that path have
+     * The nodes linked into the left tree (from <code>n.left</code> along right links to <code>l</code>)
+     * and into the right tree (from <code>n.right</code> along left links to <code>r</code>)
+     * did not have the sub-tree counts updated correctly. The nodes off those chains have
      * correct sub-tree counts due to preserving the counts in the rotation steps.
-     * This algorithm walks the paths to the next-lowest and next-highest
-     * (from <code>n</code>) and resets the counts, assuming the nodes
-     * off that path have correct counts.
+     * This algorithm walks only the linked chains and resets the counts bottom-up,
+     * so the cost is proportional to the splay path. (Walking the whole spines
+     * below the chains made sequential insertion quadratic.)
+     * @param l the last node linked into the left tree, or the header if none was
+     * @param r the last node linked into the right tree, or the header if none was
      */
-    private void resetLrCounts(Node<E> n) {
+    private void resetLrCounts(Node<E> n, Node<E> l, Node<E> r) {
         Node<E> y;
         int c;
         
         // reset counts on left
-        c = 0;
-        for (y = n.left; null != y; ) {
-            c += 1;
-            if (null != y.right) {
-                if (null != y.left)
-                    c += y.left.count;
-                y = y.right;
-            } else {
-                y = y.left;
+        if (header != l) {
+            c = null != l.right ? l.right.count : 0;
+            for (y = n.left; ; y = y.right) {
+                c += y.n + (null != y.left ? y.left.count : 0);
+                if (l == y)
+                    break;
             }
-        }
-        for (y = n.left; null != y; ) {
-            y.count = c;
-            c -= 1;
-            if (null != y.right) {
-                if (null != y.left)
-                    c -= y.left.count;
-                y = y.right;
-            } else {
-                y = y.left;
+            for (y = n.left; ; y = y.right) {
+                y.count = c;
+                if (l == y)
+                    break;
+                c -= y.n + (null != y.left ? y.left.count : 0);
             }
         }
         
         // reset counts on right
-        c = 0;
-        for (y = n.right; null != y; ) {
-            c += 1;
-            if (null != y.left) {
-                if (null != y.right)
-                    c += y.right.count;
-                y = y.left;
-            } else {
-                y = y.right;
+        if (header != r) {
+            c = null != r.left ? r.left.count : 0;
+            for (y = n.right; ; y = y.left) {
+                c += y.n + (null != y.right ? y.right.count : 0);
+                if (r == y)
+                    break;
             }
-        }
-        for (y = n.right; null != y; ) {
-            y.count = c;
-            c -= 1;
-            if (null != y.left) {
-                if (null != y.right)
-                    c -= y.right.count;
-                y = y.left;
-            } else {
-                y = y.right;
+            for (y = n.right; ; y = y.left) {
+                y.count = c;
+                if (r == y)
+                    break;
+                c -= y.n + (null != y.right ? y.right.count : 0);
             }
         }
     }
@@ -306,143 +595,240 @@ public final class SplaySortedList<E> extends AbstractList<E> implements SortedL
     
     /////// SortedList IMPLEMENTATION ///////
     
+    @Override
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+    
+    /* the navigation operations descend once without allocating: 
+     * the lower and floor operations to the lower bound of the query, 
+     * and the higher and ceiling operations to the upper bound */
+    
     @Override
     public @Nullable E lower(E value) {
-        return lower(comparable(value, comparator));
+        return navigate(null, value, false, false);
     }
 
     @Override
     public @Nullable E lower(Comparable<? super E> q) {
-        FindResult<E> r = search(q);
-        if (0 < r.c) {
-            return r.value;
-        } else if (0 < r.index) {
-            return get(r.index - 1);
-        } else {
-            return null;
-        }
+        return navigate(q, null, false, false);
     }
     
     @Override
     public int lowerIndex(E value) {
-        return lowerIndex(comparable(value, comparator));
+        int r = find(null, value, false);
+        return (0 <= r ? r : -r - 1) - 1;
     }
 
     @Override
     public int lowerIndex(Comparable<? super E> q) {
-        FindResult<E> r = search(q);
-        if (0 < r.c) {
-            return r.index;
-        } else {
-            return r.index - 1;
-        }
+        int r = find(q, null, false);
+        return (0 <= r ? r : -r - 1) - 1;
     }
     
     @Override
     public @Nullable E floor(E value) {
-        return floor(comparable(value, comparator));
+        return navigate(null, value, false, true);
     }
     
     @Override
     public @Nullable E floor(Comparable<? super E> q) {
-        FindResult<E> r = search(q);
-        if (0 <= r.c) {
-            return r.value;
-        } else if (0 < r.index) {
-            return get(r.index - 1);
-        } else {
-            return null;
-        }
+        return navigate(q, null, false, true);
     }
     
     @Override
     public int floorIndex(E value) {
-        return floorIndex(comparable(value, comparator));
+        int r = find(null, value, false);
+        return 0 <= r ? r : -r - 2;
     }
     
     @Override
     public int floorIndex(Comparable<? super E> q) {
-        FindResult<E> r = search(q);
-        if (0 <= r.c) {
-            return r.index;
-        } else {
-            return r.index - 1;
-        }
+        int r = find(q, null, false);
+        return 0 <= r ? r : -r - 2;
     }
     
     @Override
     public @Nullable E higher(E value) {
-        return higher(comparable(value, comparator));
+        return navigate(null, value, true, false);
     }
 
     @Override
     public @Nullable E higher(Comparable<? super E> q) {
-        FindResult<E> r = search(q);
-        if (r.c < 0) {
-            return r.value;
-        } else if (r.index + 1 < size()) {
-            return get(r.index + 1);
-        } else {
-            return null;
-        }
+        return navigate(q, null, true, false);
     }
     
     @Override
     public int higherIndex(E value) {
-        return higherIndex(comparable(value, comparator));
+        int r = find(null, value, true);
+        return 0 <= r ? r + 1 : -r - 1;
     }
 
     @Override
     public int higherIndex(Comparable<? super E> q) {
-        FindResult<E> r = search(q);
-        if (r.c < 0) {
-            return r.index;
-        } else {
-            return r.index + 1;
-        }
+        int r = find(q, null, true);
+        return 0 <= r ? r + 1 : -r - 1;
     }
     
     @Override
     public @Nullable E ceiling(E value) {
-        return ceiling(comparable(value, comparator));
+        return navigate(null, value, true, true);
     }
 
     @Override
     public @Nullable E ceiling(Comparable<? super E> q) {
-        FindResult<E> r = search(q);
-        if (r.c <= 0) {
-            return r.value;
-        } else if (r.index + 1 < size()) {
-            return get(r.index + 1);
-        } else {
-            return null;
-        }
+        return navigate(q, null, true, true);
     }
     
     @Override
     public int ceilingIndex(E value) {
-        return ceilingIndex(comparable(value, comparator));
+        int r = find(null, value, true);
+        return 0 <= r ? r : -r - 1;
     }
 
     @Override
     public int ceilingIndex(Comparable<? super E> q) {
-        FindResult<E> r = search(q);
-        if (r.c <= 0) {
-            return r.index;
-        } else {
-            return r.index + 1;
+        int r = find(q, null, true);
+        return 0 <= r ? r : -r - 1;
+    }
+    
+    
+    /** Holds a path from the root, like the iterator. Does not splay, and does not allocate 
+     * after the path has grown to the height of the tree.
+     * <code>next</code> and <code>previous</code> are amortized constant time. */
+    @Override
+    public Cursor<E> cursor() {
+        return new TreeCursor();
+    }
+    
+    
+    /* the batch queries search from a finger at the previous query, 
+     * so that sorted queries share their descents. They do not splay. */
+    
+    @Override
+    public void navigateAll(Navigation op, E[] values, int[] indexes) {
+        checkBatch(values.length, indexes.length);
+        Finger finger = new Finger(op);
+        for (int i = 0; i < values.length; ++i) {
+            indexes[i] = finger.index(null, values[i]);
+        }
+    }
+    
+    @Override
+    public void navigateAll(Navigation op, List<? extends E> values, int[] indexes) {
+        checkBatch(values.size(), indexes.length);
+        Finger finger = new Finger(op);
+        int i = 0;
+        for (E value : values) {
+            indexes[i++] = finger.index(null, value);
+        }
+    }
+    
+    @Override
+    public void navigateAll(Navigation op, Comparable<? super E>[] queries, int[] indexes) {
+        checkBatch(queries.length, indexes.length);
+        Finger finger = new Finger(op);
+        for (int i = 0; i < queries.length; ++i) {
+            if (null == queries[i])
+                throw new NullPointerException();
+            indexes[i] = finger.index(queries[i], null);
+        }
+    }
+    
+    @Override
+    public void navigateAll(Navigation op, E[] values, E[] elements) {
+        checkBatch(values.length, elements.length);
+        Finger finger = new Finger(op);
+        for (int i = 0; i < values.length; ++i) {
+            elements[i] = finger.element(null, values[i]);
+        }
+    }
+    
+    @Override
+    public void navigateAll(Navigation op, List<? extends E> values, E[] elements) {
+        checkBatch(values.size(), elements.length);
+        Finger finger = new Finger(op);
+        int i = 0;
+        for (E value : values) {
+            elements[i++] = finger.element(null, value);
+        }
+    }
+    
+    @Override
+    public void navigateAll(Navigation op, Comparable<? super E>[] queries, E[] elements) {
+        checkBatch(queries.length, elements.length);
+        Finger finger = new Finger(op);
+        for (int i = 0; i < queries.length; ++i) {
+            if (null == queries[i])
+                throw new NullPointerException();
+            elements[i] = finger.element(queries[i], null);
         }
     }
     
     /////// SortedList INSERTION IMPLEMENTATION ///////
     
+    /** Sorts the values and merges them into the tree.
+     * If the batch is large relative to the list, the sorted batch and the in-order nodes 
+     * are merged and re-linked into a balanced tree in linear time.
+     * Otherwise the sorted batch is inserted in order, where each splay starts 
+     * from the previously inserted value at the root, so the cost is
+     * <code>O(m lg(n/m + 1))</code> amortized (dynamic finger)
+     * instead of <code>O(m lg n)</code>. */
     @Override
+    @SuppressWarnings("unchecked")
     public boolean insertAll(Collection<? extends E> values) {
-    	boolean m = false;
-    	for (E value : values) {
-    		m |= insert(value);
-    	}
-    	return m;
+        Object[] a = values.toArray();
+        int m = a.length;
+        if (0 == m)
+            return false;
+        for (int i = 0; i < m; ++i) {
+            if (null == a[i]) {
+                throw new NullPointerException();
+            }
+        }
+        Comparator<Object> c = (Comparator<Object>) comparator;
+        if (!isSorted(a, m, c)) {
+            Arrays.sort(a, 0, m, c);
+        }
+        
+        int n = size();
+        if (n <= MERGE_REBUILD_RATIO * m) {
+            return merge(a, m);
+        }
+        for (int i = 0; i < m; ++i) {
+            insert((E) a[i]);
+        }
+        return true;
+    }
+    
+    /** Merges the sorted <code>values[0, m)</code> with the nodes of the tree,
+     * and re-links into a balanced tree. Linear time. */
+    @SuppressWarnings("unchecked")
+    private boolean merge(Object[] values, int m) {
+        try {
+            Node<E>[] nodes = null != root ? nodes(root) : (Node<E>[]) new Node[0];
+            int n = nodes.length;
+            Node<E>[] merged = new Node[n + m];
+            int k = 0;
+            for (int i = 0, j = 0; i < n || j < m; ) {
+                if (j == m || i < n && comparator.compare(nodes[i].value, (E) values[j]) <= 0) {
+                    merged[k++] = nodes[i++];
+                } else if (0 < k && 0 == comparator.compare(merged[k - 1].value, (E) values[j])) {
+                    // (counts are reset in link)
+                    merged[k - 1].add((E) values[j++]);
+                } else {
+                    merged[k++] = new Node<E>((E) values[j++]);
+                }
+            }
+            root = link(merged, 0, k);
+            ++modCount;
+            if (null != stats) {
+                stats.inserts += m;
+            }
+            return true;
+        } finally {
+            assert checkInvariants();
+        }
     }
 
     @Override
@@ -450,17 +836,26 @@ public final class SplaySortedList<E> extends AbstractList<E> implements SortedL
         if (null == value) {
             throw new NullPointerException();
         }
+        if (null != stats) {
+            ++stats.inserts;
+        }
         
         try {
             if (null == root) {
                 root = new Node<E>(value);
+                ++modCount;
                 return true;
             }
             
             splay(value);
             int c = comparator.compare(value, root.value);
-            if (0 == c)
-                return false;
+            if (0 == c) {
+                // append to the run
+                root.add(value);
+                root.count += 1;
+                ++modCount;
+                return true;
+            }
             
             Node<E> n = new Node<E>(value);
             n.count += root.count;
@@ -480,6 +875,7 @@ public final class SplaySortedList<E> extends AbstractList<E> implements SortedL
                 }
             }
             root = n;
+            ++modCount;
             
             return true;
         } finally {
@@ -496,82 +892,112 @@ public final class SplaySortedList<E> extends AbstractList<E> implements SortedL
     }
     
     @Override
+    @SuppressWarnings("unchecked")
     public boolean contains(Object value) {
-        if (null == value) {
-            return false;
-        }
-        
-        try {
-        	@SuppressWarnings("unchecked")
-			int i = search((E) value).c;
-            return 0 == i;
-//            if (null == root)
-//                return false;
-//            splay((T) value);
-//            return value.equals(root);
-        } finally {
-            assert checkInvariants();
-        }
-        
+        return null != value && 0 <= find(null, (E) value, false);
     }
     
     @Override
     public int indexOf(Comparable<? super E> q) {
-        // FIXME
-        throw new UnsupportedOperationException();
+        int r = find(q, null, false);
+        return 0 <= r ? r : -1;
     }
     
     @Override
     public int lastIndexOf(Comparable<? super E> q) {
-        // FIXME
-        throw new UnsupportedOperationException();
+        int r = find(q, null, true);
+        return 0 <= r ? r : -1;
     }
     
+    /** Does not splay. */
     @Override
-    public int indexOf(Object value) {
-        if (null == value) {
-            return -1;
-        }
-        
-        try {
-            @SuppressWarnings("unchecked")
-			FindResult<E> r = search((E) value);
-            return 0 == r.c ? r.index : -1;
-//            if (null == root)
-//                return -1;
-//            splay((T) value);
-//            return null != root.left ? root.left.count : 0;
-        } finally {
-            assert checkInvariants();
-        }
+    public int rank(Comparable<? super E> q) {
+        return bound(root, q, false);
     }
     
+    /** Descends to the first node equal to <code>q</code>, where the range splits, 
+     * then to each end of the range. Does not splay. */
     @Override
-    public E get(int index) {
-        try {
+    public IndexRange equalRange(Comparable<? super E> q) {
+        int index = 0;
+        for (Node<E> y = root; null != y; ) {
+            int c = q.compareTo(y.value);
+            if (c < 0) {
+                y = y.left;
+            } else if (0 < c) {
+                index += y.n + (null != y.left ? y.left.count : 0);
+                y = y.right;
+            } else {
+                int from = index + bound(y.left, q, false);
+                int to = index + (null != y.left ? y.left.count : 0) + y.n + bound(y.right, q, true);
+                return new IndexRange(from, to);
+            }
+        }
+        return new IndexRange(index, index);
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public int indexOf(Object value) {
+        if (null == value) {
+            return -1;
+        }
+        int r = find(null, (E) value, false);
+        return 0 <= r ? r : -1;
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public int lastIndexOf(Object value) {
+        if (null == value) {
+            return -1;
+        }
+        int r = find(null, (E) value, true);
+        return 0 <= r ? r : -1;
+    }
+    
+    @Override
+    public E get(int index) {
+        try {
             if (null == root || index < 0 || root.count <= index)
                 throw new IndexOutOfBoundsException("" + index);
+            if (null != stats) {
+                ++stats.gets;
+            }
+            if (!policy.splayBefore(root.count)) {
+                E value = search(index);
+                if (policy.splayAfter(depth, root.count)) {
+                    splay(index);
+                }
+                return value;
+            }
             splay(index);
-            assert (null != root.left ? root.left.count : 0) == index :
+            int j = index - (null != root.left ? root.left.count : 0);
+            assert 0 <= j && j < root.n :
                 "Expected root index " + index + " but found " + (null != root.left ? root.left.count : 0); 
-            return root.value;
+            return root.get(j);
         } finally {
             assert checkInvariants();
         }
     }
     
-    @Override
-    public void add(int location, E object) {
-        throw new UnsupportedOperationException("Inserting by index is not supported in a sorted list.");
-    }
-    
     @Override
     public E remove(int index) {
         try {
             if (null == root || index < 0 || root.count <= index)
                 throw new IndexOutOfBoundsException();
+            if (null != stats) {
+                ++stats.removes;
+            }
             
             splay(index);
+            int j = index - (null != root.left ? root.left.count : 0);
+            if (1 < root.n) {
+                E value = root.remove(j);
+                root.count -= 1;
+                ++modCount;
+                return value;
+            }
             E value = root.value;
             if (null == root.left) {
                 root = root.right;
@@ -583,6 +1009,7 @@ public final class SplaySortedList<E> extends AbstractList<E> implements SortedL
                 if (null != t)
                     root.count += t.count;
             }
+            ++modCount;
             
             return value;
         } finally {
@@ -604,7 +1031,18 @@ public final class SplaySortedList<E> extends AbstractList<E> implements SortedL
             int c = comparator.compare((E) value, root.value);
             if (0 != c)
                 return false;
+            if (null != stats) {
+                ++stats.removes;
+            }
             
+            if (1 < root.n) {
+                // prefer an equal element in the run; otherwise the first
+                int j = root.indexOf(value);
+                root.remove(0 <= j ? j : 0);
+                root.count -= 1;
+                ++modCount;
+                return true;
+            }
             if (null == root.left) {
                 root = root.right;
             } else {
@@ -615,6 +1053,7 @@ public final class SplaySortedList<E> extends AbstractList<E> implements SortedL
                 if (null != t)
                     root.count += t.count;
             }
+            ++modCount;
             
             return true;
         } finally {
@@ -625,55 +1064,588 @@ public final class SplaySortedList<E> extends AbstractList<E> implements SortedL
     @Override
     public void clear() {
         try {
+            if (null != stats) {
+                stats.removes += size();
+            }
             root = null;
+            ++modCount;
         } finally {
             assert checkInvariants();
         }
     }
     
     
-    /////// INVARIANTS ///////
-
-    public boolean checkInvariants() {
-        if (null != root) {
-            if (size() < 128) {
-                 // uses recursion; only call this for small trees
-                _checkCount(root);
-                _checkBst(root);
+    /** Removes the elements in <code>[fromIndex, toIndex)</code> by splitting the tree at each end
+     * and joining the outer parts, in amortized logarithmic time 
+     * (plus the length of a run of duplicates that is cut).
+     * The removed sub-tree is dropped without visiting its nodes. 
+     * This is also the cost of <code>clear</code> on a <code>subList</code>, <code>headList</code> or <code>tailList</code>. */
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        try {
+            if (fromIndex < 0 || toIndex < fromIndex || size() < toIndex)
+                throw new IndexOutOfBoundsException("[" + fromIndex + ", " + toIndex + ")");
+            if (fromIndex == toIndex)
+                return;
+            if (null != stats) {
+                stats.removes += toIndex - fromIndex;
+            }
+            Node<E> tail = splitAt(toIndex);
+            splitAt(fromIndex);
+            join(root, tail);
+            ++modCount;
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    
+    /////// SPLIT AND JOIN ///////
+    
+    /** Splits the tree at the index in amortized logarithmic time 
+     * (plus the length of a run of duplicates that is cut). No elements are copied.
+     * The new list has the same comparator as this list, and a copy of its {@link SplayPolicy}
+     * ({@link SplayPolicy#copy()}), so that the two lists share no policy state. */
+    @Override
+    public SplaySortedList<E> split(int index) {
+        try {
+            if (index < 0 || size() < index)
+                throw new IndexOutOfBoundsException("" + index);
+            SplaySortedList<E> tail = new SplaySortedList<E>(comparator, policy.copy());
+            tail.root = splitAt(index);
+            ++modCount;
+            assert tail.checkInvariants();
+            return tail;
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    @Override
+    public SplaySortedList<E> split(E value, boolean inclusive) {
+        return split(comparable(value, comparator), inclusive);
+    }
+    
+    @Override
+    public SplaySortedList<E> split(Comparable<? super E> q, boolean inclusive) {
+        return split(startIndex(q, inclusive));
+    }
+    
+    /** If the other list is a {@link SplaySortedList} with an equal comparator,
+     * its tree is joined with this tree in amortized logarithmic time, and no elements are copied.
+     * Otherwise the elements are inserted. */
+    @Override
+    public void concat(SortedList<E> other) {
+        if (!(other instanceof SplaySortedList) || !comparator.equals(other.comparator())) {
+            super.concat(other);
+            return;
+        }
+        try {
+            SplaySortedList<E> b = (SplaySortedList<E>) other;
+            if (this == b)
+                throw new IllegalArgumentException("Cannot concatenate a list with itself.");
+            if (null == b.root)
+                return;
+            if (null == root || comparator.compare(search(root.count - 1), b.search(0)) <= 0) {
+                join(root, b.root);
+            } else if (comparator.compare(b.search(b.root.count - 1), search(0)) <= 0) {
+                join(b.root, root);
             } else {
-                // FIXME these checks can be done by traversing the tree and maintaining state
-                // FIXME but need to implement the iterator (also a TODO above)
+                throw new IllegalArgumentException("The ranges of the lists overlap.");
+            }
+            b.root = null;
+            ++b.modCount;
+            ++modCount;
+            assert b.checkInvariants();
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    /** Splits the tree so that the root holds the first <code>index</code> elements.
+     * If <code>index</code> cuts a run, the run is split into two nodes.
+     * @return the tree of the remaining elements */
+    private @Nullable Node<E> splitAt(int index) {
+        if (0 == index) {
+            Node<E> tail = root;
+            root = null;
+            return tail;
+        }
+        if (size() == index)
+            return null;
+        splay(index);
+        int j = index - (null != root.left ? root.left.count : 0);
+        Node<E> tail;
+        if (0 == j) {
+            tail = root;
+            root = tail.left;
+            tail.left = null;
+            tail.count -= null != root ? root.count : 0;
+        } else {
+            tail = root.split(j);
+            tail.right = root.right;
+            tail.count = tail.n + (null != tail.right ? tail.right.count : 0);
+            root.right = null;
+            root.count = root.n + (null != root.left ? root.left.count : 0);
+        }
+        return tail;
+    }
+    
+    /** Sets the root to the concatenation of the trees <code>a</code> and <code>b</code>,
+     * where each element in <code>a</code> is less than or equal to each element in <code>b</code>.
+     * If the greatest run in <code>a</code> and the least run in <code>b</code> are equal, they are merged. */
+    private void join(@Nullable Node<E> a, @Nullable Node<E> b) {
+        if (null == a || null == b) {
+            root = null != a ? a : b;
+            return;
+        }
+        // splay the least of b, then the greatest of a, so that b.left and a.right are empty
+        root = b;
+        splay(0);
+        b = root;
+        root = a;
+        splay(a.count - 1);
+        a = root;
+        
+        if (0 == comparator.compare(a.last(), b.value)) {
+            for (int j = 0; j < b.n; ++j) {
+                a.add(b.get(j));
+            }
+            a.count += b.n;
+            b = b.right;
+        }
+        a.right = b;
+        if (null != b) {
+            a.count += b.count;
+        }
+    }
+    
+    
+    /////// BULK ///////
+    
+    /** Rebuilds the tree in place into a perfectly balanced tree, in linear time. 
+     * Re-links the existing nodes; no elements are copied or compared. */
+    public void rebuild() {
+        try {
+            if (null == root)
+                return;
+            Node<E>[] nodes = nodes(root);
+            root = link(nodes, 0, nodes.length);
+            ++shapeCount;
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    /** Replaces the contents with the first <code>n</code> values, 
+     * which are sorted in place if not already sorted. */
+    @SuppressWarnings("unchecked")
+    void load(Object[] values, int n) {
+        try {
+            for (int i = 0; i < n; ++i) {
+                if (null == values[i]) {
+                    throw new NullPointerException();
+                }
+            }
+            Comparator<Object> c = (Comparator<Object>) comparator;
+            if (!isSorted(values, n, c)) {
+                Arrays.sort(values, 0, n, c);
+            }
+            // group equal runs into nodes
+            Node<E>[] nodes = new Node[n];
+            int m = 0;
+            for (int i = 0; i < n; ++i) {
+                if (0 < m && 0 == c.compare(nodes[m - 1].value, values[i])) {
+                    nodes[m - 1].add((E) values[i]);
+                } else {
+                    nodes[m++] = new Node<E>((E) values[i]);
+                }
+            }
+            root = link(nodes, 0, m);
+            ++modCount;
+        } finally {
+            assert checkInvariants();
+        }
+    }
+    
+    private static <T> boolean isSorted(T[] values, int n, Comparator<? super T> c) {
+        for (int i = 1; i < n; ++i) {
+            if (0 < c.compare(values[i - 1], values[i])) {
+                return false;
             }
         }
         return true;
     }
-    private int _checkCount(Node<E> n) {
-        int expectedCount = 1;
-        if (null != n.left)
-            expectedCount += _checkCount(n.left);
-        if (null != n.right)
-            expectedCount += _checkCount(n.right);
-        assert expectedCount == n.count : String.format("%d <> %d", expectedCount, n.count);
-        return expectedCount;
+    
+    /** @return a perfectly balanced tree of the in-order <code>nodes[from, to)</code>,
+     * with the sub-tree counts reset */
+    private static @Nullable <T> Node<T> link(Node<T>[] nodes, int from, int to) {
+        if (to <= from)
+            return null;
+        int mid = (from + to) >>> 1;
+        Node<T> n = nodes[mid];
+        n.left = link(nodes, from, mid);
+        n.right = link(nodes, mid + 1, to);
+        n.count = n.n + (null != n.left ? n.left.count : 0) + (null != n.right ? n.right.count : 0);
+        return n;
     }
-    private void _checkBst(Node<E> n) {
-        if (null != n.left) {
-            assert comparator.compare(n.left.value, n.value) <= 0 : String.format("%s <> %s (%d)",
-                    n.left.value, n.value, comparator.compare(n.left.value, n.value));
-            _checkBst(n.left);
+    
+    /** @return the nodes of the tree in order. 
+     * Uses an explicit stack, since a splay tree can be arbitrarily deep. */
+    @SuppressWarnings("unchecked")
+    private static <T> Node<T>[] nodes(Node<T> root) {
+        Node<T>[] nodes = new Node[root.count];
+        Node<T>[] stack = new Node[16];
+        int depth = 0;
+        int i = 0;
+        for (Node<T> y = root; null != y || 0 < depth; ) {
+            if (null != y) {
+                if (stack.length == depth) {
+                    stack = Arrays.copyOf(stack, 2 * depth);
+                }
+                stack[depth++] = y;
+                y = y.left;
+            } else {
+                y = stack[--depth];
+                nodes[i++] = y;
+                y = y.right;
+            }
         }
-        if (null != n.right) {
-            assert 0 <= comparator.compare(n.right.value, n.value) : String.format("%s <> %s (%d)",
-                    n.right.value, n.value, comparator.compare(n.right.value, n.value));
-            _checkBst(n.right);
+        return i < nodes.length ? Arrays.copyOf(nodes, i) : nodes;
+    }
+    
+    
+    /////// STATS ///////
+    
+    /** Enables or disables the counters of {@link #stats()}. 
+     * Enabling restarts the counters from zero; while disabled, they cost a null check per operation.
+     * Disabled by default. */
+    public void setStatsEnabled(boolean enabled) {
+        stats = enabled ? new Counters() : null;
+    }
+    
+    public boolean isStatsEnabled() {
+        return null != stats;
+    }
+    
+    /** Restarts the counters from zero, if enabled. */
+    public void resetStats() {
+        if (null != stats) {
+            stats = new Counters();
+        }
+    }
+    
+    /** @return a snapshot of the counters. If the counters are disabled, every count is zero. */
+    public SplayStats stats() {
+        Counters s = stats;
+        return null != s ? s.snapshot(size()) : SplayStats.disabled(size());
+    }
+    
+    /** @return a view of {@link #stats()} to register with a JMX <code>MBeanServer</code> */
+    public SplayStatsMXBean statsMXBean() {
+        return new StatsMXBean();
+    }
+    
+    
+    /////// ITERATION ///////
+    
+    /** Walks the tree in order. Does not splay. 
+     * <code>next</code> and <code>previous</code> are amortized constant time. */
+    @Override
+    public Iterator<E> iterator() {
+        return new Itr(0);
+    }
+    
+    /** Walks the tree in order. Does not splay. 
+     * <code>next</code> and <code>previous</code> are amortized constant time. */
+    @Override
+    public ListIterator<E> listIterator() {
+        return new Itr(0);
+    }
+    
+    /** Walks the tree in order. Does not splay. 
+     * <code>next</code> and <code>previous</code> are amortized constant time. */
+    @Override
+    public ListIterator<E> listIterator(int index) {
+        if (index < 0 || size() < index)
+            throw new IndexOutOfBoundsException("" + index);
+        return new Itr(index);
+    }
+    
+    
+    /** Splits on sub-tree boundaries, so each part has an exact size from the sub-tree counts.
+     * Does not splay, so parts can be traversed in parallel if there are no concurrent writes. */
+    @Override
+    public Spliterator<E> spliterator() {
+        return new TreeSpliterator(0, size());
+    }
+    
+    @Override
+    Spliterator<E> spliterator(int fromIndex, int toIndex) {
+        return new TreeSpliterator(fromIndex, toIndex);
+    }
+    
+    
+    /////// INVARIANTS ///////
+    
+    /* with assertions enabled, each operation checks the whole tree only while it is small, 
+     * since the check is linear */
+    private static final int CHECK_SIZE = 128;
+    
+    /** Checks the invariants if the tree is small; {@link #analyze} checks a tree of any size.
+     * @throws IllegalStateException if an invariant does not hold */
+    public boolean checkInvariants() {
+        if (size() < CHECK_SIZE) {
+            analyze();
+        }
+        return true;
+    }
+    
+    /** Verifies the invariants of the whole tree and measures its shape, in one in-order pass 
+     * with an explicit stack, so that it can be used on trees of any size and depth.
+     * The sub-tree count is checked at each node, and the order between consecutive nodes 
+     * and within each run of equal elements. 
+     * Linear time, and space linear in the height. Does not splay.
+     * @throws IllegalStateException if an invariant does not hold */
+    @SuppressWarnings("unchecked")
+    public TreeShape analyze() {
+        Node<E>[] stack = new Node[16];
+        int[] depths = new int[16];
+        int top = 0;
+        int nodes = 0;
+        int height = 0;
+        long depthSum = 0L;
+        long[] depthHistogram = new long[SplayStats.DEPTH_BUCKETS];
+        Node<E> last = null;
+        int d = 1;
+        for (Node<E> y = root; null != y || 0 < top; ) {
+            if (null != y) {
+                if (stack.length == top) {
+                    stack = Arrays.copyOf(stack, 2 * top);
+                    depths = Arrays.copyOf(depths, 2 * top);
+                }
+                stack[top] = y;
+                depths[top++] = d++;
+                y = y.left;
+            } else {
+                y = stack[--top];
+                d = depths[top];
+                check(y, last);
+                ++nodes;
+                depthSum += d;
+                ++depthHistogram[SplayStats.depthBucket(d)];
+                if (height < d) {
+                    height = d;
+                }
+                last = y;
+                ++d;
+                y = y.right;
+            }
+        }
+        return new TreeShape(size(), nodes, height, depthSum, depthHistogram);
+    }
+    
+    /** Checks the node's run and sub-tree count, and that it follows the node before it in order. */
+    private void check(Node<E> y, @Nullable Node<E> last) {
+        if (y.n < 1 || 1 < y.n && (null == y.run || y.run.length < y.n - 1))
+            throw new IllegalStateException(String.format("run of %d at %s", y.n, y.value));
+        int count = y.n + (null != y.left ? y.left.count : 0) + (null != y.right ? y.right.count : 0);
+        if (count != y.count)
+            throw new IllegalStateException(String.format("count %d <> %d at %s", y.count, count, y.value));
+        if (null != last && 0 <= comparator.compare(last.value, y.value))
+            throw new IllegalStateException(String.format("%s before %s", last.value, y.value));
+        // equal values are in a single run
+        for (int j = 1; j < y.n; ++j) {
+            if (0 != comparator.compare(y.get(j), y.value))
+                throw new IllegalStateException(String.format("%s in the run of %s", y.get(j), y.value));
         }
     }
     
     
     /////// INTERNAL ///////
     
+    /** The counters of {@link SplayStats}. */
+    private static final class Counters {
+        /* the number of descents over which the greatest depth is the height estimate */
+        static final int WINDOW = 1 << 10;
+        
+        final long start = System.nanoTime();
+        long splays = 0L;
+        long rotations = 0L;
+        long comparisons = 0L;
+        long descents = 0L;
+        long depthSum = 0L;
+        long splayDepthSum = 0L;
+        int maxDepth = 0;
+        /* the greatest depth in the current window and the last full window */
+        int windowMaxDepth = 0;
+        int lastWindowMaxDepth = 0;
+        int windowCount = 0;
+        long inserts = 0L;
+        long removes = 0L;
+        long gets = 0L;
+        final long[] depthHistogram = new long[SplayStats.DEPTH_BUCKETS];
+        
+        
+        void descended(int depth, int compares) {
+            if (0 == depth)
+                return;
+            comparisons += compares;
+            ++descents;
+            depthSum += depth;
+            ++depthHistogram[SplayStats.depthBucket(depth)];
+            if (maxDepth < depth) {
+                maxDepth = depth;
+            }
+            if (windowMaxDepth < depth) {
+                windowMaxDepth = depth;
+            }
+            if (WINDOW == ++windowCount) {
+                lastWindowMaxDepth = windowMaxDepth;
+                windowMaxDepth = 0;
+                windowCount = 0;
+            }
+        }
+        
+        void splayed(int depth, int compares, int rotations) {
+            ++splays;
+            this.rotations += rotations;
+            splayDepthSum += depth;
+            descended(depth, compares);
+        }
+        
+        SplayStats snapshot(int size) {
+            return new SplayStats(true, size, System.nanoTime() - start,
+                    splays, rotations, comparisons, descents, depthSum, splayDepthSum,
+                    maxDepth, Math.max(windowMaxDepth, lastWindowMaxDepth),
+                    inserts, removes, gets, depthHistogram.clone());
+        }
+    }
+    
+    private final class StatsMXBean implements SplayStatsMXBean {
+        @Override
+        public boolean isEnabled() {
+            return isStatsEnabled();
+        }
+        
+        @Override
+        public void setEnabled(boolean enabled) {
+            if (enabled != isStatsEnabled()) {
+                setStatsEnabled(enabled);
+            }
+        }
+        
+        @Override
+        public void reset() {
+            resetStats();
+        }
+        
+        @Override
+        public int getSize() {
+            return stats().size();
+        }
+        
+        @Override
+        public long getElapsedNanos() {
+            return stats().elapsedNanos();
+        }
+        
+        @Override
+        public long getSplays() {
+            return stats().splays();
+        }
+        
+        @Override
+        public long getRotations() {
+            return stats().rotations();
+        }
+        
+        @Override
+        public double getRotationsPerSplay() {
+            return stats().rotationsPerSplay();
+        }
+        
+        @Override
+        public long getComparisons() {
+            return stats().comparisons();
+        }
+        
+        @Override
+        public long getDescents() {
+            return stats().descents();
+        }
+        
+        @Override
+        public double getAverageDepth() {
+            return stats().averageDepth();
+        }
+        
+        @Override
+        public double getAverageSplayDepth() {
+            return stats().averageSplayDepth();
+        }
+        
+        @Override
+        public int getMaxDepth() {
+            return stats().maxDepth();
+        }
+        
+        @Override
+        public int getHeightEstimate() {
+            return stats().heightEstimate();
+        }
+        
+        @Override
+        public double getHeightRatio() {
+            return stats().heightRatio();
+        }
+        
+        @Override
+        public long getInserts() {
+            return stats().inserts();
+        }
+        
+        @Override
+        public long getRemoves() {
+            return stats().removes();
+        }
+        
+        @Override
+        public long getGets() {
+            return stats().gets();
+        }
+        
+        @Override
+        public double getInsertRate() {
+            return stats().insertRate();
+        }
+        
+        @Override
+        public double getRemoveRate() {
+            return stats().removeRate();
+        }
+        
+        @Override
+        public double getGetRate() {
+            return stats().getRate();
+        }
+        
+        @Override
+        public long[] getDepthHistogram() {
+            return stats().depthHistogram();
+        }
+    }
+    
+    /** Holds a run of <code>n</code> equal values, in insertion order. */
     private static final class Node<T> {
-        final @Nullable T value;
+        /** first value of the run */
+        @Nullable T value;
+        /** values <code>[1, n)</code> of the run at <code>[0, n - 1)</code>; 
+         * <code>null</code> until there is a duplicate */
+        @Nullable Object[] run = null;
+        /** length of the run */
+        int n = 1;
+        /** number of values in the sub-tree, including the run */
         int count = 1;
         @Nullable Node<T> left = null;
         @Nullable Node<T> right = null;
@@ -681,31 +1653,830 @@ public final class SplaySortedList<E> extends AbstractList<E> implements SortedL
         Node(@Nullable T value) {
             this.value = value;
         }
+        
+        @SuppressWarnings("unchecked")
+        T get(int j) {
+            return 0 == j ? value : (T) run[j - 1];
+        }
+        
+        T last() {
+            return get(n - 1);
+        }
+        
+        /** @return the least <code>j</code> where <code>value.equals(get(j))</code>, 
+         * or <code>-1</code> */
+        int indexOf(Object value) {
+            for (int j = 0; j < n; ++j) {
+                if (value.equals(get(j))) {
+                    return j;
+                }
+            }
+            return -1;
+        }
+        
+        /** Appends to the run. Does not update <code>count</code>. */
+        void add(T value) {
+            if (null == run) {
+                run = new Object[2];
+            } else if (run.length == n - 1) {
+                run = Arrays.copyOf(run, 2 * run.length);
+            }
+            run[n - 1] = value;
+            n += 1;
+        }
+        
+        /** Moves the values <code>[j, n)</code> of the run to a new node. Does not update <code>count</code>. */
+        Node<T> split(int j) {
+            assert 0 < j && j < n;
+            Node<T> b = new Node<T>(get(j));
+            for (int k = j + 1; k < n; ++k) {
+                b.add(get(k));
+            }
+            Arrays.fill(run, j - 1, n - 1, null);
+            n = j;
+            return b;
+        }
+        
+        /** Removes from the run. Does not update <code>count</code>. */
+        @SuppressWarnings("unchecked")
+        T remove(int j) {
+            assert 1 < n;
+            T removed = get(j);
+            if (0 == j) {
+                value = (T) run[0];
+                j = 1;
+            }
+            System.arraycopy(run, j, run, j - 1, n - 1 - j);
+            n -= 1;
+            run[n - 1] = null;
+            return removed;
+        }
     }
     
     
-    private static <T> Comparable<T> comparable(final T value, final Comparator<? super T> comparator) {
-        return new Comparable<T>() {
-            @Override
-            public int compareTo(T another) {
-                return comparator.compare(value, another);
+    /** Spliterator over the indexes <code>[index, fence)</code>.
+     * A split descends from the root to the first node whose run is in the range,
+     * and splits at the start (or end) of that run, so the parts follow the sub-trees.
+     * Traversal seeks the first index by count arithmetic, then walks in order 
+     * with a stack of the ancestors whose runs come next. Neither modifies the tree.
+     * If the tree was splayed since the last step (e.g. by a read in the action),
+     * the stack is re-seeked by index, as in {@link Path}. */
+    private final class TreeSpliterator implements Spliterator<E> {
+        /** index of the next element */
+        int index;
+        /** index after the last element */
+        int fence;
+        final int expectedModCount = modCount;
+        /** <code>shapeCount</code> when <code>x</code> and <code>pending</code> were seeked */
+        int expectedShapeCount;
+        
+        /** node that holds <code>index</code>, or <code>null</code> if not yet seeked */
+        @Nullable Node<E> x = null;
+        /** position of <code>index</code> in the run of <code>x</code> */
+        int j;
+        /** ancestors of <code>x</code> whose runs follow it, nearest last */
+        @SuppressWarnings("unchecked")
+        Node<E>[] pending = new Node[16];
+        int top = 0;
+        
+        TreeSpliterator(int index, int fence) {
+            this.index = index;
+            this.fence = fence;
+        }
+        
+        @Override
+        public @Nullable Spliterator<E> trySplit() {
+            int lo = index;
+            int hi = fence;
+            if (hi - lo < 2)
+                return null;
+            int mid = -1;
+            int offset = 0;
+            for (Node<E> y = root; null != y; ) {
+                int s = offset + (null != y.left ? y.left.count : 0);
+                int e = s + y.n;
+                if (hi <= s) {
+                    y = y.left;
+                } else if (e <= lo) {
+                    offset = e;
+                    y = y.right;
+                } else {
+                    // the first run in the range
+                    if (lo < s) {
+                        mid = s;
+                    } else if (e < hi) {
+                        mid = e;
+                    } else {
+                        // (within one run)
+                        mid = (lo + hi) >>> 1;
+                    }
+                    break;
+                }
+            }
+            assert lo < mid && mid < hi;
+            TreeSpliterator prefix = new TreeSpliterator(lo, mid);
+            index = mid;
+            x = null;
+            return prefix;
+        }
+        
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (null == action)
+                throw new NullPointerException();
+            if (fence <= index)
+                return false;
+            checkForComodification();
+            if (null == x || expectedShapeCount != shapeCount) {
+                seek(index);
+            }
+            E value = x.get(j);
+            if (++index < fence) {
+                successor();
+            }
+            action.accept(value);
+            return true;
+        }
+        
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            if (null == action)
+                throw new NullPointerException();
+            if (fence <= index)
+                return;
+            checkForComodification();
+            if (null == x || expectedShapeCount != shapeCount) {
+                seek(index);
+            }
+            for (;;) {
+                action.accept(x.get(j));
+                if (fence <= ++index)
+                    break;
+                if (expectedShapeCount != shapeCount) {
+                    checkForComodification();
+                    seek(index);
+                } else {
+                    successor();
+                }
             }
-        };
+            x = null;
+            checkForComodification();
+        }
+        
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+        
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | SIZED | SUBSIZED | NONNULL;
+        }
+        
+        @Override
+        public Comparator<? super E> getComparator() {
+            return comparator;
+        }
+        
+        
+        private void checkForComodification() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+        
+        private void push(Node<E> y) {
+            if (pending.length == top) {
+                pending = Arrays.copyOf(pending, 2 * top);
+            }
+            pending[top++] = y;
+        }
+        
+        private void seek(int i) {
+            top = 0;
+            expectedShapeCount = shapeCount;
+            int offset = 0;
+            for (Node<E> y = root; ; ) {
+                int s = offset + (null != y.left ? y.left.count : 0);
+                if (i < s) {
+                    push(y);
+                    y = y.left;
+                } else if (i < s + y.n) {
+                    x = y;
+                    j = i - s;
+                    return;
+                } else {
+                    offset = s + y.n;
+                    y = y.right;
+                }
+            }
+        }
+        
+        private void successor() {
+            if (++j < x.n)
+                return;
+            j = 0;
+            if (null != x.right) {
+                Node<E> y;
+                for (y = x.right; null != y.left; y = y.left) {
+                    push(y);
+                }
+                x = y;
+            } else {
+                x = pending[--top];
+            }
+        }
     }
-
-    // FIXME remove this - (see notes at top)
-    // FIXME use splay instead, and compare with the root after splay to derive c
-    static final class FindResult<T> {
-        public final T value;
-        /** index of value */
-        public final int index;
-        /** the result of q.compare(value) */
-        public final int c;
-        
-        FindResult(T value, int index, int c) {
+    
+    
+    /** A path from the root to the node that holds an index, 
+     * re-sought when the tree has been splayed. */
+    private abstract class Path {
+        int expectedShapeCount;
+        
+        /** path from the root to the node that holds index <code>at</code>; valid if <code>0 &lt;= at</code> */
+        @SuppressWarnings("unchecked")
+        Node<E>[] path = new Node[16];
+        int depth = 0;
+        int at = -1;
+        /** position of <code>at</code> in the run of the last node on the path */
+        int j;
+        
+        /** @return the node that holds <code>index</code>, with the path and <code>j</code> 
+         * updated to that index */
+        Node<E> moveTo(int index) {
+            if (0 <= at && expectedShapeCount == shapeCount) {
+                if (at + 1 == index) {
+                    successor();
+                } else if (at - 1 == index) {
+                    predecessor();
+                } else if (at != index) {
+                    seek(index);
+                }
+            } else {
+                seek(index);
+            }
+            at = index;
+            return path[depth - 1];
+        }
+        
+        void seek(int index) {
+            depth = 0;
+            expectedShapeCount = shapeCount;
+            Node<E> y = root;
+            for (int c; ; ) {
+                push(y);
+                c = index - (null != y.left ? y.left.count : 0);
+                if (c < 0) {
+                    y = y.left;
+                } else if (c < y.n) {
+                    j = c;
+                    break;
+                } else {
+                    index = c - y.n;
+                    y = y.right;
+                }
+            }
+        }
+        
+        private void successor() {
+            Node<E> y = path[depth - 1];
+            if (j + 1 < y.n) {
+                j += 1;
+                return;
+            }
+            j = 0;
+            if (null != y.right) {
+                for (y = y.right; null != y; y = y.left) {
+                    push(y);
+                }
+            } else {
+                // pop until coming up from a left child
+                do {
+                    y = path[--depth];
+                } while (path[depth - 1].right == y);
+            }
+        }
+        
+        private void predecessor() {
+            Node<E> y = path[depth - 1];
+            if (0 < j) {
+                j -= 1;
+                return;
+            }
+            if (null != y.left) {
+                for (y = y.left; null != y; y = y.right) {
+                    push(y);
+                }
+            } else {
+                // pop until coming up from a right child
+                do {
+                    y = path[--depth];
+                } while (path[depth - 1].left == y);
+            }
+            j = path[depth - 1].n - 1;
+        }
+        
+        void push(Node<E> y) {
+            if (path.length == depth) {
+                path = Arrays.copyOf(path, 2 * depth);
+            }
+            path[depth++] = y;
+        }
+    }
+    
+    /** In-order iterator that keeps the path from the root to the last visited node.
+     * Stepping to an adjacent node walks the path (amortized constant time).
+     * If the tree was splayed since the last step, the path is re-seeked by index
+     * (logarithmic). Structural modifications outside of the iterator are detected
+     * with <code>modCount</code>. */
+    private final class Itr extends Path implements ListIterator<E> {
+        /** index of the element returned by the next call to <code>next</code> */
+        int cursor;
+        /** index of the element returned by the last call to <code>next</code> or <code>previous</code>,
+         * or <code>-1</code> */
+        int lastRet = -1;
+        int expectedModCount = modCount;
+        
+        Itr(int index) {
+            cursor = index;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return cursor < size();
+        }
+        
+        @Override
+        public boolean hasPrevious() {
+            return 0 < cursor;
+        }
+        
+        @Override
+        public int nextIndex() {
+            return cursor;
+        }
+        
+        @Override
+        public int previousIndex() {
+            return cursor - 1;
+        }
+        
+        @Override
+        public E next() {
+            checkForComodification();
+            if (size() <= cursor)
+                throw new NoSuchElementException();
+            E value = moveTo(cursor).get(j);
+            lastRet = cursor;
+            cursor += 1;
+            return value;
+        }
+        
+        @Override
+        public E previous() {
+            checkForComodification();
+            if (cursor <= 0)
+                throw new NoSuchElementException();
+            E value = moveTo(cursor - 1).get(j);
+            cursor -= 1;
+            lastRet = cursor;
+            return value;
+        }
+        
+        /** Removes the last returned value from its run, or unlinks its node on the current path.
+         * Does not search or splay. */
+        @Override
+        public void remove() {
+            if (lastRet < 0)
+                throw new IllegalStateException();
+            checkForComodification();
+            
+            Node<E> x = moveTo(lastRet);
+            for (int i = 0; i < depth - 1; ++i) {
+                path[i].count -= 1;
+            }
+            
+            if (1 < x.n) {
+                x.remove(j);
+                x.count -= 1;
+            } else {
+                // replace x with the join of its subtrees
+                Node<E> y;
+                if (null == x.left) {
+                    y = x.right;
+                } else if (null == x.right) {
+                    y = x.left;
+                } else {
+                    // successor of x takes the place of x
+                    Node<E> p = x;
+                    for (y = x.right; null != y.left; y = y.left) {
+                        p = y;
+                    }
+                    if (p != x) {
+                        for (Node<E> z = x.right; z != y; z = z.left) {
+                            z.count -= y.n;
+                        }
+                        p.left = y.right;
+                        y.right = x.right;
+                    }
+                    y.left = x.left;
+                    y.count = x.count - 1;
+                }
+                if (depth < 2) {
+                    root = y;
+                } else if (path[depth - 2].left == x) {
+                    path[depth - 2].left = y;
+                } else {
+                    path[depth - 2].right = y;
+                }
+            }
+            
+            if (lastRet < cursor)
+                cursor -= 1;
+            lastRet = -1;
+            at = -1;
+            expectedModCount = ++modCount;
+            
+            assert checkInvariants();
+        }
+        
+        @Override
+        public void set(E e) {
+            throw new UnsupportedOperationException("Setting by index is not supported in a sorted list.");
+        }
+        
+        @Override
+        public void add(E e) {
+            throw new UnsupportedOperationException("Inserting by index is not supported in a sorted list.");
+        }
+        
+        
+        private void checkForComodification() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+    }
+    
+    /** Seeks by a descent that records the path, and steps along the path as the iterator. */
+    private final class TreeCursor extends Path implements Cursor<E> {
+        int index = -1;
+        int expectedModCount = modCount;
+        /* the query of the last seek: q if not null, otherwise value by the comparator */
+        @Nullable Comparable<? super E> q = null;
+        @Nullable E value = null;
+        boolean hasQuery = false;
+        
+        @Override
+        public boolean seek(E value) {
+            return seek(null, value);
+        }
+        
+        @Override
+        public boolean seek(Comparable<? super E> q) {
+            if (null == q)
+                throw new NullPointerException();
+            return seek(q, null);
+        }
+        
+        /** Descends to the lower bound of the query, and cuts the path back 
+         * to the last node where the descent went left, which holds the bound. */
+        private boolean seek(@Nullable Comparable<? super E> q, @Nullable E value) {
+            expectedModCount = modCount;
+            expectedShapeCount = shapeCount;
+            this.q = q;
             this.value = value;
+            hasQuery = true;
+            
+            index = 0;
+            depth = 0;
+            int atDepth = 0;
+            for (Node<E> y = root; null != y; ) {
+                push(y);
+                if (SplaySortedList.this.compare(q, value, y.value) <= 0) {
+                    atDepth = depth;
+                    y = y.left;
+                } else {
+                    index += y.n + (null != y.left ? y.left.count : 0);
+                    y = y.right;
+                }
+            }
+            if (0 < atDepth) {
+                depth = atDepth;
+                j = 0;
+                at = index;
+            } else {
+                at = -1;
+            }
+            return hasElement();
+        }
+        
+        @Override
+        public boolean seekIndex(int index) {
+            if (index < -1 || size() < index)
+                throw new IndexOutOfBoundsException("" + index);
+            expectedModCount = modCount;
+            q = null;
+            value = null;
+            hasQuery = false;
             this.index = index;
-            this.c = c;
+            if (hasElement()) {
+                moveTo(index);
+            }
+            return hasElement();
+        }
+        
+        @Override
+        public boolean next() {
+            checkForComodification();
+            if (index < size()) {
+                index += 1;
+            }
+            if (!hasElement()) {
+                return false;
+            }
+            moveTo(index);
+            return true;
+        }
+        
+        @Override
+        public boolean previous() {
+            checkForComodification();
+            if (0 <= index) {
+                index -= 1;
+            }
+            if (!hasElement()) {
+                return false;
+            }
+            moveTo(index);
+            return true;
+        }
+        
+        @Override
+        public boolean hasElement() {
+            return 0 <= index && index < size();
+        }
+        
+        @Override
+        public E element() {
+            checkForComodification();
+            if (!hasElement())
+                throw new NoSuchElementException();
+            return moveTo(index).get(j);
+        }
+        
+        @Override
+        public int index() {
+            return index;
+        }
+        
+        @Override
+        public int compare() {
+            if (!hasQuery)
+                throw new IllegalStateException();
+            return SplaySortedList.this.compare(q, value, element());
+        }
+        
+        
+        private void checkForComodification() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+    }
+    
+    
+    /** The path of the last descent of a batch query, from which the next query
+     * climbs only as far as the sub-tree that holds its bound, then descends.
+     * Each node on the path has the number of elements before its sub-tree,
+     * and the nearest nodes above it that its sub-tree is left and right of,
+     * which bracket the sub-tree.
+     * 
+     * For sorted queries the climbs and descents are logarithmic in the distance between queries,
+     * so <code>m</code> queries cost <code>O(m lg(n / m))</code> comparisons on a balanced tree.
+     * A climb is only cheaper than a descent from the root if the queries are close,
+     * so the finger climbs only while successive queries share most of their paths, 
+     * and otherwise descends from the root without recording the path, 
+     * as independent searches would. */
+    private final class Finger {
+        /* lower and floor search for the lower bound of each query, 
+         * ceiling and higher for the upper bound */
+        final boolean upper;
+        /* floor and ceiling answer the element equal to the query, at or before the bound */
+        final boolean orEqual;
+        
+        @SuppressWarnings("unchecked")
+        Node<E>[] path = new Node[16];
+        /** number of elements before the sub-tree */
+        int[] base = new int[16];
+        /** position on the path of the nearest node that the sub-tree is left of, or <code>-1</code> */
+        int[] after = new int[16];
+        /** position on the path of the nearest node that the sub-tree is right of, or <code>-1</code> */
+        int[] before = new int[16];
+        int depth = 0;
+        /* whether to climb from the path of the last descent, or descend from the root */
+        boolean climb = false;
+        /* whether to record the path of a descent from the root */
+        boolean record = false;
+        
+        /* the result of the last seek: the bound, the nodes before and at the bound,
+         * and whether the node at the lower bound (or before the upper bound) is equal to the query */
+        int bound;
+        @Nullable Node<E> beforeNode;
+        @Nullable Node<E> atNode;
+        boolean equal;
+        
+        Finger(Navigation op) {
+            upper = Navigation.CEILING == op || Navigation.HIGHER == op;
+            orEqual = Navigation.FLOOR == op || Navigation.CEILING == op;
+        }
+        
+        
+        int index(@Nullable Comparable<? super E> q, @Nullable E value) {
+            seek(q, value);
+            if (upper) {
+                return orEqual && equal ? bound - 1 : bound;
+            } else {
+                return orEqual && equal ? bound : bound - 1;
+            }
+        }
+        
+        @Nullable E element(@Nullable Comparable<? super E> q, @Nullable E value) {
+            seek(q, value);
+            if (upper) {
+                if (orEqual && equal) {
+                    return beforeNode.last();
+                }
+                return null != atNode ? atNode.value : null;
+            } else {
+                if (orEqual && equal) {
+                    return atNode.value;
+                }
+                return null != beforeNode ? beforeNode.last() : null;
+            }
+        }
+        
+        /** @return whether the bound of the query is before (or at) the node with comparison <code>c</code> */
+        private boolean isLeft(int c) {
+            return c < 0 || 0 == c && !upper;
+        }
+        
+        private void seek(@Nullable Comparable<? super E> q, @Nullable E value) {
+            equal = false;
+            if (null == root) {
+                bound = 0;
+                beforeNode = atNode = null;
+                return;
+            }
+            int lastBound = bound;
+            if (!climb && !record) {
+                descend(q, value);
+                depth = 0;
+            } else {
+                descend(q, value, climb);
+            }
+            /* a descent from the root is cheapest unless the queries are close:
+             * a sub-tree of the distance between the bounds has a height of about the lg of the distance,
+             * so record the path of the next descent if the distance is less than the square root of the size */
+            long distance = bound - lastBound;
+            record = climb || distance * distance < root.count;
+        }
+        
+        /** Descends from the root, as {@link #search}, without recording the path. */
+        private void descend(@Nullable Comparable<? super E> q, @Nullable E value) {
+            int index = 0;
+            Node<E> before = null;
+            Node<E> at = null;
+            boolean equal = false;
+            for (Node<E> y = root; null != y; ) {
+                int c = compare(q, value, y.value);
+                if (isLeft(c)) {
+                    if (!upper) {
+                        equal = 0 == c;
+                    }
+                    at = y;
+                    y = y.left;
+                } else {
+                    if (upper) {
+                        equal = 0 == c;
+                    }
+                    index += y.n + (null != y.left ? y.left.count : 0);
+                    before = y;
+                    y = y.right;
+                }
+            }
+            this.bound = index;
+            this.beforeNode = before;
+            this.atNode = at;
+            this.equal = equal;
+        }
+        
+        /** Descends from the root, or climbs from the last path and descends, recording the path. */
+        private void descend(@Nullable Comparable<? super E> q, @Nullable E value, boolean climb) {
+            int lastDepth = depth;
+            int d;
+            if (!climb) {
+                path[0] = root;
+                base[0] = 0;
+                after[0] = -1;
+                before[0] = -1;
+                d = 1;
+            } else {
+                // climb to the deepest sub-tree bracketed by nodes the bound is after and before
+                int k = depth - 1;
+                for (;;) {
+                    int a = after[k];
+                    if (0 <= a) {
+                        int c = compare(q, value, path[a].value);
+                        if (!isLeft(c)) {
+                            k = a;
+                            continue;
+                        }
+                        if (!upper) {
+                            equal = 0 == c;
+                        }
+                    }
+                    int b = before[k];
+                    if (0 <= b) {
+                        int c = compare(q, value, path[b].value);
+                        if (isLeft(c)) {
+                            k = b;
+                            equal = false;
+                            continue;
+                        }
+                        if (upper) {
+                            equal = 0 == c;
+                        }
+                    }
+                    break;
+                }
+                d = k + 1;
+            }
+            
+            // the length of the path shared with the last descent
+            int shared = d;
+            Node<E>[] path = this.path;
+            for (;;) {
+                int k = d - 1;
+                Node<E> y = path[k];
+                Node<E> child;
+                int b = base[k];
+                int a;
+                int p;
+                int c = compare(q, value, y.value);
+                if (isLeft(c)) {
+                    if (!upper) {
+                        equal = 0 == c;
+                    }
+                    child = y.left;
+                    if (null == child) {
+                        bound = b;
+                        atNode = y;
+                        beforeNode = 0 <= before[k] ? path[before[k]] : null;
+                        break;
+                    }
+                    a = k;
+                    p = before[k];
+                } else {
+                    if (upper) {
+                        equal = 0 == c;
+                    }
+                    b += y.n + (null != y.left ? y.left.count : 0);
+                    child = y.right;
+                    if (null == child) {
+                        bound = b;
+                        beforeNode = y;
+                        atNode = 0 <= after[k] ? path[after[k]] : null;
+                        break;
+                    }
+                    a = after[k];
+                    p = k;
+                }
+                if (path.length == d) {
+                    grow();
+                    path = this.path;
+                }
+                if (shared == d && d < lastDepth && path[d] == child) {
+                    shared += 1;
+                }
+                path[d] = child;
+                base[d] = b;
+                after[d] = a;
+                before[d] = p;
+                ++d;
+            }
+            depth = d;
+            
+            /* a climb compares at about half of the levels it passes, and its branches are 
+             * less predictable than a descent from the root, so climb only if the next query 
+             * is expected to share more than half of the path */
+            this.climb = d < 2 * shared;
+        }
+        
+        private void grow() {
+            int n = 2 * path.length;
+            path = Arrays.copyOf(path, n);
+            base = Arrays.copyOf(base, n);
+            after = Arrays.copyOf(after, n);
+            before = Arrays.copyOf(before, n);
         }
     }
     
@@ -0,0 +1,199 @@
+package nu.lodes.sortedlist;
+
+import java.util.Arrays;
+
+/** A snapshot of the counters of a {@link SplaySortedList},
+ * taken by {@link SplaySortedList#stats()}.
+ * The counters are kept only while enabled ({@link SplaySortedList#setStatsEnabled}),
+ * and count from when they were enabled or last reset.
+ *
+ * Descents are the searches by <code>get</code>, <code>contains</code>, <code>indexOf</code>,
+ * the navigation operations, and every splay (by reads, inserts and removes).
+ * The counting queries, iterators, cursors and batch queries are not counted.
+ * The depth of a descent is the number of nodes on its path, so a degenerate shape
+ * (e.g. the path left by sequential inserts) shows as descents far deeper than
+ * <code>lg(size)</code> once it is read, in {@link #heightEstimate} and the {@link #depthHistogram}. */
+public final class SplayStats {
+    /** the number of buckets of the depth histogram */
+    public static final int DEPTH_BUCKETS = 32;
+    
+    private static final SplayStats DISABLED = new SplayStats(false, 0, 0L,
+            0L, 0L, 0L, 0L, 0L, 0L, 0, 0,
+            0L, 0L, 0L, new long[DEPTH_BUCKETS]);
+    
+    private final boolean enabled;
+    private final int size;
+    private final long elapsedNanos;
+    private final long splays;
+    private final long rotations;
+    private final long comparisons;
+    private final long descents;
+    private final long depthSum;
+    private final long splayDepthSum;
+    private final int maxDepth;
+    private final int heightEstimate;
+    private final long inserts;
+    private final long removes;
+    private final long gets;
+    private final long[] depthHistogram;
+    
+    SplayStats(boolean enabled, int size, long elapsedNanos,
+            long splays, long rotations, long comparisons, long descents, long depthSum, long splayDepthSum,
+            int maxDepth, int heightEstimate,
+            long inserts, long removes, long gets, long[] depthHistogram) {
+        this.enabled = enabled;
+        this.size = size;
+        this.elapsedNanos = elapsedNanos;
+        this.splays = splays;
+        this.rotations = rotations;
+        this.comparisons = comparisons;
+        this.descents = descents;
+        this.depthSum = depthSum;
+        this.splayDepthSum = splayDepthSum;
+        this.maxDepth = maxDepth;
+        this.heightEstimate = heightEstimate;
+        this.inserts = inserts;
+        this.removes = removes;
+        this.gets = gets;
+        this.depthHistogram = depthHistogram;
+    }
+    
+    /** @return the snapshot of a list that does not keep counters, where every count is zero */
+    static SplayStats disabled(int size) {
+        return 0 == size ? DISABLED : new SplayStats(false, size, 0L,
+                0L, 0L, 0L, 0L, 0L, 0L, 0, 0,
+                0L, 0L, 0L, DISABLED.depthHistogram);
+    }
+    
+    
+    /** @return whether the list was keeping counters. If not, every count is zero. */
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /** @return the size of the list */
+    public int size() {
+        return size;
+    }
+    
+    /** @return the time counted over */
+    public long elapsedNanos() {
+        return elapsedNanos;
+    }
+    
+    /** @return the number of splays */
+    public long splays() {
+        return splays;
+    }
+    
+    /** @return the number of single rotations made by splays */
+    public long rotations() {
+        return rotations;
+    }
+    
+    public double rotationsPerSplay() {
+        return 0L != splays ? (double) rotations / splays : 0.0;
+    }
+    
+    /** @return the number of comparator (or query <code>compareTo</code>) invocations made by descents */
+    public long comparisons() {
+        return comparisons;
+    }
+    
+    /** @return the number of descents, including splays */
+    public long descents() {
+        return descents;
+    }
+    
+    /** @return the mean number of nodes on the path of a descent */
+    public double averageDepth() {
+        return 0L != descents ? (double) depthSum / descents : 0.0;
+    }
+    
+    /** @return the mean number of nodes on the path of a splay */
+    public double averageSplayDepth() {
+        return 0L != splays ? (double) splayDepthSum / splays : 0.0;
+    }
+    
+    /** @return the greatest depth of a descent */
+    public int maxDepth() {
+        return maxDepth;
+    }
+    
+    /** @return the greatest depth of the recent descents, a lower bound on the height of the tree.
+     * Unlike {@link #maxDepth}, it comes down again once a degenerate shape has been splayed out. */
+    public int heightEstimate() {
+        return heightEstimate;
+    }
+    
+    /** @return {@link #heightEstimate} over the height of a balanced tree of the same size,
+     * <code>ceil(lg(size + 1))</code>; 0 if the list is empty.
+     * A splay tree after random accesses is within a small factor of balanced;
+     * a ratio in the tens or more is a degenerate shape. */
+    public double heightRatio() {
+        if (0 == size)
+            return 0.0;
+        return (double) heightEstimate / (32 - Integer.numberOfLeadingZeros(size));
+    }
+    
+    public long inserts() {
+        return inserts;
+    }
+    
+    public long removes() {
+        return removes;
+    }
+    
+    /** @return the number of <code>get(int)</code> */
+    public long gets() {
+        return gets;
+    }
+    
+    /** @return inserts per second */
+    public double insertRate() {
+        return rate(inserts);
+    }
+    
+    /** @return removes per second */
+    public double removeRate() {
+        return rate(removes);
+    }
+    
+    /** @return gets per second */
+    public double getRate() {
+        return rate(gets);
+    }
+    
+    private double rate(long count) {
+        return 0L < elapsedNanos ? count * 1e9 / elapsedNanos : 0.0;
+    }
+    
+    /** @return the number of descents by depth, in {@link #DEPTH_BUCKETS} buckets of powers of 2:
+     * bucket <code>k</code> counts the descents with a depth in <code>[2<sup>k</sup>, 2<sup>k+1</sup>)</code> */
+    public long[] depthHistogram() {
+        return depthHistogram.clone();
+    }
+    
+    /** @return the bucket of the {@link #depthHistogram} for a depth of at least 1 */
+    static int depthBucket(int depth) {
+        return 31 - Integer.numberOfLeadingZeros(depth);
+    }
+    
+    
+    @Override
+    public String toString() {
+        if (!enabled)
+            return "SplayStats[disabled, size=" + size + "]";
+        int k = depthHistogram.length;
+        while (0 < k && 0L == depthHistogram[k - 1]) {
+            --k;
+        }
+        return String.format("SplayStats[size=%d, splays=%d, rotations/splay=%.2f, comparisons=%d, "
+                + "descents=%d, averageDepth=%.2f, heightEstimate=%d (x%.2f), "
+                + "inserts=%d (%.0f/s), removes=%d (%.0f/s), gets=%d (%.0f/s), depthHistogram=%s]",
+                size, splays, rotationsPerSplay(), comparisons,
+                descents, averageDepth(), heightEstimate, heightRatio(),
+                inserts, insertRate(), removes, removeRate(), gets, getRate(),
+                Arrays.toString(Arrays.copyOf(depthHistogram, k)));
+    }
+}
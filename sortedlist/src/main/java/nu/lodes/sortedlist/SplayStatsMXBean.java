@@ -0,0 +1,45 @@
+package nu.lodes.sortedlist;
+
+/** The counters of a {@link SplaySortedList} as a JMX MXBean,
+ * from {@link SplaySortedList#statsMXBean()}. Each attribute is read from a new {@link SplayStats}.
+ *
+ * <pre>
+ * ManagementFactory.getPlatformMBeanServer().registerMBean(sortedList.statsMXBean(),
+ *         new ObjectName("nu.lodes.sortedlist:type=SplaySortedList,name=orders"));
+ * </pre>
+ *
+ * The list is not thread safe, and the counters are read without synchronization,
+ * so an attribute read while the list is written may be slightly stale.
+ * The MXBean holds the list, so it should be unregistered with the list.
+ * @see SplayStats */
+public interface SplayStatsMXBean {
+    /** @see SplaySortedList#isStatsEnabled */
+    boolean isEnabled();
+    /** @see SplaySortedList#setStatsEnabled */
+    void setEnabled(boolean enabled);
+    /** Restarts the counters from zero.
+     * @see SplaySortedList#resetStats */
+    void reset();
+    
+    int getSize();
+    long getElapsedNanos();
+    long getSplays();
+    long getRotations();
+    double getRotationsPerSplay();
+    long getComparisons();
+    long getDescents();
+    double getAverageDepth();
+    double getAverageSplayDepth();
+    int getMaxDepth();
+    int getHeightEstimate();
+    /** @see SplayStats#heightRatio */
+    double getHeightRatio();
+    long getInserts();
+    long getRemoves();
+    long getGets();
+    double getInsertRate();
+    double getRemoveRate();
+    double getGetRate();
+    /** @see SplayStats#depthHistogram */
+    long[] getDepthHistogram();
+}
@@ -0,0 +1,77 @@
+package nu.lodes.sortedlist;
+
+import java.util.Arrays;
+
+/** The shape of the tree of a {@link SplaySortedList}, measured by {@link SplaySortedList#analyze()}.
+ * Depths count the nodes on the path from the root, so the root is at depth 1
+ * and the height is the greatest depth. A node holds a run of equal elements,
+ * so there may be fewer nodes than elements.
+ *
+ * The average depth is the cost of a search to a random node that does not splay,
+ * and the height bounds it, so both are measures of the shape quality:
+ * a balanced tree has a height of <code>ceil(lg(nodes + 1))</code>,
+ * and the path left by sequential inserts has a height of <code>nodes</code>. */
+public final class TreeShape {
+    private final int size;
+    private final int nodes;
+    private final int height;
+    private final long depthSum;
+    private final long[] depthHistogram;
+    
+    TreeShape(int size, int nodes, int height, long depthSum, long[] depthHistogram) {
+        this.size = size;
+        this.nodes = nodes;
+        this.height = height;
+        this.depthSum = depthSum;
+        this.depthHistogram = depthHistogram;
+    }
+    
+    
+    /** @return the number of elements */
+    public int size() {
+        return size;
+    }
+    
+    /** @return the number of nodes, which is the number of distinct elements */
+    public int nodes() {
+        return nodes;
+    }
+    
+    /** @return the greatest depth of a node; 0 if the tree is empty */
+    public int height() {
+        return height;
+    }
+    
+    /** @return the height of a perfectly balanced tree of the same number of nodes */
+    public int balancedHeight() {
+        return 32 - Integer.numberOfLeadingZeros(nodes);
+    }
+    
+    /** @return {@link #height} over {@link #balancedHeight}; 0 if the tree is empty */
+    public double heightRatio() {
+        return 0 != nodes ? (double) height / balancedHeight() : 0.0;
+    }
+    
+    /** @return the mean depth of the nodes; 0 if the tree is empty */
+    public double averageDepth() {
+        return 0 != nodes ? (double) depthSum / nodes : 0.0;
+    }
+    
+    /** @return the number of nodes by depth, in the buckets of {@link SplayStats#depthHistogram}:
+     * bucket <code>k</code> counts the nodes with a depth in <code>[2<sup>k</sup>, 2<sup>k+1</sup>)</code> */
+    public long[] depthHistogram() {
+        return depthHistogram.clone();
+    }
+    
+    
+    @Override
+    public String toString() {
+        int k = depthHistogram.length;
+        while (0 < k && 0L == depthHistogram[k - 1]) {
+            --k;
+        }
+        return String.format("TreeShape[size=%d, nodes=%d, height=%d (x%.2f), averageDepth=%.2f, depthHistogram=%s]",
+                size, nodes, height, heightRatio(), averageDepth(),
+                Arrays.toString(Arrays.copyOf(depthHistogram, k)));
+    }
+}
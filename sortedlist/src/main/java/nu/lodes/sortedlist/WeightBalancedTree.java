@@ -0,0 +1,262 @@
+package nu.lodes.sortedlist;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.annotation.Nullable;
+
+
+/** Persistent weight-balanced trees with sub-tree counts, for {@link PersistentSortedList}
+ * and the partitions of {@link ConcurrentSortedList}.
+ *
+ * A write copies the path to the root, with at most one rotation per node,
+ * and shares every other node with the version it was written to.
+ * A node is updated in place instead only if it is owned by the writing version:
+ * the transient version of a {@link PersistentSortedList.Builder} owns the nodes it created,
+ * until a snapshot shares them. A <code>null</code> owner owns nothing, so every write copies.
+ *
+ * Weight balance follows Hirai and Yamamoto, "Balancing weight-balanced trees":
+ * the weight of a sub-tree (count + 1) is at most {@link #DELTA} times the weight of its sibling,
+ * and a rotation is double if the inner grandchild is at least {@link #GAMMA} times the outer. */
+final class WeightBalancedTree {
+    static final int DELTA = 3;
+    static final int GAMMA = 2;
+    
+    private WeightBalancedTree() {
+    }
+    
+    
+    /////// WRITES ///////
+    
+    /** @return the tree with the value inserted after the elements equal to it */
+    static <T> Node<T> insert(@Nullable Object owner, @Nullable Node<T> n, T value, Comparator<? super T> c) {
+        if (null == n) {
+            return new Node<T>(owner, value, null, null);
+        }
+        if (c.compare(value, n.value) < 0) {
+            return balance(owner, n, n.value, insert(owner, n.left, value, c), n.right);
+        }
+        return balance(owner, n, n.value, n.left, insert(owner, n.right, value, c));
+    }
+    
+    /** @return the tree without the element at the index */
+    static @Nullable <T> Node<T> removeAt(@Nullable Object owner, Node<T> n, int index) {
+        int j = index - count(n.left);
+        if (j < 0) {
+            return balance(owner, n, n.value, removeAt(owner, n.left, index), n.right);
+        }
+        if (0 < j) {
+            return balance(owner, n, n.value, n.left, removeAt(owner, n.right, j - 1));
+        }
+        if (null == n.left) {
+            return n.right;
+        }
+        if (null == n.right) {
+            return n.left;
+        }
+        // replace with an adjacent element from the larger side
+        if (n.right.count < n.left.count) {
+            int last = n.left.count - 1;
+            return balance(owner, n, get(n.left, last), removeAt(owner, n.left, last), n.right);
+        }
+        return balance(owner, n, get(n.right, 0), n.left, removeAt(owner, n.right, 0));
+    }
+    
+    /** @return a perfectly balanced tree of the elements <code>values[from, to)</code> */
+    @SuppressWarnings("unchecked")
+    static @Nullable <T> Node<T> build(@Nullable Object owner, Object[] values, int from, int to) {
+        if (to <= from)
+            return null;
+        int mid = (from + to) >>> 1;
+        Node<T> left = build(owner, values, from, mid);
+        Node<T> right = build(owner, values, mid + 1, to);
+        return new Node<T>(owner, (T) values[mid], left, right);
+    }
+    
+    /** @return a node of the value over the sub-trees, with a single or double rotation
+     * if their weights are out of balance by one insert or remove.
+     * The node <code>n</code> and the rotated nodes are reused if they are owned. */
+    private static <T> Node<T> balance(@Nullable Object owner, Node<T> n, T value, @Nullable Node<T> l, @Nullable Node<T> r) {
+        int wl = count(l) + 1;
+        int wr = count(r) + 1;
+        if (DELTA * wl < wr) {
+            Node<T> rl = r.left;
+            Node<T> rr = r.right;
+            if (count(rl) + 1 < GAMMA * (count(rr) + 1)) {
+                // rotate left
+                return node(owner, r, r.value, node(owner, n, value, l, rl), rr);
+            }
+            // rotate right-left
+            Node<T> a = node(owner, n, value, l, rl.left);
+            Node<T> b = node(owner, r, r.value, rl.right, rr);
+            return node(owner, rl, rl.value, a, b);
+        }
+        if (DELTA * wr < wl) {
+            Node<T> ll = l.left;
+            Node<T> lr = l.right;
+            if (count(lr) + 1 < GAMMA * (count(ll) + 1)) {
+                // rotate right
+                return node(owner, l, l.value, ll, node(owner, n, value, lr, r));
+            }
+            // rotate left-right
+            Node<T> a = node(owner, l, l.value, ll, lr.left);
+            Node<T> b = node(owner, n, value, lr.right, r);
+            return node(owner, lr, lr.value, a, b);
+        }
+        return node(owner, n, value, l, r);
+    }
+    
+    /** @return the node updated in place if it is owned, otherwise a new node */
+    private static <T> Node<T> node(@Nullable Object owner, Node<T> n, T value, @Nullable Node<T> l, @Nullable Node<T> r) {
+        if (null == owner || owner != n.owner) {
+            return new Node<T>(owner, value, l, r);
+        }
+        n.value = value;
+        n.left = l;
+        n.right = r;
+        n.count = 1 + count(l) + count(r);
+        return n;
+    }
+    
+    
+    /////// READS ///////
+    
+    static int count(@Nullable Node<?> n) {
+        return null != n ? n.count : 0;
+    }
+    
+    static <T> T get(Node<T> n, int index) {
+        for (Node<T> y = n; ; ) {
+            int j = index - count(y.left);
+            if (j < 0) {
+                y = y.left;
+            } else if (0 < j) {
+                index = j - 1;
+                y = y.right;
+            } else {
+                return y.value;
+            }
+        }
+    }
+    
+    /** @return if <code>upper</code>, the number of elements in the tree not greater than the query,
+     * otherwise the number of elements less than the query;
+     * the query is <code>q</code> if not <code>null</code>, otherwise <code>value</code> by the comparator */
+    static <T> int bound(@Nullable Node<T> y, @Nullable Comparable<? super T> q, @Nullable T value, Comparator<? super T> c,
+            boolean upper) {
+        int index = 0;
+        while (null != y) {
+            int d = null != q ? q.compareTo(y.value) : c.compare(value, y.value);
+            if (d < 0 || 0 == d && !upper) {
+                y = y.left;
+            } else {
+                index += count(y.left) + 1;
+                y = y.right;
+            }
+        }
+        return index;
+    }
+    
+    /** @return the elements of the tree in order */
+    static <T> Object[] toArray(@Nullable Node<T> root) {
+        Object[] values = new Object[count(root)];
+        int i = 0;
+        for (Walk<T> w = new Walk<T>(root); w.hasNext(); ) {
+            values[i++] = w.next();
+        }
+        return values;
+    }
+    
+    
+    /////// INVARIANTS ///////
+    
+    /** Checks the counts, weight balance and order of the tree.
+     * @throws IllegalStateException if an invariant does not hold */
+    static <T> void check(@Nullable Node<T> root, Comparator<? super T> c) {
+        check(root);
+        @Nullable T last = null;
+        for (Walk<T> w = new Walk<T>(root); w.hasNext(); ) {
+            T x = w.next();
+            if (null != last && 0 < c.compare(last, x))
+                throw new IllegalStateException(String.format("%s before %s", last, x));
+            last = x;
+        }
+    }
+    
+    private static void check(@Nullable Node<?> n) {
+        if (null == n)
+            return;
+        int wl = count(n.left) + 1;
+        int wr = count(n.right) + 1;
+        if (n.count != wl + wr - 1)
+            throw new IllegalStateException(String.format("count %d <> %d at %s", n.count, wl + wr - 1, n.value));
+        if (DELTA * wl < wr || DELTA * wr < wl)
+            throw new IllegalStateException(String.format("weights %d, %d at %s", wl, wr, n.value));
+        check(n.left);
+        check(n.right);
+    }
+    
+    
+    /////// INTERNAL ///////
+    
+    /** A node, immutable once it is shared: it is only updated by its owner. */
+    static final class Node<T> {
+        T value;
+        @Nullable Node<T> left;
+        @Nullable Node<T> right;
+        /** number of values in the sub-tree */
+        int count;
+        /** the transient version that may update the node in place, or <code>null</code> */
+        final @Nullable Object owner;
+        
+        Node(@Nullable Object owner, T value, @Nullable Node<T> left, @Nullable Node<T> right) {
+            this.owner = owner;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.count = 1 + count(left) + count(right);
+        }
+    }
+    
+    /** An in-order walk of a tree that does not change. */
+    static final class Walk<T> implements Iterator<T> {
+        /* the path of the next element */
+        @SuppressWarnings("unchecked")
+        private Node<T>[] stack = new Node[16];
+        private int depth = 0;
+        
+        Walk(@Nullable Node<T> root) {
+            push(root);
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return 0 < depth;
+        }
+        
+        @Override
+        public T next() {
+            if (0 == depth)
+                throw new NoSuchElementException();
+            Node<T> y = stack[--depth];
+            push(y.right);
+            return y.value;
+        }
+        
+        private void push(@Nullable Node<T> y) {
+            for (; null != y; y = y.left) {
+                if (stack.length == depth) {
+                    stack = Arrays.copyOf(stack, 2 * depth);
+                }
+                stack[depth++] = y;
+            }
+        }
+        
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}